@@ -100,3 +100,10 @@ ADD CONSTRAINT fk_acc_cert_decision_owner
 FOREIGN KEY (owner_id, owner_owner_oid)
 REFERENCES m_acc_cert_case;
 
+CREATE INDEX iAssignmentValidFrom ON m_assignment (validFrom);
+
+CREATE INDEX iAssignmentValidTo ON m_assignment (validTo);
+
+CREATE INDEX iFocusValidFrom ON m_focus (validFrom);
+
+CREATE INDEX iFocusValidTo ON m_focus (validTo);
@@ -894,6 +894,10 @@ CREATE INDEX iAssignmentAdministrative ON m_assignment (administrativeStatus);
 
 CREATE INDEX iAssignmentEffective ON m_assignment (effectiveStatus);
 
+CREATE INDEX iAssignmentValidFrom ON m_assignment (validFrom);
+
+CREATE INDEX iAssignmentValidTo ON m_assignment (validTo);
+
 CREATE INDEX iTargetRefTargetOid ON m_assignment (targetRef_targetOid);
 
 CREATE INDEX iTenantRefTargetOid ON m_assignment (tenantRef_targetOid);
@@ -925,6 +929,10 @@ CREATE INDEX iFocusAdministrative ON m_focus (administrativeStatus);
 
 CREATE INDEX iFocusEffective ON m_focus (effectiveStatus);
 
+CREATE INDEX iFocusValidFrom ON m_focus (validFrom);
+
+CREATE INDEX iFocusValidTo ON m_focus (validTo);
+
 ALTER TABLE m_generic_object
 ADD CONSTRAINT uc_generic_object_name UNIQUE (name_norm);
 
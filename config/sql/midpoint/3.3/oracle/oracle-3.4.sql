@@ -726,6 +726,10 @@ CREATE INDEX iAssignmentAdministrative ON m_assignment (administrativeStatus) IN
 
 CREATE INDEX iAssignmentEffective ON m_assignment (effectiveStatus) INITRANS 30;
 
+CREATE INDEX iAssignmentValidFrom ON m_assignment (validFrom) INITRANS 30;
+
+CREATE INDEX iAssignmentValidTo ON m_assignment (validTo) INITRANS 30;
+
 CREATE INDEX iTargetRefTargetOid ON m_assignment (targetRef_targetOid) INITRANS 30;
 
 CREATE INDEX iTenantRefTargetOid ON m_assignment (tenantRef_targetOid) INITRANS 30;
@@ -757,6 +761,10 @@ CREATE INDEX iFocusAdministrative ON m_focus (administrativeStatus) INITRANS 30;
 
 CREATE INDEX iFocusEffective ON m_focus (effectiveStatus) INITRANS 30;
 
+CREATE INDEX iFocusValidFrom ON m_focus (validFrom) INITRANS 30;
+
+CREATE INDEX iFocusValidTo ON m_focus (validTo) INITRANS 30;
+
 ALTER TABLE m_generic_object
 ADD CONSTRAINT uc_generic_object_name UNIQUE (name_norm) INITRANS 30;
 
@@ -101,3 +101,11 @@ ALTER TABLE m_acc_cert_decision
 ADD CONSTRAINT fk_acc_cert_decision_owner
 FOREIGN KEY (owner_id, owner_owner_oid)
 REFERENCES m_acc_cert_case;
+
+CREATE INDEX iAssignmentValidFrom ON m_assignment (validFrom) INITRANS 30;
+
+CREATE INDEX iAssignmentValidTo ON m_assignment (validTo) INITRANS 30;
+
+CREATE INDEX iFocusValidFrom ON m_focus (validFrom) INITRANS 30;
+
+CREATE INDEX iFocusValidTo ON m_focus (validTo) INITRANS 30;
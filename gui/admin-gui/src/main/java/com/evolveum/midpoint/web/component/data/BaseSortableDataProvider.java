@@ -25,8 +25,10 @@ import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.OrderDirection;
 import com.evolveum.midpoint.schema.SchemaConstantsGenerated;
 import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.web.component.GuiComponents;
 import com.evolveum.midpoint.web.page.PageBase;
 import com.evolveum.midpoint.web.page.PageDialog;
 import com.evolveum.midpoint.web.security.MidPointApplication;
@@ -42,6 +44,10 @@ import org.apache.wicket.model.Model;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * @author lazyman
@@ -49,6 +55,41 @@ import java.util.*;
 public abstract class BaseSortableDataProvider<T extends Serializable> extends SortableDataProvider<T, String> {
 
     private static final Trace LOGGER = TraceManager.getTrace(BaseSortableDataProvider.class);
+
+    /**
+     * Size reported when the total number of results is not known. Tables page through such results
+     * using "previous/next" paging only.
+     */
+    public static final long UNKNOWN_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Defines how the total number of results ({@link #size()}) is obtained.
+     */
+    public enum CountMode {
+
+        /**
+         * Results are counted every time the size is needed.
+         */
+        EXACT,
+
+        /**
+         * Count is cached per query filter, it is recomputed after cache cleanup threshold.
+         */
+        CACHED,
+
+        /**
+         * Like {@link #CACHED}, but a missing or expired count is computed in background. Until it's done,
+         * the last known count for the query is used, or the size is unknown if there's none.
+         * Providers that can't count in background (see {@link #createCountCallable()}) behave as {@link #CACHED}.
+         */
+        ASYNC,
+
+        /**
+         * Results are not counted at all, the size is always unknown.
+         */
+        NONE
+    }
+
     private Component component;
     private List<T> availableData;
     private ObjectQuery query;
@@ -57,7 +98,10 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
     // from cache and replaced by new value, time in seconds
     private Map<Serializable, CachedSize> cache = new HashMap<Serializable, CachedSize>();
     private int cacheCleanupThreshold = 60;
-    private boolean useCache;
+    private CountMode countMode;
+
+    private transient Future<Integer> countFuture;
+    private Serializable countKey;
 
     public BaseSortableDataProvider(Component component) {
         this(component, false, true);
@@ -70,7 +114,7 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
     public BaseSortableDataProvider(Component component, boolean useCache, boolean useDefaultSortingField) {
         Validate.notNull(component, "Component must not be null.");
         this.component = component;
-        this.useCache = useCache;
+        this.countMode = useCache ? CountMode.CACHED : CountMode.EXACT;
 
         if (useDefaultSortingField) {
             setSort("name", SortOrder.ASCENDING);
@@ -149,11 +193,31 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
         return new AbstractReadOnlyModel<Boolean>() {
             @Override
             public Boolean getObject() {
-                return true;
+                return isSizeAvailable();
             }
         };
     }
 
+    private boolean isSizeAvailable() {
+        switch (countMode) {
+            case NONE:
+                return false;
+            case ASYNC:
+                return cache.get(getCacheKey()) != null;
+            default:
+                return true;
+        }
+    }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    public void setCountMode(CountMode countMode) {
+        Validate.notNull(countMode, "Count mode must not be null.");
+        this.countMode = countMode;
+    }
+
     protected ObjectPaging createPaging(long first, long count) {
         SortParam sortParam = getSort();
         if (sortParam != null) {
@@ -172,6 +236,7 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
     }
 
     public void clearCache() {
+        cancelCount();
         cache.clear();
         getAvailableData().clear();
     }
@@ -201,40 +266,138 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
     @Override
     public long size() {
         LOGGER.trace("begin::size()");
-        if (!useCache) {
-            return internalSize();
-        }
-
         long size;
-        CachedSize cachedSize = getCachedSize(cache);
-        if (cachedSize != null) {
-            long timestamp = cachedSize.getTimestamp();
-            if (System.currentTimeMillis() - timestamp > cacheCleanupThreshold * 1000) {
-                //recreate
+        switch (countMode) {
+            case NONE:
+                size = UNKNOWN_SIZE;
+                break;
+            case ASYNC:
+                size = asyncSize();
+                break;
+            case CACHED:
+                size = cachedSize();
+                break;
+            default:
                 size = internalSize();
-                addCachedSize(cache, new CachedSize(size, System.currentTimeMillis()));
-            } else {
-                LOGGER.trace("Size returning from cache.");
-                size = cachedSize.getSize();
-            }
-        } else {
-            //recreate
-            size = internalSize();
-            addCachedSize(cache, new CachedSize(size, System.currentTimeMillis()));
         }
 
         LOGGER.trace("end::size(): {}", size);
         return size;
     }
 
+    private long cachedSize() {
+        Serializable key = getCacheKey();
+        CachedSize cachedSize = cache.get(key);
+        if (cachedSize != null && !isExpired(cachedSize)) {
+            LOGGER.trace("Size returning from cache.");
+            return cachedSize.getSize();
+        }
+
+        //recreate
+        long size = internalSize();
+        cache.put(key, new CachedSize(size, System.currentTimeMillis()));
+        return size;
+    }
+
+    private long asyncSize() {
+        updateCount();
+
+        Serializable key = getCacheKey();
+        CachedSize cachedSize = cache.get(key);
+        if (cachedSize != null && !isExpired(cachedSize)) {
+            LOGGER.trace("Size returning from cache.");
+            return cachedSize.getSize();
+        }
+
+        if (countFuture == null || !key.equals(countKey)) {
+            Callable<Integer> callable = createCountCallable();
+            if (callable == null) {
+                return cachedSize();
+            }
+
+            cancelCount();
+            LOGGER.trace("Starting background count for {}", key);
+            countFuture = GuiComponents.submitCallable(callable);
+            countKey = key;
+        }
+
+        // the last known count is good enough until the new one is ready
+        return cachedSize != null ? cachedSize.getSize() : UNKNOWN_SIZE;
+    }
+
+    private boolean isExpired(CachedSize cachedSize) {
+        return System.currentTimeMillis() - cachedSize.getTimestamp() > cacheCleanupThreshold * 1000;
+    }
+
+    /**
+     * @return true if there is a background count (see {@link CountMode#ASYNC}) whose result was not collected yet
+     */
+    public boolean isCountPending() {
+        return countFuture != null;
+    }
+
+    /**
+     * Collects result of the background count, if it's done.
+     *
+     * @return true if the size of the data changed, i.e. components displaying it should be refreshed
+     */
+    public boolean updateCount() {
+        if (countFuture == null || !countFuture.isDone()) {
+            return false;
+        }
+
+        Future<Integer> future = countFuture;
+        Serializable key = countKey;
+        countFuture = null;
+        countKey = null;
+
+        try {
+            long size = future.get();
+            LOGGER.trace("Background count for {} finished: {}", key, size);
+            CachedSize previous = cache.put(key, new CachedSize(size, System.currentTimeMillis()));
+            return previous == null || previous.getSize() != size;
+        } catch (InterruptedException | ExecutionException | CancellationException ex) {
+            LoggingUtils.logException(LOGGER, "Couldn't count objects in background", ex);
+            return false;
+        }
+    }
+
+    private void cancelCount() {
+        if (countFuture != null) {
+            countFuture.cancel(true);
+            countFuture = null;
+            countKey = null;
+        }
+    }
+
     protected abstract int internalSize();
 
-    protected CachedSize getCachedSize(Map<Serializable, CachedSize> cache) {
-        return cache.get(query);
+    /**
+     * Creates task counting the data in background for {@link CountMode#ASYNC}. It runs outside of the request
+     * cycle, so it must not use session, page or application thread locals.
+     *
+     * @return By default it returns null, i.e. background count is not supported.
+     */
+    protected Callable<Integer> createCountCallable() {
+        return null;
+    }
+
+    /**
+     * Key under which the size is cached, by default the fingerprint of the current query.
+     */
+    protected Serializable getCacheKey() {
+        return createQueryFingerprint(query);
     }
 
-    protected void addCachedSize(Map<Serializable, CachedSize> cache, CachedSize newSize) {
-        cache.put(query, newSize);
+    /**
+     * Returns string identifying results of the query. Paging is ignored, so the count is shared
+     * by all pages of the results and survives re-creating of the query object (e.g. by search panels).
+     */
+    protected static String createQueryFingerprint(ObjectQuery query) {
+        if (query == null || query.getFilter() == null) {
+            return "";
+        }
+        return query.getFilter().debugDump();
     }
 
     public static class CachedSize implements Serializable {
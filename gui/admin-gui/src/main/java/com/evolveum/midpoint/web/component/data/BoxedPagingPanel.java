@@ -18,6 +18,7 @@ package com.evolveum.midpoint.web.component.data;
 
 import com.evolveum.midpoint.web.component.data.paging.NavigatorPanel;
 import org.apache.wicket.markup.html.navigation.paging.IPageable;
+import org.apache.wicket.model.IModel;
 
 /**
  * @author Viliam Repan (lazyman)
@@ -27,4 +28,8 @@ public class BoxedPagingPanel extends NavigatorPanel {
     public BoxedPagingPanel(String id, IPageable pageable, boolean showPageListing) {
         super(id, pageable, showPageListing);
     }
+
+    public BoxedPagingPanel(String id, IPageable pageable, IModel<Boolean> showPageListingModel) {
+        super(id, pageable, showPageListingModel);
+    }
 }
@@ -32,7 +32,10 @@ import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.navigation.paging.IPageable;
 import org.apache.wicket.markup.html.panel.Fragment;
 import org.apache.wicket.markup.repeater.data.DataViewBase;
+import org.apache.wicket.markup.repeater.data.IDataProvider;
 import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
 import org.apache.wicket.model.StringResourceModel;
 
 import java.util.List;
@@ -84,6 +87,16 @@ public class BoxedTablePanel<T> extends SimplePanel implements Table {
         add(createFooter(ID_FOOTER));
     }
 
+    @Override
+    protected void onBeforeRender() {
+        super.onBeforeRender();
+
+        WebMarkupContainer footer = getFooter();
+        if (footer.getOutputMarkupId()) {
+            CountUpdateBehavior.addIfCountPending(this, getDataTable().getDataProvider(), footer);
+        }
+    }
+
     @Override
     public DataTable getDataTable() {
         return (DataTable) get(ID_TABLE);
@@ -165,7 +178,7 @@ public class BoxedTablePanel<T> extends SimplePanel implements Table {
             count.setOutputMarkupId(true);
             add(count);
 
-            BoxedPagingPanel nb2 = new BoxedPagingPanel(ID_PAGING, dataTable, true) {
+            BoxedPagingPanel nb2 = new BoxedPagingPanel(ID_PAGING, dataTable, createShowPageListingModel(dataTable)) {
 
                 @Override
                 protected void onPageChanged(AjaxRequestTarget target, long page) {
@@ -192,6 +205,14 @@ public class BoxedTablePanel<T> extends SimplePanel implements Table {
             add(menu);
         }
 
+        private IModel<Boolean> createShowPageListingModel(DataTable dataTable) {
+            IDataProvider provider = dataTable.getDataProvider();
+            if (provider instanceof BaseSortableDataProvider) {
+                return ((BaseSortableDataProvider) provider).isSizeAvailableModel();
+            }
+            return new Model<>(true);
+        }
+
         private String createCountString(IPageable pageable) {
             long from = 0;
             long to = 0;
@@ -220,8 +241,8 @@ public class BoxedTablePanel<T> extends SimplePanel implements Table {
             }
 
             if (count > 0) {
-                if (count == Integer.MAX_VALUE) {
-                    return new StringResourceModel("CountToolbar.label", PagingFooter.this, null,
+                if (count == BaseSortableDataProvider.UNKNOWN_SIZE) {
+                    return new StringResourceModel("CountToolbar.label.unknownCount", PagingFooter.this, null,
                             new Object[]{from, to}).getString();
                 }
 
@@ -32,6 +32,7 @@ public class CountToolbar extends AbstractToolbar {
         super.onInitialize();
 
         WebMarkupContainer td = new WebMarkupContainer(ID_TD);
+        td.setOutputMarkupId(true);
         td.add(AttributeModifier.replace("colspan", new AbstractReadOnlyModel<String>() {
 
             @Override
@@ -95,6 +96,11 @@ public class CountToolbar extends AbstractToolbar {
                 }
 
                 if (count > 0) {
+                    if (count == BaseSortableDataProvider.UNKNOWN_SIZE) {
+                        return new StringResourceModel("CountToolbar.label.unknownCount", CountToolbar.this, null,
+                                new Object[]{from, to}).getString();
+                    }
+
                     return new StringResourceModel("CountToolbar.label", CountToolbar.this, null,
                             new Object[]{from, to, count}).getString();
                 }
@@ -104,6 +110,13 @@ public class CountToolbar extends AbstractToolbar {
         };
     }
 
+    /**
+     * @return component displaying the count, it can be refreshed separately from the table
+     */
+    public WebMarkupContainer getCountContainer() {
+        return (WebMarkupContainer) get(ID_TD);
+    }
+
     protected void pageSizeChanged(AjaxRequestTarget target) {
     }
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.web.component.data;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.repeater.data.IDataProvider;
+import org.apache.wicket.util.time.Duration;
+
+/**
+ * Refreshes components displaying size of the data when background count of the provider
+ * (see {@link BaseSortableDataProvider.CountMode#ASYNC}) is done. It stops itself when there's no count pending.
+ *
+ * @author agent
+ */
+public class CountUpdateBehavior extends AbstractAjaxTimerBehavior {
+
+    private static final int UPDATE_INTERVAL = 2;
+
+    private BaseSortableDataProvider provider;
+    private Component[] components;
+
+    private CountUpdateBehavior(BaseSortableDataProvider provider, Component... components) {
+        super(Duration.seconds(UPDATE_INTERVAL));
+
+        this.provider = provider;
+        this.components = components;
+    }
+
+    /**
+     * Adds the behavior to the host component if the provider has a background count pending. Should be called
+     * from onBeforeRender of the host (after children were prepared for render, so the count is already started).
+     */
+    public static void addIfCountPending(Component host, IDataProvider provider, Component... components) {
+        if (!(provider instanceof BaseSortableDataProvider)
+                || !((BaseSortableDataProvider) provider).isCountPending()) {
+            return;
+        }
+
+        for (CountUpdateBehavior behavior : host.getBehaviors(CountUpdateBehavior.class)) {
+            if (!behavior.isStopped()) {
+                return;
+            }
+            host.remove(behavior);
+        }
+        host.add(new CountUpdateBehavior((BaseSortableDataProvider) provider, components));
+    }
+
+    @Override
+    protected void onTimer(AjaxRequestTarget target) {
+        if (provider.updateCount()) {
+            for (Component component : components) {
+                target.add(component);
+            }
+        }
+
+        if (!provider.isCountPending()) {
+            stop(target);
+        }
+    }
+}
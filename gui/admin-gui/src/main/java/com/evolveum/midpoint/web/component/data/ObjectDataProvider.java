@@ -18,7 +18,9 @@ package com.evolveum.midpoint.web.component.data;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
 
+import com.evolveum.midpoint.model.api.ModelService;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SelectorOptions;
 
@@ -34,12 +36,15 @@ import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.web.component.SecurityContextAwareCallable;
 import com.evolveum.midpoint.web.component.util.Selectable;
 import com.evolveum.midpoint.web.component.util.SelectableBean;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.RestartResponseException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
  * @author lazyman
@@ -182,13 +187,29 @@ public class ObjectDataProvider<W extends Serializable, T extends ObjectType>
     }
 
     @Override
-    protected CachedSize getCachedSize(Map<Serializable, CachedSize> cache) {
-        return cache.get(new TypedCacheKey(getQuery(), type));
+    protected Serializable getCacheKey() {
+        return new TypedCacheKey(getQuery(), type);
     }
 
     @Override
-    protected void addCachedSize(Map<Serializable, CachedSize> cache, CachedSize newSize) {
-        cache.put(new TypedCacheKey(getQuery(), type), newSize);
+    protected Callable<Integer> createCountCallable() {
+        final ObjectQuery query = getQuery() != null ? getQuery().clone() : null;
+        if (query != null) {
+            query.setPaging(null);
+        }
+        final Class<T> type = this.type;
+        final Collection<SelectorOptions<GetOperationOptions>> options = this.options;
+        final ModelService model = getModel();
+        final Task task = getPage().createSimpleTask(OPERATION_COUNT_OBJECTS);
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return new SecurityContextAwareCallable<Integer>(getPage().getSecurityEnforcer(), auth) {
+
+            @Override
+            public Integer callWithContextPrepared() throws Exception {
+                return model.countObjects(type, query, options, task, task.getResult());
+            }
+        };
     }
 
     public void setType(Class<T> type) {
@@ -49,6 +49,7 @@ public class TablePanel<T> extends Panel implements Table {
     private IModel<Boolean> showCount = new Model<>(true);
 
     private UserProfileStorage.TableId tableId;
+    private CountToolbar countToolbar;
 
     public TablePanel(String id, ISortableDataProvider provider, List<IColumn<T, String>> columns) {
         this(id, provider, columns, null, UserProfileStorage.DEFAULT_PAGING_SIZE);
@@ -94,6 +95,7 @@ public class TablePanel<T> extends Panel implements Table {
         };
         addVisibleBehaviour(count, showCount);
         table.addBottomToolbar(count);
+        countToolbar = count;
 
         add(table);
 
@@ -102,6 +104,14 @@ public class TablePanel<T> extends Panel implements Table {
         add(nb2);
     }
 
+    @Override
+    protected void onBeforeRender() {
+        super.onBeforeRender();
+
+        CountUpdateBehavior.addIfCountPending(this, getDataTable().getDataProvider(),
+                countToolbar.getCountContainer(), getNavigatorPanel());
+    }
+
     @Override
     public UserProfileStorage.TableId getTableId() {
         return tableId;
@@ -17,7 +17,6 @@
 package com.evolveum.midpoint.web.component.data;
 
 import com.evolveum.midpoint.prism.query.ObjectQuery;
-import com.evolveum.prism.xml.ns._public.query_3.QueryType;
 
 import java.io.Serializable;
 
@@ -26,11 +25,11 @@ import java.io.Serializable;
  */
 public class TypedCacheKey implements Serializable {
 
-    private ObjectQuery query;
+    private String query;
     private Class type;
 
     public TypedCacheKey(ObjectQuery query, Class type) {
-        this.query = query;
+        this.query = BaseSortableDataProvider.createQueryFingerprint(query);
         this.type = type;
     }
 
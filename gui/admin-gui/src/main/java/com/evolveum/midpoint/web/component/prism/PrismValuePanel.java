@@ -63,10 +63,10 @@ import org.apache.wicket.model.PropertyModel;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.xml.XsdTypeMapper;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.schema.DeltaConvertor;
-import com.evolveum.midpoint.schema.GetOperationOptions;
-import com.evolveum.midpoint.schema.RetrieveOption;
-import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.RelationalValueSearchQuery;
+import com.evolveum.midpoint.schema.RelationalValueSearchType;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
 import com.evolveum.midpoint.schema.processor.ResourceAttribute;
@@ -74,7 +74,9 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.DOMUtil;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SecurityViolationException;
 import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.web.component.form.ValueChoosePanel;
 import com.evolveum.midpoint.web.component.input.AutoCompleteTextPanel;
@@ -91,7 +93,6 @@ import com.evolveum.midpoint.web.component.util.VisibleEnableBehaviour;
 import com.evolveum.midpoint.web.page.PageBase;
 import com.evolveum.midpoint.web.util.DateValidator;
 import com.evolveum.midpoint.web.util.WebMiscUtil;
-import com.evolveum.midpoint.web.util.WebModelUtils;
 import com.evolveum.midpoint.xml.ns.model.workflow.common_forms_3.AssignmentCreationApprovalFormType;
 import com.evolveum.prism.xml.ns._public.types_3.ObjectDeltaType;
 import com.evolveum.prism.xml.ns._public.types_3.ProtectedStringType;
@@ -108,6 +109,9 @@ public class PrismValuePanel extends Panel {
     private static final String OPERATION_LOAD_ASSOC_SHADOWS =  DOT_CLASS + "loadAssociationShadows";
     
     private static final Trace LOGGER = TraceManager.getTrace(PrismValuePanel.class);
+    private static final String OPERATION_SEARCH_LOOKUP_TABLE_ROWS = PrismValuePanel.class.getName() + ".searchLookupTableRows";
+    private static final String OPERATION_LOAD_LOOKUP_TABLE = PrismValuePanel.class.getName() + ".loadLookupTable";
+    private static final int AUTOCOMPLETE_MAX_SIZE = 11;
 
     private IModel<ValueWrapper> model;
     private PageBase pageBase;
@@ -455,16 +459,10 @@ public class PrismValuePanel extends Panel {
                   if(def.getValueEnumerationRef() != null){
                       PrismReferenceValue valueEnumerationRef = def.getValueEnumerationRef();
                       String lookupTableUid = valueEnumerationRef.getOid();
-                      Task task = pageBase.createSimpleTask("loadLookupTable");
-                      OperationResult result = task.getResult();
-
-                      Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(LookupTableType.F_ROW,
-                              GetOperationOptions.createRetrieve(RetrieveOption.INCLUDE));
-                      final PrismObject<LookupTableType> lookupTable = WebModelUtils.loadObject(LookupTableType.class,
-                              lookupTableUid, options, pageBase, task, result);
+                      final PrismObject<LookupTableType> lookupTable = loadLookupTable(lookupTableUid);
 
                       inputPanel = new AutoCompleteTextPanel<String>(id, new LookupPropertyModel<String>(model, baseExpression + ".orig",
-                              lookupTable.asObjectable()), String.class) {
+                              lookupTable == null ? null : lookupTable.asObjectable()), String.class) {
 
                           @Override
                           public Iterator<String> getIterator(String input) {
@@ -555,13 +553,7 @@ public class PrismValuePanel extends Panel {
                   if(def.getValueEnumerationRef() != null){
                       PrismReferenceValue valueEnumerationRef = def.getValueEnumerationRef();
                       String lookupTableUid = valueEnumerationRef.getOid();
-                      Task task = pageBase.createSimpleTask("loadLookupTable");
-                      OperationResult result = task.getResult();
-
-                      Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(LookupTableType.F_ROW,
-                              GetOperationOptions.createRetrieve(RetrieveOption.INCLUDE));
-                      final PrismObject<LookupTableType> lookupTable = WebModelUtils.loadObject(LookupTableType.class,
-                              lookupTableUid, options, pageBase, task, result);
+                      final PrismObject<LookupTableType> lookupTable = loadLookupTable(lookupTableUid);
 
                       panel = new AutoCompleteTextPanel<String>(id, new LookupPropertyModel<String>(model, baseExpression,
                               lookupTable == null ? null : lookupTable.asObjectable()), type) {
@@ -665,6 +657,19 @@ public class PrismValuePanel extends Panel {
         return panel;
     }
 
+    private PrismObject<LookupTableType> loadLookupTable(String lookupTableOid) {
+        // the table (including rows) is served from the lookup table cache, so it is not read from the repository
+        // every time the panel is built
+        Task task = pageBase.createSimpleTask(OPERATION_LOAD_LOOKUP_TABLE);
+        OperationResult result = task.getResult();
+        try {
+            return pageBase.getModelInteractionService().getLookupTable(lookupTableOid, task, result);
+        } catch (ObjectNotFoundException | SchemaException | SecurityViolationException | RuntimeException e) {
+            LoggingUtils.logException(LOGGER, "Couldn't load lookup table {}", e, lookupTableOid);
+            return null;
+        }
+    }
+
     private List<String> prepareAutoCompleteList(String input, PrismObject<LookupTableType> lookupTable){
         List<String> values = new ArrayList<>();
 
@@ -672,26 +677,21 @@ public class PrismValuePanel extends Panel {
             return values;
         }
 
-        List<LookupTableRowType> rows = lookupTable.asObjectable().getRow();
-
-        if(input == null || input.isEmpty()){
-            for(LookupTableRowType row: rows){
-                values.add(WebMiscUtil.getOrigStringFromPoly(row.getLabel()));
-
-                if(values.size() > 10){
-                    return values;
-                }
-            }
-        } else {
-            for(LookupTableRowType row: rows){
-                if(WebMiscUtil.getOrigStringFromPoly(row.getLabel()).startsWith(input)){
-                    values.add(WebMiscUtil.getOrigStringFromPoly(row.getLabel()));
-                }
+        // rows are searched in the lookup table cache, so we don't need to iterate through the whole table here
+        Task task = pageBase.createSimpleTask(OPERATION_SEARCH_LOOKUP_TABLE_ROWS);
+        OperationResult result = task.getResult();
+        RelationalValueSearchQuery query = new RelationalValueSearchQuery(LookupTableRowType.F_LABEL, input,
+                RelationalValueSearchType.STARTS_WITH, ObjectPaging.createPaging(0, AUTOCOMPLETE_MAX_SIZE));
+        List<LookupTableRowType> rows;
+        try {
+            rows = pageBase.getModelInteractionService().searchLookupTableRows(lookupTable.getOid(), query, task, result);
+        } catch (ObjectNotFoundException | SchemaException | SecurityViolationException | RuntimeException e) {
+            LoggingUtils.logException(LOGGER, "Couldn't search rows of lookup table {}", e, lookupTable);
+            return values;
+        }
 
-                if(values.size() > 10){
-                    return values;
-                }
-            }
+        for(LookupTableRowType row: rows){
+            values.add(WebMiscUtil.getOrigStringFromPoly(row.getLabel()));
         }
 
         return values;
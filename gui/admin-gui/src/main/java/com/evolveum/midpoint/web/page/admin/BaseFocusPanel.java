@@ -57,6 +57,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
 import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.form.AjaxCheckBox;
@@ -73,6 +74,7 @@ import org.apache.wicket.model.*;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.PackageResourceReference;
 import org.apache.wicket.util.string.StringValue;
+import org.apache.wicket.util.time.Duration;
 
 import javax.xml.namespace.QName;
 
@@ -108,6 +110,8 @@ public abstract class BaseFocusPanel<F extends FocusType> extends Panel {
 	private static final String ID_SHADOW_MENU = "shadowMenu";
 	private static final String ID_SHADOW_CHECK_ALL = "shadowCheckAll";
 
+	private static final int PROJECTION_REFRESH_INTERVAL = 2;		// seconds
+
 	private static final String ID_ORG_LIST = "orgList";
 	private static final String ID_ORGS = "orgs";
 	private static final String ID_ORG_MENU = "orgMenu";
@@ -298,6 +302,20 @@ public abstract class BaseFocusPanel<F extends FocusType> extends Panel {
 
 	protected abstract Class getRestartResponsePage();
 
+	/**
+	 * Returns true if some projections are still being fetched from resources in background.
+	 */
+	protected boolean isFetchingProjections() {
+		return false;
+	}
+
+	/**
+	 * Takes over projections fetched in background since the last call. Returns true if any of them has changed.
+	 */
+	protected boolean updateFetchedProjections() {
+		return false;
+	}
+
 	public Object findParam(String param, String oid, OperationResult result) {
 
 		Object object = null;
@@ -384,6 +402,20 @@ public abstract class BaseFocusPanel<F extends FocusType> extends Panel {
 		accounts.add(accountCheckAll);
 
 		accounts.add(accountList);
+
+		// repository state of the projections is displayed first, the state fetched from resources replaces it as it comes
+		accounts.add(new AbstractAjaxTimerBehavior(Duration.seconds(PROJECTION_REFRESH_INTERVAL)) {
+
+			@Override
+			protected void onTimer(AjaxRequestTarget target) {
+				if (updateFetchedProjections()) {
+					target.add(accounts);
+				}
+				if (!isFetchingProjections()) {
+					stop(target);
+				}
+			}
+		});
 	}
 
 	private void initOrgs(final WebMarkupContainer orgs) {
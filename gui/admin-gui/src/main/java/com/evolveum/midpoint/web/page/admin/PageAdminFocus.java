@@ -41,6 +41,8 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.web.component.AjaxButton;
 import com.evolveum.midpoint.web.component.AjaxSubmitButton;
 import com.evolveum.midpoint.web.component.FocusSummaryPanel;
+import com.evolveum.midpoint.web.component.GuiComponents;
+import com.evolveum.midpoint.web.component.SecurityContextAwareCallable;
 import com.evolveum.midpoint.web.component.TabbedPanel;
 import com.evolveum.midpoint.web.component.assignment.AssignmentEditorDto;
 import com.evolveum.midpoint.web.component.assignment.AssignmentEditorDtoType;
@@ -96,11 +98,15 @@ import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.PackageResourceReference;
 import org.apache.wicket.util.string.StringValue;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import javax.xml.namespace.QName;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 		implements ProgressReportingAwarePage {
@@ -120,6 +126,11 @@ public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 
 	private ProgressReporter progressReporter;
 
+	// shadows being fetched from resources in background, by shadow OID (transient like the futures in AsyncUpdatePanel)
+	private transient Map<String, ProjectionFetch> projectionFetches;
+	// OIDs of the shadows being fetched; unlike the fetches these survive serialization of the page
+	private Set<String> projectionFetchOids;
+
 	private static final String DOT_CLASS = PageAdminFocus.class.getName() + ".";
 	private static final String OPERATION_LOAD_FOCUS = DOT_CLASS + "loadFocus";
 	private static final String OPERATION_LOAD_PARENT_ORGS = DOT_CLASS + "loadParentOrgs";
@@ -132,6 +143,13 @@ public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 	private static final String OPERATION_RECOMPUTE_ASSIGNMENTS = DOT_CLASS + "recomputeAssignments";
 
 	private static final String OPERATION_LOAD_SHADOW = DOT_CLASS + "loadShadow";
+	private static final String OPERATION_FETCH_SHADOW = DOT_CLASS + "fetchShadow";
+
+	/**
+	 * How long (in milliseconds) to wait for a shadow to be fetched from its resource. After that the repository
+	 * state of the shadow is left displayed.
+	 */
+	private static final long PROJECTION_FETCH_TIMEOUT = 30000L;
 
 	protected static final String ID_MAIN_FORM = "mainForm";
 	private static final String ID_TAB_PANEL = "tabPanel";
@@ -327,6 +345,16 @@ public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 						return PageAdminFocus.this.getCompileTimeClass();
 					}
 
+					@Override
+					protected boolean isFetchingProjections() {
+						return PageAdminFocus.this.isFetchingProjections();
+					}
+
+					@Override
+					protected boolean updateFetchedProjections() {
+						return PageAdminFocus.this.updateFetchedProjections();
+					}
+
 					@Override
 					protected Class getRestartResponsePage() {
 						return PageAdminFocus.this.getRestartResponsePage();
@@ -620,15 +648,19 @@ public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 	}
 
 	private List<FocusProjectionDto> loadShadowWrappers() {
-		return loadProjectionWrappers(ShadowType.class, UserType.F_LINK_REF);
+		// only the repository state of the shadows is loaded here, so the page is displayed without waiting
+		// for the resources; shadows are then fetched from the resources in background
+		List<FocusProjectionDto> list = loadProjectionWrappers(ShadowType.class, UserType.F_LINK_REF, true);
+		startProjectionFetches(list);
+		return list;
 	}
 
 	private List<FocusProjectionDto> loadOrgWrappers() {
-		return loadProjectionWrappers(OrgType.class, UserType.F_PARENT_ORG_REF);
+		return loadProjectionWrappers(OrgType.class, UserType.F_PARENT_ORG_REF, false);
 	}
 
 	private <P extends ObjectType> List<FocusProjectionDto> loadProjectionWrappers(Class<P> type,
-			QName propertyToLoad) {
+			QName propertyToLoad, boolean noFetch) {
 		List<FocusProjectionDto> list = new ArrayList<FocusProjectionDto>();
 
 		ObjectWrapper focus = focusModel.getObject();
@@ -648,6 +680,9 @@ public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 				if (ShadowType.class.equals(type)) {
 					options = SelectorOptions.createCollection(ShadowType.F_RESOURCE,
 							GetOperationOptions.createResolve());
+					if (noFetch) {
+						options.add(new SelectorOptions<GetOperationOptions>(GetOperationOptions.createNoFetch()));
+					}
 				} 
 				
 				if (reference.getOid() == null) {
@@ -660,60 +695,9 @@ public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 					// No access, just skip it
 					continue;
 				}
-				P projectionType = projection.asObjectable();
-
-				OperationResultType fetchResult = projectionType.getFetchResult();
-
-				StringBuilder description = new StringBuilder();
-				if (ShadowType.class.equals(type)) {
-					ShadowType shadowType = (ShadowType) projectionType;
-					ResourceType resource = shadowType.getResource();
-					resourceName = WebMiscUtil.getName(resource);
-
-					if (shadowType.getIntent() != null) {
-						description.append(shadowType.getIntent()).append(", ");
-					}
-				} else if (OrgType.class.equals(type)) {
-					OrgType orgType = (OrgType) projectionType;
-					resourceName = orgType.getDisplayName() != null
-							? WebMiscUtil.getOrigStringFromPoly(orgType.getDisplayName()) : "";
-				}
-				description.append(WebMiscUtil.getOrigStringFromPoly(projectionType.getName()));
-
-				ObjectWrapper wrapper = ObjectWrapperUtil.createObjectWrapper(resourceName,
-						description.toString(), projection, ContainerStatus.MODIFYING, true, this);
-				wrapper.setFetchResult(OperationResult.createOperationResult(fetchResult));
-				wrapper.setSelectable(true);
-				wrapper.setMinimalized(true);
-
-				if (ShadowType.class.equals(type)) {
-
-					PrismContainer<ShadowAssociationType> associationContainer = projection
-							.findContainer(ShadowType.F_ASSOCIATION);
-					if (associationContainer != null && associationContainer.getValues() != null) {
-						List<PrismContainerValue<ShadowAssociationType>> associations = new ArrayList<>(
-								associationContainer.getValues().size());
-						for (PrismContainerValue<ShadowAssociationType> associationVal : associationContainer.getValues()) {
-							ShadowAssociationType associationType = (ShadowAssociationType) associationVal
-									.asContainerable();
-							ObjectReferenceType shadowRef = associationType.getShadowRef();
-							// shadowRef can be null in case of "broken"
-							// associations we can safely eliminate fetching
-							// from resource, because we need only the name
-							if (shadowRef != null) {
-								PrismObject<ShadowType> associationTargetShadow = getModelService().getObject(ShadowType.class, 
-										shadowRef.getOid(), SelectorOptions.createCollection(GetOperationOptions.createNoFetch()),
-										task, subResult);
-								shadowRef.asReferenceValue().setObject(associationTargetShadow);
-								associations.add(associationVal);
-							}
-						}
-						wrapper.setAssociations(associations);
-					}
-
-				}
-				wrapper.initializeContainers(this);
+				resourceName = getProjectionDisplayName(projection.asObjectable());
 
+				ObjectWrapper wrapper = createProjectionWrapper(projection, resourceName, task, subResult);
 				list.add(new FocusProjectionDto(wrapper, UserDtoStatus.MODIFY));
 
 				subResult.recomputeStatus();
@@ -737,6 +721,232 @@ public abstract class PageAdminFocus<T extends FocusType> extends PageAdmin
 		return list;
 	}
 
+	private String getProjectionDisplayName(ObjectType projectionType) {
+		if (projectionType instanceof ShadowType) {
+			return WebMiscUtil.getName(((ShadowType) projectionType).getResource());
+		} else if (projectionType instanceof OrgType) {
+			OrgType orgType = (OrgType) projectionType;
+			return orgType.getDisplayName() != null
+					? WebMiscUtil.getOrigStringFromPoly(orgType.getDisplayName()) : "";
+		} else {
+			return null;
+		}
+	}
+
+	private <P extends ObjectType> ObjectWrapper createProjectionWrapper(PrismObject<P> projection, String resourceName,
+			Task task, OperationResult result) throws CommonException {
+		P projectionType = projection.asObjectable();
+		OperationResultType fetchResult = projectionType.getFetchResult();
+
+		StringBuilder description = new StringBuilder();
+		if (projectionType instanceof ShadowType) {
+			ShadowType shadowType = (ShadowType) projectionType;
+			if (shadowType.getIntent() != null) {
+				description.append(shadowType.getIntent()).append(", ");
+			}
+		}
+		description.append(WebMiscUtil.getOrigStringFromPoly(projectionType.getName()));
+
+		ObjectWrapper wrapper = ObjectWrapperUtil.createObjectWrapper(resourceName,
+				description.toString(), projection, ContainerStatus.MODIFYING, true, this);
+		wrapper.setFetchResult(OperationResult.createOperationResult(fetchResult));
+		wrapper.setSelectable(true);
+		wrapper.setMinimalized(true);
+
+		if (projectionType instanceof ShadowType) {
+
+			PrismContainer<ShadowAssociationType> associationContainer = projection
+					.findContainer(ShadowType.F_ASSOCIATION);
+			if (associationContainer != null && associationContainer.getValues() != null) {
+				List<PrismContainerValue<ShadowAssociationType>> associations = new ArrayList<>(
+						associationContainer.getValues().size());
+				for (PrismContainerValue<ShadowAssociationType> associationVal : associationContainer.getValues()) {
+					ShadowAssociationType associationType = (ShadowAssociationType) associationVal
+							.asContainerable();
+					ObjectReferenceType shadowRef = associationType.getShadowRef();
+					// shadowRef can be null in case of "broken"
+					// associations we can safely eliminate fetching
+					// from resource, because we need only the name
+					if (shadowRef != null) {
+						PrismObject<ShadowType> associationTargetShadow = getModelService().getObject(ShadowType.class, 
+								shadowRef.getOid(), SelectorOptions.createCollection(GetOperationOptions.createNoFetch()),
+								task, result);
+						shadowRef.asReferenceValue().setObject(associationTargetShadow);
+						associations.add(associationVal);
+					}
+				}
+				wrapper.setAssociations(associations);
+			}
+
+		}
+		wrapper.initializeContainers(this);
+		return wrapper;
+	}
+
+	/**
+	 * Starts fetching the shadows from their resources. Each shadow is fetched by a separate thread,
+	 * so slow resources do not delay each other. The results are picked up by updateFetchedProjections().
+	 */
+	private void startProjectionFetches(List<FocusProjectionDto> projections) {
+		cancelProjectionFetches();
+		projectionFetches = new HashMap<>();
+		projectionFetchOids = new HashSet<>();
+
+		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+		for (FocusProjectionDto dto : projections) {
+			if (!dto.isLoadedOK()) {
+				continue;
+			}
+			final String oid = dto.getObject().getObject().getOid();
+			final ProjectionFetch fetch = new ProjectionFetch();
+			fetch.future = GuiComponents.submitCallable(
+					new SecurityContextAwareCallable<PrismObject<ShadowType>>(getSecurityEnforcer(), auth) {
+
+						@Override
+						public PrismObject<ShadowType> callWithContextPrepared() throws Exception {
+							fetch.started = System.currentTimeMillis();
+							Task task = createSimpleTask(OPERATION_FETCH_SHADOW);
+							Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(
+									ShadowType.F_RESOURCE, GetOperationOptions.createResolve());
+							return getModelService().getObject(ShadowType.class, oid, options, task, task.getResult());
+						}
+					});
+			projectionFetches.put(oid, fetch);
+			projectionFetchOids.add(oid);
+		}
+	}
+
+	private void cancelProjectionFetches() {
+		projectionFetchOids = null;
+		if (projectionFetches == null) {
+			return;
+		}
+		for (ProjectionFetch fetch : projectionFetches.values()) {
+			fetch.future.cancel(true);
+		}
+		projectionFetches = null;
+	}
+
+	public boolean isFetchingProjections() {
+		return projectionFetchOids != null && !projectionFetchOids.isEmpty();
+	}
+
+	/**
+	 * Replaces repository state of the shadows by the state fetched from resources, for the shadows that
+	 * were fetched since the last call. A shadow that the user has already changed is not replaced.
+	 * Fetches that take too long (since they actually started) are cancelled. Returns true if anything displayed
+	 * has changed.
+	 */
+	public boolean updateFetchedProjections() {
+		if (!isFetchingProjections()) {
+			return false;
+		}
+		if (!shadowModel.isLoaded()) {
+			cancelProjectionFetches();		// the model was reset, shadows will be loaded (and fetched) again
+			return false;
+		}
+		if (projectionFetches == null) {
+			return markLostProjectionFetches();
+		}
+
+		boolean changed = false;
+		Task task = createSimpleTask(OPERATION_FETCH_SHADOW);
+		Iterator<Map.Entry<String, ProjectionFetch>> iterator = projectionFetches.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, ProjectionFetch> entry = iterator.next();
+			ProjectionFetch fetch = entry.getValue();
+			long started = fetch.started;
+			if (!fetch.future.isDone() && (started == 0 || System.currentTimeMillis() - started < PROJECTION_FETCH_TIMEOUT)) {
+				continue;
+			}
+			iterator.remove();
+			projectionFetchOids.remove(entry.getKey());
+
+			FocusProjectionDto dto = findProjection(entry.getKey());
+			if (dto == null || dto.getStatus() != UserDtoStatus.MODIFY) {
+				fetch.future.cancel(true);
+				continue;
+			}
+
+			OperationResult result = new OperationResult(OPERATION_FETCH_SHADOW);
+			if (!fetch.future.isDone()) {
+				fetch.future.cancel(true);
+				result.recordPartialError(createStringResource("pageAdminFocus.message.fetchShadowTimeout",
+						PROJECTION_FETCH_TIMEOUT / 1000).getString());
+				dto.getObject().setFetchResult(result);
+				changed = true;
+				continue;
+			}
+
+			try {
+				PrismObject<ShadowType> shadow = fetch.future.get();
+				if (isProjectionChanged(dto)) {
+					LOGGER.debug("Shadow {} was changed by the user, not replacing it by the fetched one", entry.getKey());
+					continue;
+				}
+				ObjectWrapper oldWrapper = dto.getObject();
+				ObjectWrapper wrapper = createProjectionWrapper(shadow, getProjectionDisplayName(shadow.asObjectable()),
+						task, result);
+				wrapper.setSelected(oldWrapper.isSelected());
+				wrapper.setMinimalized(oldWrapper.isMinimalized());
+				dto.setObject(wrapper);
+				dto.setStatus(dto.getStatus());		// to set the header status of the new wrapper
+			} catch (InterruptedException | ExecutionException | CommonException | RuntimeException ex) {
+				Throwable cause = ex instanceof ExecutionException && ex.getCause() != null ? ex.getCause() : ex;
+				LoggingUtils.logException(LOGGER, "Couldn't fetch shadow {} from resource", cause, entry.getKey());
+				result.recordPartialError(createStringResource("pageAdminFocus.message.couldntFetchShadow",
+						cause.getMessage()).getString(), cause);
+				dto.getObject().setFetchResult(result);
+			}
+			changed = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * The fetches were lost with the page serialization (e.g. the page was restored from the page store),
+	 * so their results will never come. The projections keep their repository state; the user is told so.
+	 */
+	private boolean markLostProjectionFetches() {
+		boolean changed = false;
+		for (String oid : projectionFetchOids) {
+			FocusProjectionDto dto = findProjection(oid);
+			if (dto == null || dto.getStatus() != UserDtoStatus.MODIFY) {
+				continue;
+			}
+			OperationResult result = new OperationResult(OPERATION_FETCH_SHADOW);
+			result.recordPartialError(createStringResource("pageAdminFocus.message.fetchShadowLost").getString());
+			dto.getObject().setFetchResult(result);
+			changed = true;
+		}
+		projectionFetchOids = null;
+		return changed;
+	}
+
+	private FocusProjectionDto findProjection(String oid) {
+		for (FocusProjectionDto dto : shadowModel.getObject()) {
+			if (dto.isLoadedOK() && oid.equals(dto.getObject().getObject().getOid())) {
+				return dto;
+			}
+		}
+		return null;
+	}
+
+	private boolean isProjectionChanged(FocusProjectionDto dto) {
+		try {
+			ObjectDelta delta = dto.getObject().getObjectDelta();
+			return delta != null && !delta.isEmpty();
+		} catch (SchemaException e) {
+			return true;
+		}
+	}
+
+	private static class ProjectionFetch {
+
+		private Future<PrismObject<ShadowType>> future;
+		private volatile long started;			// zero until the fetch actually starts (it can wait for a free thread)
+	}
+
 	private List<AssignmentEditorDto> loadAssignments() {
 		List<AssignmentEditorDto> list = new ArrayList<AssignmentEditorDto>();
 
@@ -38,6 +38,7 @@ import com.evolveum.midpoint.web.application.AuthorizationAction;
 import com.evolveum.midpoint.web.application.PageDescriptor;
 import com.evolveum.midpoint.web.component.AjaxDownloadBehaviorFromFile;
 import com.evolveum.midpoint.web.component.BasicSearchPanel;
+import com.evolveum.midpoint.web.component.data.BaseSortableDataProvider;
 import com.evolveum.midpoint.web.component.data.ObjectDataProvider;
 import com.evolveum.midpoint.web.component.data.TablePanel;
 import com.evolveum.midpoint.web.component.data.column.CheckBoxPanel;
@@ -278,6 +279,7 @@ public class PageAccounts extends PageAdminConfiguration {
         ObjectDataProvider provider = new ObjectDataProvider(this, ShadowType.class);
         provider.setOptions(SelectorOptions.createCollection(GetOperationOptions.createRaw()));
         provider.setQuery(ObjectQuery.createObjectQuery(createResourceQueryFilter()));
+        provider.setCountMode(BaseSortableDataProvider.CountMode.ASYNC);
         TablePanel accounts = new TablePanel(ID_ACCOUNTS, provider, createAccountsColumns(),
                 UserProfileStorage.TableId.CONF_PAGE_ACCOUNTS, getItemsPerPage(UserProfileStorage.TableId.CONF_PAGE_ACCOUNTS));
         accounts.add(new VisibleEnableBehaviour() {
@@ -20,8 +20,10 @@ import com.evolveum.midpoint.common.Clock;
 import com.evolveum.midpoint.common.InternalsConfig;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.security.api.AuthorizationConstants;
+import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.DebugUtil;
 import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.web.application.AuthorizationAction;
@@ -31,7 +33,9 @@ import com.evolveum.midpoint.web.component.form.CheckFormGroup;
 import com.evolveum.midpoint.web.component.input.DatePanel;
 import com.evolveum.midpoint.web.component.util.LoadableModel;
 import com.evolveum.midpoint.web.page.admin.configuration.dto.InternalsConfigDto;
+import com.evolveum.midpoint.web.util.WebMiscUtil;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
@@ -62,6 +66,10 @@ public class PageInternals extends PageAdminConfiguration {
     private static final String ID_READ_ENCRYPTION_CHECKS = "readEncryptionChecks";
     private static final String ID_TOLERATE_UNDECLARED_PREFIXES = "tolerateUndeclaredPrefixes";
     private static final String ID_DETAILED_DEBUG_DUMP = "detailedDebugDump";
+    private static final String ID_SCRIPT_CACHE = "scriptCache";
+
+    private static final String DOT_CLASS = PageInternals.class.getName() + ".";
+    private static final String OPERATION_GET_SCRIPT_CACHE_DIAG = DOT_CLASS + "getScriptCacheDiag";
 
     private static final String LABEL_SIZE = "col-md-4";
     private static final String INPUT_SIZE = "col-md-8";
@@ -124,6 +132,36 @@ public class PageInternals extends PageAdminConfiguration {
 
         initDebugUtilForm();
         initInternalsConfigForm();
+
+        Label scriptCache = new Label(ID_SCRIPT_CACHE, new LoadableModel<String>(false) {
+
+            @Override
+            protected String load() {
+                return loadScriptCacheDiag();
+            }
+        });
+        add(scriptCache);
+    }
+
+    private String loadScriptCacheDiag() {
+        OperationResult result = new OperationResult(OPERATION_GET_SCRIPT_CACHE_DIAG);
+        String diag = null;
+        try {
+            Task task = createSimpleTask(OPERATION_GET_SCRIPT_CACHE_DIAG);
+            diag = getModelDiagnosticService().getScriptCacheDiag(task, result);
+
+            result.recordSuccessIfUnknown();
+        } catch (Exception ex) {
+            LoggingUtils.logException(LOGGER, "Couldn't get script cache diagnostics", ex);
+            result.recordFatalError("Couldn't get script cache diagnostics.", ex);
+        }
+        result.recomputeStatus();
+
+        if (!WebMiscUtil.isSuccessOrHandledError(result)) {
+            showResult(result);
+        }
+
+        return diag;
     }
 
     private void initDebugUtilForm() {
@@ -56,6 +56,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * @author lazyman
@@ -73,6 +74,9 @@ public class AccountContentDataProvider extends BaseSortableDataProvider<Account
     private IModel<Boolean> useObjectCountingModel;
     private Integer cachedSize;
 
+    // identifies the resource search cursor, pages following the first one are read through it
+    private String pagingCookie;
+
     public AccountContentDataProvider(Component component, IModel<String> resourceOid, IModel<QName> objectClass, IModel<Boolean> useObjectCountingModel) {
         super(component, false, false);     // don't use cache, don't use default sorting field (c:name)
 
@@ -95,6 +99,12 @@ public class AccountContentDataProvider extends BaseSortableDataProvider<Account
             Task task = getPage().createSimpleTask(OPERATION_LOAD_ACCOUNTS);
 
             ObjectPaging paging = createPaging(first, count);
+            if (first == 0 || pagingCookie == null) {
+                pagingCookie = UUID.randomUUID().toString();
+            }
+            if (first > 0) {
+                paging.setCookie(pagingCookie);
+            }
             ObjectQuery query = getObjectQuery();
             query.setPaging(paging);
 
@@ -155,6 +165,13 @@ public class AccountContentDataProvider extends BaseSortableDataProvider<Account
     public void setQuery(ObjectQuery query) {
         super.setQuery(query);
         cachedSize = null;
+        pagingCookie = null;
+    }
+
+    @Override
+    public void clearCache() {
+        super.clearCache();
+        pagingCookie = null;
     }
 
     @Override
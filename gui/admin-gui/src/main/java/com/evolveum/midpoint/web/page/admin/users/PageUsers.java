@@ -39,6 +39,7 @@ import com.evolveum.midpoint.web.application.AuthorizationAction;
 import com.evolveum.midpoint.web.application.PageDescriptor;
 import com.evolveum.midpoint.web.component.BasicSearchPanel;
 import com.evolveum.midpoint.web.component.DropDownMultiChoice;
+import com.evolveum.midpoint.web.component.data.BaseSortableDataProvider;
 import com.evolveum.midpoint.web.component.data.BoxedTablePanel;
 import com.evolveum.midpoint.web.component.data.ObjectDataProvider;
 import com.evolveum.midpoint.web.component.data.column.*;
@@ -334,6 +335,7 @@ public class PageUsers extends PageAdminUsers {
                     }
                 };
         provider.setQuery(createQuery());
+        provider.setCountMode(BaseSortableDataProvider.CountMode.ASYNC);
 
         Collection<SelectorOptions<GetOperationOptions>> options = new ArrayList<SelectorOptions<GetOperationOptions>>();
         options.add(SelectorOptions.create(UserType.F_LINK_REF,
@@ -24,6 +24,7 @@ import com.evolveum.midpoint.model.api.WorkflowService;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.crypto.Protector;
 import com.evolveum.midpoint.security.api.AuthorizationConstants;
+import com.evolveum.midpoint.security.api.AuthorizationDecisionCache;
 import com.evolveum.midpoint.task.api.TaskManager;
 import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -298,6 +299,8 @@ public class MidPointApplication extends AuthenticatedWebApplication {
 					REQUEST_LOGGER.trace("REQUEST CYCLE: Begin request: '{}', handler {}", cycle.getRequest().getOriginalUrl(),
 						WebMiscUtil.debugHandler(cycle.getActiveRequestHandler()));
 				}
+				// authorization decisions are cached for the duration of the request (exited in onDetach)
+				AuthorizationDecisionCache.enterCache();
 				super.onBeginRequest(cycle);
 			}
 			
@@ -319,6 +322,9 @@ public class MidPointApplication extends AuthenticatedWebApplication {
 							WebMiscUtil.debugHandler(cycle.getRequestHandlerScheduledAfterCurrent()));
 					
 				}
+				if (AuthorizationDecisionCache.isEntered()) {
+					AuthorizationDecisionCache.exitCache();
+				}
 				super.onBeginRequest(cycle);
 			}
 			
@@ -15,11 +15,17 @@
  */
 package com.evolveum.icf.dummy.connector;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.common.security.GuardedString;
 import org.identityconnectors.framework.spi.AbstractConfiguration;
 import org.identityconnectors.framework.spi.ConfigurationProperty;
 
+import com.evolveum.icf.dummy.resource.DummyLatency;
+import com.evolveum.icf.dummy.resource.DummyOperation;
+
 /**
  * Extends the {@link AbstractConfiguration} class to provide all the necessary
  * parameters to initialize the Test Connector.
@@ -55,6 +61,13 @@ public class DummyConfiguration extends AbstractConfiguration {
 	private boolean generateAccountDescriptionOnUpdate = false;        // simulates volatile behavior (on update)
 	private String[] forbiddenNames = new String[0];
 	private boolean useLegacySchema = true;
+	private String[] latencies = new String[0];
+	private int maxOperationsPerSecond = 0;
+	private int maxConnections = 0;
+	private int serverPageSize = 0;
+	private int syntheticAccounts = 0;
+	private int syntheticGroups = 0;
+	private int syntheticGroupMembers = 0;
 
 	/**
      * Defines name of the dummy resource instance. There may be several dummy resource running in
@@ -306,6 +319,130 @@ public class DummyConfiguration extends AbstractConfiguration {
 		this.useLegacySchema = useLegacySchema;
 	}
 
+	/**
+	 * Simulated latencies of resource operations, in the form operation=latency, e.g. "search=10-50" or "add=exp:30".
+	 * Operation names are the names of DummyOperation constants (case-insensitive), latency format is described
+	 * in DummyLatency. Used to make the dummy resource behave like a slow production target in load tests.
+	 */
+	@ConfigurationProperty(displayMessageKey = "UI_LATENCIES",
+			helpMessageKey = "UI_LATENCIES_HELP")
+	public String[] getLatencies() {
+		return latencies.clone();
+	}
+
+	public void setLatencies(String[] latencies) {
+		this.latencies = latencies.clone();
+	}
+
+	/**
+	 * Maximum number of operations (round trips) per second the resource accepts. Further operations wait.
+	 * Zero means no limit.
+	 */
+	@ConfigurationProperty(displayMessageKey = "UI_MAX_OPERATIONS_PER_SECOND",
+			helpMessageKey = "UI_MAX_OPERATIONS_PER_SECOND_HELP")
+	public int getMaxOperationsPerSecond() {
+		return maxOperationsPerSecond;
+	}
+
+	public void setMaxOperationsPerSecond(int maxOperationsPerSecond) {
+		this.maxOperationsPerSecond = maxOperationsPerSecond;
+	}
+
+	/**
+	 * Maximum number of connections (connector instances) open at the same time. Zero means no limit.
+	 */
+	@ConfigurationProperty(displayMessageKey = "UI_MAX_CONNECTIONS",
+			helpMessageKey = "UI_MAX_CONNECTIONS_HELP")
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * Number of search results the simulated server returns in one round trip. Zero means all of them.
+	 */
+	@ConfigurationProperty(displayMessageKey = "UI_SERVER_PAGE_SIZE",
+			helpMessageKey = "UI_SERVER_PAGE_SIZE_HELP")
+	public int getServerPageSize() {
+		return serverPageSize;
+	}
+
+	public void setServerPageSize(int serverPageSize) {
+		this.serverPageSize = serverPageSize;
+	}
+
+	/**
+	 * Number of synthetic accounts to be loaded to the resource when the connector is initialized.
+	 */
+	@ConfigurationProperty(displayMessageKey = "UI_SYNTHETIC_ACCOUNTS",
+			helpMessageKey = "UI_SYNTHETIC_ACCOUNTS_HELP")
+	public int getSyntheticAccounts() {
+		return syntheticAccounts;
+	}
+
+	public void setSyntheticAccounts(int syntheticAccounts) {
+		this.syntheticAccounts = syntheticAccounts;
+	}
+
+	/**
+	 * Number of synthetic groups to be loaded to the resource when the connector is initialized.
+	 */
+	@ConfigurationProperty(displayMessageKey = "UI_SYNTHETIC_GROUPS",
+			helpMessageKey = "UI_SYNTHETIC_GROUPS_HELP")
+	public int getSyntheticGroups() {
+		return syntheticGroups;
+	}
+
+	public void setSyntheticGroups(int syntheticGroups) {
+		this.syntheticGroups = syntheticGroups;
+	}
+
+	/**
+	 * Number of members (synthetic accounts) of each synthetic group.
+	 */
+	@ConfigurationProperty(displayMessageKey = "UI_SYNTHETIC_GROUP_MEMBERS",
+			helpMessageKey = "UI_SYNTHETIC_GROUP_MEMBERS_HELP")
+	public int getSyntheticGroupMembers() {
+		return syntheticGroupMembers;
+	}
+
+	public void setSyntheticGroupMembers(int syntheticGroupMembers) {
+		this.syntheticGroupMembers = syntheticGroupMembers;
+	}
+
+	/**
+	 * Returns true if any of the load simulation properties is set. In that case the connector also
+	 * advertises paging and sorting of search results, as a real production target would.
+	 */
+	public boolean hasSimulation() {
+		return latencies.length > 0 || maxOperationsPerSecond > 0 || maxConnections > 0 || serverPageSize > 0
+				|| syntheticAccounts > 0 || syntheticGroups > 0;
+	}
+
+	/**
+	 * Parses the latencies property.
+	 */
+	public Map<DummyOperation, DummyLatency> parseLatencies() {
+		Map<DummyOperation, DummyLatency> map = new EnumMap<DummyOperation, DummyLatency>(DummyOperation.class);
+		for (String spec : latencies) {
+			int eq = spec.indexOf('=');
+			if (eq <= 0) {
+				throw new IllegalArgumentException("Wrong latency specification '"+spec+"', expected operation=latency");
+			}
+			DummyOperation operation;
+			try {
+				operation = DummyOperation.valueOf(spec.substring(0, eq).trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown operation in latency specification '"+spec+"'", e);
+			}
+			map.put(operation, DummyLatency.parse(spec.substring(eq + 1)));
+		}
+		return map;
+	}
+
 	/**
      * {@inheritDoc}
      */
@@ -316,6 +453,7 @@ public class DummyConfiguration extends AbstractConfiguration {
         if (uidMode.equals(UID_MODE_NAME) && !enforceUniqueName) {
         	throw new IllegalArgumentException("Cannot use name UID mode without enforceUniqueName");
         }
+        parseLatencies();
 
         log.info("end");
     }
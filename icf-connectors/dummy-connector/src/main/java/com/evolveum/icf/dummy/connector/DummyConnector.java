@@ -31,6 +31,8 @@ import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -49,11 +51,14 @@ import org.identityconnectors.framework.common.objects.ObjectClassInfo;
 import org.identityconnectors.framework.common.objects.ObjectClassInfoBuilder;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.ResultsHandler;
+import org.identityconnectors.framework.common.objects.SearchResult;
+import org.identityconnectors.framework.common.objects.SortKey;
 import org.identityconnectors.framework.common.objects.Schema;
 import org.identityconnectors.framework.common.objects.SchemaBuilder;
 import org.identityconnectors.framework.common.objects.SyncDelta;
 import org.identityconnectors.framework.common.objects.SyncDeltaBuilder;
 import org.identityconnectors.framework.common.objects.SyncResultsHandler;
+import org.identityconnectors.framework.spi.SearchResultsHandler;
 import org.identityconnectors.framework.common.objects.SyncToken;
 import org.identityconnectors.framework.common.objects.Uid;
 import org.identityconnectors.framework.common.objects.filter.AndFilter;
@@ -90,8 +95,10 @@ import com.evolveum.icf.dummy.resource.DummyAttributeDefinition;
 import com.evolveum.icf.dummy.resource.DummyDelta;
 import com.evolveum.icf.dummy.resource.DummyDeltaType;
 import com.evolveum.icf.dummy.resource.DummyGroup;
+import com.evolveum.icf.dummy.resource.DummyLatency;
 import com.evolveum.icf.dummy.resource.DummyObject;
 import com.evolveum.icf.dummy.resource.DummyObjectClass;
+import com.evolveum.icf.dummy.resource.DummyOperation;
 import com.evolveum.icf.dummy.resource.DummyPrivilege;
 import com.evolveum.icf.dummy.resource.DummyResource;
 import com.evolveum.icf.dummy.resource.DummySyncStyle;
@@ -173,6 +180,25 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
 			resource.setForbiddenNames(null);
 		}
 
+        // Simulation settings are applied only if configured. Other settings are left as they are,
+        // so tests can set them directly on the resource.
+        for (Map.Entry<DummyOperation, DummyLatency> entry : this.configuration.parseLatencies().entrySet()) {
+        	resource.setLatency(entry.getKey(), entry.getValue());
+        }
+        if (this.configuration.getMaxOperationsPerSecond() > 0) {
+        	resource.setMaxOperationsPerSecond(this.configuration.getMaxOperationsPerSecond());
+        }
+        if (this.configuration.getMaxConnections() > 0) {
+        	resource.setMaxConnections(this.configuration.getMaxConnections());
+        }
+        if (this.configuration.getServerPageSize() > 0) {
+        	resource.setServerPageSize(this.configuration.getServerPageSize());
+        }
+        if (this.configuration.getSyntheticAccounts() > 0 || this.configuration.getSyntheticGroups() > 0) {
+        	resource.populateWithSyntheticObjects(this.configuration.getSyntheticAccounts(),
+        			this.configuration.getSyntheticGroups(), this.configuration.getSyntheticGroupMembers());
+        }
+
         resource.setUselessString(this.configuration.getUselessString());
         GuardedString uselessGuardedString = this.configuration.getUselessGuardedString();
         if (uselessGuardedString == null) {
@@ -186,7 +212,12 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
         	});
         }
         
-        resource.connect();
+        resource.simulateOperation(DummyOperation.CONNECT);
+        try {
+        	resource.connect();
+        } catch (ConnectException e) {
+        	throw new ConnectionFailedException(e.getMessage(), e);
+        }
         
         log.info("Connected to dummy resource instance {0} ({1} connections open)", resource, resource.getConnectionCount());
     }
@@ -223,6 +254,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public Uid create(final ObjectClass objectClass, final Set<Attribute> createAttributes, final OperationOptions options) {
         log.info("create::begin attributes {0}", createAttributes);
         validate(objectClass);
+        resource.simulateOperation(DummyOperation.ADD);
         
         DummyObject newObject;
         try {
@@ -288,6 +320,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public Uid update(ObjectClass objectClass, Uid uid, Set<Attribute> replaceAttributes, OperationOptions options) {
         log.info("update::begin");
         validate(objectClass);
+        resource.simulateOperation(DummyOperation.MODIFY);
         
         try {
         	
@@ -466,6 +499,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public Uid addAttributeValues(ObjectClass objectClass, Uid uid, Set<Attribute> valuesToAdd, OperationOptions options) {
         log.info("addAttributeValues::begin");
         validate(objectClass);
+        resource.simulateOperation(DummyOperation.MODIFY);
 
         try {
         
@@ -610,6 +644,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public Uid removeAttributeValues(ObjectClass objectClass, Uid uid, Set<Attribute> valuesToRemove, OperationOptions options) {
         log.info("removeAttributeValues::begin");
         validate(objectClass);
+        resource.simulateOperation(DummyOperation.MODIFY);
 
         try {
         
@@ -742,6 +777,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public void delete(final ObjectClass objectClass, final Uid uid, final OperationOptions options) {
         log.info("delete::begin");
         validate(objectClass);
+        resource.simulateOperation(DummyOperation.DELETE);
         
         String id = uid.getUidValue();
         
@@ -807,6 +843,14 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     	builder.defineObjectClass(createAccountObjectClass(configuration.getSupportActivation()));
         builder.defineObjectClass(createGroupObjectClass(configuration.getSupportActivation()));
         builder.defineObjectClass(createPrivilegeObjectClass());
+        
+        if (configuration.hasSimulation()) {
+        	// Paging and sorting is implemented in executeQuery, but it is advertised only for the simulated
+        	// production target. Other tests rely on paging being simulated by midPoint.
+        	builder.defineOperationOption(OperationOptionInfoBuilder.buildPagedResultsOffset(), SearchOp.class);
+        	builder.defineOperationOption(OperationOptionInfoBuilder.buildPageSize(), SearchOp.class);
+        	builder.defineOperationOption(OperationOptionInfoBuilder.buildSortKeys(), SearchOp.class);
+        }
 
         log.info("schema::end");
         return builder.build();
@@ -960,6 +1004,9 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
         Collection<String> attributesToGet = getAttrsToGet(options);
         log.ok("attributesToGet={0}", attributesToGet);
         
+        QueryResultsHandler queryHandler = new QueryResultsHandler(handler, options,
+        		isGet(query) ? DummyOperation.GET : DummyOperation.SEARCH);
+        
         try {
 	        if (ObjectClass.ACCOUNT.is(objectClass.getObjectClassValue())) {
 	        	
@@ -968,7 +1015,9 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
 		        	ConnectorObject co = convertToConnectorObject(account, attributesToGet);
 		        	if (matches(query, co)) {
 		        		co = filterOutAttributesToGet(co, attributesToGet);
-		        		handler.handle(co);
+		        		if (!queryHandler.handle(co)) {
+		        			break;
+		        		}
 		        	}
 		        }
 		        
@@ -982,7 +1031,9 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
 		        			resource.recordGroupMembersReadCount();
 		        		}
 		        		co = filterOutAttributesToGet(co, attributesToGet);
-		        		handler.handle(co);
+		        		if (!queryHandler.handle(co)) {
+		        			break;
+		        		}
 		        	}
 		        }
 		        
@@ -993,13 +1044,16 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
 		        	ConnectorObject co = convertToConnectorObject(priv, attributesToGet);
 		        	if (matches(query, co)) {
 		        		co = filterOutAttributesToGet(co, attributesToGet);
-		        		handler.handle(co);
+		        		if (!queryHandler.handle(co)) {
+		        			break;
+		        		}
 		        	}
 		        }
 	        	
 	        } else {
 	        	throw new ConnectorException("Unknown object class "+objectClass);
 	        }
+	        queryHandler.complete();
 	        
 		} catch (ConnectException e) {
 	        log.info("executeQuery::exception "+e);
@@ -1012,6 +1066,131 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
         log.info("executeQuery::end");
     }
 
+	private boolean isGet(Filter query) {
+		if (!(query instanceof EqualsFilter)) {
+			return false;
+		}
+		String attrName = ((EqualsFilter) query).getAttribute().getName();
+		return Uid.NAME.equals(attrName) || Name.NAME.equals(attrName);
+	}
+
+	/**
+	 * Passes search results to the handler, simulating the behavior of a real server: results are sorted and paged
+	 * according to the operation options and the simulated round trip is repeated for each server-side page.
+	 * If client-side paging or sorting is requested, all the results have to be collected first.
+	 */
+	private class QueryResultsHandler {
+
+		private final ResultsHandler handler;
+		private final DummyOperation operation;
+		private final SortKey[] sortKeys;
+		private final int offset;			// zero-based
+		private final Integer pageSize;
+		private final List<ConnectorObject> collected;
+		private int returned = 0;
+		private boolean roundTripNeeded = true;
+
+		QueryResultsHandler(ResultsHandler handler, OperationOptions options, DummyOperation operation) {
+			this.handler = handler;
+			this.operation = operation;
+			this.sortKeys = options != null ? options.getSortKeys() : null;
+			Integer pagedResultsOffset = options != null ? options.getPagedResultsOffset() : null;
+			this.offset = pagedResultsOffset != null && pagedResultsOffset > 0 ? pagedResultsOffset - 1 : 0;
+			this.pageSize = options != null ? options.getPageSize() : null;
+			if ((sortKeys != null && sortKeys.length > 0) || offset > 0 || pageSize != null) {
+				collected = new ArrayList<ConnectorObject>();
+			} else {
+				collected = null;
+			}
+		}
+
+		boolean handle(ConnectorObject co) {
+			if (collected != null) {
+				collected.add(co);
+				return true;
+			}
+			return pass(co);
+		}
+
+		void complete() {
+			if (collected == null) {
+				completeRoundTrip();
+				return;
+			}
+			if (sortKeys != null && sortKeys.length > 0) {
+				Collections.sort(collected, new ConnectorObjectComparator(sortKeys));
+			}
+			int end = pageSize != null ? (int) Math.min((long) offset + pageSize, collected.size()) : collected.size();
+			for (int i = offset; i < end; i++) {
+				if (!pass(collected.get(i))) {
+					break;
+				}
+			}
+			completeRoundTrip();
+			if (handler instanceof SearchResultsHandler) {
+				((SearchResultsHandler) handler).handleResult(new SearchResult(null, Math.max(0, collected.size() - end)));
+			}
+		}
+
+		private void completeRoundTrip() {
+			if (roundTripNeeded) {
+				// empty result still costs a round trip
+				resource.simulateOperation(operation);
+				roundTripNeeded = false;
+			}
+		}
+
+		private boolean pass(ConnectorObject co) {
+			int serverPageSize = resource.getServerPageSize();
+			if (roundTripNeeded || (serverPageSize > 0 && returned % serverPageSize == 0)) {
+				resource.simulateOperation(operation);
+				roundTripNeeded = false;
+			}
+			returned++;
+			return handler.handle(co);
+		}
+	}
+
+	private static class ConnectorObjectComparator implements Comparator<ConnectorObject> {
+
+		private final SortKey[] sortKeys;
+
+		ConnectorObjectComparator(SortKey[] sortKeys) {
+			this.sortKeys = sortKeys;
+		}
+
+		@Override
+		public int compare(ConnectorObject o1, ConnectorObject o2) {
+			for (SortKey sortKey : sortKeys) {
+				int result = compareValues(getSortValue(o1, sortKey.getField()), getSortValue(o2, sortKey.getField()));
+				if (result != 0) {
+					return sortKey.isAscendingOrder() ? result : -result;
+				}
+			}
+			return 0;
+		}
+
+		private Object getSortValue(ConnectorObject co, String field) {
+			Attribute attribute = co.getAttributeByName(field);
+			if (attribute == null || attribute.getValue() == null || attribute.getValue().isEmpty()) {
+				return null;
+			}
+			return attribute.getValue().get(0);
+		}
+
+		private int compareValues(Object v1, Object v2) {
+			if (v1 == null) {
+				return v2 == null ? 0 : 1;		// nulls last
+			} else if (v2 == null) {
+				return -1;
+			} else if (v1 instanceof Comparable && v1.getClass().equals(v2.getClass())) {
+				return ((Comparable<Object>) v1).compareTo(v2);
+			} else {
+				return v1.toString().compareTo(v2.toString());
+			}
+		}
+	}
+
 	private boolean matches(Filter query, ConnectorObject co) {
 		if (query == null) {
 			return true;
@@ -1130,6 +1309,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public void sync(ObjectClass objectClass, SyncToken token, SyncResultsHandler handler, final OperationOptions options) {
         log.info("sync::begin");
         validate(objectClass);
+        resource.simulateOperation(DummyOperation.SYNC);
         
         Collection<String> attributesToGet = getAttrsToGet(options);
 
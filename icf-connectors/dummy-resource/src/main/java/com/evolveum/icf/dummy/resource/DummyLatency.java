@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.icf.dummy.resource;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulated latency of a resource operation, in milliseconds.
+ *
+ * Latency can be specified in textual form:
+ * <ul>
+ *   <li>"20" - constant latency of 20 ms,</li>
+ *   <li>"10-50" - latency uniformly distributed between 10 and 50 ms,</li>
+ *   <li>"exp:30" - exponentially distributed latency with a mean of 30 ms (capped at 20 times the mean).
+ *       This resembles a real server: most of the requests are quick, but there is a long tail.</li>
+ * </ul>
+ *
+ * @author agent
+ */
+public class DummyLatency {
+
+	private static final String EXPONENTIAL_PREFIX = "exp:";
+	private static final int EXPONENTIAL_CAP = 20;
+
+	private final long min;
+	private final long max;
+	private final long mean;		// only for exponential distribution, 0 otherwise
+
+	private DummyLatency(long min, long max, long mean) {
+		if (min < 0 || max < min || mean < 0) {
+			throw new IllegalArgumentException("Wrong latency: min="+min+", max="+max+", mean="+mean);
+		}
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+	}
+
+	public static DummyLatency constant(long millis) {
+		return new DummyLatency(millis, millis, 0);
+	}
+
+	public static DummyLatency uniform(long minMillis, long maxMillis) {
+		return new DummyLatency(minMillis, maxMillis, 0);
+	}
+
+	public static DummyLatency exponential(long meanMillis) {
+		return new DummyLatency(0, meanMillis * EXPONENTIAL_CAP, meanMillis);
+	}
+
+	public static DummyLatency parse(String spec) {
+		if (spec == null) {
+			return null;
+		}
+		String s = spec.trim();
+		try {
+			if (s.startsWith(EXPONENTIAL_PREFIX)) {
+				return exponential(Long.parseLong(s.substring(EXPONENTIAL_PREFIX.length()).trim()));
+			}
+			int dash = s.indexOf('-');
+			if (dash > 0) {
+				return uniform(Long.parseLong(s.substring(0, dash).trim()), Long.parseLong(s.substring(dash + 1).trim()));
+			}
+			return constant(Long.parseLong(s));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Wrong latency specification '"+spec+"': "+e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns latency of the next operation.
+	 */
+	public long nextMillis() {
+		if (mean > 0) {
+			double sample = -mean * Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+			return Math.min(max, Math.round(sample));
+		}
+		if (min == max) {
+			return min;
+		}
+		return min + ThreadLocalRandom.current().nextLong(max - min + 1);
+	}
+
+	@Override
+	public String toString() {
+		if (mean > 0) {
+			return EXPONENTIAL_PREFIX + mean;
+		} else if (min == max) {
+			return Long.toString(min);
+		} else {
+			return min + "-" + max;
+		}
+	}
+}
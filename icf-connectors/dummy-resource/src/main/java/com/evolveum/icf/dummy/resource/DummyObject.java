@@ -20,6 +20,7 @@ import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -149,13 +150,8 @@ public abstract class DummyObject implements DebugDumpable {
 	
 	public void replaceAttributeValues(String name, Collection<Object> values) throws SchemaViolationException, ConnectException, FileNotFoundException {
 		checkModifyBreak();
-		Set<Object> currentValues = attributes.get(name);
-		if (currentValues == null) {
-			currentValues = new HashSet<Object>();
-			attributes.put(name, currentValues);
-		} else {
-			currentValues.clear();
-		}
+		Set<Object> currentValues = getModifiableValues(name);
+		currentValues.clear();
 		currentValues.addAll(values);
 		checkSchema(name, values, "replace");
 		recordModify();
@@ -163,13 +159,8 @@ public abstract class DummyObject implements DebugDumpable {
 	
 	public void replaceAttributeValues(String name, Object... values) throws SchemaViolationException, ConnectException, FileNotFoundException {
 		checkModifyBreak();
-		Set<Object> currentValues = attributes.get(name);
-		if (currentValues == null) {
-			currentValues = new HashSet<Object>();
-			attributes.put(name, currentValues);
-		} else {
-			currentValues.clear();
-		}
+		Set<Object> currentValues = getModifiableValues(name);
+		currentValues.clear();
 		List<Object> valuesList = Arrays.asList(values);
 		currentValues.addAll(valuesList);
 		checkSchema(name, valuesList, "replace");
@@ -187,11 +178,7 @@ public abstract class DummyObject implements DebugDumpable {
 
 	public void addAttributeValues(String name, Collection<Object> valuesToAdd) throws SchemaViolationException, ConnectException, FileNotFoundException {
 		checkModifyBreak();
-		Set<Object> currentValues = attributes.get(name);
-		if (currentValues == null) {
-			currentValues = new HashSet<Object>();
-			attributes.put(name, currentValues);
-		}
+		Set<Object> currentValues = getModifiableValues(name);
 		for(Object valueToAdd: valuesToAdd) {
 			addAttributeValue(name, currentValues, valueToAdd);
 		}
@@ -200,11 +187,7 @@ public abstract class DummyObject implements DebugDumpable {
 	
 	public void addAttributeValues(String name, String... valuesToAdd) throws SchemaViolationException, ConnectException, FileNotFoundException {
 		checkModifyBreak();
-		Set<Object> currentValues = attributes.get(name);
-		if (currentValues == null) {
-			currentValues = new HashSet<Object>();
-			attributes.put(name, currentValues);
-		}
+		Set<Object> currentValues = getModifiableValues(name);
 		for (Object valueToAdd: valuesToAdd) {
 			addAttributeValue(name, currentValues, valueToAdd);
 		}
@@ -242,11 +225,7 @@ public abstract class DummyObject implements DebugDumpable {
 
 	public void removeAttributeValues(String name, Collection<Object> values) throws SchemaViolationException, ConnectException, FileNotFoundException {
 		checkModifyBreak();
-		Set<Object> currentValues = attributes.get(name);
-		if (currentValues == null) {
-			currentValues = new HashSet<Object>();
-			attributes.put(name, currentValues);
-		}
+		Set<Object> currentValues = getModifiableValues(name);
 		
 		Set<Object> valuesToCheck = new HashSet<Object>();
 		valuesToCheck.addAll(currentValues);
@@ -278,6 +257,38 @@ public abstract class DummyObject implements DebugDumpable {
 		recordModify();
 	}
 
+	/**
+	 * Returns a set of attribute values that can be modified. Values set by initAttributeValue(s) are stored
+	 * in compact immutable sets, these are replaced by regular sets here.
+	 */
+	private Set<Object> getModifiableValues(String name) {
+		Set<Object> currentValues = attributes.get(name);
+		if (currentValues == null) {
+			currentValues = new HashSet<Object>();
+			attributes.put(name, currentValues);
+		} else if (!(currentValues instanceof HashSet)) {
+			currentValues = new HashSet<Object>(currentValues);
+			attributes.put(name, currentValues);
+		}
+		return currentValues;
+	}
+
+	/**
+	 * Sets the attribute value directly, without break mode and schema checks and without recording the modification.
+	 * The value is stored in a compact immutable set. Used for bulk loading of synthetic objects.
+	 */
+	void initAttributeValue(String name, Object value) {
+		attributes.put(name, Collections.singleton(value));
+	}
+
+	/**
+	 * Sets the attribute values directly, without break mode and schema checks and without recording the modification.
+	 * Used for bulk loading of synthetic objects.
+	 */
+	void initAttributeValues(String name, Set<Object> values) {
+		attributes.put(name, Collections.unmodifiableSet(values));
+	}
+
 	private void checkModifyBreak() throws ConnectException, FileNotFoundException {
 		if (resource == null) {
 			return;
@@ -20,14 +20,18 @@ import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.evolveum.midpoint.util.exception.SystemException;
 
@@ -66,6 +70,11 @@ import com.evolveum.midpoint.util.logging.TraceManager;
  * classloader. If the resource would be the same package as connector, it will get loaded by the
  * connector classloader regardless whether it is already loaded by the parent classloader.
  * 
+ * The resource can also simulate a slow production target for load tests: operation latencies (DummyLatency),
+ * throughput limit, limit on the number of open connections and server-side paging of search results
+ * (the connector invokes simulateOperation() for each round trip). Millions of synthetic accounts and groups
+ * can be loaded by populateWithSyntheticObjects().
+ * 
  * @author Radovan Semancik
  *
  */
@@ -73,6 +82,10 @@ public class DummyResource implements DebugDumpable {
 	
 	private static final Trace LOGGER = TraceManager.getTrace(DummyResource.class);
 
+	public static final String SYNTHETIC_ACCOUNT_NAME_PREFIX = "synthetic-account-";
+	public static final String SYNTHETIC_GROUP_NAME_PREFIX = "synthetic-group-";
+	public static final long DEFAULT_CONNECT_TIMEOUT = 30000L;
+
 	private String instanceName;
 	private Map<String,DummyObject> allObjects;
 	private Map<String,DummyAccount> accounts;
@@ -104,6 +117,18 @@ public class DummyResource implements DebugDumpable {
 	private boolean generateAccountDescriptionOnCreate = false;		   // simulates volatile behavior (on create)
 	private boolean generateAccountDescriptionOnUpdate = false;        // simulates volatile behavior (on update)
 
+	// Load simulation
+	private final Map<DummyOperation, DummyLatency> latencies = Collections.synchronizedMap(new EnumMap<DummyOperation, DummyLatency>(DummyOperation.class));
+	private int maxOperationsPerSecond = 0;				// 0 = unlimited
+	private long nextOperationNanos = 0;
+	private final Object throttleLock = new Object();
+	private int maxConnections = 0;						// 0 = unlimited
+	private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private int serverPageSize = 0;						// 0 = all search results are returned in one round trip
+	private final Map<DummyOperation, Integer> operationCounts = new EnumMap<DummyOperation, Integer>(DummyOperation.class);
+	private int syntheticAccountCount = 0;
+	private int syntheticGroupCount = 0;
+
 	// Following two properties are just copied from the connector
 	// configuration and can be checked later. They are otherwise
 	// completely useless.
@@ -142,6 +167,9 @@ public class DummyResource implements DebugDumpable {
 		deltas.clear();
 		latestSyncToken = 0;
 		resetBreakMode();
+		resetSimulation();
+		syntheticAccountCount = 0;
+		syntheticGroupCount = 0;
 	}
 	
 	public static DummyResource getInstance() {
@@ -310,18 +338,232 @@ public class DummyResource implements DebugDumpable {
 		return connectionCount;
 	}
 
-	public synchronized void connect() {
+	/**
+	 * Opens a connection. If the number of connections is limited and the limit is reached, waits for
+	 * a connection to be closed (up to connectTimeout) and then fails.
+	 */
+	public synchronized void connect() throws ConnectException {
+		if (maxConnections > 0 && connectionCount >= maxConnections) {
+			long deadline = System.currentTimeMillis() + connectTimeout;
+			while (connectionCount >= maxConnections) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new ConnectException("Too many connections: "+connectionCount+" open, limit is "+maxConnections+" (simulated error)");
+				}
+				try {
+					wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ConnectException("Interrupted while waiting for a free connection");
+				}
+			}
+		}
 		connectionCount++;
 	}
 	
 	public synchronized void disconnect() {
 		connectionCount--;
+		notifyAll();
 	}
 	
 	public void assertNoConnections() {
 		assert connectionCount == 0 : "Dummy resource: "+connectionCount+" connections still open";
 	}
 
+	public DummyLatency getLatency(DummyOperation operation) {
+		return latencies.get(operation);
+	}
+
+	/**
+	 * Sets latency of the operation. Null means no latency.
+	 */
+	public void setLatency(DummyOperation operation, DummyLatency latency) {
+		if (latency == null) {
+			latencies.remove(operation);
+		} else {
+			latencies.put(operation, latency);
+		}
+	}
+
+	/**
+	 * Sets the same latency for all operations.
+	 */
+	public void setLatency(DummyLatency latency) {
+		for (DummyOperation operation : DummyOperation.values()) {
+			setLatency(operation, latency);
+		}
+	}
+
+	public int getMaxOperationsPerSecond() {
+		return maxOperationsPerSecond;
+	}
+
+	public void setMaxOperationsPerSecond(int maxOperationsPerSecond) {
+		this.maxOperationsPerSecond = maxOperationsPerSecond;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public long getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(long connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getServerPageSize() {
+		return serverPageSize;
+	}
+
+	public void setServerPageSize(int serverPageSize) {
+		this.serverPageSize = serverPageSize;
+	}
+
+	/**
+	 * Returns the number of simulated round trips of the operation since the last reset.
+	 */
+	public int getOperationCount(DummyOperation operation) {
+		synchronized (operationCounts) {
+			Integer count = operationCounts.get(operation);
+			return count != null ? count : 0;
+		}
+	}
+
+	/**
+	 * Switches off all the load simulation. This is part of reset(), the connector does not call it,
+	 * so the settings made by tests survive connector initialization.
+	 */
+	public void resetSimulation() {
+		latencies.clear();
+		maxOperationsPerSecond = 0;
+		maxConnections = 0;
+		connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+		serverPageSize = 0;
+		synchronized (operationCounts) {
+			operationCounts.clear();
+		}
+	}
+
+	/**
+	 * Simulates a round trip to the resource: waits for a free slot if the throughput is limited and then
+	 * for the latency of the operation. The connector calls this at the beginning of each operation and for
+	 * each page of search results. If the simulation is not configured the operation is only counted.
+	 */
+	public void simulateOperation(DummyOperation operation) {
+		synchronized (operationCounts) {
+			operationCounts.put(operation, getOperationCount(operation) + 1);
+		}
+		throttle();
+		DummyLatency latency = latencies.get(operation);
+		if (latency != null) {
+			sleep(latency.nextMillis(), 0);
+		}
+	}
+
+	private void throttle() {
+		int rate = maxOperationsPerSecond;
+		if (rate <= 0) {
+			return;
+		}
+		long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		long waitNanos;
+		synchronized (throttleLock) {
+			long now = System.nanoTime();
+			long slot = nextOperationNanos == 0 || now - nextOperationNanos > 0 ? now : nextOperationNanos;
+			nextOperationNanos = slot + interval;
+			waitNanos = slot - now;
+		}
+		if (waitNanos > 0) {
+			sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos), (int) (waitNanos % 1000000L));
+		}
+	}
+
+	private void sleep(long millis, int nanos) {
+		if (millis <= 0 && nanos <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis, nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public int getSyntheticAccountCount() {
+		return syntheticAccountCount;
+	}
+
+	public int getSyntheticGroupCount() {
+		return syntheticGroupCount;
+	}
+
+	/**
+	 * Bulk-loads synthetic accounts and groups, e.g. millions of them for a load test. Accounts are named
+	 * SYNTHETIC_ACCOUNT_NAME_PREFIX + number and have a full name (if it is in the schema). Groups are named
+	 * SYNTHETIC_GROUP_NAME_PREFIX + number and have membersPerGroup members taken from the synthetic accounts
+	 * round-robin (if the members attribute is in the schema).
+	 * 
+	 * The objects are stored compactly: the identifier is the same as the name and attribute values are kept
+	 * in immutable sets until they are modified. Break modes, schema and forbidden names are not checked
+	 * and no sync deltas are recorded.
+	 * 
+	 * The method can be called repeatedly (e.g. by each connector instance), only missing objects are created.
+	 */
+	public synchronized void populateWithSyntheticObjects(int accountCount, int groupCount, int membersPerGroup) {
+		long start = System.currentTimeMillis();
+		boolean hasFullName = accountObjectClass.getAttributeDefinition(DummyAccount.ATTR_FULLNAME_NAME) != null;
+		for (int i = syntheticAccountCount; i < accountCount; i++) {
+			DummyAccount account = new DummyAccount(getSyntheticAccountName(i));
+			if (hasFullName) {
+				account.initAttributeValue(DummyAccount.ATTR_FULLNAME_NAME, "Synthetic Account " + i);
+			}
+			addSyntheticObject(accounts, account);
+		}
+		syntheticAccountCount = Math.max(syntheticAccountCount, accountCount);
+
+		boolean hasMembers = groupObjectClass.getAttributeDefinition(DummyGroup.ATTR_MEMBERS_NAME) != null;
+		for (int i = syntheticGroupCount; i < groupCount; i++) {
+			DummyGroup group = new DummyGroup(getSyntheticGroupName(i));
+			if (hasMembers && membersPerGroup > 0 && syntheticAccountCount > 0) {
+				Set<Object> members = new HashSet<Object>();
+				for (int m = 0; m < membersPerGroup; m++) {
+					members.add(getSyntheticAccountName((int) (((long) i * membersPerGroup + m) % syntheticAccountCount)));
+				}
+				group.initAttributeValues(DummyGroup.ATTR_MEMBERS_NAME, members);
+			}
+			addSyntheticObject(groups, group);
+		}
+		syntheticGroupCount = Math.max(syntheticGroupCount, groupCount);
+		LOGGER.info("Dummy resource '{}' populated with {} synthetic accounts and {} synthetic groups in {} ms",
+				new Object[]{instanceName, syntheticAccountCount, syntheticGroupCount, System.currentTimeMillis() - start});
+	}
+
+	private <T extends DummyObject> void addSyntheticObject(Map<String,T> map, T newObject) {
+		String id = normalize(newObject.getName());
+		if (allObjects.containsKey(id)) {
+			return;
+		}
+		newObject.setId(id);
+		newObject.setResource(this);
+		map.put(enforceUniqueName ? normalize(newObject.getName()) : id, newObject);
+		allObjects.put(id, newObject);
+	}
+
+	public static String getSyntheticAccountName(int index) {
+		return SYNTHETIC_ACCOUNT_NAME_PREFIX + String.format("%08d", index);
+	}
+
+	public static String getSyntheticGroupName(int index) {
+		return SYNTHETIC_GROUP_NAME_PREFIX + String.format("%08d", index);
+	}
+
 	public int getGroupMembersReadCount() {
 		return groupMembersReadCount;
 	}
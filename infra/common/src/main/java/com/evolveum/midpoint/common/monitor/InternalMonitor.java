@@ -17,91 +17,98 @@ package com.evolveum.midpoint.common.monitor;
 
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.util.monitor.Counter;
+import com.evolveum.midpoint.util.monitor.MetricsRegistry;
 
 /**
  * Simple monitoring object. It records the count of expensive operations
  * in the system. It is used in the tests to make sure such operations are not
  * executed more frequently than expected. It may also have some run-time value.
  * 
+ * The counters are kept in the node-wide MetricsRegistry (as "internal.*" metrics),
+ * so they can be incremented concurrently and they are visible via JMX and REST.
+ * 
  * @author Radovan Semancik
  *
  */
 public class InternalMonitor {
 	
 	private static final Trace LOGGER = TraceManager.getTrace(InternalMonitor.class);
+
+	private static final MetricsRegistry REGISTRY = MetricsRegistry.getInstance();
 	
-	private static long resourceSchemaParseCount = 0;
-	private static long resourceSchemaFetchCount = 0;
+	private static final Counter resourceSchemaParseCount = REGISTRY.counter("internal.resourceSchemaParse");
+	private static final Counter resourceSchemaFetchCount = REGISTRY.counter("internal.resourceSchemaFetch");
 	private static boolean traceResourceSchemaOperations = false;
 	
-	private static long connectorInstanceInitializationCount = 0;
-	private static long connectorSchemaParseCount = 0;
-	private static long connectorCapabilitiesFetchCount = 0;
+	private static final Counter connectorInstanceInitializationCount = REGISTRY.counter("internal.connectorInstanceInitialization");
+	private static final Counter connectorSchemaParseCount = REGISTRY.counter("internal.connectorSchemaParse");
+	private static final Counter connectorCapabilitiesFetchCount = REGISTRY.counter("internal.connectorCapabilitiesFetch");
 	private static CachingStatistics resourceCacheStats = new CachingStatistics();
 	private static CachingStatistics connectorCacheStats = new CachingStatistics();
-	private static long scriptCompileCount = 0;
-	private static long scriptExecutionCount = 0;
+	private static final Counter scriptCompileCount = REGISTRY.counter("internal.scriptCompile");
+	private static final Counter scriptExecutionCount = REGISTRY.counter("internal.scriptExecution");
 	
 	private static boolean traceConnectorOperation = false;
-	private static long connectorOperationCount = 0;
+	private static final Counter connectorOperationCount = REGISTRY.counter("internal.connectorOperation");
 	
-	private static long connectorSimulatedPagingSearchCount = 0;
+	private static final Counter connectorSimulatedPagingSearchCount = REGISTRY.counter("internal.connectorSimulatedPagingSearch");
 	
-	private static long shadowFetchOperationCount = 0;
+	private static final Counter shadowFetchOperationCount = REGISTRY.counter("internal.shadowFetchOperation");
 	private static boolean traceShadowFetchOperation = false;
 	
-	private static long shadowChangeOpeartionCount = 0;
+	private static final Counter shadowChangeOpeartionCount = REGISTRY.counter("internal.shadowChangeOperation");
 	/**
 	 * All provisioning operations that reach out to the resources.
 	 */
-	private static long provisioningAllExtOperationCount = 0;
+	private static final Counter provisioningAllExtOperationCount = REGISTRY.counter("internal.provisioningAllExtOperation");
 	
 	public static long getResourceSchemaParseCount() {
-		return resourceSchemaParseCount;
+		return resourceSchemaParseCount.get();
 	}
 	
-	public synchronized static void recordResourceSchemaParse() {
-		resourceSchemaParseCount++;
+	public static void recordResourceSchemaParse() {
+		resourceSchemaParseCount.increment();
 		if (traceShadowFetchOperation) {
-			traceOperation("resource schema parse", resourceSchemaParseCount);
+			traceOperation("resource schema parse", resourceSchemaParseCount.get());
 		}
 	}
 	
 	public static long getConnectorInstanceInitializationCount() {
-		return connectorInstanceInitializationCount;
+		return connectorInstanceInitializationCount.get();
 	}
 	
-	public synchronized static void recordConnectorInstanceInitialization() {
-		connectorInstanceInitializationCount++;
+	public static void recordConnectorInstanceInitialization() {
+		connectorInstanceInitializationCount.increment();
 	}
 	
 	public static long getResourceSchemaFetchCount() {
-		return resourceSchemaFetchCount;
+		return resourceSchemaFetchCount.get();
 	}
 	
-	public synchronized static void recordResourceSchemaFetch() {
-		resourceSchemaFetchCount++;
-		provisioningAllExtOperationCount++;
+	public static void recordResourceSchemaFetch() {
+		resourceSchemaFetchCount.increment();
+		provisioningAllExtOperationCount.increment();
 		if (traceShadowFetchOperation) {
-			traceOperation("resource schema fetch", resourceSchemaFetchCount);
+			traceOperation("resource schema fetch", resourceSchemaFetchCount.get());
 		}
 	}
 
 	public static long getConnectorSchemaParseCount() {
-		return connectorSchemaParseCount;
+		return connectorSchemaParseCount.get();
 	}
 	
-	public synchronized static void recordConnectorSchemaParse() {
-		connectorSchemaParseCount++;
+	public static void recordConnectorSchemaParse() {
+		connectorSchemaParseCount.increment();
 	}
 
 	public static long getConnectorCapabilitiesFetchCount() {
-		return connectorCapabilitiesFetchCount;
+		return connectorCapabilitiesFetchCount.get();
 	}
 	
-	public synchronized static void recordConnectorCapabilitiesFetchCount() {
-		connectorCapabilitiesFetchCount++;
-		provisioningAllExtOperationCount++;
+	public static void recordConnectorCapabilitiesFetchCount() {
+		connectorCapabilitiesFetchCount.increment();
+		provisioningAllExtOperationCount.increment();
 	}
 
 	public static CachingStatistics getResourceCacheStats() {
@@ -113,38 +120,38 @@ public class InternalMonitor {
 	}
 
 	public static long getScriptCompileCount() {
-		return scriptCompileCount;
+		return scriptCompileCount.get();
 	}
 
 	public static void setScriptCompileCount(long scriptCompileCount) {
-		InternalMonitor.scriptCompileCount = scriptCompileCount;
+		InternalMonitor.scriptCompileCount.set(scriptCompileCount);
 	}
 	
 	public static void recordScriptCompile() {
-		scriptCompileCount++;
+		scriptCompileCount.increment();
 	}
 
 	public static long getScriptExecutionCount() {
-		return scriptExecutionCount;
+		return scriptExecutionCount.get();
 	}
 
 	public static void setScriptExecutionCount(long scriptExecutionCount) {
-		InternalMonitor.scriptExecutionCount = scriptExecutionCount;
+		InternalMonitor.scriptExecutionCount.set(scriptExecutionCount);
 	}
 	
 	public static void recordScriptExecution() {
-		scriptExecutionCount++;
+		scriptExecutionCount.increment();
 	}
 
 	public static long getShadowFetchOperationCount() {
-		return shadowFetchOperationCount;
+		return shadowFetchOperationCount.get();
 	}
 	
 	public static void recordShadowFetchOperation() {
-		shadowFetchOperationCount++;
-		provisioningAllExtOperationCount++;
+		shadowFetchOperationCount.increment();
+		provisioningAllExtOperationCount.increment();
 		if (traceShadowFetchOperation) {
-			traceOperation("shadow fetch", shadowFetchOperationCount);
+			traceOperation("shadow fetch", shadowFetchOperationCount.get());
 		}
 	}
 
@@ -168,33 +175,33 @@ public class InternalMonitor {
 	}
 
 	public static long getShadowChangeOpeartionCount() {
-		return shadowChangeOpeartionCount;
+		return shadowChangeOpeartionCount.get();
 	}
 	
 	public static void recordShadowChangeOperation() {
-		shadowChangeOpeartionCount++;
-		provisioningAllExtOperationCount++;
+		shadowChangeOpeartionCount.increment();
+		provisioningAllExtOperationCount.increment();
 	}
 	
 	public static long getConnectorOperationCount() {
-		return connectorOperationCount;
+		return connectorOperationCount.get();
 	}
 	
 	public static void recordConnectorOperation(String name) {
-		connectorOperationCount++;
+		connectorOperationCount.increment();
 		if (traceConnectorOperation) {
-			traceOperation("connector "+name, connectorOperationCount);
+			traceOperation("connector "+name, connectorOperationCount.get());
 		}
 	}
 	
 	public static long getConnectorSimulatedPagingSearchCount() {
-		return connectorSimulatedPagingSearchCount;
+		return connectorSimulatedPagingSearchCount.get();
 	}
 	
 	public static void recordConnectorSimulatedPagingSearchCount() {
-		connectorSimulatedPagingSearchCount++;
+		connectorSimulatedPagingSearchCount.increment();
 		if (traceConnectorOperation) {
-			traceOperation("simulated paged search", connectorSimulatedPagingSearchCount);
+			traceOperation("simulated paged search", connectorSimulatedPagingSearchCount.get());
 		}
 	}
 
@@ -208,29 +215,29 @@ public class InternalMonitor {
 	}
 	
 	public static long getProvisioningAllExtOperationCont() {
-		return provisioningAllExtOperationCount;
+		return provisioningAllExtOperationCount.get();
 	}
 	
 	public static void recordShadowOtherOperation() {
-		provisioningAllExtOperationCount++;
+		provisioningAllExtOperationCount.increment();
 	}
 	
 	public static void reset() {
 		LOGGER.info("MONITOR reset");
-		resourceSchemaParseCount = 0;
-		connectorInstanceInitializationCount = 0;
-		resourceSchemaFetchCount = 0;
-		connectorSchemaParseCount = 0;
-		connectorCapabilitiesFetchCount = 0;
+		resourceSchemaParseCount.reset();
+		connectorInstanceInitializationCount.reset();
+		resourceSchemaFetchCount.reset();
+		connectorSchemaParseCount.reset();
+		connectorCapabilitiesFetchCount.reset();
 		resourceCacheStats = new CachingStatistics();
 		connectorCacheStats = new CachingStatistics();
-		scriptCompileCount = 0;
-		scriptExecutionCount = 0;
-		shadowFetchOperationCount = 0;
+		scriptCompileCount.reset();
+		scriptExecutionCount.reset();
+		shadowFetchOperationCount.reset();
 		traceShadowFetchOperation = false;
-		shadowChangeOpeartionCount = 0;
+		shadowChangeOpeartionCount.reset();
 		traceConnectorOperation = false;
-		connectorOperationCount = 0;
+		connectorOperationCount.reset();
 	}
 
 	private static void traceOperation(String opName, long counter) {
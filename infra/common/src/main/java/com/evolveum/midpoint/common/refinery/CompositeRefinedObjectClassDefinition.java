@@ -36,6 +36,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceActivationDe
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceBidirectionalMappingType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowCachingPolicyType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.CapabilityType;
@@ -242,6 +243,10 @@ public class CompositeRefinedObjectClassDefinition extends RefinedObjectClassDef
 		return structuralObjectClassDefinition.getActivationSchemaHandling();
 	}
 
+	public ShadowCachingPolicyType getCachingPolicy() {
+		return structuralObjectClassDefinition.getCachingPolicy();
+	}
+
 	public ResourceBidirectionalMappingType getActivationBidirectionalMappingType(QName propertyName) {
 		return structuralObjectClassDefinition.getActivationBidirectionalMappingType(propertyName);
 	}
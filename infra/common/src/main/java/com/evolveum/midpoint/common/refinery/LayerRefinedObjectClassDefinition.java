@@ -43,6 +43,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceBidirectiona
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceObjectAssociationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowCachingPolicyType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 
@@ -482,6 +483,11 @@ public class LayerRefinedObjectClassDefinition extends RefinedObjectClassDefinit
 		return refinedObjectClassDefinition.getActivationSchemaHandling();
 	}
 
+    @Override
+    public ShadowCachingPolicyType getCachingPolicy() {
+		return refinedObjectClassDefinition.getCachingPolicy();
+	}
+
     @Override
 	public ResourceBidirectionalMappingType getActivationBidirectionalMappingType(QName propertyName) {
 		return refinedObjectClassDefinition.getActivationBidirectionalMappingType(propertyName);
@@ -846,6 +846,17 @@ public class RefinedObjectClassDefinition extends ObjectClassComplexTypeDefiniti
         return schemaHandlingObjectTypeDefinitionType.getActivation();
     }
     
+    /**
+     * Returns the caching policy for this object type: the one from schema handling or the resource-level default.
+     * Null means that nothing except identifiers is stored in the repository shadows.
+     */
+    public ShadowCachingPolicyType getCachingPolicy() {
+        if (schemaHandlingObjectTypeDefinitionType != null && schemaHandlingObjectTypeDefinitionType.getCaching() != null) {
+            return schemaHandlingObjectTypeDefinitionType.getCaching();
+        }
+        return resourceType != null ? resourceType.getCaching() : null;
+    }
+
     public ResourceBidirectionalMappingType getActivationBidirectionalMappingType(QName propertyName) {
     	ResourceActivationDefinitionType activationSchemaHandling = getActivationSchemaHandling();
     	if (activationSchemaHandling == null) {
@@ -99,6 +99,15 @@ public class GetOperationOptions implements Serializable, Cloneable {
 	 */
 	Boolean allowNotFound;
 
+	/**
+	 * Maximum age (in milliseconds) of cached data that is acceptable for the caller.
+	 * If the object is cached in the repository (e.g. a shadow of an object type with attribute caching)
+	 * and the cached copy was retrieved at most maxStaleness milliseconds ago, the cached copy is returned
+	 * instead of fetching the object from the external source. Null or zero means that the data
+	 * have to be fetched.
+	 */
+	private Long maxStaleness;
+
 	public RetrieveOption getRetrieve() {
 		return retrieve;
 	}
@@ -285,6 +294,27 @@ public class GetOperationOptions implements Serializable, Cloneable {
 		return opts;
 	}
 
+	public Long getMaxStaleness() {
+		return maxStaleness;
+	}
+
+	public void setMaxStaleness(Long maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+
+	public static Long getMaxStaleness(GetOperationOptions options) {
+		if (options == null) {
+			return null;
+		}
+		return options.maxStaleness;
+	}
+
+	public static GetOperationOptions createMaxStaleness(long maxStaleness) {
+		GetOperationOptions opts = new GetOperationOptions();
+		opts.setMaxStaleness(maxStaleness);
+		return opts;
+	}
+
 	public RelationalValueSearchQuery getRelationalValueSearchQuery() {
 		return relationalValueSearchQuery;
 	}
@@ -299,6 +329,7 @@ public class GetOperationOptions implements Serializable, Cloneable {
 		int result = 1;
 		result = prime * result + ((allowNotFound == null) ? 0 : allowNotFound.hashCode());
 		result = prime * result + ((doNotDiscovery == null) ? 0 : doNotDiscovery.hashCode());
+		result = prime * result + ((maxStaleness == null) ? 0 : maxStaleness.hashCode());
 		result = prime * result + ((noFetch == null) ? 0 : noFetch.hashCode());
 		result = prime * result + ((raw == null) ? 0 : raw.hashCode());
 		result = prime * result
@@ -328,6 +359,11 @@ public class GetOperationOptions implements Serializable, Cloneable {
 				return false;
 		} else if (!doNotDiscovery.equals(other.doNotDiscovery))
 			return false;
+		if (maxStaleness == null) {
+			if (other.maxStaleness != null)
+				return false;
+		} else if (!maxStaleness.equals(other.maxStaleness))
+			return false;
 		if (noFetch == null) {
 			if (other.noFetch != null)
 				return false;
@@ -367,6 +403,7 @@ public class GetOperationOptions implements Serializable, Cloneable {
         clone.resolveNames = this.resolveNames;
         clone.retrieve = this.retrieve;
         clone.allowNotFound = this.allowNotFound;
+        clone.maxStaleness = this.maxStaleness;
         if (this.relationalValueSearchQuery != null) {
         	clone.relationalValueSearchQuery = this.relationalValueSearchQuery.clone();
         }
@@ -377,7 +414,7 @@ public class GetOperationOptions implements Serializable, Cloneable {
 	public String toString() {
 		return "GetOperationOptions(resolve=" + resolve + ", resolveNames=" + resolveNames + ",noFetch=" + noFetch
 				+ ", raw=" + raw + ", doNotDiscovery="+doNotDiscovery+", retrieve="+retrieve+", allowNotFound="+ allowNotFound 
-				+", relationalValueSearchQuery="+relationalValueSearchQuery+")";
+				+", maxStaleness="+maxStaleness+", relationalValueSearchQuery="+relationalValueSearchQuery+")";
 	}
 
 }
@@ -189,6 +189,8 @@ public abstract class SchemaConstants {
     public static final QName MODEL_EXTENSION_OBJECT_QUERY = new QName(NS_MODEL_EXTENSION, "objectQuery");
     public static final QName MODEL_EXTENSION_OBJECT_DELTA = new QName(NS_MODEL_EXTENSION, "objectDelta");
 	public static final QName MODEL_EXTENSION_WORKER_THREADS = new QName(NS_MODEL_EXTENSION, "workerThreads");
+	public static final QName MODEL_EXTENSION_ROLE_EVALUATION_CACHING = new QName(NS_MODEL_EXTENSION, "roleEvaluationCaching");
+	public static final QName MODEL_EXTENSION_LIGHTWEIGHT_OPERATION_RESULT = new QName(NS_MODEL_EXTENSION, "lightweightOperationResult");
 	public static final QName MODEL_EXTENSION_OPTION_RAW = new QName(NS_MODEL_EXTENSION, "optionRaw");
 
 	public static final QName MODEL_EXTENSION_DIAGNOSE = new QName(NS_MODEL_EXTENSION, "diagnose");
@@ -105,6 +105,7 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 	private boolean summarizePartialErrors;
 	private boolean summarizeSuccesses;
 	private boolean minor = false;
+	private boolean lightweight = false;
 	
 	private static final Trace LOGGER = TraceManager.getTrace(OperationResult.class);
 
@@ -183,11 +184,14 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 		this.localizationArguments = localizationArguments;
 		this.cause = cause;
 		this.subresults = subresults;
-		this.details = new ArrayList<String>();
 	}
 
 	public OperationResult createSubresult(String operation) {
+		if (lightweight) {
+			aggregateLastSubresult();
+		}
 		OperationResult subresult = new OperationResult(operation);
+		subresult.lightweight = lightweight;
 		addSubresult(subresult);
 		return subresult;
 	}
@@ -198,6 +202,30 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 		return subresult;
 	}
 
+	/**
+	 * Folds the last subresult into the one before it if both are plain successes of the same operation.
+	 * Called before a new subresult is created, i.e. at the time the last subresult should be finished.
+	 */
+	private void aggregateLastSubresult() {
+		if (subresults == null || subresults.size() < 2) {
+			return;
+		}
+		OperationResult last = subresults.get(subresults.size() - 1);
+		OperationResult previous = subresults.get(subresults.size() - 2);
+		if (!last.operation.equals(previous.operation) || !last.isPlainSuccessLeaf() || !previous.isPlainSuccessLeaf()) {
+			return;
+		}
+		previous.count += last.count;
+		subresults.remove(subresults.size() - 1);
+	}
+
+	private boolean isPlainSuccessLeaf() {
+		return status == OperationResultStatus.SUCCESS && message == null && cause == null
+				&& (subresults == null || subresults.isEmpty())
+				&& (returns == null || returns.isEmpty())
+				&& (details == null || details.isEmpty());
+	}
+
 	/**
 	 * Contains operation name. Operation name must be defined as {@link String}
 	 * constant in module interface with description and possible parameters. It
@@ -245,6 +273,21 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 	public void setSummarizeSuccesses(boolean summarizeSuccesses) {
 		this.summarizeSuccesses = summarizeSuccesses;
 	}
+
+	public boolean isLightweight() {
+		return lightweight;
+	}
+
+	/**
+	 * Lightweight result is meant for high-volume iterative tasks. It does not record params and context
+	 * (neither its own nor of its subresults) and it keeps only one representative of consecutive
+	 * successful leaf subresults of the same operation, counting the others in its count property.
+	 * Status, messages and errors are kept as usual. The setting is inherited by subresults created
+	 * after it is set.
+	 */
+	public void setLightweight(boolean lightweight) {
+		this.lightweight = lightweight;
+	}
 	
 	public boolean isEmpty() {
 		return (status == null || status == OperationResultStatus.UNKNOWN) &&
@@ -670,6 +713,9 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 	}
 
 	public void addParam(String paramName, Serializable paramValue) {
+		if (lightweight) {
+			return;
+		}
 		getParams().put(paramName, paramValue);
 	}
 
@@ -723,6 +769,9 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 	}
 
 	public void addContext(String contextName, Serializable value) {
+		if (lightweight) {
+			return;
+		}
 		getContext().put(contextName, value);
 	}
 
@@ -925,10 +974,13 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 
 	public void appendDetail(String detailLine) {
 		// May be switched to a more structured method later
-		details.add(detailLine);
+		getDetail().add(detailLine);
 	}
 
 	public List<String> getDetail() {
+		if (details == null) {
+			details = new ArrayList<String>();
+		}
 		return details;
 	}
 
@@ -1005,12 +1057,12 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 		result.setMessage(opResult.getMessage());
 		result.setMessageCode(opResult.getMessageCode());
 
-		if (opResult.getCause() != null || !opResult.details.isEmpty()) {
+		if (opResult.getCause() != null || !opResult.getDetail().isEmpty()) {
 			StringBuilder detailsb = new StringBuilder();
 
 			// Record text messages in details (if present)
-			if (!opResult.details.isEmpty()) {
-				for (String line : opResult.details) {
+			if (!opResult.getDetail().isEmpty()) {
+				for (String line : opResult.getDetail()) {
 					detailsb.append(line);
 					detailsb.append("\n");
 				}
@@ -1361,7 +1413,7 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
 			sb.append("\n");
 		}
 
-		for (String line : details) {
+		for (String line : getDetail()) {
 			for (int i = 0; i < indent + 2; i++) {
 				sb.append(INDENT_STRING);
 			}
@@ -1502,6 +1554,7 @@ public class OperationResult implements Serializable, DebugDumpable, Cloneable {
         clone.summarizePartialErrors = summarizePartialErrors;
         clone.summarizeSuccesses = summarizeSuccesses;
         clone.minor = minor;
+        clone.lightweight = lightweight;
 
         return clone;
     }
@@ -144,8 +144,16 @@ public class EnvironmentalPerformanceInformation {
                 entryType.setObjectClass(oc);
                 rv.getEntry().add(entryType);
             }
-            setValue(entryType, key.getOperation(), key.getStatusType(), entry.getValue().getCount(),
-                    entry.getValue().getMinDuration(), entry.getValue().getMaxDuration(), entry.getValue().getTotalDuration());
+            ProvisioningStatisticsData data = entry.getValue();
+            if (!data.isEmpty()) {
+                setValue(entryType, key.getOperation(), key.getStatusType(), data.getCount(),
+                        data.getMinDuration(), data.getMaxDuration(), data.getTotalDuration());
+            }
+            if (data.getWaitCount() > 0) {
+                entryType.setWaitCount(sum(entryType.getWaitCount(), data.getWaitCount()));
+                entryType.setTotalWaitTime(sum(entryType.getTotalWaitTime(), data.getTotalWaitTime()));
+                entryType.setMaxWaitTime(max(entryType.getMaxWaitTime(), data.getMaxWaitTime()));
+            }
         }
         return rv;
     }
@@ -410,6 +418,9 @@ public class EnvironmentalPerformanceInformation {
             e.setMinTime(min(e.getMinTime(), de.getMinTime()));
             e.setMaxTime(max(e.getMaxTime(), de.getMaxTime()));
             e.setTotalTime(e.getTotalTime() + de.getTotalTime());
+            e.setWaitCount(sum(e.getWaitCount(), de.getWaitCount()));
+            e.setTotalWaitTime(sum(e.getTotalWaitTime(), de.getTotalWaitTime()));
+            e.setMaxWaitTime(max(e.getMaxWaitTime(), de.getMaxWaitTime()));
             if (totalCount > 0) {
                 e.setAverageTime(e.getTotalTime() / totalCount);
             } else {
@@ -428,6 +439,26 @@ public class EnvironmentalPerformanceInformation {
         return Math.min(a, b);
     }
 
+    private static Integer sum(Integer a, Integer b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a + b;
+    }
+
+    private static Long sum(Long a, Long b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a + b;
+    }
+
     private static Long max(Long a, Long b) {
         if (a == null) {
             return b;
@@ -448,6 +479,17 @@ public class EnvironmentalPerformanceInformation {
         data.recordOperation(duration, count);
     }
 
+    public synchronized void recordProvisioningOperationWait(String resourceOid, String resourceName, QName objectClassName, ProvisioningOperation operation, long waitTime) {
+        // waits are not bound to success or failure of the operation; they are summed up per resource and object class anyway
+        ProvisioningStatisticsKey key = new ProvisioningStatisticsKey(resourceOid, resourceName, objectClassName, operation, true);
+        ProvisioningStatisticsData data = provisioningData.get(key);
+        if (data == null) {
+            data = new ProvisioningStatisticsData();
+            provisioningData.put(key, data);
+        }
+        data.recordWait(waitTime);
+    }
+
     public synchronized void recordNotificationOperation(String transportName, boolean success, long duration) {
         NotificationsStatisticsKey key = new NotificationsStatisticsKey(transportName, success);
         GenericStatisticsData data = notificationsData.get(key);
@@ -42,6 +42,10 @@ public class GenericStatisticsData {
         return maxDuration != null ? maxDuration : 0;
     }
 
+    public boolean isEmpty() {
+        return minDuration == null;
+    }
+
     public void recordOperation(long duration, int count) {
         this.count += count;
         totalDuration += duration;
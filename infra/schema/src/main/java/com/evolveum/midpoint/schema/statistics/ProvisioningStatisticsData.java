@@ -21,6 +21,31 @@ package com.evolveum.midpoint.schema.statistics;
  */
 public class ProvisioningStatisticsData extends GenericStatisticsData {
 
+    // operations that had to wait for a free slot on the resource
+    private int waitCount;
+    private long totalWaitTime;
+    private long maxWaitTime;
+
+    public int getWaitCount() {
+        return waitCount;
+    }
+
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public void recordWait(long waitTime) {
+        waitCount++;
+        totalWaitTime += waitTime;
+        if (maxWaitTime < waitTime) {
+            maxWaitTime = waitTime;
+        }
+    }
+
     //private Deque<ObjectProcessed> lastObjectsProcessed;
 
 //    public static class ObjectProcessed {
@@ -54,6 +54,12 @@ public interface StatisticsCollector {
 
     void recordProvisioningOperation(String resourceOid, String resourceName, QName objectClassName, ProvisioningOperation operation, boolean success, int count, long duration);
 
+    /**
+     * Records time an operation had to wait before it could be executed on the resource
+     * (when the number of concurrent operations on the resource is limited).
+     */
+    void recordProvisioningOperationWait(String resourceOid, String resourceName, QName objectClassName, ProvisioningOperation operation, long waitTime);
+
     void recordNotificationOperation(String transportName, boolean success, long duration);
 
     void recordMappingOperation(String objectOid, String objectName, String mappingName, long duration);
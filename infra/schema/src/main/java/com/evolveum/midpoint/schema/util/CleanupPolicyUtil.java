@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.schema.util;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CleanupPolicyType;
+
+import java.util.Date;
+
+/**
+ * Batching and throttling parameters of cleanup policies, shared by audit, task and report cleanup.
+ *
+ * @author agent
+ */
+public class CleanupPolicyUtil {
+
+    public static int getBatchSize(CleanupPolicyType policy, int defaultValue) {
+        if (policy == null || policy.getBatchSize() == null || policy.getBatchSize() <= 0) {
+            return defaultValue;
+        }
+        return policy.getBatchSize();
+    }
+
+    public static long getPauseBetweenBatches(CleanupPolicyType policy) {
+        if (policy == null || policy.getPauseBetweenBatches() == null) {
+            return 0;
+        }
+        return Math.max(0, policy.getPauseBetweenBatches().getTimeInMillis(new Date()));
+    }
+
+    /**
+     * Waits for pauseBetweenBatches (if any). Returns false if the thread was interrupted.
+     */
+    public static boolean pauseAfterBatch(CleanupPolicyType policy) {
+        long pause = getPauseBetweenBatches(policy);
+        if (pause == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public static String formatRate(long count, long startTime) {
+        long millis = Math.max(1, System.currentTimeMillis() - startTime);
+        return String.format("%.1f", count * 1000.0 / millis);
+    }
+}
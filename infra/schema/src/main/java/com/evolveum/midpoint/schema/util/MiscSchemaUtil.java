@@ -186,6 +186,7 @@ public class MiscSchemaUtil {
 			optionsType.setNoFetch(options.getNoFetch());
 			optionsType.setRaw(options.getRaw());
 			optionsType.setNoDiscovery(options.getDoNotDiscovery());
+			optionsType.setMaxStaleness(options.getMaxStaleness());
 			return optionsType;
 		}
    
@@ -213,6 +214,7 @@ public class MiscSchemaUtil {
         options.setNoFetch(optionsType.isNoFetch());
         options.setRaw(optionsType.isRaw());
         options.setDoNotDiscovery(optionsType.isNoDiscovery());
+        options.setMaxStaleness(optionsType.getMaxStaleness());
 		return options;
 	}
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.schema.result;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultType;
+
+/**
+ * @author agent
+ */
+public class TestOperationResultLightweight {
+
+	private static final String OP_RUN = TestOperationResultLightweight.class.getName() + ".run";
+	private static final String OP_HANDLE = TestOperationResultLightweight.class.getName() + ".handle";
+
+	@Test
+	public void test100AggregateSuccesses() throws Exception {
+		System.out.println("===[ test100AggregateSuccesses ]===");
+
+		// GIVEN
+		OperationResult result = new OperationResult(OP_RUN);
+		result.setLightweight(true);
+
+		// WHEN
+		for (int i = 0; i < 100; i++) {
+			OperationResult sub = result.createSubresult(OP_HANDLE);
+			sub.addParam("object", "object" + i);
+			sub.recordSuccess();
+		}
+		result.computeStatus();
+
+		// THEN
+		// the last subresult is aggregated only when next one is created
+		assertEquals("Wrong number of subresults", 2, result.getSubresults().size());
+		assertEquals("Wrong aggregated count", 99, result.getSubresults().get(0).getCount());
+		assertTrue("Params were recorded", result.getSubresults().get(0).getParams().isEmpty());
+		assertEquals("Wrong status", OperationResultStatus.SUCCESS, result.getStatus());
+
+		OperationResultType resultType = result.createOperationResultType();
+		assertEquals("Wrong count in OperationResultType", Integer.valueOf(99), resultType.getPartialResults().get(0).getCount());
+	}
+
+	@Test
+	public void test110KeepErrors() throws Exception {
+		System.out.println("===[ test110KeepErrors ]===");
+
+		// GIVEN
+		OperationResult result = new OperationResult(OP_RUN);
+		result.setLightweight(true);
+
+		// WHEN
+		result.createSubresult(OP_HANDLE).recordSuccess();
+		result.createSubresult(OP_HANDLE).recordFatalError("Oops");
+		result.createSubresult(OP_HANDLE).recordSuccess();
+		result.createSubresult(OP_HANDLE).recordSuccess();
+		result.createSubresult(OP_HANDLE).recordSuccess();
+		result.computeStatus();
+
+		// THEN
+		assertEquals("Wrong number of subresults", 4, result.getSubresults().size());
+		assertEquals("Wrong error message", "Oops", result.getSubresults().get(1).getMessage());
+		assertEquals("Wrong aggregated count", 2, result.getSubresults().get(2).getCount());
+		assertEquals("Wrong status", OperationResultStatus.FATAL_ERROR, result.getStatus());
+	}
+
+	@Test
+	public void test120NotLightweight() throws Exception {
+		System.out.println("===[ test120NotLightweight ]===");
+
+		// GIVEN
+		OperationResult result = new OperationResult(OP_RUN);
+
+		// WHEN
+		for (int i = 0; i < 5; i++) {
+			OperationResult sub = result.createSubresult(OP_HANDLE);
+			sub.addParam("object", "object" + i);
+			sub.recordSuccess();
+		}
+
+		// THEN
+		assertEquals("Wrong number of subresults", 5, result.getSubresults().size());
+		assertEquals("Param was not recorded", "object0", result.getSubresults().get(0).getParams().get("object"));
+	}
+}
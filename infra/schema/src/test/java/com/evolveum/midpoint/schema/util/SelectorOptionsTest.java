@@ -24,6 +24,7 @@ import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author lazyman
@@ -46,4 +47,18 @@ public class SelectorOptionsTest {
                 GetOperationOptions.createRetrieve(RetrieveOption.INCLUDE));
         AssertJUnit.assertTrue(SelectorOptions.hasToLoadPath(FocusType.F_JPEG_PHOTO, o));
     }
+
+    @Test
+    public void testMaxStaleness() throws Exception {
+        AssertJUnit.assertNull(GetOperationOptions.getMaxStaleness(null));
+
+        GetOperationOptions options = GetOperationOptions.createMaxStaleness(60000L);
+        AssertJUnit.assertEquals(options, options.clone());
+
+        Collection<SelectorOptions<GetOperationOptions>> o = SelectorOptions.createCollection(options);
+        List<SelectorOptions<GetOperationOptions>> converted = MiscSchemaUtil.optionsTypeToOptions(
+                MiscSchemaUtil.optionsToOptionsType(o));
+        AssertJUnit.assertEquals(Long.valueOf(60000L),
+                GetOperationOptions.getMaxStaleness(SelectorOptions.findRootOptions(converted)));
+    }
 }
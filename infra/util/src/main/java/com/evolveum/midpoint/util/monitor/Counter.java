@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.util.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that can be incremented concurrently by many threads without contention.
+ * The value is spread over several cells (selected by thread ID), each one on its own cache line.
+ * Reading the value sums the cells, so it is more expensive than incrementing it.
+ *
+ * @author agent
+ */
+public class Counter {
+
+	private static final int STRIPES = 16;			// must be a power of 2
+	private static final int PADDING = 8;			// longs per cache line
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	public void increment() {
+		add(1);
+	}
+
+	public void add(long delta) {
+		cells.getAndAdd(cellIndex(), delta);
+	}
+
+	public long get() {
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	/**
+	 * Sets the value. Not atomic with respect to concurrent increments.
+	 */
+	public void set(long value) {
+		reset();
+		add(value);
+	}
+
+	public void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			cells.set(i * PADDING, 0);
+		}
+	}
+
+	private static int cellIndex() {
+		return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(get());
+	}
+}
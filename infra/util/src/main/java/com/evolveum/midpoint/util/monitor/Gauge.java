@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.util.monitor;
+
+/**
+ * Current value of something that is not counted but measured on demand, e.g. size of a cache
+ * or number of active threads in a pool. Implementations should be cheap and thread safe.
+ *
+ * @author agent
+ */
+public interface Gauge {
+
+	long getValue();
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.util.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of operation durations (in milliseconds). The values are counted in fixed buckets,
+ * so percentiles are approximate: they are reported as the upper bound of the bucket.
+ *
+ * @author agent
+ */
+public class Histogram {
+
+	// upper bounds (inclusive) of the buckets; the last bucket is unbounded
+	private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000 };
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+	private final Counter sum = new Counter();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long duration) {
+		if (duration < 0) {
+			return;
+		}
+		buckets.incrementAndGet(bucketIndex(duration));
+		sum.add(duration);
+		long currentMax = max.get();
+		while (duration > currentMax && !max.compareAndSet(currentMax, duration)) {
+			currentMax = max.get();
+		}
+	}
+
+	private static int bucketIndex(long duration) {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			if (duration <= BOUNDS[i]) {
+				return i;
+			}
+		}
+		return BOUNDS.length;
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count > 0 ? (double) getSum() / count : 0;
+	}
+
+	/**
+	 * Returns approximate percentile (0 < p <= 100), i.e. the upper bound of the bucket where it falls.
+	 * For the last (unbounded) bucket the maximum is returned.
+	 */
+	public long getPercentile(double p) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		long threshold = (long) Math.ceil(count * p / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			seen += buckets.get(i);
+			if (seen >= threshold) {
+				return Math.min(BOUNDS[i], getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+		sum.reset();
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + ", mean=" + String.format("%.1f", getMean()) + ", p50=" + getPercentile(50)
+				+ ", p95=" + getPercentile(95) + ", p99=" + getPercentile(99) + ", max=" + getMax();
+	}
+}
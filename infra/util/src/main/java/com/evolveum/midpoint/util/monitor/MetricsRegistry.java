@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.util.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Node-wide registry of metrics: counters, latency histograms and gauges. Metrics are identified
+ * by dot-separated names, e.g. "repository.getObject" or "resource.Dummy Resource.SEARCH".
+ *
+ * Counters are always maintained (they are cheap and tests rely on them). Latency histograms are recorded
+ * only if the registry is enabled (system property midpoint.metrics.enabled or via JMX); otherwise
+ * recordLatency is just a check of a volatile flag.
+ *
+ * The registry is available via JMX (MBean com.evolveum.midpoint:type=Metrics) and REST.
+ *
+ * @author agent
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+
+	private static final Trace LOGGER = TraceManager.getTrace(MetricsRegistry.class);
+
+	public static final String ENABLED_PROPERTY = "midpoint.metrics.enabled";
+	public static final String MBEAN_NAME = "com.evolveum.midpoint:type=Metrics";
+
+	/**
+	 * Safety limit for metrics created from data (e.g. per resource or per mapping). Latencies for metrics
+	 * over the limit are not recorded.
+	 */
+	public static final int MAX_METRICS = 10000;
+
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+	static {
+		INSTANCE.registerMBean();
+	}
+
+	private volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+	public static MetricsRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		LOGGER.info("Metrics recording {}", enabled ? "enabled" : "disabled");
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the counter of given name, creating it if needed. Callers should keep the returned
+	 * counter instead of looking it up repeatedly.
+	 */
+	public Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			Counter newCounter = new Counter();
+			counter = counters.putIfAbsent(name, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the histogram of given name, creating it if needed. Returns null if the limit
+	 * of histograms was reached.
+	 */
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			if (histograms.size() >= MAX_METRICS) {
+				return null;
+			}
+			Histogram newHistogram = new Histogram();
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Records duration of an operation (in milliseconds), if the registry is enabled.
+	 */
+	public void recordLatency(String name, long duration) {
+		if (!enabled) {
+			return;
+		}
+		Histogram histogram = histogram(name);
+		if (histogram != null) {
+			histogram.record(duration);
+		}
+	}
+
+	public void registerGauge(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+
+	public void unregisterGauge(String name) {
+		gauges.remove(name);
+	}
+
+	/**
+	 * Returns current values of all metrics, formatted as strings, sorted by name.
+	 */
+	public SortedMap<String, String> getSnapshot() {
+		SortedMap<String, String> snapshot = new TreeMap<>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), String.valueOf(entry.getValue().get()));
+		}
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().toString());
+		}
+		for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+			snapshot.put(entry.getKey(), getGaugeValue(entry.getKey(), entry.getValue()));
+		}
+		return snapshot;
+	}
+
+	private String getGaugeValue(String name, Gauge gauge) {
+		try {
+			return String.valueOf(gauge.getValue());
+		} catch (RuntimeException e) {
+			LoggingUtils.logExceptionOnDebugLevel(LOGGER, "Couldn't get value of gauge {}", e, name);
+			return "?";
+		}
+	}
+
+	@Override
+	public String[] getMetricNames() {
+		return getSnapshot().keySet().toArray(new String[0]);
+	}
+
+	@Override
+	public String getMetric(String name) {
+		Counter counter = counters.get(name);
+		if (counter != null) {
+			return String.valueOf(counter.get());
+		}
+		Histogram histogram = histograms.get(name);
+		if (histogram != null) {
+			return histogram.toString();
+		}
+		Gauge gauge = gauges.get(name);
+		if (gauge != null) {
+			return getGaugeValue(name, gauge);
+		}
+		return null;
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> entry : getSnapshot().entrySet()) {
+			sb.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Resets all counters and histograms. Gauges are kept.
+	 */
+	@Override
+	public void reset() {
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		histograms.clear();
+	}
+
+	private void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName(MBEAN_NAME));
+		} catch (InstanceAlreadyExistsException e) {
+			// e.g. more midPoint instances in one JVM (tests); metrics of the first one are exposed
+			LOGGER.debug("Metrics MBean is already registered");
+		} catch (Exception|LinkageError e) {
+			LoggingUtils.logExceptionOnDebugLevel(LOGGER, "Couldn't register metrics MBean", e);
+		}
+	}
+}
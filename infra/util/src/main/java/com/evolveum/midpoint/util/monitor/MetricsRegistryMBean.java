@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.util.monitor;
+
+/**
+ * JMX view of the node-wide metrics.
+ *
+ * @see MetricsRegistry
+ * @author agent
+ */
+public interface MetricsRegistryMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	String[] getMetricNames();
+
+	String getMetric(String name);
+
+	String dump();
+
+	void reset();
+}
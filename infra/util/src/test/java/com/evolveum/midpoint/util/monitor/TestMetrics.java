@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.util.monitor;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author agent
+ */
+public class TestMetrics {
+
+	private static final int THREADS = 8;
+	private static final int INCREMENTS = 100000;
+
+	@Test
+	public void testCounterConcurrent() throws Exception {
+		System.out.println("===[ testCounterConcurrent ]===");
+		final Counter counter = new Counter();
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < INCREMENTS; j++) {
+						counter.increment();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals((long) THREADS * INCREMENTS, counter.get());
+
+		counter.set(42);
+		assertEquals(42, counter.get());
+	}
+
+	@Test
+	public void testHistogram() {
+		System.out.println("===[ testHistogram ]===");
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		System.out.println("Histogram: " + histogram);
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(100, histogram.getMax());
+		assertEquals(50, histogram.getPercentile(50));
+		assertEquals(100, histogram.getPercentile(99));
+		assertEquals(1, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void testRegistry() {
+		System.out.println("===[ testRegistry ]===");
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		assertSame(registry.counter("test.counter"), registry.counter("test.counter"));
+		registry.counter("test.counter").add(3);
+		registry.registerGauge("test.gauge", new Gauge() {
+			@Override
+			public long getValue() {
+				return 7;
+			}
+		});
+
+		boolean wasEnabled = registry.isEnabled();
+		try {
+			registry.setEnabled(false);
+			registry.recordLatency("test.disabled", 10);
+			assertNull(registry.getMetric("test.disabled"));
+
+			registry.setEnabled(true);
+			registry.recordLatency("test.enabled", 10);
+			assertEquals(1, registry.histogram("test.enabled").getCount());
+		} finally {
+			registry.setEnabled(wasEnabled);
+		}
+
+		assertEquals("3", registry.getMetric("test.counter"));
+		assertEquals("7", registry.getMetric("test.gauge"));
+		System.out.println("Metrics:\n" + registry.dump());
+		registry.unregisterGauge("test.gauge");
+	}
+}
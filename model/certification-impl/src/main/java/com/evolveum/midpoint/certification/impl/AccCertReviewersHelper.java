@@ -50,8 +50,10 @@ import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author mederly
@@ -59,6 +61,11 @@ import java.util.List;
 @Component
 public class AccCertReviewersHelper {
 
+    /**
+     * Maximal number of targets (roles, orgs, resources) kept in a TargetCache.
+     */
+    private static final int MAX_CACHED_TARGETS = 10000;
+
     @Autowired
     private ModelService modelService;
 
@@ -84,6 +91,16 @@ public class AccCertReviewersHelper {
 
     public void setupReviewersForCase(AccessCertificationCaseType _case, AccessCertificationCampaignType campaign,
                                       AccessCertificationReviewerSpecificationType reviewerSpec, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException, SecurityViolationException, ConfigurationException, CommunicationException {
+        setupReviewersForCase(_case, campaign, reviewerSpec, null, task, result);
+    }
+
+    /**
+     * Sets up reviewers for a case. Targets of the cases (roles, orgs, resources) are resolved via targetCache,
+     * if provided; so when processing many cases with the same target, it is fetched only once.
+     */
+    public void setupReviewersForCase(AccessCertificationCaseType _case, AccessCertificationCampaignType campaign,
+                                      AccessCertificationReviewerSpecificationType reviewerSpec, TargetCache targetCache,
+                                      Task task, OperationResult result) throws SchemaException, ObjectNotFoundException, SecurityViolationException, ConfigurationException, CommunicationException {
 
         _case.getReviewerRef().clear();
         if (reviewerSpec == null) {
@@ -91,10 +108,10 @@ public class AccCertReviewersHelper {
         }
 
         if (Boolean.TRUE.equals(reviewerSpec.isUseTargetOwner())) {
-            cloneAndMerge(_case.getReviewerRef(), getTargetObjectOwners(_case, task, result));
+            cloneAndMerge(_case.getReviewerRef(), getTargetObjectOwners(_case, targetCache, task, result));
         }
         if (Boolean.TRUE.equals(reviewerSpec.isUseTargetApprover())) {
-            cloneAndMerge(_case.getReviewerRef(), getTargetObjectApprovers(_case, task, result));
+            cloneAndMerge(_case.getReviewerRef(), getTargetObjectApprovers(_case, targetCache, task, result));
         }
         if (Boolean.TRUE.equals(reviewerSpec.isUseObjectOwner())) {
             cloneAndMerge(_case.getReviewerRef(), getObjectOwners(_case, task, result));
@@ -167,11 +184,11 @@ public class AccCertReviewersHelper {
         }
     }
 
-    protected List<ObjectReferenceType> getTargetObjectOwners(AccessCertificationCaseType _case, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
+    protected List<ObjectReferenceType> getTargetObjectOwners(AccessCertificationCaseType _case, TargetCache targetCache, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
         if (_case.getTargetRef() == null) {
             return null;
         }
-        ObjectType target = objectResolver.resolve(_case.getTargetRef(), ObjectType.class, null, "resolving cert case target", task, result);
+        ObjectType target = resolveTarget(_case, targetCache, task, result);
         if (target instanceof AbstractRoleType) {
             ObjectReferenceType ownerRef = ((AbstractRoleType) target).getOwnerRef();
             if (ownerRef != null) {
@@ -203,11 +220,11 @@ public class AccCertReviewersHelper {
         }
     }
 
-    private Collection<ObjectReferenceType> getTargetObjectApprovers(AccessCertificationCaseType _case, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
+    private Collection<ObjectReferenceType> getTargetObjectApprovers(AccessCertificationCaseType _case, TargetCache targetCache, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
         if (_case.getTargetRef() == null) {
             return null;
         }
-        ObjectType target = objectResolver.resolve(_case.getTargetRef(), ObjectType.class, null, "resolving cert case target", task, result);
+        ObjectType target = resolveTarget(_case, targetCache, task, result);
         if (target instanceof AbstractRoleType) {
             return ((AbstractRoleType) target).getApproverRef();
         } else if (target instanceof ResourceType) {
@@ -229,6 +246,27 @@ public class AccCertReviewersHelper {
         }
     }
 
+    private ObjectType resolveTarget(AccessCertificationCaseType _case, TargetCache targetCache, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
+        String oid = _case.getTargetRef().getOid();
+        if (targetCache != null && oid != null) {
+            ObjectType cached = targetCache.targets.get(oid);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        ObjectType target = objectResolver.resolve(_case.getTargetRef(), ObjectType.class, null, "resolving cert case target", task, result);
+        if (targetCache != null && oid != null && target != null && targetCache.targets.size() < MAX_CACHED_TARGETS) {
+            targetCache.targets.put(oid, target);
+        }
+        return target;
+    }
 
-
+    /**
+     * Targets resolved while setting up reviewers for a set of cases (e.g. when creating cases for a stage).
+     * Not thread safe; it is meant to be used for one such operation only, so that changes in targets
+     * are seen by subsequent operations.
+     */
+    public static class TargetCache {
+        private final Map<String, ObjectType> targets = new HashMap<>();
+    }
 }
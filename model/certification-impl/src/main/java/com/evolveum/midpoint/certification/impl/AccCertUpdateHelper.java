@@ -20,6 +20,7 @@ import com.evolveum.midpoint.certification.impl.handlers.CertificationHandler;
 import com.evolveum.midpoint.model.api.ModelService;
 import com.evolveum.midpoint.model.api.PolicyViolationException;
 import com.evolveum.midpoint.prism.PrismContainerDefinition;
+import com.evolveum.midpoint.prism.PrismConstants;
 import com.evolveum.midpoint.prism.PrismContainerValue;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
@@ -36,8 +37,11 @@ import com.evolveum.midpoint.prism.parser.QueryConvertor;
 import com.evolveum.midpoint.prism.path.IdItemPathSegment;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.path.NameItemPathSegment;
+import com.evolveum.midpoint.prism.query.InOidFilter;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrderDirection;
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.api.RepositoryService;
@@ -49,6 +53,7 @@ import com.evolveum.midpoint.schema.util.CertCampaignTypeUtil;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.security.api.SecurityEnforcer;
 import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.CommonException;
 import com.evolveum.midpoint.util.exception.CommunicationException;
 import com.evolveum.midpoint.util.exception.ConfigurationException;
 import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
@@ -89,7 +94,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignStateType.CLOSED;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignStateType.IN_REVIEW_STAGE;
@@ -106,6 +113,17 @@ public class AccCertUpdateHelper {
 
     private static final transient Trace LOGGER = TraceManager.getTrace(AccCertUpdateHelper.class);
 
+    /**
+     * Number of cases created or updated in one repository operation (and the number of objects fetched
+     * at once when creating cases). Cases are processed in chunks in order to avoid keeping all of them
+     * in memory and executing one huge transaction.
+     *
+     * As the chunks are committed separately, moving to the next stage can be interrupted in the middle.
+     * Therefore it is written so that it can be simply executed again: cases left from an interrupted
+     * creation are removed, and cases already moved to the new stage are not touched again.
+     */
+    static final int CASE_CHUNK_SIZE = 1000;
+
     @Autowired
     private AccCertReviewersHelper reviewersHelper;
 
@@ -313,7 +331,7 @@ public class AccCertUpdateHelper {
         return stage;
     }
 
-    private void createCases(final AccessCertificationCampaignType campaign, AccessCertificationStageType stage,
+    private void createCases(final AccessCertificationCampaignType campaign, final AccessCertificationStageType stage,
                              final CertificationHandler handler, final Task task, final OperationResult result) throws SchemaException, ObjectNotFoundException, SecurityViolationException, CommunicationException, ConfigurationException, ExpressionEvaluationException, PolicyViolationException, ObjectAlreadyExistsException {
         String campaignShortName = ObjectTypeUtil.toShortString(campaign);
 
@@ -325,9 +343,14 @@ public class AccCertUpdateHelper {
         }
         AccessCertificationObjectBasedScopeType objectBasedScope = (AccessCertificationObjectBasedScopeType) scope;
 
-        List<AccessCertificationCaseType> existingCases = queryHelper.searchCases(campaign.getOid(), null, null, task, result);
-        if (!existingCases.isEmpty()) {
-            throw new IllegalStateException("Unexpected " + existingCases.size() + " certification case(s) in campaign object " + campaignShortName + ". At this time there should be none.");
+        if (hasCases(campaign, task, result)) {
+            if (CertCampaignTypeUtil.findStage(campaign, 1) != null) {
+                // the stage is stored with the last chunk of cases, so all the cases are there
+                LOGGER.info("Cases for campaign {} were already created, probably by an interrupted attempt to open the first stage", campaignShortName);
+                return;
+            }
+            LOGGER.warn("Removing certification cases left in campaign {} by an interrupted attempt to open the first stage", campaignShortName);
+            deleteAllCases(campaign, result);
         }
 
         // create a query to find target objects from which certification cases will be created
@@ -354,19 +377,13 @@ public class AccCertUpdateHelper {
             query.setFilter(filter);
         }
 
-        final List<AccessCertificationCaseType> caseList = new ArrayList<>();
-
-        // create certification cases by executing the query and caseExpression on its results
-        // here the subclasses of this class come into play
+        // only OIDs are collected during the search; nothing is written to the repository while it is running
+        // (set is used because the search can be restarted by the repository after a failure)
+        final Set<String> objectOids = new LinkedHashSet<>();
         ResultHandler<ObjectType> resultHandler = new ResultHandler<ObjectType>() {
             @Override
             public boolean handle(PrismObject<ObjectType> object, OperationResult parentResult) {
-                try {
-                    caseList.addAll(handler.createCasesForObject(object, campaign, task, parentResult));
-                } catch (ExpressionEvaluationException|ObjectNotFoundException|SchemaException e) {
-                    // TODO process the exception more intelligently
-                    throw new SystemException("Cannot create certification case for object " + ObjectTypeUtil.toShortString(object.asObjectable()) + ": " + e.getMessage(), e);
-                }
+                objectOids.add(object.getOid());
                 return true;
             }
         };
@@ -374,44 +391,109 @@ public class AccCertUpdateHelper {
 
         AccessCertificationReviewerSpecificationType reviewerSpec =
                 reviewersHelper.findReviewersSpecification(campaign, 1, task, result);
+        AccCertReviewersHelper.TargetCache targetCache = new AccCertReviewersHelper.TargetCache();
+        List<AccessCertificationCaseType> chunk = new ArrayList<>(CASE_CHUNK_SIZE);
+        long casesCreated = 0;
 
-        // put the cases into repository
-        ContainerDelta<AccessCertificationCaseType> caseDelta = ContainerDelta.createDelta(AccessCertificationCampaignType.F_CASE,
-                AccessCertificationCampaignType.class, prismContext);
-        for (int i = 0; i < caseList.size(); i++) {
-            AccessCertificationCaseType _case = caseList.get(i);
-            _case.setReviewRequestedTimestamp(stage.getStart());
-            _case.setReviewDeadline(stage.getEnd());
-            _case.setCurrentResponse(null);
-            _case.setCurrentStageNumber(1);
+        // create certification cases by executing caseExpression on the objects found
+        // here the subclasses of this class come into play
+        // the objects are fetched and the cases are put into repository in chunks, so we don't need to keep all of them in memory
+        try {
+            List<String> oidList = new ArrayList<>(objectOids);
+            for (int from = 0; from < oidList.size(); from += CASE_CHUNK_SIZE) {
+                List<String> oidChunk = oidList.subList(from, Math.min(from + CASE_CHUNK_SIZE, oidList.size()));
+                ObjectQuery chunkQuery = ObjectQuery.createObjectQuery(InOidFilter.createInOid(oidChunk));
+                List<? extends PrismObject<? extends ObjectType>> objects = modelService.searchObjects(objectClass, chunkQuery, null, task, result);
+                for (PrismObject<? extends ObjectType> object : objects) {
+                    for (AccessCertificationCaseType _case : handler.createCasesForObject((PrismObject) object, campaign, task, result)) {
+                        casesCreated++;
+                        prepareNewCase(_case, casesCreated, campaign, stage, reviewerSpec, targetCache, task, result);
+                        chunk.add(_case);
+                    }
+                    if (chunk.size() >= CASE_CHUNK_SIZE) {
+                        storeNewCases(campaign, chunk, null, result);
+                        task.setProgressTransient(casesCreated);
+                    }
+                }
+            }
+
+            // the stage is stored along with the last chunk of cases
+            storeNewCases(campaign, chunk, stage, result);
+        } catch (CommonException|RuntimeException e) {
+            if (casesCreated > chunk.size()) {
+                // some chunks were already stored; let's not leave an incomplete set of cases in the campaign
+                try {
+                    deleteAllCases(campaign, result);
+                } catch (CommonException|RuntimeException e1) {
+                    LoggingUtils.logUnexpectedException(LOGGER, "Couldn't remove certification cases from campaign {} after failed attempt to create them", e1, campaignShortName);
+                }
+            }
+            throw e;
+        }
+        task.setProgressTransient(casesCreated);
+        LOGGER.trace("Created stage and {} cases for campaign {}", casesCreated, campaignShortName);
+    }
+
+    private boolean hasCases(AccessCertificationCampaignType campaign, Task task, OperationResult result) throws SchemaException, SecurityViolationException, ObjectNotFoundException, ConfigurationException, CommunicationException {
+        ObjectQuery query = ObjectQuery.createObjectQuery(ObjectPaging.createPaging(0, 1));
+        return !queryHelper.searchCases(campaign.getOid(), query, null, task, result).isEmpty();
+    }
+
+    private void deleteAllCases(AccessCertificationCampaignType campaign, OperationResult result) throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        ContainerDelta<AccessCertificationCaseType> caseDelta = ContainerDelta.createModificationReplace(AccessCertificationCampaignType.F_CASE,
+                AccessCertificationCampaignType.class, prismContext, new ArrayList<AccessCertificationCaseType>());
+        repositoryService.modifyObject(AccessCertificationCampaignType.class, campaign.getOid(), Arrays.asList(caseDelta), result);
+    }
 
-            reviewersHelper.setupReviewersForCase(_case, campaign, reviewerSpec, task, result);
+    private void prepareNewCase(AccessCertificationCaseType _case, long id, AccessCertificationCampaignType campaign,
+                                AccessCertificationStageType stage, AccessCertificationReviewerSpecificationType reviewerSpec,
+                                AccCertReviewersHelper.TargetCache targetCache, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException, SecurityViolationException, ConfigurationException, CommunicationException {
+        _case.setReviewRequestedTimestamp(stage.getStart());
+        _case.setReviewDeadline(stage.getEnd());
+        _case.setCurrentResponse(null);
+        _case.setCurrentStageNumber(1);
 
-            List<AccessCertificationDecisionType> decisions = createEmptyDecisionsForCase(_case.getReviewerRef(), 1);
-            _case.getDecision().addAll(decisions);
+        reviewersHelper.setupReviewersForCase(_case, campaign, reviewerSpec, targetCache, task, result);
 
-            PrismContainerValue<AccessCertificationCaseType> caseCVal = _case.asPrismContainerValue();
-            caseCVal.setId((long) (i + 1));
-            caseDelta.addValueToAdd(caseCVal);
+        List<AccessCertificationDecisionType> decisions = createEmptyDecisionsForCase(_case.getReviewerRef(), 1);
+        _case.getDecision().addAll(decisions);
 
-            if (LOGGER.isTraceEnabled()) {
-                LOGGER.trace("Adding certification case:\n{}", caseCVal.debugDump());
+        _case.asPrismContainerValue().setId(id);
+    }
+
+    /**
+     * Puts the cases (and optionally the stage) into repository, and clears the list of cases.
+     */
+    private void storeNewCases(AccessCertificationCampaignType campaign, List<AccessCertificationCaseType> cases,
+                               AccessCertificationStageType stage, OperationResult result) throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        List<ItemDelta> campaignDeltaList = new ArrayList<>(2);
+        if (!cases.isEmpty()) {
+            ContainerDelta<AccessCertificationCaseType> caseDelta = ContainerDelta.createDelta(AccessCertificationCampaignType.F_CASE,
+                    AccessCertificationCampaignType.class, prismContext);
+            for (AccessCertificationCaseType _case : cases) {
+                PrismContainerValue<AccessCertificationCaseType> caseCVal = _case.asPrismContainerValue();
+                caseDelta.addValueToAdd(caseCVal);
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Adding certification case:\n{}", caseCVal.debugDump());
+                }
             }
+            campaignDeltaList.add(caseDelta);
+        }
+        if (stage != null) {
+            ContainerDelta<AccessCertificationStageType> stageDelta = ContainerDelta.createDelta(AccessCertificationCampaignType.F_STAGE,
+                    AccessCertificationCampaignType.class, prismContext);
+            stageDelta.addValueToAdd(stage.asPrismContainerValue());
+            campaignDeltaList.add(stageDelta);
+        }
+        if (campaignDeltaList.isEmpty()) {
+            return;
         }
 
         // there are some problems with container IDs when using model - as a temporary hack we go directly into repo
         // todo fix it and switch to model service
-//        ObjectDelta<AccessCertificationCampaignType> campaignDelta = ObjectDelta.createModifyDelta(campaign.getOid(),
-//                caseDelta, AccessCertificationCampaignType.class, prismContext);
-//        modelService.executeChanges((Collection) Arrays.asList(campaignDelta), null, task, result);
-
-        ContainerDelta<AccessCertificationStageType> stageDelta = ContainerDelta.createDelta(AccessCertificationCampaignType.F_STAGE,
-                AccessCertificationCampaignType.class, prismContext);
-        stageDelta.addValueToAdd(stage.asPrismContainerValue());
-
-        repositoryService.modifyObject(AccessCertificationCampaignType.class, campaign.getOid(),
-                Arrays.asList(caseDelta, stageDelta), result);
-        LOGGER.trace("Created stage and {} cases for campaign {}", caseList.size(), campaignShortName);
+        repositoryService.modifyObject(AccessCertificationCampaignType.class, campaign.getOid(), campaignDeltaList, result);
+        LOGGER.trace("Stored {} certification case(s) for campaign {}", cases.size(), ObjectTypeUtil.toShortString(campaign));
+        cases.clear();
     }
 
     // BRUTAL HACK: we fill-in decisions when in stage 1 (to be fixed in repository implementation)
@@ -434,16 +516,55 @@ public class AccCertUpdateHelper {
 
     private void updateCases(AccessCertificationCampaignType campaign, AccessCertificationStageType stage, Task task, OperationResult result) throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException, SecurityViolationException, ConfigurationException, CommunicationException {
         LOGGER.trace("Updating reviewers and timestamps for cases in {}", ObjectTypeUtil.toShortString(campaign));
-        List<AccessCertificationCaseType> caseList = queryHelper.searchCases(campaign.getOid(), null, null, task, result);
 
         int stageToBe = campaign.getStageNumber() + 1;
 
         AccessCertificationReviewerSpecificationType reviewerSpec =
                 reviewersHelper.findReviewersSpecification(campaign, stageToBe, task, result);
+        AccCertReviewersHelper.TargetCache targetCache = new AccCertReviewersHelper.TargetCache();
+
+        // the stage is stored with the last chunk of cases; if it is already there, all the cases were updated
+        // by an interrupted attempt to open the stage
+        boolean stageStored = CertCampaignTypeUtil.findStage(campaign, stageToBe) != null;
+
+        // cases are read and updated in chunks; the set of cases does not change here, so paging by ID is stable
+        int casesProcessed = 0;
+        for (;;) {
+            ObjectQuery chunkQuery = ObjectQuery.createObjectQuery(ObjectPaging.createPaging(casesProcessed, CASE_CHUNK_SIZE,
+                    new ItemPath(PrismConstants.T_ID), OrderDirection.ASCENDING));
+            List<AccessCertificationCaseType> caseList = queryHelper.searchCases(campaign.getOid(), chunkQuery, null, task, result);
+            List<ItemDelta> campaignDeltaList = updateCasesChunk(campaign, caseList, stage, stageToBe, reviewerSpec, targetCache, task, result);
+            casesProcessed += caseList.size();
+
+            boolean lastChunk = caseList.size() < CASE_CHUNK_SIZE;
+            if (lastChunk && !stageStored) {
+                ContainerDelta<AccessCertificationStageType> stageDelta = ContainerDelta.createDelta(AccessCertificationCampaignType.F_STAGE,
+                        AccessCertificationCampaignType.class, prismContext);
+                stageDelta.addValueToAdd(stage.asPrismContainerValue());
+                campaignDeltaList.add(stageDelta);
+            }
+            if (!campaignDeltaList.isEmpty()) {
+                repositoryService.modifyObject(AccessCertificationCampaignType.class, campaign.getOid(), campaignDeltaList, result);
+            }
+            task.setProgressTransient(casesProcessed);
+            if (lastChunk) {
+                break;
+            }
+        }
+        LOGGER.debug("Created a stage, updated reviewers and timestamps in {} cases for campaign {}", casesProcessed, ObjectTypeUtil.toShortString(campaign));
+    }
 
-        List<ItemDelta> campaignDeltaList = new ArrayList<>(caseList.size());
+    private List<ItemDelta> updateCasesChunk(AccessCertificationCampaignType campaign, List<AccessCertificationCaseType> caseList,
+                                             AccessCertificationStageType stage, int stageToBe,
+                                             AccessCertificationReviewerSpecificationType reviewerSpec,
+                                             AccCertReviewersHelper.TargetCache targetCache, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException, SecurityViolationException, ConfigurationException, CommunicationException {
+        List<ItemDelta> campaignDeltaList = new ArrayList<>(caseList.size() * 5 + 1);
         for (int i = 0; i < caseList.size(); i++) {
             AccessCertificationCaseType _case = caseList.get(i);
+            if (_case.getCurrentStageNumber() == stageToBe) {
+                // already moved to the new stage by an interrupted attempt to open it
+                continue;
+            }
 
             boolean enabled = computationHelper.computeEnabled(campaign, _case);
 //            PropertyDelta enabledDelta = PropertyDelta.createModificationReplaceProperty(
@@ -455,7 +576,7 @@ public class AccCertUpdateHelper {
 //            campaignDeltaList.add(enabledDelta);
 
             if (enabled) {
-                reviewersHelper.setupReviewersForCase(_case, campaign, reviewerSpec, task, result);
+                reviewersHelper.setupReviewersForCase(_case, campaign, reviewerSpec, targetCache, task, result);
             } else {
                 _case.getReviewerRef().clear();
             }
@@ -514,14 +635,7 @@ public class AccCertUpdateHelper {
                 campaignDeltaList.add(currentResponseStageDelta);
             }
         }
-
-        ContainerDelta<AccessCertificationStageType> stageDelta = ContainerDelta.createDelta(AccessCertificationCampaignType.F_STAGE,
-                AccessCertificationCampaignType.class, prismContext);
-        stageDelta.addValueToAdd(stage.asPrismContainerValue());
-        campaignDeltaList.add(stageDelta);
-
-        repositoryService.modifyObject(AccessCertificationCampaignType.class, campaign.getOid(), campaignDeltaList, result);
-        LOGGER.debug("Created a stage, updated reviewers and timestamps in {} cases for campaign {}", caseList.size(), ObjectTypeUtil.toShortString(campaign));
+        return campaignDeltaList;
     }
 
 
@@ -17,6 +17,7 @@
 package com.evolveum.midpoint.certification.test;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ContainerDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectPaging;
@@ -31,6 +32,7 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationAssignmentCaseType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignStateType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCaseType;
@@ -49,6 +51,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -147,6 +150,40 @@ public class BasicCertificationTest extends AbstractCertificationTest {
     }
 
 
+    /**
+     * Simulates an interrupted attempt to open the first stage, which left some cases in the campaign.
+     * They should be removed when the stage is opened again (see test020).
+     */
+    @Test
+    public void test015LeftoverCases() throws Exception {
+        final String TEST_NAME = "test015LeftoverCases";
+        TestUtil.displayTestTile(this, TEST_NAME);
+
+        // GIVEN
+        Task task = taskManager.createTaskInstance(BasicCertificationTest.class.getName() + "." + TEST_NAME);
+        OperationResult result = task.getResult();
+
+        AccessCertificationAssignmentCaseType leftoverCase = new AccessCertificationAssignmentCaseType(prismContext);
+        leftoverCase.setObjectRef(ObjectTypeUtil.createObjectRef(USER_JACK_OID, ObjectTypes.USER));
+        leftoverCase.setTargetRef(ObjectTypeUtil.createObjectRef(ROLE_SUPERUSER_OID, ObjectTypes.ROLE));
+        leftoverCase.setCurrentStageNumber(1);
+
+        // WHEN
+        TestUtil.displayWhen(TEST_NAME);
+        ContainerDelta<AccessCertificationCaseType> caseDelta = ContainerDelta.createModificationAdd(AccessCertificationCampaignType.F_CASE,
+                AccessCertificationCampaignType.class, prismContext, (AccessCertificationCaseType) leftoverCase);
+        repositoryService.modifyObject(AccessCertificationCampaignType.class, campaignOid, Arrays.asList(caseDelta), result);
+
+        // THEN
+        TestUtil.displayThen(TEST_NAME);
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+
+        List<AccessCertificationCaseType> caseList = certificationManager.searchCases(campaignOid, null, null, task, result);
+        assertEquals("Unexpected cases in caseList", 1, caseList.size());
+        assertStateAndStage(getObject(AccessCertificationCampaignType.class, campaignOid).asObjectable(), CREATED, 0);
+    }
+
     @Test
     public void test020OpenFirstStage() throws Exception {
         final String TEST_NAME = "test020OpenFirstStage";
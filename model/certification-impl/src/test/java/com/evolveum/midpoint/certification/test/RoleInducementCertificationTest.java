@@ -17,6 +17,8 @@
 package com.evolveum.midpoint.certification.test;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.builder.DeltaBuilder;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.RefFilter;
@@ -564,6 +566,56 @@ public class RoleInducementCertificationTest extends AbstractCertificationTest {
         assertCaseReviewers(superuserDummyCase, null, true, 2, Arrays.asList(USER_JACK_OID, USER_ADMINISTRATOR_OID));
     }
 
+    /**
+     * Simulates an attempt to open the second stage that was interrupted after the cases were updated:
+     * the campaign is put back into the state after the first stage and the second stage is opened again.
+     * Cases must not be updated twice and the stage must not be added twice.
+     */
+    @Test
+    public void test205ReopenSecondStage() throws Exception {
+        final String TEST_NAME = "test205ReopenSecondStage";
+        TestUtil.displayTestTile(this, TEST_NAME);
+
+        // GIVEN
+        Task task = taskManager.createTaskInstance(RoleInducementCertificationTest.class.getName() + "." + TEST_NAME);
+        OperationResult result = task.getResult();
+
+        List<ItemDelta> rollbackDeltas = DeltaBuilder.deltaFor(AccessCertificationCampaignType.class, prismContext)
+                .item(AccessCertificationCampaignType.F_STAGE_NUMBER).replace(1)
+                .item(AccessCertificationCampaignType.F_STATE).replace(REVIEW_STAGE_DONE)
+                .asItemDeltas();
+        repositoryService.modifyObject(AccessCertificationCampaignType.class, campaignOid, rollbackDeltas, result);
+
+        // WHEN
+        TestUtil.displayWhen(TEST_NAME);
+        certificationManager.openNextStage(campaignOid, 2, task, result);
+
+        // THEN
+        TestUtil.displayThen(TEST_NAME);
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+
+        AccessCertificationCampaignType campaign = getCampaignWithCases(campaignOid);
+        display("campaign in stage 2 (reopened)", campaign);
+
+        assertStateAndStage(campaign, IN_REVIEW_STAGE, 2);
+        assertEquals("wrong # of stages", 2, campaign.getStage().size());
+
+        List<AccessCertificationCaseType> caseList = certificationManager.searchCases(campaignOid, null, null, task, result);
+        assertEquals("Wrong number of certification cases", 5, caseList.size());
+        AccessCertificationCaseType ceoDummyCase = findCase(caseList, ROLE_CEO_OID, RESOURCE_DUMMY_OID);
+        AccessCertificationCaseType cooDummyCase = findCase(caseList, ROLE_COO_OID, RESOURCE_DUMMY_OID);
+        AccessCertificationCaseType cooDummyBlackCase = findCase(caseList, ROLE_COO_OID, RESOURCE_DUMMY_BLACK_OID);
+        AccessCertificationCaseType cooSuperuserCase = findCase(caseList, ROLE_COO_OID, ROLE_SUPERUSER_OID);
+        AccessCertificationCaseType superuserDummyCase = findCase(caseList, ROLE_SUPERUSER_OID, RESOURCE_DUMMY_OID);
+
+        assertCaseReviewers(ceoDummyCase, REVOKE, false, 1, Arrays.<String>asList());
+        assertCaseReviewers(cooDummyCase, REVOKE, false, 1, Arrays.<String>asList());
+        assertCaseReviewers(cooDummyBlackCase, null, true, 2, Arrays.asList(USER_ADMINISTRATOR_OID, USER_ELAINE_OID));
+        assertCaseReviewers(cooSuperuserCase, null, true, 2, Arrays.asList(USER_ADMINISTRATOR_OID));
+        assertCaseReviewers(superuserDummyCase, null, true, 2, Arrays.asList(USER_JACK_OID, USER_ADMINISTRATOR_OID));
+    }
+
     @Test
     public void test210Statistics() throws Exception {
         final String TEST_NAME = "test210Statistics";
@@ -50,6 +50,7 @@ public interface ModelDiagnosticService {
     String REPOSITORY_TEST_ORG_CLOSURE_CONSISTENCY = CLASS_NAME_WITH_DOT + "repositoryTestOrgClosureConsistency";
 	String REPOSITORY_EXECUTE_QUERY = CLASS_NAME_WITH_DOT + "repositoryExecuteQuery";
 	String PROVISIONING_SELF_TEST = CLASS_NAME_WITH_DOT + "provisioningSelfTest";
+	String GET_SCRIPT_CACHE_DIAG = CLASS_NAME_WITH_DOT + "getScriptCacheDiag";
 	
 	/**
 	 * Provide repository run-time configuration and diagnostic information.
@@ -96,4 +97,12 @@ public interface ModelDiagnosticService {
 	 * EXPERIMENTAL.
 	 */
 	public String executeRepositoryQuery(String query, Task task, OperationResult parentResult) throws SchemaException, SecurityViolationException;
+
+	/**
+	 * Provides statistics of compiled script caches: number of cached scripts and evaluation count and time
+	 * of each script, the most time-consuming scripts first. Useful for profiling of expressions.
+	 *
+	 * EXPERIMENTAL.
+	 */
+	public String getScriptCacheDiag(Task task, OperationResult parentResult) throws SchemaException, SecurityViolationException;
 }
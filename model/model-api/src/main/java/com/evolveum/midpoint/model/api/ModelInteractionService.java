@@ -16,12 +16,14 @@
 package com.evolveum.midpoint.model.api;
 
 import java.util.Collection;
+import java.util.List;
 
 import com.evolveum.midpoint.common.refinery.RefinedObjectClassDefinition;
 import com.evolveum.midpoint.model.api.context.ModelContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismObjectDefinition;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.schema.RelationalValueSearchQuery;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.DisplayableValue;
@@ -36,6 +38,8 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.AdminGuiConfiguratio
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CredentialsPolicyType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.LookupTableRowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.LookupTableType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
@@ -63,6 +67,8 @@ public interface ModelInteractionService {
 	static final String GET_ASSIGNABLE_ROLE_SPECIFICATION = CLASS_NAME_WITH_DOT + "getAssignableRoleSpecification";
 	static final String GET_CREDENTIALS_POLICY = CLASS_NAME_WITH_DOT + "getCredentialsPolicy";
 	static final String CHECK_PASSWORD = CLASS_NAME_WITH_DOT + "checkPassword";
+	static final String SEARCH_LOOKUP_TABLE_ROWS = CLASS_NAME_WITH_DOT + "searchLookupTableRows";
+	static final String GET_LOOKUP_TABLE = CLASS_NAME_WITH_DOT + "getLookupTable";
 	
 	/**
 	 * Computes the most likely changes triggered by the provided delta. The delta may be any change of any object, e.g.
@@ -168,4 +174,21 @@ public interface ModelInteractionService {
      * @return true if the password matches, false otherwise
      */
     boolean checkPassword(String userOid, ProtectedStringType password, Task task, OperationResult parentResult) throws ObjectNotFoundException, SchemaException;
+
+    /**
+     * Returns the rows of a lookup table that match the query, e.g. for autocomplete. The rows are served from
+     * a node-local cache, therefore this is much cheaper than reading the whole table using getObject.
+     * The current user has to be authorized to read the lookup table.
+     */
+    List<LookupTableRowType> searchLookupTableRows(String lookupTableOid, RelationalValueSearchQuery query, Task task, OperationResult parentResult)
+    		throws ObjectNotFoundException, SchemaException, SecurityViolationException;
+
+    /**
+     * Returns the lookup table including all its rows. The table is served from the same node-local cache
+     * as searchLookupTableRows, so this is the preferred way of getting the whole table e.g. for GUI components.
+     * The returned object is a copy, the client can freely modify it.
+     * The current user has to be authorized to read the lookup table.
+     */
+    PrismObject<LookupTableType> getLookupTable(String lookupTableOid, Task task, OperationResult parentResult)
+    		throws ObjectNotFoundException, SchemaException, SecurityViolationException;
 }
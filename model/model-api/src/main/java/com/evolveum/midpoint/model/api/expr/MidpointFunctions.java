@@ -25,6 +25,7 @@ import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.RelationalValueSearchQuery;
 import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -38,6 +39,7 @@ import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
 import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.LookupTableRowType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OrgType;
@@ -1000,4 +1002,18 @@ public interface MidpointFunctions {
      * @return
      */
     ObjectDeltaType getResourceDelta(ModelContext context, String resourceOid) throws SchemaException;
+
+    /**
+     * Returns the row of given lookup table that has specified key, or null if there is no such row.
+     * Lookup tables are cached on the node, so this is cheap enough to be used e.g. in mappings that
+     * translate codes for each user.
+     */
+    LookupTableRowType getLookupTableRow(String lookupTableOid, String key) throws ObjectNotFoundException, SchemaException;
+
+    /**
+     * Returns the rows of given lookup table that match the query (e.g. key or label prefix).
+     * Served from the node-local lookup table cache.
+     */
+    List<LookupTableRowType> searchLookupTableRows(String lookupTableOid, RelationalValueSearchQuery query)
+            throws ObjectNotFoundException, SchemaException;
 }
@@ -74,6 +74,14 @@ public class Expression<V extends PrismValue,D extends ItemDefinition> {
 		this.prismContext = prismContext;
 	}
 	
+	public ExpressionType getExpressionType() {
+		return expressionType;
+	}
+	
+	public D getOutputDefinition() {
+		return outputDefinition;
+	}
+
 	public void parse(ExpressionFactory factory, String contextDescription, Task task, OperationResult result)
 			throws SchemaException, ObjectNotFoundException {
 		if (expressionType == null) {
@@ -16,7 +16,9 @@
 package com.evolveum.midpoint.model.common.expression;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
@@ -30,23 +32,53 @@ import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ExpressionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 /**
+ * Creates parsed (prepared) expressions. Parsed expressions are immutable and they are cached, so the same
+ * expression is not parsed again and again. There are two caches:
+ * 
+ * Expressions that belong to a configuration object (resource, role, object template, ...) are cached
+ * by the OID and version of the owning object and by the location of the expression in that object.
+ * The key does not depend on the expression definition instance, so the entry is found also when the owner
+ * is read from the repository again. The cache is implicitly invalidated when the owner is modified, as its
+ * version changes. Other expressions are cached by their content.
+ * 
+ * Both caches are bounded, least recently used expressions are evicted first.
+ * 
  * @author semancik
  *
  */
 public class ExpressionFactory {
 	
+	public static final int DEFAULT_CACHE_MAX_SIZE = 5000;
+	
 	private Map<QName,ExpressionEvaluatorFactory> evaluatorFactoriesMap = new HashMap<QName, ExpressionEvaluatorFactory>();
 	private ExpressionEvaluatorFactory defaultEvaluatorFactory;
-	private Map<ExpressionIdentifier, Expression<?,?>> cache = new HashMap<ExpressionIdentifier, Expression<?,?>>();
+	private final Map<ExpressionIdentifier, Expression<?,?>> cache;
+	private final Map<OwnedExpressionIdentifier, Expression<?,?>> ownedCache;
 	private PrismContext prismContext;
 	private ObjectResolver objectResolver;
 	
 	public ExpressionFactory(ObjectResolver objectResolver, PrismContext prismContext) {
+		this(objectResolver, prismContext, DEFAULT_CACHE_MAX_SIZE);
+	}
+	
+	public ExpressionFactory(ObjectResolver objectResolver, PrismContext prismContext, int cacheMaxSize) {
 		super();
 		this.objectResolver = objectResolver;
 		this.prismContext = prismContext;
+		this.cache = createCache(cacheMaxSize);
+		this.ownedCache = createCache(cacheMaxSize);
+	}
+	
+	private static <K,V> Map<K,V> createCache(final int maxSize) {
+		return Collections.synchronizedMap(new LinkedHashMap<K,V>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K,V> eldest) {
+				return size() > maxSize;
+			}
+		});
 	}
 		
 	public PrismContext getPrismContext() {
@@ -70,6 +102,47 @@ public class ExpressionFactory {
 		}
 		return expression;
 	}
+	
+	/**
+	 * Returns parsed expression that is part of the owner object. The expression is identified by the
+	 * owner OID, owner version and the location of the expression in the owner (e.g. mapping target path).
+	 * The location does not have to be unique: the cached expression is only used if its definition
+	 * is the same as the requested one. Otherwise, or if the owner has no OID or version (e.g. it was not
+	 * stored in the repository yet), the expression is cached only by its content.
+	 */
+	public <V extends PrismValue,D extends ItemDefinition> Expression<V,D> makeExpression(ExpressionType expressionType,
+			D outputDefinition, ObjectType owner, String location, String shortDesc, Task task, OperationResult result)
+					throws SchemaException, ObjectNotFoundException {
+		if (owner == null || owner.getOid() == null || owner.getVersion() == null || location == null || expressionType == null) {
+			return makeExpression(expressionType, outputDefinition, shortDesc, task, result);
+		}
+		OwnedExpressionIdentifier oeid = new OwnedExpressionIdentifier(owner.getOid(), owner.getVersion(), location);
+		Expression<V,D> expression = (Expression<V,D>) ownedCache.get(oeid);
+		if (expression == null || !isSameDefinition(expression, expressionType, outputDefinition)) {
+			expression = makeExpression(expressionType, outputDefinition, shortDesc, task, result);
+			ownedCache.put(oeid, expression);
+		}
+		return expression;
+	}
+
+	private boolean isSameDefinition(Expression<?,?> expression, ExpressionType expressionType, ItemDefinition outputDefinition) {
+		if (expression.getExpressionType() != expressionType && !expressionType.equals(expression.getExpressionType())) {
+			return false;
+		}
+		if (outputDefinition == null) {
+			return expression.getOutputDefinition() == null;
+		}
+		return outputDefinition == expression.getOutputDefinition() || outputDefinition.equals(expression.getOutputDefinition());
+	}
+	
+	public void clearCache() {
+		cache.clear();
+		ownedCache.clear();
+	}
+	
+	public int getCacheSize() {
+		return cache.size() + ownedCache.size();
+	}
 
 	private <V extends PrismValue,D extends ItemDefinition> Expression<V,D> createExpression(ExpressionType expressionType,
 																							 D outputDefinition, String shortDesc, Task task, OperationResult result)
@@ -160,4 +233,35 @@ public class ExpressionFactory {
 		}
 	}
 
+	private static class OwnedExpressionIdentifier {
+		private final String ownerOid;
+		private final String ownerVersion;
+		private final String location;
+		
+		OwnedExpressionIdentifier(String ownerOid, String ownerVersion, String location) {
+			this.ownerOid = ownerOid;
+			this.ownerVersion = ownerVersion;
+			this.location = location;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = ownerOid.hashCode();
+			result = prime * result + ownerVersion.hashCode();
+			result = prime * result + location.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof OwnedExpressionIdentifier))
+				return false;
+			OwnedExpressionIdentifier other = (OwnedExpressionIdentifier) obj;
+			return ownerOid.equals(other.ownerOid) && ownerVersion.equals(other.ownerVersion) && location.equals(other.location);
+		}
+	}
+
 }
@@ -59,4 +59,10 @@ public interface ScriptEvaluator {
 	 */
 	public String getLanguageUrl();
 
+	/**
+	 * Prepares the script for evaluation (e.g. compiles it and caches the result), so the
+	 * first evaluation does not need to do that. Evaluators that do not compile scripts do nothing.
+	 */
+	public void precompile(ScriptExpressionEvaluatorType expressionType, String contextDescription) throws ExpressionEvaluationException;
+
 }
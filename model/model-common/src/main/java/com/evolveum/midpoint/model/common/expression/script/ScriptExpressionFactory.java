@@ -88,6 +88,13 @@ public class ScriptExpressionFactory {
 		return expression;
 	}
 	
+	/**
+	 * Compiles the script (if the language supports that) so it is ready in the cache when it is evaluated.
+	 */
+	public void precompile(ScriptExpressionEvaluatorType expressionType, String shortDesc) throws ExpressionSyntaxException, ExpressionEvaluationException {
+		getEvaluator(getLanguage(expressionType), shortDesc).precompile(expressionType, shortDesc);
+	}
+
 	public void registerEvaluator(String language, ScriptEvaluator evaluator) {
 		if (evaluatorMap.containsKey(language)) {
 			throw new IllegalArgumentException("Evaluator for language "+language+" already registered");
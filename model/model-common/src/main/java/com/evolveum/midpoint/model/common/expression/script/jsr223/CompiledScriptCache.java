@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.common.expression.script.jsr223;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import com.evolveum.midpoint.common.monitor.InternalMonitor;
+import com.evolveum.midpoint.util.DebugDumpable;
+import com.evolveum.midpoint.util.DebugUtil;
+import com.evolveum.midpoint.util.exception.SystemException;
+
+/**
+ * Bounded cache of compiled scripts. Least recently used scripts are evicted when the cache is full.
+ *
+ * The scripts are keyed by language and code. Each script is compiled only once even if it is requested
+ * by several threads at the same time: the first thread compiles it, other threads wait for the result.
+ * If the compilation fails the script is not cached, so the next request tries to compile it again.
+ *
+ * The cache also keeps evaluation statistics for each script, to be used for profiling.
+ *
+ * @author agent
+ */
+public class CompiledScriptCache implements DebugDumpable {
+
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	private final int maxSize;
+
+	// guarded by itself; access order is used to implement LRU eviction
+	private final Map<Key, Entry> entries;
+
+	public CompiledScriptCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public CompiledScriptCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Script cache size must be positive, it is " + maxSize);
+		}
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > CompiledScriptCache.this.maxSize;
+			}
+		};
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns cache entry for the script, compiling the script if needed. If the script is just being
+	 * compiled by another thread, waits for that compilation to finish.
+	 */
+	public Entry getOrCompile(String language, final String code, final Compilable compiler) throws ScriptException {
+		Key key = new Key(language, code);
+		Entry entry;
+		boolean compileHere = false;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry(language, code, compiler);
+				entries.put(key, entry);
+				compileHere = true;
+			}
+		}
+		if (compileHere) {
+			entry.compilation.run();
+		}
+		try {
+			entry.getCompiledScript();
+		} catch (ScriptException e) {
+			synchronized (entries) {
+				if (entries.get(key) == entry) {
+					entries.remove(key);
+				}
+			}
+			throw e;
+		}
+		return entry;
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Returns statistics for all scripts currently in the cache, the most time-consuming scripts first.
+	 */
+	public List<ScriptStatistics> getStatistics() {
+		List<ScriptStatistics> rv = new ArrayList<>();
+		synchronized (entries) {
+			for (Entry entry : entries.values()) {
+				rv.add(new ScriptStatistics(entry));
+			}
+		}
+		Collections.sort(rv, new Comparator<ScriptStatistics>() {
+			@Override
+			public int compare(ScriptStatistics o1, ScriptStatistics o2) {
+				return Long.compare(o2.getTotalEvaluationTime(), o1.getTotalEvaluationTime());
+			}
+		});
+		return rv;
+	}
+
+	@Override
+	public String debugDump() {
+		return debugDump(0);
+	}
+
+	@Override
+	public String debugDump(int indent) {
+		StringBuilder sb = new StringBuilder();
+		DebugUtil.indentDebugDump(sb, indent);
+		sb.append("CompiledScriptCache: ").append(size()).append(" of max ").append(maxSize).append(" scripts");
+		for (ScriptStatistics statistics : getStatistics()) {
+			sb.append("\n");
+			DebugUtil.indentDebugDump(sb, indent + 1);
+			sb.append(statistics);
+		}
+		return sb.toString();
+	}
+
+	private static class Key {
+		private final String language;
+		private final String code;
+		private final int hashCode;
+
+		Key(String language, String code) {
+			this.language = language;
+			this.code = code;
+			this.hashCode = 31 * (language != null ? language.hashCode() : 0) + code.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return hashCode == other.hashCode && code.equals(other.code)
+					&& (language != null ? language.equals(other.language) : other.language == null);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	public static class Entry {
+		private final String language;
+		private final String code;
+		private final FutureTask<CompiledScript> compilation;
+		private volatile long compilationTime;
+		private final AtomicLong evaluationCount = new AtomicLong();
+		private final AtomicLong totalEvaluationTime = new AtomicLong();		// nanoseconds
+
+		private Entry(String language, final String code, final Compilable compiler) {
+			this.language = language;
+			this.code = code;
+			this.compilation = new FutureTask<>(new Callable<CompiledScript>() {
+				@Override
+				public CompiledScript call() throws ScriptException {
+					long start = System.nanoTime();
+					InternalMonitor.recordScriptCompile();
+					CompiledScript compiledScript = compiler.compile(code);
+					compilationTime = System.nanoTime() - start;
+					return compiledScript;
+				}
+			});
+		}
+
+		public CompiledScript getCompiledScript() throws ScriptException {
+			try {
+				return compilation.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ScriptException("Interrupted while waiting for script compilation");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof ScriptException) {
+					throw (ScriptException) e.getCause();
+				} else if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				} else {
+					throw new SystemException(e.getCause());
+				}
+			}
+		}
+
+		public void recordEvaluation(long nanos) {
+			evaluationCount.incrementAndGet();
+			totalEvaluationTime.addAndGet(nanos);
+		}
+	}
+
+	/**
+	 * Snapshot of statistics of a single cached script. All times are in nanoseconds.
+	 */
+	public static class ScriptStatistics {
+		private final String language;
+		private final String code;
+		private final long compilationTime;
+		private final long evaluationCount;
+		private final long totalEvaluationTime;
+
+		private ScriptStatistics(Entry entry) {
+			this.language = entry.language;
+			this.code = entry.code;
+			this.compilationTime = entry.compilationTime;
+			this.evaluationCount = entry.evaluationCount.get();
+			this.totalEvaluationTime = entry.totalEvaluationTime.get();
+		}
+
+		public String getLanguage() {
+			return language;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public long getCompilationTime() {
+			return compilationTime;
+		}
+
+		public long getEvaluationCount() {
+			return evaluationCount;
+		}
+
+		public long getTotalEvaluationTime() {
+			return totalEvaluationTime;
+		}
+
+		public long getAverageEvaluationTime() {
+			return evaluationCount > 0 ? totalEvaluationTime / evaluationCount : 0;
+		}
+
+		@Override
+		public String toString() {
+			return "evaluations: " + evaluationCount + ", total: " + totalEvaluationTime / 1000000 + " ms, avg: "
+					+ getAverageEvaluationTime() / 1000 + " us, compilation: " + compilationTime / 1000000 + " ms; "
+					+ DebugUtil.excerpt(code, 60);
+		}
+	}
+}
@@ -18,13 +18,10 @@ package com.evolveum.midpoint.model.common.expression.script.jsr223;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
-import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -77,9 +74,13 @@ public class Jsr223ScriptEvaluator implements ScriptEvaluator {
 	private PrismContext prismContext;
 	private Protector protector;
 	
-	private Map<String, CompiledScript> scriptCache;
+	private CompiledScriptCache scriptCache;
 	
 	public Jsr223ScriptEvaluator(String engineName, PrismContext prismContext, Protector protector) {
+		this(engineName, prismContext, protector, CompiledScriptCache.DEFAULT_MAX_SIZE);
+	}
+
+	public Jsr223ScriptEvaluator(String engineName, PrismContext prismContext, Protector protector, int scriptCacheMaxSize) {
 		ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
 		scriptEngine = scriptEngineManager.getEngineByName(engineName);
 		if (scriptEngine == null) {
@@ -87,7 +88,11 @@ public class Jsr223ScriptEvaluator implements ScriptEvaluator {
 		}
 		this.prismContext = prismContext;
 		this.protector = protector;
-		this.scriptCache = new ConcurrentHashMap<String, CompiledScript>();
+		this.scriptCache = new CompiledScriptCache(scriptCacheMaxSize);
+	}
+
+	public CompiledScriptCache getScriptCache() {
+		return scriptCache;
 	}
 	
 	@Override
@@ -109,15 +114,7 @@ public class Jsr223ScriptEvaluator implements ScriptEvaluator {
 			allowEmptyValues = expressionType.isAllowEmptyValues();
 		}
 		
-		CompiledScript compiledScript = createCompiledScript(codeString, contextDescription);
-		
-		Object evalRawResult;
-		try {
-			InternalMonitor.recordScriptExecution();
-			evalRawResult = compiledScript.eval(bindings);
-		} catch (ScriptException e) {
-			throw new ExpressionEvaluationException(e.getMessage() + " " + contextDescription, e);
-		}
+		Object evalRawResult = evaluateCompiledScript(codeString, bindings, contextDescription);
 		
 		if (outputDefinition == null) {
 			// No outputDefinition means "void" return type, we can return right now
@@ -211,34 +208,39 @@ public class Jsr223ScriptEvaluator implements ScriptEvaluator {
 //			allowEmptyValues = expressionType.isAllowEmptyValues();
 //		}
 		
-		CompiledScript compiledScript = createCompiledScript(codeString, contextDescription);
-		
-		Object evalRawResult;
-		try {
-			InternalMonitor.recordScriptExecution();
-			evalRawResult = compiledScript.eval(bindings);
-		} catch (ScriptException e) {
-			throw new ExpressionEvaluationException(e.getMessage() + " " + contextDescription, e);
-		}
+		Object evalRawResult = evaluateCompiledScript(codeString, bindings, contextDescription);
 		
 		
 				
 		return evalRawResult;
 	}
 	
-	private CompiledScript createCompiledScript(String codeString, String contextDescription) throws ExpressionEvaluationException {
-		CompiledScript compiledScript = scriptCache.get(codeString);
-		if (compiledScript != null) {
-			return compiledScript;
+	@Override
+	public void precompile(ScriptExpressionEvaluatorType expressionType, String contextDescription) throws ExpressionEvaluationException {
+		if (expressionType.getCode() != null) {
+			getCachedScript(expressionType.getCode(), contextDescription);
 		}
+	}
+
+	private Object evaluateCompiledScript(String codeString, Bindings bindings, String contextDescription) throws ExpressionEvaluationException {
+		CompiledScriptCache.Entry cachedScript = getCachedScript(codeString, contextDescription);
+		long start = System.nanoTime();
+		try {
+			InternalMonitor.recordScriptExecution();
+			return cachedScript.getCompiledScript().eval(bindings);
+		} catch (ScriptException e) {
+			throw new ExpressionEvaluationException(e.getMessage() + " " + contextDescription, e);
+		} finally {
+			cachedScript.recordEvaluation(System.nanoTime() - start);
+		}
+	}
+
+	private CompiledScriptCache.Entry getCachedScript(String codeString, String contextDescription) throws ExpressionEvaluationException {
 		try {
-			InternalMonitor.recordScriptCompile();
-			compiledScript = ((Compilable)scriptEngine).compile(codeString);
+			return scriptCache.getOrCompile(getLanguageUrl(), codeString, (Compilable) scriptEngine);
 		} catch (ScriptException e) {
 			throw new ExpressionEvaluationException(e.getMessage() + " " + contextDescription, e);
 		}
-		scriptCache.put(codeString, compiledScript);
-		return compiledScript;
 	}
 
 	private <T> T convertScalarResult(Class<T> expectedType, Object rawValue, String contextDescription) throws ExpressionEvaluationException {
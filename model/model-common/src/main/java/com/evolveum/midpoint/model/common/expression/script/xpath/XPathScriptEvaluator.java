@@ -415,4 +415,9 @@ public class XPathScriptEvaluator implements ScriptEvaluator {
 		return XPATH_LANGUAGE_URL;
 	}
 
+	@Override
+	public void precompile(ScriptExpressionEvaluatorType expressionType, String contextDescription) {
+		// XPath expressions are not cached, nothing to do
+	}
+
 }
@@ -935,10 +935,12 @@ public class Mapping<V extends PrismValue,D extends ItemDefinition> implements D
 			return;
 		}
 		PrismPropertyDefinition<Boolean> conditionOutput = new PrismPropertyDefinition<>(CONDITION_OUTPUT_NAME, DOMUtil.XSD_BOOLEAN, expressionFactory.getPrismContext());
+		String conditionDesc = "condition in "+getMappingContextDescription();
+		// The parsed condition is shared by all evaluations of this mapping in this version of origin object
 		Expression<PrismPropertyValue<Boolean>,PrismPropertyDefinition<Boolean>> expression = expressionFactory.makeExpression(conditionExpressionType, 
-				conditionOutput, "condition in "+getMappingContextDescription(), task, result);
+				conditionOutput, originObject, getMappingLocation("condition"), conditionDesc, task, result);
 		ExpressionEvaluationContext params = new ExpressionEvaluationContext(sources, variables, 
-				"condition in "+getMappingContextDescription(), task, result);
+				conditionDesc, task, result);
 		params.setStringPolicyResolver(stringPolicyResolver);
 		params.setExpressionFactory(expressionFactory);
 		params.setDefaultSource(defaultSource);
@@ -954,10 +956,11 @@ public class Mapping<V extends PrismValue,D extends ItemDefinition> implements D
 		if (mappingType != null) {
 			expressionType = mappingType.getExpression();
 		}
-		expression = expressionFactory.makeExpression(expressionType, outputDefinition, 
-				"expression in "+getMappingContextDescription(), task, result);
+		String expressionDesc = "expression in "+getMappingContextDescription();
+		expression = expressionFactory.makeExpression(expressionType, outputDefinition, originObject, 
+				getMappingLocation("expression"), expressionDesc, task, result);
 		ExpressionEvaluationContext params = new ExpressionEvaluationContext(sources, variables, 
-				"expression in "+getMappingContextDescription(), task, result);
+				expressionDesc, task, result);
 		params.setDefaultSource(defaultSource);
 		params.setSkipEvaluationMinus(!conditionResultOld);
 		params.setSkipEvaluationPlus(!conditionResultNew);
@@ -987,6 +990,37 @@ public class Mapping<V extends PrismValue,D extends ItemDefinition> implements D
 		}
 	}
 	
+	/**
+	 * Location of the mapping part in the origin object, used as a key for caching parsed expressions.
+	 * It consists of mapping name and target path. This is not guaranteed to be unique (e.g. two unnamed
+	 * mappings with the same target in different constructions of one role), the expression factory
+	 * checks the definition on a cache hit.
+	 */
+	private String getMappingLocation(String part) {
+		StringBuilder sb = new StringBuilder(part);
+		sb.append(":");
+		if (mappingType != null && mappingType.getName() != null) {
+			sb.append(mappingType.getName());
+		}
+		sb.append(":");
+		if (mappingQName != null) {
+			sb.append(mappingQName);
+		}
+		sb.append(":");
+		if (outputPath != null) {
+			sb.append(outputPath);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns parsed expression that was used in the last evaluation. It is shared with other
+	 * mappings that use the same expression, therefore it must not be modified.
+	 */
+	public Expression<V,D> getExpression() {
+		return expression;
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.evolveum.midpoint.model.common.mapping.PrismValueDeltaSetTripleProducer#getOutputTriple()
 	 */
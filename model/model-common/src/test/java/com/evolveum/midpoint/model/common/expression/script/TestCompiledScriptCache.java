@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.common.expression.script;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.Reader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.common.expression.script.jsr223.CompiledScriptCache;
+import com.evolveum.midpoint.test.util.TestUtil;
+
+/**
+ * Tests the compiled script cache itself, using a stub compiler that only counts compilations.
+ *
+ * @author agent
+ */
+public class TestCompiledScriptCache {
+
+	private static final String LANGUAGE = "stub";
+
+	@Test
+	public void test100LruEviction() throws Exception {
+		final String TEST_NAME = "test100LruEviction";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		CompiledScriptCache cache = new CompiledScriptCache(2);
+		CountingCompiler compiler = new CountingCompiler();
+		cache.getOrCompile(LANGUAGE, "a", compiler);
+		cache.getOrCompile(LANGUAGE, "b", compiler);
+		cache.getOrCompile(LANGUAGE, "a", compiler);		// "a" is now the most recently used one
+		assertEquals("Wrong number of compilations", 2, compiler.getCount());
+
+		// WHEN
+		cache.getOrCompile(LANGUAGE, "c", compiler);
+
+		// THEN
+		assertEquals("Wrong cache size", 2, cache.size());
+		assertEquals("Wrong cached scripts", setOf("a", "c"), getCachedCodes(cache));
+
+		cache.getOrCompile(LANGUAGE, "a", compiler);
+		assertEquals("Cached script was compiled again", 3, compiler.getCount());
+		cache.getOrCompile(LANGUAGE, "b", compiler);
+		assertEquals("Evicted script was not compiled again", 4, compiler.getCount());
+		assertEquals("Wrong cache size", 2, cache.size());
+	}
+
+	@Test
+	public void test200SingleFlightCompilation() throws Exception {
+		final String TEST_NAME = "test200SingleFlightCompilation";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		final int THREADS = 10;
+		final CompiledScriptCache cache = new CompiledScriptCache(10);
+		final CountingCompiler compiler = new CountingCompiler();
+		compiler.block();
+		final CompiledScriptCache.Entry[] entries = new CompiledScriptCache.Entry[THREADS];
+		final Throwable[] errors = new Throwable[THREADS];
+		final CountDownLatch started = new CountDownLatch(THREADS);
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						entries[index] = cache.getOrCompile(LANGUAGE, "race", compiler);
+					} catch (Throwable t) {
+						errors[index] = t;
+					}
+				}
+			};
+		}
+
+		// WHEN
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		assertTrue("Threads did not start", started.await(10, TimeUnit.SECONDS));
+		assertTrue("Compilation did not start", compiler.awaitCompileStarted());
+		Thread.sleep(100);		// let the other threads reach the cache while the compilation is in progress
+		compiler.unblock();
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+
+		// THEN
+		assertEquals("Script compiled more than once", 1, compiler.getCount());
+		for (int i = 0; i < THREADS; i++) {
+			assertNull("Thread " + i + " failed: " + errors[i], errors[i]);
+			assertSame("Thread " + i + " got a different entry", entries[0], entries[i]);
+		}
+		assertEquals("Wrong cache size", 1, cache.size());
+	}
+
+	@Test
+	public void test300FailedCompilationNotCached() throws Exception {
+		final String TEST_NAME = "test300FailedCompilationNotCached";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		CompiledScriptCache cache = new CompiledScriptCache(10);
+		CountingCompiler compiler = new CountingCompiler();
+		compiler.setFailing(true);
+
+		// WHEN
+		try {
+			cache.getOrCompile(LANGUAGE, "broken", compiler);
+			fail("Unexpected success");
+		} catch (ScriptException e) {
+			// expected
+		}
+
+		// THEN
+		assertEquals("Wrong number of compilations", 1, compiler.getCount());
+		assertEquals("Failed script is cached", 0, cache.size());
+
+		compiler.setFailing(false);
+		CompiledScriptCache.Entry entry = cache.getOrCompile(LANGUAGE, "broken", compiler);
+		assertEquals("Script was not compiled again", 2, compiler.getCount());
+		assertEquals("Wrong cache size", 1, cache.size());
+		assertSame("Wrong entry", entry, cache.getOrCompile(LANGUAGE, "broken", compiler));
+		assertEquals("Script compiled once more", 2, compiler.getCount());
+	}
+
+	private Set<String> getCachedCodes(CompiledScriptCache cache) {
+		Set<String> codes = new HashSet<>();
+		for (CompiledScriptCache.ScriptStatistics statistics : cache.getStatistics()) {
+			codes.add(statistics.getCode());
+		}
+		return codes;
+	}
+
+	private Set<String> setOf(String... codes) {
+		Set<String> set = new HashSet<>();
+		for (String code : codes) {
+			set.add(code);
+		}
+		return set;
+	}
+
+	private static class CountingCompiler implements Compilable {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private final CountDownLatch compileStarted = new CountDownLatch(1);
+		private volatile CountDownLatch gate;
+		private volatile boolean failing;
+
+		void block() {
+			gate = new CountDownLatch(1);
+		}
+
+		void unblock() {
+			gate.countDown();
+		}
+
+		boolean awaitCompileStarted() throws InterruptedException {
+			return compileStarted.await(10, TimeUnit.SECONDS);
+		}
+
+		void setFailing(boolean failing) {
+			this.failing = failing;
+		}
+
+		int getCount() {
+			return count.get();
+		}
+
+		@Override
+		public CompiledScript compile(String script) throws ScriptException {
+			count.incrementAndGet();
+			compileStarted.countDown();
+			if (gate != null) {
+				try {
+					gate.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (failing) {
+				throw new ScriptException("Cannot compile " + script);
+			}
+			return new CompiledScript() {
+				@Override
+				public Object eval(ScriptContext context) {
+					return null;
+				}
+
+				@Override
+				public ScriptEngine getEngine() {
+					return null;
+				}
+			};
+		}
+
+		@Override
+		public CompiledScript compile(Reader script) throws ScriptException {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
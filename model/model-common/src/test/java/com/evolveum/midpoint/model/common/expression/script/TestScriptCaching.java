@@ -129,6 +129,29 @@ public class TestScriptCaching {
     	assertTrue("Even Horatio was wrong! "+horatio1Time+" -> "+horatio2Time, horatio2Time <= horatio1Time);
     }
     	
+    @Test
+    public void testPrecompile() throws Exception {
+    	final String TEST_NAME = "testPrecompile";
+    	TestUtil.displayTestTile(TEST_NAME);
+    	
+    	// GIVEN
+    	InternalMonitor.reset();
+    	ScriptExpressionEvaluatorType scriptType = parseScriptType("expression-simple.xml");
+    	
+    	// WHEN
+    	scriptExpressionfactory.precompile(scriptType, TEST_NAME);
+    	
+    	// THEN
+    	assertScriptMonitor(1,0, "precompile");
+    	
+    	scriptExpressionfactory.precompile(scriptType, TEST_NAME);
+    	assertScriptMonitor(1,0, "second precompile");
+    	
+    	// Already compiled. No compilation.
+    	executeScript("expression-simple.xml", "foobar", "precompiled");
+    	assertScriptMonitor(1,1, "precompiled");
+    }
+    
     private void assertScriptMonitor(int expCompilations, int expExecutions, String desc) {
 		assertEquals("Unexpected number of script compilations after "+desc, expCompilations, InternalMonitor.getScriptCompileCount());
 		assertEquals("Unexpected number of script executions after "+desc, expExecutions, InternalMonitor.getScriptExecutionCount());
@@ -110,6 +110,10 @@ public class MappingTestEvaluator {
         mappingFactory.setProtector(protector);
     }
 	
+	public MappingFactory getMappingFactory() {
+		return mappingFactory;
+	}
+
 	public AESProtector getProtector() {
 		return protector;
 	}
@@ -150,9 +154,16 @@ public class MappingTestEvaluator {
 	public <T> Mapping<PrismPropertyValue<T>, PrismPropertyDefinition<T>> createMapping(String filename, String testName, final StringPolicyType policy, 
 			ItemPath defaultTargetPropertyPath, ObjectDelta<UserType> userDelta,  PrismObject<UserType> userOld)
             throws SchemaException, IOException, JAXBException  {
-    
-        MappingType mappingType = PrismTestUtil.parseAtomicValue(
-                new File(TEST_DIR, filename), MappingType.COMPLEX_TYPE);
+		return createMapping(parseMapping(filename), testName, policy, defaultTargetPropertyPath, userDelta, userOld);
+	}
+	
+	public MappingType parseMapping(String filename) throws SchemaException, IOException {
+		return PrismTestUtil.parseAtomicValue(new File(TEST_DIR, filename), MappingType.COMPLEX_TYPE);
+	}
+	
+	public <T> Mapping<PrismPropertyValue<T>, PrismPropertyDefinition<T>> createMapping(MappingType mappingType, String testName, final StringPolicyType policy, 
+			ItemPath defaultTargetPropertyPath, ObjectDelta<UserType> userDelta,  PrismObject<UserType> userOld)
+            throws SchemaException, IOException, JAXBException  {
 
         Mapping<PrismPropertyValue<T>,PrismPropertyDefinition<T>> mapping = mappingFactory.createMapping(mappingType, testName);
         
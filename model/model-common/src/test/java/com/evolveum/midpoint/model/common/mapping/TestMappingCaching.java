@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.common.mapping;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.io.IOException;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.model.common.expression.ExpressionFactory;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismPropertyDefinition;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.util.PrismAsserts;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.MappingType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEvaluatorType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Checks that parsed mapping expressions are shared among evaluations of the same mapping definition
+ * in the same version of the owner object. Throughput is measured by MappingBenchmark in testing/microbenchmarks.
+ *
+ * @author agent
+ */
+public class TestMappingCaching {
+
+	private static final String MAPPING_FILENAME = "mapping-script-system-variables-condition-groovy.xml";
+	private static final String OWNER_OID = "ef2bc95b-76e0-59e2-86d6-9999cccccccc";
+
+	private MappingTestEvaluator evaluator;
+	private MappingType mappingType;
+
+	@BeforeClass
+	public void setupFactory() throws SAXException, IOException, SchemaException {
+		evaluator = new MappingTestEvaluator();
+		evaluator.init();
+		mappingType = evaluator.parseMapping(MAPPING_FILENAME);
+	}
+
+	@Test
+	public void test100SameOwnerVersion() throws Exception {
+		final String TEST_NAME = "test100SameOwnerVersion";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		ResourceType owner = createOwner("1");
+
+		// WHEN
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping1 = evaluateMapping(TEST_NAME, mappingType, owner);
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping2 = evaluateMapping(TEST_NAME, mappingType, owner);
+
+		// THEN
+		assertSame("Expression was not reused", mapping1.getExpression(), mapping2.getExpression());
+	}
+
+	@Test
+	public void test110NewOwnerVersion() throws Exception {
+		final String TEST_NAME = "test110NewOwnerVersion";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		ExpressionFactory expressionFactory = evaluator.getMappingFactory().getExpressionFactory();
+		evaluateMapping(TEST_NAME, mappingType, createOwner("10"));
+		int cacheSizeBefore = expressionFactory.getCacheSize();
+
+		// WHEN
+		evaluateMapping(TEST_NAME, mappingType, createOwner("10"));
+		int cacheSizeSameVersion = expressionFactory.getCacheSize();
+		evaluateMapping(TEST_NAME, mappingType, createOwner("11"));
+		int cacheSizeNewVersion = expressionFactory.getCacheSize();
+
+		// THEN
+		assertEquals("Cache grew for the same owner version", cacheSizeBefore, cacheSizeSameVersion);
+		// condition + expression
+		assertEquals("Unexpected cache growth for new owner version", cacheSizeBefore + 2, cacheSizeNewVersion);
+	}
+
+	/**
+	 * The owner is re-parsed (e.g. it was fetched again from the repository). The expressions are found
+	 * by owner OID, version and mapping location, the key does not depend on the definition instance.
+	 */
+	@Test
+	public void test120ReparsedDefinition() throws Exception {
+		final String TEST_NAME = "test120ReparsedDefinition";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		ResourceType owner = createOwner("20");
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping1 = evaluateMapping(TEST_NAME, mappingType, owner);
+
+		// WHEN
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping2 =
+				evaluateMapping(TEST_NAME, evaluator.parseMapping(MAPPING_FILENAME), owner);
+
+		// THEN
+		assertSame("Expression was not reused", mapping1.getExpression(), mapping2.getExpression());
+	}
+
+	/**
+	 * A different expression at the same location in the same owner version (the location is not guaranteed
+	 * to be unique). The cached expression must not be used for it.
+	 */
+	@Test
+	public void test130DifferentDefinitionSameLocation() throws Exception {
+		final String TEST_NAME = "test130DifferentDefinitionSameLocation";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		ResourceType owner = createOwner("30");
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping1 = evaluateMapping(TEST_NAME, mappingType, owner);
+		MappingType otherMappingType = evaluator.parseMapping(MAPPING_FILENAME);
+		ScriptExpressionEvaluatorType script = (ScriptExpressionEvaluatorType) otherMappingType.getExpression().getExpressionEvaluator().get(0).getValue();
+		script.setCode("'Kapitan '+ name");
+
+		// WHEN
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping2 =
+				evaluateMapping(TEST_NAME, otherMappingType, owner, "Kapitan jack");
+
+		// THEN
+		assertNotSame("Expression of a different definition was reused", mapping1.getExpression(), mapping2.getExpression());
+	}
+
+	private ResourceType createOwner(String version) {
+		ResourceType owner = new ResourceType(evaluator.getPrismContext());
+		owner.setOid(OWNER_OID);
+		owner.setName(PrismTestUtil.createPolyStringType("Mapping owner"));
+		owner.setVersion(version);
+		return owner;
+	}
+
+	private Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> evaluateMapping(String testName,
+			MappingType mappingType, ResourceType owner) throws Exception {
+		return evaluateMapping(testName, mappingType, owner, "Captain jack");
+	}
+
+	private Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> evaluateMapping(String testName,
+			MappingType mappingType, ResourceType owner, String expectedOutput) throws Exception {
+		PrismObject<UserType> user = evaluator.getUserOld();
+		user.asObjectable().getEmployeeType().clear();
+		user.asObjectable().getEmployeeType().add("CAPTAIN");
+		ObjectDelta<UserType> delta = ObjectDelta.createAddDelta(user);
+
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping = evaluator.createMapping(
+				mappingType, testName, null, evaluator.toPath("title"), delta, null);
+		mapping.setOriginObject(owner);
+		OperationResult opResult = new OperationResult(testName);
+
+		mapping.evaluate(null, opResult);
+
+		PrismAsserts.assertTriplePlus(mapping.getOutputTriple(), PrismTestUtil.createPolyString(expectedOutput));
+		return mapping;
+	}
+}
@@ -15,10 +15,27 @@
  */
 package com.evolveum.midpoint.model.impl;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -28,19 +45,23 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.xml.namespace.QName;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.apache.cxf.jaxrs.ext.MessageContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import com.evolveum.midpoint.audit.api.AuditEventRecord;
@@ -50,19 +71,38 @@ import com.evolveum.midpoint.audit.api.AuditService;
 import com.evolveum.midpoint.model.api.ModelExecuteOptions;
 import com.evolveum.midpoint.model.api.PolicyViolationException;
 import com.evolveum.midpoint.model.impl.rest.PATCH;
+import com.evolveum.midpoint.prism.PrismConstants;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismPropertyDefinition;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.AndFilter;
+import com.evolveum.midpoint.prism.query.GreaterFilter;
+import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrderDirection;
 import com.evolveum.midpoint.prism.query.QueryJaxbConvertor;
+import com.evolveum.midpoint.prism.xnode.ListXNode;
+import com.evolveum.midpoint.prism.xnode.MapXNode;
+import com.evolveum.midpoint.prism.xnode.RootXNode;
+import com.evolveum.midpoint.prism.xnode.XNode;
 import com.evolveum.midpoint.schema.DeltaConvertor;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.constants.MidPointConstants;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
+import com.evolveum.midpoint.security.api.AuthorizationConstants;
+import com.evolveum.midpoint.security.api.SecurityEnforcer;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.DOMUtil;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.exception.CommunicationException;
 import com.evolveum.midpoint.util.exception.ConfigurationException;
@@ -72,10 +112,15 @@ import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.util.monitor.Gauge;
+import com.evolveum.midpoint.util.monitor.MetricsRegistry;
+import com.evolveum.midpoint.xml.ns._public.common.api_types_3.ObjectDeltaListType;
 import com.evolveum.midpoint.xml.ns._public.common.api_types_3.ObjectListType;
 import com.evolveum.midpoint.xml.ns._public.common.api_types_3.ObjectModificationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectDeltaOperationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceObjectShadowChangeDescriptionType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
@@ -99,16 +144,52 @@ public class ModelRestService {
 	
 	@Autowired(required = true)
 	private PrismContext prismContext;
+
+	@Autowired(required = true)
+	private SecurityEnforcer securityEnforcer;
 	
 	
 	private static final Trace LOGGER = TraceManager.getTrace(ModelRestService.class);
 	
 	public static final long WAIT_FOR_TASK_STOP = 2000L;
 	private static final String OPTIONS = "options";
+
+	private static final QName OBJECT_LIST_ROOT_ELEMENT = new QName(PrismConstants.NS_PREFIX + "debug", "debugPrintObject");
+
+	// max number of deltas from bulk requests that are executed concurrently (on the whole node)
+	private static final int BULK_WORKER_THREADS = 8;
+	private static final QName BULK_DELTA_OPERATION_ELEMENT = new QName(SchemaConstants.NS_API_TYPES, "deltaOperation");
+
+	private ExecutorService bulkExecutor;
 	
 	public ModelRestService() {
 		// nothing to do
 	}
+
+	@PostConstruct
+	public void initialize() {
+		bulkExecutor = Executors.newFixedThreadPool(BULK_WORKER_THREADS);
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) bulkExecutor;
+		MetricsRegistry.getInstance().registerGauge("threadPool.restBulk.active", new Gauge() {
+			@Override
+			public long getValue() {
+				return pool.getActiveCount();
+			}
+		});
+		MetricsRegistry.getInstance().registerGauge("threadPool.restBulk.queued", new Gauge() {
+			@Override
+			public long getValue() {
+				return pool.getQueue().size();
+			}
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (bulkExecutor != null) {
+			bulkExecutor.shutdownNow();
+		}
+	}
 	
 	@GET
 	@Path("/{type}/{id}")
@@ -488,6 +569,264 @@ public class ModelRestService {
 		return response;
 	}
 
+	/**
+	 * Streamed variant of {@link #searchObjects}. Objects are serialized as they are returned
+	 * by searchObjectsIterative, so the whole result list is never built in memory. The response
+	 * body has the same format as the one of {@link #searchObjects} (serialized ObjectListType)
+	 * and it is written with chunked transfer encoding.
+	 *
+	 * If pageSize is specified, only one page is returned. Objects are ordered by OID in that case;
+	 * the next page is requested by sending the OID of the last received object in the "afterOid"
+	 * parameter. Page shorter than pageSize means there are no more objects. Unlike offset-based
+	 * paging this neither skips nor repeats objects when objects are added or deleted in between.
+	 */
+	@POST
+	@Path("/{type}/search/stream")
+	public Response searchObjectsStreamed(@PathParam("type") String type, QueryType queryType,
+			@QueryParam("afterOid") String afterOid, @QueryParam("pageSize") Integer pageSize, @Context MessageContext mc) {
+
+		LOGGER.info("model rest service for streamed search operation start");
+
+		final Task task = taskManager.createTaskInstance("searchObjectsStreamed");
+		initRequest(task, mc);
+		final OperationResult parentResult = task.getResult();
+
+		final Class clazz = ObjectTypes.getClassFromRestType(type);
+		final ObjectQuery searchQuery;
+		final String[] envelope;
+		try {
+			ObjectQuery query = QueryJaxbConvertor.createObjectQuery(clazz, queryType, prismContext);
+			searchQuery = query != null ? query : new ObjectQuery();
+			if (pageSize != null) {
+				if (pageSize <= 0) {
+					auditLogout(task);
+					return Response.status(Status.BAD_REQUEST).entity("Page size must be positive").type(MediaType.TEXT_HTML).build();
+				}
+				setOidPaging(searchQuery, afterOid, pageSize);
+			} else if (StringUtils.isNotBlank(afterOid)) {
+				auditLogout(task);
+				return Response.status(Status.BAD_REQUEST).entity("The afterOid parameter requires pageSize").type(MediaType.TEXT_HTML).build();
+			}
+			envelope = serializeObjectListEnvelope();
+		} catch (SchemaException e) {
+			auditLogout(task);
+			return Response.status(Status.CONFLICT).entity(e.getMessage()).type(MediaType.TEXT_HTML).build();
+		}
+
+		StreamingOutput output = new StreamingOutput() {
+			@Override
+			public void write(final OutputStream outputStream) throws IOException, WebApplicationException {
+				final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "utf-8"));
+				final IOException[] writeException = new IOException[1];
+				ResultHandler<ObjectType> handler = new ResultHandler<ObjectType>() {
+					@Override
+					public boolean handle(PrismObject<ObjectType> object, OperationResult parentResult) {
+						try {
+							writer.write(serializeObjectListItem(object));
+							writer.write('\n');
+							writer.flush();
+							return true;
+						} catch (SchemaException e) {
+							LoggingUtils.logException(LOGGER, "Couldn't serialize {} in streamed search", e, object);
+							parentResult.recordPartialError("Couldn't serialize " + object + ": " + e.getMessage(), e);
+							return true;
+						} catch (IOException e) {
+							// most probably the client has closed the connection; there is no point in continuing
+							writeException[0] = e;
+							return false;
+						}
+					}
+				};
+				try {
+					writer.write(envelope[0]);
+					writer.write('\n');
+					model.searchObjectsIterative(clazz, searchQuery, handler, null, task, parentResult);
+					if (writeException[0] != null) {
+						throw writeException[0];
+					}
+					writer.write(envelope[1]);
+					writer.write('\n');
+					writer.flush();
+				} catch (SchemaException | ObjectNotFoundException | CommunicationException
+						| ConfigurationException | SecurityViolationException e) {
+					// the response status is already sent, the truncated document tells the client that something went wrong
+					LoggingUtils.logException(LOGGER, "Streamed search of {} failed", e, clazz.getSimpleName());
+					throw new WebApplicationException(e);
+				} finally {
+					parentResult.computeStatus();
+					auditLogout(task);
+				}
+			}
+		};
+
+		return Response.ok(output, MediaType.APPLICATION_XML_TYPE).build();
+	}
+
+	private void setOidPaging(ObjectQuery query, String afterOid, int pageSize) throws SchemaException {
+		ItemPath oidPath = new ItemPath(PrismConstants.T_ID);
+		query.setPaging(ObjectPaging.createPaging(null, pageSize, oidPath, OrderDirection.ASCENDING));
+		if (StringUtils.isBlank(afterOid)) {
+			return;
+		}
+		PrismPropertyDefinition<String> oidDefinition = new PrismPropertyDefinition<>(PrismConstants.T_ID, DOMUtil.XSD_STRING, prismContext);
+		ObjectFilter afterFilter = GreaterFilter.createGreater(oidPath, oidDefinition, afterOid, false);
+		if (query.getFilter() == null) {
+			query.setFilter(afterFilter);
+		} else {
+			query.setFilter(AndFilter.createAnd(query.getFilter(), afterFilter));
+		}
+	}
+
+	/**
+	 * Returns opening and closing tag of an (empty) object list, serialized in the same way
+	 * as the result of {@link #searchObjects}.
+	 */
+	private String[] serializeObjectListEnvelope() throws SchemaException {
+		String xml = prismContext.serializeAnyData(new ObjectListType(), OBJECT_LIST_ROOT_ELEMENT, PrismContext.LANG_XML).trim();
+		if (xml.startsWith("<?")) {
+			xml = xml.substring(xml.indexOf("?>") + 2).trim();
+		}
+		int nameEnd = 1;
+		while (nameEnd < xml.length() && !Character.isWhitespace(xml.charAt(nameEnd))
+				&& xml.charAt(nameEnd) != '>' && xml.charAt(nameEnd) != '/') {
+			nameEnd++;
+		}
+		String closingTag = "</" + xml.substring(1, nameEnd) + ">";
+		if (xml.endsWith("/>")) {
+			return new String[] { xml.substring(0, xml.length() - 2).trim() + ">", closingTag };
+		}
+		if (!xml.endsWith(closingTag)) {
+			throw new SchemaException("Unexpected serialization of object list: " + xml);
+		}
+		return new String[] { xml.substring(0, xml.length() - closingTag.length()).trim(), closingTag };
+	}
+
+	/**
+	 * Serializes one object as an item of the object list, i.e. exactly as it would appear
+	 * inside the object list returned by {@link #searchObjects}.
+	 */
+	private String serializeObjectListItem(PrismObject<? extends ObjectType> object) throws SchemaException {
+		ObjectListType listType = new ObjectListType();
+		listType.getObject().add(object.asObjectable());
+		RootXNode listNode = prismContext.getXnodeProcessor().serializeAnyData(listType, OBJECT_LIST_ROOT_ELEMENT, null);
+		MapXNode listMap = (MapXNode) listNode.getSubnode();
+		for (Map.Entry<QName, XNode> entry : listMap.entrySet()) {
+			XNode itemNode = entry.getValue();
+			if (itemNode instanceof ListXNode) {
+				itemNode = ((ListXNode) itemNode).get(0);
+			}
+			return prismContext.serializeXNodeToString(new RootXNode(entry.getKey(), itemNode), PrismContext.LANG_XML);
+		}
+		throw new SchemaException("Couldn't serialize " + object + " as an object list item");
+	}
+
+	/**
+	 * Executes a list of object deltas (additions, modifications, deletions) in one request.
+	 * Each delta is executed separately (in its own operation) using bounded pool of worker threads.
+	 * Results are streamed back as they are available - the order of results does not need to
+	 * correspond to the order of the deltas.
+	 */
+	@POST
+	@Path("/bulk")
+	@Consumes({"application/xml", "application/json"})
+	public Response executeChangesBulk(ObjectDeltaListType deltaList, @QueryParam("options") List<String> options,
+			@QueryParam("threads") Integer threads, @Context MessageContext mc) {
+
+		LOGGER.info("model rest service for bulk execute changes operation start");
+
+		final Task task = taskManager.createTaskInstance("executeChangesBulk");
+		initRequest(task, mc);
+
+		if (deltaList == null) {
+			auditLogout(task);
+			return Response.status(Status.BAD_REQUEST).entity("Delta list must not be null").type(MediaType.TEXT_HTML).build();
+		}
+
+		final List<ObjectDelta<? extends ObjectType>> deltas = new ArrayList<>();
+		try {
+			for (ObjectDelta delta : DeltaConvertor.createObjectDeltas(deltaList, prismContext)) {
+				prismContext.adopt(delta);
+				deltas.add(delta);
+			}
+		} catch (SchemaException e) {
+			auditLogout(task);
+			return Response.status(Status.CONFLICT).entity(e.getMessage()).type(MediaType.TEXT_HTML).build();
+		}
+
+		final ModelExecuteOptions modelExecuteOptions = ModelExecuteOptions.fromRestOptions(options);
+		final PrismObject<UserType> owner = task.getOwner();
+		final int parallelism = threads != null && threads > 0 ? Math.min(threads, BULK_WORKER_THREADS) : BULK_WORKER_THREADS;
+
+		StreamingOutput output = new StreamingOutput() {
+			@Override
+			public void write(OutputStream outputStream) throws IOException, WebApplicationException {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "utf-8"));
+				CompletionService<ObjectDeltaOperation<? extends ObjectType>> completionService = new ExecutorCompletionService<>(bulkExecutor);
+				Iterator<ObjectDelta<? extends ObjectType>> deltaIterator = deltas.iterator();
+				int running = 0;
+				try {
+					writer.write("<apti:objectDeltaOperationList xmlns:apti=\"" + SchemaConstants.NS_API_TYPES + "\">\n");
+					while (running < parallelism && deltaIterator.hasNext()) {
+						completionService.submit(createBulkItemExecution(deltaIterator.next(), modelExecuteOptions, owner));
+						running++;
+					}
+					while (running > 0) {
+						ObjectDeltaOperation<? extends ObjectType> deltaOperation = completionService.take().get();
+						running--;
+						if (deltaIterator.hasNext()) {
+							completionService.submit(createBulkItemExecution(deltaIterator.next(), modelExecuteOptions, owner));
+							running++;
+						}
+						ObjectDeltaOperationType deltaOperationType = DeltaConvertor.toObjectDeltaOperationType(deltaOperation, null);
+						writer.write(prismContext.serializeAnyData(deltaOperationType, BULK_DELTA_OPERATION_ELEMENT, PrismContext.LANG_XML));
+						writer.write('\n');
+						writer.flush();
+					}
+					writer.write("</apti:objectDeltaOperationList>\n");
+					writer.flush();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new WebApplicationException(e);
+				} catch (ExecutionException | SchemaException e) {
+					LoggingUtils.logException(LOGGER, "Bulk execution of changes failed", e);
+					throw new WebApplicationException(e);
+				} finally {
+					task.getResult().computeStatus();
+					auditLogout(task);
+				}
+			}
+		};
+
+		return Response.ok(output, MediaType.APPLICATION_XML_TYPE).build();
+	}
+
+	private Callable<ObjectDeltaOperation<? extends ObjectType>> createBulkItemExecution(final ObjectDelta<? extends ObjectType> delta,
+			final ModelExecuteOptions options, final PrismObject<UserType> owner) {
+		return new Callable<ObjectDeltaOperation<? extends ObjectType>>() {
+			@Override
+			public ObjectDeltaOperation<? extends ObjectType> call() {
+				// Task is not thread-safe, each worker needs its own one. Audit records are created for the whole request only.
+				Task itemTask = taskManager.createTaskInstance("executeChangesBulk.item");
+				itemTask.setOwner(owner);
+				itemTask.setChannel(SchemaConstants.CHANNEL_REST_URI);
+				OperationResult result = itemTask.getResult();
+				securityEnforcer.setupPreAuthenticatedSecurityContext(owner);
+				try {
+					model.executeChanges(MiscSchemaUtil.createCollection(delta), options, itemTask, result);
+					result.computeStatus();
+				} catch (ObjectAlreadyExistsException | ObjectNotFoundException | SchemaException
+						| ExpressionEvaluationException | CommunicationException | ConfigurationException
+						| PolicyViolationException | SecurityViolationException | RuntimeException e) {
+					LoggingUtils.logException(LOGGER, "Couldn't execute {} in bulk request", e, delta);
+					result.recordFatalError(e);
+				} finally {
+					SecurityContextHolder.clearContext();
+				}
+				return new ObjectDeltaOperation(delta, result);
+			}
+		};
+	}
+
 	@POST
 	@Path("/resources/{resourceOid}/import/{objectClass}")
 //	@Produces({"text/html", "application/xml"})
@@ -521,6 +860,29 @@ public class ModelRestService {
 		return response;
 	}
 
+	@GET
+	@Path("/metrics")
+	@Produces({"text/plain"})
+	public Response getMetrics(@Context MessageContext mc) {
+		Task task = taskManager.createTaskInstance("getMetrics");
+		initRequest(task, mc);
+		OperationResult parentResult = task.getResult();
+
+		Response response;
+		try {
+			securityEnforcer.authorize(AuthorizationConstants.AUTZ_REST_METRICS_URL, null, null, null, null, null, parentResult);
+			response = Response.ok(MetricsRegistry.getInstance().dump()).type(MediaType.TEXT_PLAIN).build();
+		} catch (SchemaException e) {
+			response = Response.status(Status.CONFLICT).entity(e.getMessage()).type(MediaType.TEXT_HTML).build();
+		} catch (SecurityViolationException e) {
+			response = Response.status(Status.FORBIDDEN).entity(e.getMessage()).type(MediaType.TEXT_HTML).build();
+		}
+
+		parentResult.computeStatus();
+		auditLogout(task);
+		return response;
+	}
+
 	@POST
 	@Path("/resources/{resourceOid}/test")
 //	@Produces({"text/html", "application/xml"})
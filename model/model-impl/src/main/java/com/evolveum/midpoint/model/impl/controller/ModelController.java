@@ -68,6 +68,7 @@ import com.evolveum.midpoint.model.api.hooks.HookRegistry;
 import com.evolveum.midpoint.model.impl.ModelObjectResolver;
 import com.evolveum.midpoint.model.impl.importer.ImportAccountsFromResourceTaskHandler;
 import com.evolveum.midpoint.model.impl.importer.ObjectImporter;
+import com.evolveum.midpoint.model.impl.expr.ScriptPrecompiler;
 import com.evolveum.midpoint.model.impl.lens.ChangeExecutor;
 import com.evolveum.midpoint.model.impl.lens.Clockwork;
 import com.evolveum.midpoint.model.impl.lens.ContextFactory;
@@ -211,6 +212,9 @@ public class ModelController implements ModelService, TaskService, WorkflowServi
 
 	@Autowired(required = true)
 	SystemConfigurationHandler systemConfigurationHandler;
+
+	@Autowired(required = true)
+	private ScriptPrecompiler scriptPrecompiler;
 	
 	@Autowired(required = true)
 	private AuditService auditService;
@@ -1521,6 +1525,8 @@ public class ModelController implements ModelService, TaskService, WorkflowServi
 		// Initialize provisioning
 		provisioning.postInit(result);
 
+		scriptPrecompiler.precompileAllInBackground();
+
         if (result.isUnknown()) {
 		    result.computeStatus();
         }
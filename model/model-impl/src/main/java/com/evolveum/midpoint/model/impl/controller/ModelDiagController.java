@@ -17,6 +17,7 @@ package com.evolveum.midpoint.model.impl.controller;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.namespace.QName;
 
@@ -29,6 +30,9 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.model.api.ModelDiagnosticService;
+import com.evolveum.midpoint.model.common.expression.script.ScriptEvaluator;
+import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionFactory;
+import com.evolveum.midpoint.model.common.expression.script.jsr223.Jsr223ScriptEvaluator;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismObjectDefinition;
@@ -90,6 +94,9 @@ public class ModelDiagController implements ModelDiagnosticService {
 
 	@Autowired
 	private SecurityEnforcer securityEnforcer;
+
+	@Autowired
+	private ScriptExpressionFactory scriptExpressionFactory;
 	
 	private RandomString randomString;
 
@@ -149,6 +156,27 @@ public class ModelDiagController implements ModelDiagnosticService {
 		}
 	}
 
+	@Override
+	public String getScriptCacheDiag(Task task, OperationResult parentResult) throws SchemaException, SecurityViolationException {
+		OperationResult result = parentResult.createMinorSubresult(GET_SCRIPT_CACHE_DIAG);
+		try {
+			securityEnforcer.authorize(AuthorizationConstants.AUTZ_ALL_URL, null, null, null, null, null, result);	// script code is shown
+			StringBuilder sb = new StringBuilder();
+			for (Map.Entry<String, ScriptEvaluator> entry : scriptExpressionFactory.getEvaluators().entrySet()) {
+				if (entry.getValue() instanceof Jsr223ScriptEvaluator) {
+					sb.append(entry.getKey()).append("\n");
+					sb.append(((Jsr223ScriptEvaluator) entry.getValue()).getScriptCache().debugDump(1)).append("\n");
+				}
+			}
+			return sb.toString();
+		} catch (Throwable t) {
+			result.recordFatalError(t);
+			throw t;
+		} finally {
+			result.computeStatusIfUnknown();
+		}
+	}
+
 	@Override
 	public OperationResult provisioningSelfTest(Task task) {
 		OperationResult testResult = new OperationResult(PROVISIONING_SELF_TEST);
@@ -41,6 +41,7 @@ import com.evolveum.midpoint.model.impl.ModelObjectResolver;
 import com.evolveum.midpoint.model.impl.lens.ContextFactory;
 import com.evolveum.midpoint.model.impl.lens.LensContext;
 import com.evolveum.midpoint.model.impl.lens.projector.Projector;
+import com.evolveum.midpoint.model.impl.util.LookupTableCache;
 import com.evolveum.midpoint.prism.DisplayableValueImpl;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
@@ -61,6 +62,7 @@ import com.evolveum.midpoint.prism.query.TypeFilter;
 import com.evolveum.midpoint.provisioning.api.ProvisioningService;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.RelationalValueSearchQuery;
 import com.evolveum.midpoint.schema.RetrieveOption;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -143,6 +145,9 @@ public class ModelInteractionServiceImpl implements ModelInteractionService {
 
 	@Autowired(required = true)
 	private PrismContext prismContext;
+
+	@Autowired(required = true)
+	private LookupTableCache lookupTableCache;
 	
 	/* (non-Javadoc)
 	 * @see com.evolveum.midpoint.model.api.ModelInteractionService#previewChanges(com.evolveum.midpoint.prism.delta.ObjectDelta, com.evolveum.midpoint.schema.result.OperationResult)
@@ -639,4 +644,40 @@ public class ModelInteractionServiceImpl implements ModelInteractionService {
 		return cmp;
 	}
 
+
+	@Override
+	public List<LookupTableRowType> searchLookupTableRows(String lookupTableOid, RelationalValueSearchQuery query, Task task,
+			OperationResult parentResult) throws ObjectNotFoundException, SchemaException, SecurityViolationException {
+		OperationResult result = parentResult.createMinorSubresult(SEARCH_LOOKUP_TABLE_ROWS);
+		result.addParam("lookupTableOid", lookupTableOid);
+		result.addParam("query", query);
+		try {
+			PrismObject<LookupTableType> lookupTable = lookupTableCache.getTableObject(lookupTableOid, result);
+			securityEnforcer.authorize(ModelAuthorizationAction.READ.getUrl(), null, lookupTable, null, null, null, result);
+			List<LookupTableRowType> rows = lookupTableCache.searchRows(lookupTableOid, query, result);
+			result.recordSuccess();
+			return rows;
+		} catch (ObjectNotFoundException|SchemaException|SecurityViolationException|RuntimeException e) {
+			result.recordFatalError(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public PrismObject<LookupTableType> getLookupTable(String lookupTableOid, Task task, OperationResult parentResult)
+			throws ObjectNotFoundException, SchemaException, SecurityViolationException {
+		OperationResult result = parentResult.createMinorSubresult(GET_LOOKUP_TABLE);
+		result.addParam("lookupTableOid", lookupTableOid);
+		try {
+			PrismObject<LookupTableType> lookupTable = lookupTableCache.getTableObject(lookupTableOid, result);
+			securityEnforcer.authorize(ModelAuthorizationAction.READ.getUrl(), null, lookupTable, null, null, null, result);
+			List<LookupTableRowType> rows = lookupTableCache.searchRows(lookupTableOid, null, result);
+			lookupTable.asObjectable().getRow().addAll(rows);
+			result.recordSuccess();
+			return lookupTable;
+		} catch (ObjectNotFoundException|SchemaException|SecurityViolationException|RuntimeException e) {
+			result.recordFatalError(e);
+			throw e;
+		}
+	}
 }
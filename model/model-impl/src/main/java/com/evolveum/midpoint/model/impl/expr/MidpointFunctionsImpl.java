@@ -38,6 +38,7 @@ import com.evolveum.midpoint.provisioning.api.ProvisioningService;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.DeltaConvertor;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.RelationalValueSearchQuery;
 import com.evolveum.midpoint.schema.ResourceShadowDiscriminator;
 import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.SelectorOptions;
@@ -77,6 +78,7 @@ import com.evolveum.midpoint.model.impl.lens.LensContext;
 import com.evolveum.midpoint.model.impl.lens.LensFocusContext;
 import com.evolveum.midpoint.model.impl.lens.LensProjectionContext;
 import com.evolveum.midpoint.model.impl.lens.SynchronizationIntent;
+import com.evolveum.midpoint.model.impl.util.LookupTableCache;
 import com.evolveum.prism.xml.ns._public.types_3.ObjectDeltaType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 import com.evolveum.prism.xml.ns._public.types_3.ProtectedStringType;
@@ -113,6 +115,9 @@ public class MidpointFunctionsImpl implements MidpointFunctions {
     @Autowired(required = true)
     private transient Protector protector;
 
+    @Autowired(required = true)
+    private LookupTableCache lookupTableCache;
+
     public String hello(String name) {
         return "Hello "+name;
     }
@@ -1233,4 +1238,15 @@ public class MidpointFunctionsImpl implements MidpointFunctions {
     public long getSequenceCounter(String sequenceOid) throws ObjectNotFoundException, SchemaException {
     	return SequentialValueExpressionEvaluator.getSequenceCounter(sequenceOid, repositoryService, getCurrentResult());
     }
+
+    @Override
+    public LookupTableRowType getLookupTableRow(String lookupTableOid, String key) throws ObjectNotFoundException, SchemaException {
+    	return lookupTableCache.findRow(lookupTableOid, key, getCurrentResult(MidpointFunctions.class.getName()+".getLookupTableRow"));
+    }
+
+    @Override
+    public List<LookupTableRowType> searchLookupTableRows(String lookupTableOid, RelationalValueSearchQuery query)
+    		throws ObjectNotFoundException, SchemaException {
+    	return lookupTableCache.searchRows(lookupTableOid, query, getCurrentResult(MidpointFunctions.class.getName()+".searchLookupTableRows"));
+    }
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.expr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.xml.namespace.QName;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.model.api.context.ModelContext;
+import com.evolveum.midpoint.model.api.context.ModelElementContext;
+import com.evolveum.midpoint.model.api.context.ModelState;
+import com.evolveum.midpoint.model.api.hooks.ChangeHook;
+import com.evolveum.midpoint.model.api.hooks.HookOperationMode;
+import com.evolveum.midpoint.model.api.hooks.HookRegistry;
+import com.evolveum.midpoint.model.common.expression.ExpressionSyntaxException;
+import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionFactory;
+import com.evolveum.midpoint.model.common.expression.script.jsr223.CompiledScriptCache;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.xnode.ListXNode;
+import com.evolveum.midpoint.prism.xnode.MapXNode;
+import com.evolveum.midpoint.prism.xnode.RootXNode;
+import com.evolveum.midpoint.prism.xnode.XNode;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectTemplateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEvaluatorType;
+
+/**
+ * Compiles script expressions found in resources, roles (and other abstract roles) and object templates,
+ * so they are ready in the script cache before they are needed. This is done at system startup (postInit),
+ * in a background thread so the startup is not delayed, and whenever such an object is added or modified.
+ * At startup at most MAX_PRECOMPILED scripts are compiled, as more of them would not fit into the script cache.
+ *
+ * Precompilation is only an optimization: scripts that cannot be compiled are just logged here,
+ * the error will be reported when the script is evaluated.
+ *
+ * @author agent
+ */
+@Component
+public class ScriptPrecompiler implements ChangeHook {
+
+	private static final Trace LOGGER = TraceManager.getTrace(ScriptPrecompiler.class);
+
+	private static final String DOT_CLASS = ScriptPrecompiler.class.getName() + ".";
+
+	public static final String HOOK_URI = "http://midpoint.evolveum.com/model/script-precompiler-hook-1";
+
+	/**
+	 * Script expression evaluator element. Provisioning scripts (resource "scripts" element) use the same
+	 * element name, but they are not JSR223 scripts, so we do not look inside SCRIPTS_ELEMENT_NAME.
+	 */
+	private static final QName SCRIPT_ELEMENT_NAME = new QName(SchemaConstants.NS_C, "script");
+	private static final QName SCRIPTS_ELEMENT_NAME = new QName(SchemaConstants.NS_C, "scripts");
+
+	public static final int MAX_PRECOMPILED = CompiledScriptCache.DEFAULT_MAX_SIZE;
+
+	private static final Class<?>[] PRECOMPILED_TYPES = { ResourceType.class, AbstractRoleType.class, ObjectTemplateType.class };
+
+	@Autowired(required = true)
+	private HookRegistry hookRegistry;
+
+	@Autowired(required = true)
+	@Qualifier("cacheRepositoryService")
+	private transient RepositoryService cacheRepositoryService;
+
+	@Autowired(required = true)
+	private ScriptExpressionFactory scriptExpressionFactory;
+
+	@Autowired(required = true)
+	private PrismContext prismContext;
+
+	@PostConstruct
+	public void init() {
+		hookRegistry.registerChangeHook(HOOK_URI, this);
+	}
+
+	/**
+	 * Starts precompilation of scripts in all relevant objects in the repository in a background thread.
+	 * Called at system startup.
+	 */
+	public void precompileAllInBackground() {
+		Thread thread = new Thread("ScriptPrecompiler") {
+			@Override
+			public void run() {
+				OperationResult result = new OperationResult(DOT_CLASS + "precompileAllInBackground");
+				try {
+					precompileAll(result);
+				} catch (RuntimeException e) {
+					LoggingUtils.logException(LOGGER, "Couldn't precompile scripts", e);
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Precompiles scripts in all relevant objects in the repository, at most MAX_PRECOMPILED of them.
+	 */
+	public void precompileAll(OperationResult parentResult) {
+		OperationResult result = parentResult.createMinorSubresult(DOT_CLASS + "precompileAll");
+		long start = System.currentTimeMillis();
+		final int[] count = new int[1];
+		for (Class<?> type : PRECOMPILED_TYPES) {
+			if (count[0] >= MAX_PRECOMPILED) {
+				LOGGER.debug("Script cache capacity of {} scripts reached, not precompiling any more scripts", MAX_PRECOMPILED);
+				break;
+			}
+			ResultHandler<ObjectType> handler = new ResultHandler<ObjectType>() {
+				@Override
+				public boolean handle(PrismObject<ObjectType> object, OperationResult parentResult) {
+					count[0] += precompile(object, MAX_PRECOMPILED - count[0]);
+					return count[0] < MAX_PRECOMPILED;
+				}
+			};
+			try {
+				cacheRepositoryService.searchObjectsIterative((Class<ObjectType>) type, null, handler,
+						SelectorOptions.createCollection(GetOperationOptions.createRaw()), false, result);
+			} catch (SchemaException|RuntimeException e) {
+				LoggingUtils.logException(LOGGER, "Couldn't precompile scripts in objects of type {}", e, type.getSimpleName());
+				result.recordPartialError("Couldn't precompile scripts in objects of type " + type.getSimpleName(), e);
+			}
+		}
+		LOGGER.debug("Precompiled {} script(s) in {} ms", count[0], System.currentTimeMillis() - start);
+		result.computeStatusIfUnknown();
+	}
+
+	/**
+	 * Precompiles all scripts found in given object. Returns the number of scripts found.
+	 */
+	public <O extends ObjectType> int precompile(PrismObject<O> object) {
+		return precompile(object, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Precompiles at most maxScripts scripts found in given object. Returns the number of scripts precompiled.
+	 */
+	private <O extends ObjectType> int precompile(PrismObject<O> object, int maxScripts) {
+		List<ScriptExpressionEvaluatorType> scripts;
+		try {
+			scripts = findScripts(object);
+		} catch (SchemaException|RuntimeException e) {
+			LoggingUtils.logExceptionOnDebugLevel(LOGGER, "Couldn't look for scripts in {}", e, object);
+			return 0;
+		}
+		if (scripts.size() > maxScripts) {
+			scripts = scripts.subList(0, maxScripts);
+		}
+		for (ScriptExpressionEvaluatorType script : scripts) {
+			String desc = "script in " + object;
+			try {
+				scriptExpressionFactory.precompile(script, desc);
+			} catch (ExpressionSyntaxException|ExpressionEvaluationException|RuntimeException e) {
+				LoggingUtils.logExceptionOnDebugLevel(LOGGER, "Couldn't precompile {}", e, desc);
+			}
+		}
+		return scripts.size();
+	}
+
+	private <O extends ObjectType> List<ScriptExpressionEvaluatorType> findScripts(PrismObject<O> object) throws SchemaException {
+		RootXNode root = prismContext.getXnodeProcessor().serializeObject(object);
+		List<MapXNode> scriptNodes = new ArrayList<>();
+		collectScriptNodes(root.getSubnode(), root.getRootElementName(), scriptNodes);
+		List<ScriptExpressionEvaluatorType> scripts = new ArrayList<>(scriptNodes.size());
+		for (MapXNode scriptNode : scriptNodes) {
+			ScriptExpressionEvaluatorType script = prismContext.getBeanConverter().unmarshall(scriptNode, ScriptExpressionEvaluatorType.class);
+			if (script.getCode() != null) {
+				scripts.add(script);
+			}
+		}
+		return scripts;
+	}
+
+	private void collectScriptNodes(XNode node, QName elementName, List<MapXNode> scriptNodes) {
+		if (node instanceof ListXNode) {
+			for (XNode item : (ListXNode) node) {
+				collectScriptNodes(item, elementName, scriptNodes);
+			}
+		} else if (node instanceof MapXNode) {
+			if (QNameUtil.match(SCRIPTS_ELEMENT_NAME, elementName)) {
+				return;
+			}
+			for (Map.Entry<QName, XNode> entry : ((MapXNode) node).entrySet()) {
+				if (QNameUtil.match(SCRIPT_ELEMENT_NAME, entry.getKey())) {
+					addScriptNodes(entry.getValue(), scriptNodes);
+				} else {
+					collectScriptNodes(entry.getValue(), entry.getKey(), scriptNodes);
+				}
+			}
+		}
+	}
+
+	private void addScriptNodes(XNode node, List<MapXNode> scriptNodes) {
+		if (node instanceof MapXNode) {
+			scriptNodes.add((MapXNode) node);
+		} else if (node instanceof ListXNode) {
+			for (XNode item : (ListXNode) node) {
+				addScriptNodes(item, scriptNodes);
+			}
+		}
+	}
+
+	@Override
+	public <O extends ObjectType> HookOperationMode invoke(ModelContext<O> context, Task task, OperationResult parentResult) {
+		if (context.getState() != ModelState.FINAL || context.getFocusContext() == null || !isPrecompiled(context.getFocusClass())) {
+			return HookOperationMode.FOREGROUND;
+		}
+		ModelElementContext<O> focusContext = context.getFocusContext();
+		PrismObject<O> objectNew = focusContext.getObjectNew();
+		if (objectNew != null) {
+			precompile(objectNew);
+		}
+		return HookOperationMode.FOREGROUND;
+	}
+
+	private boolean isPrecompiled(Class<?> type) {
+		if (type == null) {
+			return false;
+		}
+		for (Class<?> precompiledType : PRECOMPILED_TYPES) {
+			if (precompiledType.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void invokeOnException(ModelContext context, Throwable throwable, Task task, OperationResult result) {
+		// do nothing
+	}
+}
@@ -275,7 +275,16 @@ public class ObjectImporter {
 	        }
         }
 
-        validator.validate(input, parentResult, OperationConstants.IMPORT_OBJECT);
+        if (options != null && BooleanUtils.isTrue(options.isOrgClosureBulkMode())) {
+            repository.beginOrgClosureBulkMode(parentResult);
+            try {
+                validator.validate(input, parentResult, OperationConstants.IMPORT_OBJECT);
+            } finally {
+                repository.endOrgClosureBulkMode(parentResult);
+            }
+        } else {
+            validator.validate(input, parentResult, OperationConstants.IMPORT_OBJECT);
+        }
 
     }
 
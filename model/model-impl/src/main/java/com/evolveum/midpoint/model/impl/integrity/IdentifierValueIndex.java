@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.model.impl.integrity;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.xml.namespace.QName;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Compact record of identifier values seen by the shadow integrity check, used to detect duplicate shadows.
+ *
+ * For each shadow and identifier only a 64-bit fingerprint of the value and the shadow OID are kept.
+ * Entries are collected in memory; when there are more than maxEntriesInMemory of them, they are sorted
+ * and spilled into a temporary file. At the end, all the runs are merged (external sort) and groups of
+ * entries with the same slot and fingerprint are passed to the caller as duplicate candidates.
+ * Fingerprints can collide, so the caller has to verify the candidates using real identifier values.
+ *
+ * A slot denotes the object type (resource + kind) and the identifier. Values in different slots
+ * are never considered duplicates. Groups are provided slot by slot.
+ *
+ * Entries can be added concurrently by more worker threads.
+ *
+ * @author agent
+ */
+class IdentifierValueIndex {
+
+    private static final Trace LOGGER = TraceManager.getTrace(IdentifierValueIndex.class);
+
+    public static final int DEFAULT_MAX_ENTRIES_IN_MEMORY = 100000;
+
+    private final int maxEntriesInMemory;
+
+    private final Map<Pair<ObjectTypeContext, QName>, Integer> slotNumbers = new HashMap<>();
+    private final List<Pair<ObjectTypeContext, QName>> slots = new ArrayList<>();
+
+    private List<Entry> entries = new ArrayList<>();
+    private final List<FileRun> spilledRuns = new ArrayList<>();
+    private long size;
+
+    IdentifierValueIndex() {
+        this(DEFAULT_MAX_ENTRIES_IN_MEMORY);
+    }
+
+    IdentifierValueIndex(int maxEntriesInMemory) {
+        this.maxEntriesInMemory = maxEntriesInMemory;
+    }
+
+    public synchronized int getSlot(ObjectTypeContext context, QName identifierName) {
+        Pair<ObjectTypeContext, QName> key = new ImmutablePair<>(context, identifierName);
+        Integer slot = slotNumbers.get(key);
+        if (slot == null) {
+            slot = slots.size();
+            slots.add(key);
+            slotNumbers.put(key, slot);
+        }
+        return slot;
+    }
+
+    public synchronized ObjectTypeContext getContext(int slot) {
+        return slots.get(slot).getLeft();
+    }
+
+    public synchronized QName getIdentifierName(int slot) {
+        return slots.get(slot).getRight();
+    }
+
+    public synchronized void add(int slot, String value, String oid, boolean existsOnResource) {
+        entries.add(new Entry(slot, fingerprint(value), oid, existsOnResource));
+        size++;
+        if (entries.size() >= maxEntriesInMemory) {
+            spill();
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Passes all groups of entries with the same slot and fingerprint (having at least two members) to the handler.
+     */
+    public synchronized void processCandidates(CandidateHandler handler) {
+        Collections.sort(entries);
+        PriorityQueue<Run> queue = new PriorityQueue<>();
+        try {
+            addToQueue(queue, new MemoryRun(entries.iterator()));
+            for (FileRun run : spilledRuns) {
+                run.open();
+                addToQueue(queue, run);
+            }
+            LOGGER.debug("Looking for duplicates among {} identifier values ({} spilled runs)", size, spilledRuns.size());
+            List<Entry> group = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                Entry entry = run.current;
+                if (!group.isEmpty() && !group.get(0).hasSameKey(entry)) {
+                    if (group.size() > 1) {
+                        handler.handle(group.get(0).slot, group);
+                    }
+                    group = new ArrayList<>();
+                }
+                group.add(entry);
+                run.advance();
+                addToQueue(queue, run);
+            }
+            if (group.size() > 1) {
+                handler.handle(group.get(0).slot, group);
+            }
+        } catch (IOException e) {
+            throw new SystemException("Couldn't read identifier values spilled to disk: " + e.getMessage(), e);
+        } finally {
+            for (FileRun run : spilledRuns) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Releases all the entries and deletes temporary files.
+     */
+    public synchronized void clear() {
+        for (FileRun run : spilledRuns) {
+            run.close();
+            if (!run.file.delete()) {
+                LOGGER.warn("Couldn't delete temporary file {}", run.file);
+            }
+        }
+        spilledRuns.clear();
+        entries = new ArrayList<>();
+        size = 0;
+    }
+
+    private void addToQueue(PriorityQueue<Run> queue, Run run) throws IOException {
+        if (run.current == null) {
+            run.advance();
+        }
+        if (run.current != null) {
+            queue.add(run);
+        }
+    }
+
+    private void spill() {
+        Collections.sort(entries);
+        FileRun run;
+        try {
+            File file = File.createTempFile("shadow-integrity-", ".tmp");
+            file.deleteOnExit();
+            run = new FileRun(file, entries.size());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                for (Entry entry : entries) {
+                    out.writeInt(entry.slot);
+                    out.writeLong(entry.fingerprint);
+                    out.writeUTF(entry.oid);
+                    out.writeBoolean(entry.existsOnResource);
+                }
+            }
+        } catch (IOException e) {
+            throw new SystemException("Couldn't spill identifier values to disk: " + e.getMessage(), e);
+        }
+        LOGGER.debug("Spilled {} identifier values to {}", entries.size(), run.file);
+        spilledRuns.add(run);
+        entries = new ArrayList<>();
+    }
+
+    // FNV-1a
+    static long fingerprint(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    interface CandidateHandler {
+        void handle(int slot, List<Entry> entries);
+    }
+
+    static class Entry implements Comparable<Entry> {
+
+        private final int slot;
+        private final long fingerprint;
+        private final String oid;
+        private final boolean existsOnResource;
+
+        private Entry(int slot, long fingerprint, String oid, boolean existsOnResource) {
+            this.slot = slot;
+            this.fingerprint = fingerprint;
+            this.oid = oid;
+            this.existsOnResource = existsOnResource;
+        }
+
+        public String getOid() {
+            return oid;
+        }
+
+        public boolean isExistsOnResource() {
+            return existsOnResource;
+        }
+
+        private boolean hasSameKey(Entry other) {
+            return slot == other.slot && fingerprint == other.fingerprint;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (slot != other.slot) {
+                return slot < other.slot ? -1 : 1;
+            }
+            if (fingerprint != other.fingerprint) {
+                return fingerprint < other.fingerprint ? -1 : 1;
+            }
+            return oid.compareTo(other.oid);
+        }
+    }
+
+    private abstract static class Run implements Comparable<Run> {
+
+        Entry current;
+
+        // sets current to the next entry, or to null if there is none
+        abstract void advance() throws IOException;
+
+        @Override
+        public int compareTo(Run other) {
+            return current.compareTo(other.current);
+        }
+    }
+
+    private static class MemoryRun extends Run {
+
+        private final Iterator<Entry> iterator;
+
+        private MemoryRun(Iterator<Entry> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        void advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+
+    private static class FileRun extends Run {
+
+        private final File file;
+        private final int size;
+        private int read;
+        private DataInputStream in;
+
+        private FileRun(File file, int size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        private void open() throws IOException {
+            close();
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            read = 0;
+            current = null;
+        }
+
+        @Override
+        void advance() throws IOException {
+            if (read >= size) {
+                current = null;
+                return;
+            }
+            current = new Entry(in.readInt(), in.readLong(), in.readUTF(), in.readBoolean());
+            read++;
+        }
+
+        private void close() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Couldn't close temporary file {}: {}", file, e.getMessage());
+                }
+                in = null;
+            }
+        }
+    }
+}
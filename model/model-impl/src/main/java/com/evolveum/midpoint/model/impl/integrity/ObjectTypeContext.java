@@ -19,12 +19,7 @@ package com.evolveum.midpoint.model.impl.integrity;
 import com.evolveum.midpoint.common.refinery.RefinedObjectClassDefinition;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
-import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
-
-import javax.xml.namespace.QName;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
 
 /**
  * Checker context related to one object type (resource + kind).
@@ -34,8 +29,8 @@ import java.util.Map;
 class ObjectTypeContext {
 
     private PrismObject<ResourceType> resource;
+    private ShadowKindType kind;
     private RefinedObjectClassDefinition objectClassDefinition;
-    private Map<QName, Map<String, List<PrismObject<ShadowType>>>> identifierValueMap = new HashMap<>();
 
     public PrismObject<ResourceType> getResource() {
         return resource;
@@ -45,19 +40,19 @@ class ObjectTypeContext {
         this.resource = resource;
     }
 
-    public RefinedObjectClassDefinition getObjectClassDefinition() {
-        return objectClassDefinition;
+    public ShadowKindType getKind() {
+        return kind;
     }
 
-    public void setObjectClassDefinition(RefinedObjectClassDefinition objectClassDefinition) {
-        this.objectClassDefinition = objectClassDefinition;
+    public void setKind(ShadowKindType kind) {
+        this.kind = kind;
     }
 
-    public Map<QName, Map<String, List<PrismObject<ShadowType>>>> getIdentifierValueMap() {
-        return identifierValueMap;
+    public RefinedObjectClassDefinition getObjectClassDefinition() {
+        return objectClassDefinition;
     }
 
-    public void setIdentifierValueMap(Map<QName, Map<String, List<PrismObject<ShadowType>>>> identifierValueMap) {
-        this.identifierValueMap = identifierValueMap;
+    public void setObjectClassDefinition(RefinedObjectClassDefinition objectClassDefinition) {
+        this.objectClassDefinition = objectClassDefinition;
     }
 }
@@ -79,11 +79,13 @@ import javax.xml.namespace.QName;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author mederly
@@ -129,14 +131,17 @@ public class ShadowIntegrityCheckResultHandler extends AbstractSearchIterativeRe
 
     // resource oid + kind -> ROCD
     // we silently assume that all intents for a given kind share a common attribute definition
-    private Map<Pair<String,ShadowKindType>, ObjectTypeContext> contextMap = new HashMap<>();
+    private ConcurrentMap<Pair<String,ShadowKindType>, ObjectTypeContext> contextMap = new ConcurrentHashMap<>();
 
-    private Map<String,PrismObject<ResourceType>> resources = new HashMap<>();
+    private Map<String,PrismObject<ResourceType>> resources = new ConcurrentHashMap<>();
 
     private PrismObject<SystemConfigurationType> configuration;
 
     private Statistics statistics = new Statistics();
 
+    // fingerprints of identifier values; duplicate shadows themselves are loaded only when reporting or fixing them
+    private IdentifierValueIndex identifierValueIndex = new IdentifierValueIndex();
+
     DuplicateShadowsResolver duplicateShadowsResolver;
     private Set<String> duplicateShadowsDetected = new HashSet<>();
     private Set<String> duplicateShadowsDeleted = new HashSet<>();
@@ -155,11 +160,6 @@ public class ShadowIntegrityCheckResultHandler extends AbstractSearchIterativeRe
         setStopOnError(false);
         setLogErrors(false);            // we do log errors ourselves
 
-        Integer tasks = getWorkerThreadsCount(coordinatorTask);
-        if (tasks != null && tasks != 0) {
-            throw new UnsupportedOperationException("Unsupported number of worker threads: " + tasks + ". This task cannot be run with worker threads. Please remove workerThreads extension property or set its value to 0.");
-        }
-
         PrismProperty<String> diagnosePrismProperty = coordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_DIAGNOSE);
         if (diagnosePrismProperty == null || diagnosePrismProperty.isEmpty()) {
             checkIntents = true;
@@ -414,7 +414,11 @@ public class ShadowIntegrityCheckResultHandler extends AbstractSearchIterativeRe
                 checkResult.recordError(Statistics.NO_OBJECT_CLASS_REFINED_SCHEMA, new SchemaException("No refined object class definition for kind=" + kind + ", intent=" + intent));
                 return;
             }
-            contextMap.put(key, context);
+            context.setKind(kind);
+            ObjectTypeContext existing = contextMap.putIfAbsent(key, context);
+            if (existing != null) {
+                context = existing;         // created concurrently by another worker thread
+            }
         }
 
         try {
@@ -455,7 +459,7 @@ public class ShadowIntegrityCheckResultHandler extends AbstractSearchIterativeRe
             }
             if (checkUniqueness) {
                 if (!checkDuplicatesOnPrimaryIdentifiersOnly || primaryIdentifiers.contains(identifier)) {
-                    addIdentifierValue(checkResult, context, identifier.getName(), value, shadow);
+                    addIdentifierValue(context, identifier.getName(), value, shadow);
                 }
             }
             if (checkNormalization) {
@@ -595,26 +599,9 @@ public class ShadowIntegrityCheckResultHandler extends AbstractSearchIterativeRe
         }
     }
 
-    private void addIdentifierValue(ShadowCheckResult checkResult, ObjectTypeContext context, QName identifierName, String identifierValue, PrismObject<ShadowType> shadow) {
-
-        Map<String, List<PrismObject<ShadowType>>> valueMap = context.getIdentifierValueMap().get(identifierName);
-        if (valueMap == null) {
-            valueMap = new HashMap<>();
-            context.getIdentifierValueMap().put(identifierName, valueMap);
-        }
-        List<PrismObject<ShadowType>> existingShadows = valueMap.get(identifierValue);
-        if (existingShadows == null) {
-            // all is well
-            existingShadows = new ArrayList();
-            existingShadows.add(shadow);
-            valueMap.put(identifierValue, existingShadows);
-        } else {
-            // duplicate shadows statistics are collected in a special way
-            duplicateShadowsDetected.add(shadow.getOid());
-            LOGGER.error("Multiple shadows with the value of identifier attribute {} = {}: existing one(s): {}, duplicate: {}",
-                    identifierName, identifierValue, shortDumpList(existingShadows), ObjectTypeUtil.toShortString(shadow.asObjectable()));
-            existingShadows.add(shadow);
-        }
+    private void addIdentifierValue(ObjectTypeContext context, QName identifierName, String identifierValue, PrismObject<ShadowType> shadow) {
+        int slot = identifierValueIndex.getSlot(context, identifierName);
+        identifierValueIndex.add(slot, identifierValue, shadow.getOid(), shadow.getUserData(KEY_EXISTS_ON_RESOURCE) != null);
     }
 
     private String shortDumpList(List<PrismObject<ShadowType>> list) {
@@ -636,60 +623,36 @@ public class ShadowIntegrityCheckResultHandler extends AbstractSearchIterativeRe
         return statistics;
     }
 
-    private String reportOrFixUniqueness(Task task, OperationResult result) {
+    private String reportOrFixUniqueness(final Task task, final OperationResult result) {
 
-        StringBuilder details = new StringBuilder();
+        final StringBuilder details = new StringBuilder();
         StringBuilder stat = new StringBuilder();
 
-        for (Map.Entry<Pair<String,ShadowKindType>, ObjectTypeContext> entry : contextMap.entrySet()) {
-            String resourceOid = entry.getKey().getLeft();
-            ShadowKindType kind = entry.getKey().getRight();
-            ObjectTypeContext ctx = entry.getValue();
-            PrismObject<ResourceType> resource = resources.get(resourceOid);
-            if (resource == null) {
-                LOGGER.error("No resource for {}", resourceOid);        // should not happen
-                continue;
-            }
-            for (Map.Entry<QName, Map<String, List<PrismObject<ShadowType>>>> idValEntry : ctx.getIdentifierValueMap().entrySet()) {
-                QName identifier = idValEntry.getKey();
-                boolean first = true;
-                for (Map.Entry<String, List<PrismObject<ShadowType>>> valListEntry : idValEntry.getValue().entrySet()) {
-                    List<PrismObject<ShadowType>> shadows = valListEntry.getValue();
-                    if (shadows.size() <= 1) {
-                        continue;
-                    }
-                    if (first) {
-                        details.append("Duplicates for ").append(ObjectTypeUtil.toShortString(resource));
-                        details.append(", kind = ").append(kind);
-                        details.append(", identifier = ").append(identifier).append(":\n");
-                        first = false;
-                    }
-                    details.append(" - value: ").append(valListEntry.getKey()).append(", shadows: ").append(shadows.size()).append("\n");
-                    List<PrismObject<ShadowType>> shadowsToConsider = new ArrayList<>();
-                    for (PrismObject<ShadowType> shadow : shadows) {
-                        details.append("   - ").append(ObjectTypeUtil.toShortString(shadow));
-                        details.append("; sync situation = ").append(shadow.asObjectable().getSynchronizationSituation()).append("\n");
-                        PrismContainer<ShadowAttributesType> attributesContainer = shadow.findContainer(ShadowType.F_ATTRIBUTES);
-                        if (attributesContainer != null && !attributesContainer.isEmpty()) {
-                            for (Item item : attributesContainer.getValue().getItems()) {
-                                details.append("     - ").append(item.getElementName().getLocalPart()).append(" = ");
-                                details.append(((PrismProperty) item).getRealValues());
-                                details.append("\n");
-                            }
+        try {
+            identifierValueIndex.processCandidates(new IdentifierValueIndex.CandidateHandler() {
+                private int lastReportedSlot = -1;
+
+                @Override
+                public void handle(int slot, List<IdentifierValueIndex.Entry> entries) {
+                    ObjectTypeContext ctx = identifierValueIndex.getContext(slot);
+                    QName identifier = identifierValueIndex.getIdentifierName(slot);
+                    Map<String, List<PrismObject<ShadowType>>> shadowsByValue = loadCandidates(entries, identifier, details, result);
+                    for (Map.Entry<String, List<PrismObject<ShadowType>>> valListEntry : shadowsByValue.entrySet()) {
+                        if (valListEntry.getValue().size() <= 1) {
+                            continue;       // fingerprint collision or shadow deleted in the meantime
                         }
-                        if (duplicateShadowsDeleted.contains(shadow.getOid())) {
-                            details.append("     (already deleted)\n");
-                        } else {
-                            shadowsToConsider.add(shadow);
+                        if (slot != lastReportedSlot) {
+                            details.append("Duplicates for ").append(ObjectTypeUtil.toShortString(ctx.getResource()));
+                            details.append(", kind = ").append(ctx.getKind());
+                            details.append(", identifier = ").append(identifier).append(":\n");
+                            lastReportedSlot = slot;
                         }
-                    }
-
-                    if (fixUniqueness && shadowsToConsider.size() > 1) {
-                        DuplicateShadowsTreatmentInstruction instruction = duplicateShadowsResolver.determineDuplicateShadowsTreatment(shadowsToConsider);
-                        deleteShadows(instruction, details, task, result);
+                        reportOrFixDuplicates(identifier, valListEntry.getKey(), valListEntry.getValue(), details, task, result);
                     }
                 }
-            }
+            });
+        } finally {
+            identifierValueIndex.clear();
         }
         stat.append("Duplicate shadows detected: ").append(duplicateShadowsDetected.size());
         if (fixUniqueness) {
@@ -702,6 +665,82 @@ public class ShadowIntegrityCheckResultHandler extends AbstractSearchIterativeRe
         return stat.toString() + "\n" + details.toString();
     }
 
+    /**
+     * Loads shadows of the duplicate candidates from the repository and groups them by the real identifier value.
+     * Shadows that were deleted by previous fixes are only reported.
+     */
+    private Map<String, List<PrismObject<ShadowType>>> loadCandidates(List<IdentifierValueIndex.Entry> entries, QName identifier,
+            StringBuilder details, OperationResult result) {
+        Map<String, List<PrismObject<ShadowType>>> shadowsByValue = new LinkedHashMap<>();
+        for (IdentifierValueIndex.Entry entry : entries) {
+            if (duplicateShadowsDeleted.contains(entry.getOid())) {
+                details.append(" - shadow ").append(entry.getOid()).append(" with duplicate value of ").append(identifier.getLocalPart())
+                        .append(" (already deleted)\n");
+                continue;
+            }
+            PrismObject<ShadowType> shadow;
+            try {
+                shadow = repositoryService.getObject(ShadowType.class, entry.getOid(), null, result);
+                provisioningService.applyDefinition(shadow, result);
+            } catch (ObjectNotFoundException e) {
+                LOGGER.debug("Shadow {} does not exist anymore, not considering it as a duplicate", entry.getOid());
+                continue;
+            } catch (CommonException | RuntimeException e) {
+                LoggingUtils.logUnexpectedException(LOGGER, "Couldn't load shadow {} to check its uniqueness", e, entry.getOid());
+                continue;
+            }
+            PrismProperty<?> property = shadow.findProperty(new ItemPath(ShadowType.F_ATTRIBUTES, identifier));
+            Object value = property != null ? property.getRealValue() : null;
+            if (!(value instanceof String)) {
+                continue;       // changed in the meantime
+            }
+            if (entry.isExistsOnResource()) {
+                shadow.setUserData(KEY_EXISTS_ON_RESOURCE, "true");
+            }
+            if (checkOwners) {
+                List<PrismObject> owners = searchOwners(shadow, result);
+                if (owners != null) {
+                    shadow.setUserData(KEY_OWNERS, owners);
+                }
+            }
+            List<PrismObject<ShadowType>> shadows = shadowsByValue.get(value);
+            if (shadows == null) {
+                shadows = new ArrayList<>();
+                shadowsByValue.put((String) value, shadows);
+            }
+            shadows.add(shadow);
+        }
+        return shadowsByValue;
+    }
+
+    private void reportOrFixDuplicates(QName identifier, String value, List<PrismObject<ShadowType>> shadows, StringBuilder details,
+            Task task, OperationResult result) {
+        for (int i = 1; i < shadows.size(); i++) {
+            // duplicate shadows statistics are collected in a special way
+            duplicateShadowsDetected.add(shadows.get(i).getOid());
+        }
+        LOGGER.error("Multiple shadows with the value of identifier attribute {} = {}: {}", identifier, value, shortDumpList(shadows));
+
+        details.append(" - value: ").append(value).append(", shadows: ").append(shadows.size()).append("\n");
+        for (PrismObject<ShadowType> shadow : shadows) {
+            details.append("   - ").append(ObjectTypeUtil.toShortString(shadow));
+            details.append("; sync situation = ").append(shadow.asObjectable().getSynchronizationSituation()).append("\n");
+            PrismContainer<ShadowAttributesType> attributesContainer = shadow.findContainer(ShadowType.F_ATTRIBUTES);
+            if (attributesContainer != null && !attributesContainer.isEmpty()) {
+                for (Item item : attributesContainer.getValue().getItems()) {
+                    details.append("     - ").append(item.getElementName().getLocalPart()).append(" = ");
+                    details.append(((PrismProperty) item).getRealValues());
+                    details.append("\n");
+                }
+            }
+        }
+
+        if (fixUniqueness) {
+            DuplicateShadowsTreatmentInstruction instruction = duplicateShadowsResolver.determineDuplicateShadowsTreatment(shadows);
+            deleteShadows(instruction, details, task, result);
+        }
+    }
+
     // shadowsToDelete do not contain 'already deleted shadows'
     private void deleteShadows(DuplicateShadowsTreatmentInstruction instruction, StringBuilder sb, Task task, OperationResult result) {
 
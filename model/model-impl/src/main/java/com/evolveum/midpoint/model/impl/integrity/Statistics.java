@@ -78,23 +78,23 @@ public class Statistics {
     Map<String,Counts> problemCount = new HashMap<>();
 
 
-    public void incrementResources() {
+    public synchronized void incrementResources() {
         resources++;
     }
 
-    public void incrementShadows() {
+    public synchronized void incrementShadows() {
         shadows++;
     }
 
-    public void incrementShadowsWithErrors() {
+    public synchronized void incrementShadowsWithErrors() {
         shadowsWithErrors++;
     }
 
-    public void incrementShadowsWithWarnings() {
+    public synchronized void incrementShadowsWithWarnings() {
         shadowsWithWarnings++;
     }
 
-    public void incrementUnfinishedShadows() {
+    public synchronized void incrementUnfinishedShadows() {
         unfinishedShadows++;
     }
 
@@ -138,7 +138,7 @@ public class Statistics {
         this.unfinishedShadows = unfinishedShadows;
     }
 
-    public void registerProblemCodeOccurrences(List<String> problemCodes) {
+    public synchronized void registerProblemCodeOccurrences(List<String> problemCodes) {
         Set<String> alreadySeen = new HashSet<>();
         for (String code : problemCodes) {
             Counts value = problemCount.get(code);
@@ -153,7 +153,7 @@ public class Statistics {
         }
     }
 
-    public void registerProblemsFixes(List<String> problemCodesFixed) {
+    public synchronized void registerProblemsFixes(List<String> problemCodesFixed) {
         Set<String> alreadySeen = new HashSet<>();
         for (String code : problemCodesFixed) {
             Counts value = problemCount.get(code);
@@ -168,7 +168,7 @@ public class Statistics {
         }
     }
 
-    public String getDetailsFormatted(boolean dryRun) {
+    public synchronized String getDetailsFormatted(boolean dryRun) {
         StringBuilder sb = new StringBuilder();
         for (String code : codeList) {
             Counts counts = problemCount.get(code);
@@ -70,7 +70,6 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivationStatusType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
-import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ConstructionType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ExclusionPolicyConstraintType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
@@ -405,11 +404,17 @@ public class AssignmentEvaluator<F extends FocusType> {
 		} else {
 			throw new SchemaException("Missing type in target reference in " + assignmentType + " in " + sourceDescription);
 		}
-		PrismObject<? extends ObjectType> target = null;
+		// Roles shared by many focal objects are remembered if the role evaluation cache is active (e.g. in recompute tasks)
+		PrismObject<? extends ObjectType> target = RoleEvaluationCache.getObject(clazz, oid);
+		if (target != null) {
+			return target;
+		}
+		long timestamp = RoleEvaluationCache.getTimestamp();
         target = repository.getObject(clazz, oid, null, result);
         if (target == null) {
             throw new IllegalArgumentException("Got null target from repository, oid:"+oid+", class:"+clazz+" (should not happen, probably a bug) in "+sourceDescription);
         }
+        RoleEvaluationCache.putObject(target, timestamp);
         // Handling ObjectNotFoundException - we just pass it to the caller
 
 		return target;
@@ -485,49 +490,44 @@ public class AssignmentEvaluator<F extends FocusType> {
 				orderOneObject = roleType;
 			}
 		}
-		for (AssignmentType roleInducement : roleType.getInducement()) {
-			if (!isApplicable(roleInducement.getFocusType(), roleType)){
-				continue;
+		// Inducements and assignments of roles shared by many focal objects are prepared only once
+		// if the role evaluation cache is active (e.g. in recompute tasks)
+		List<PrismContainer<AssignmentType>> roleInducements = RoleEvaluationCache.getInducements(roleType, evaluationOrder, lensContext.getFocusClass());
+		if (roleInducements == null) {
+			roleInducements = prepareInducements(roleType, evaluationOrder);
+			RoleEvaluationCache.putInducements(roleType, evaluationOrder, lensContext.getFocusClass(), roleInducements);
+		}
+		for (PrismContainer<AssignmentType> roleInducement : roleInducements) {
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("E{}: evaluate inducement {} in {}",
+					new Object[]{evaluationOrder, dumpAssignment(roleInducement.getValue().asContainerable()), roleType});
 			}
 			ItemDeltaItem<PrismContainerValue<AssignmentType>,PrismContainerDefinition<AssignmentType>> roleInducementIdi = new ItemDeltaItem<>();
-			roleInducementIdi.setItemOld(LensUtil.createAssignmentSingleValueContainerClone(roleInducement));
+			roleInducementIdi.setItemOld(roleInducement);
 			roleInducementIdi.recompute();
 			AssignmentPathSegment roleAssignmentPathSegment = new AssignmentPathSegment(roleInducementIdi, null);
 			roleAssignmentPathSegment.setSource(roleType);
 			String subSourceDescription = roleType+" in "+sourceDescription;
-			Integer inducementOrder = roleInducement.getOrder();
-			if (inducementOrder == null) {
-				inducementOrder = 1;
-			}
-			if (inducementOrder == evaluationOrder) {
-				if (LOGGER.isTraceEnabled()) {
-					LOGGER.trace("E{}: evaluate inducement({}) {} in {}",
-						new Object[]{evaluationOrder, inducementOrder, dumpAssignment(roleInducement), roleType});
-				}
-				roleAssignmentPathSegment.setEvaluateConstructions(true);
-				roleAssignmentPathSegment.setEvaluationOrder(evaluationOrder);
-				roleAssignmentPathSegment.setOrderOneObject(orderOneObject);
-				evaluateAssignment(assignment, roleAssignmentPathSegment, evaluateOld, mode, isValid, roleType, subSourceDescription, assignmentPath, task, result);
-//			} else if (inducementOrder < assignmentPath.getEvaluationOrder()) {
-//				LOGGER.trace("Follow({}) inducement({}) in role {}",
-//						new Object[]{evaluationOrder, inducementOrder, source});
-//				roleAssignmentPathSegment.setEvaluateConstructions(false);
-//				roleAssignmentPathSegment.setEvaluationOrder(evaluationOrder+1);
-//				evaluateAssignment(assignment, roleAssignmentPathSegment, role, subSourceDescription, assignmentPath, task, result);
-			} else {
-				if (LOGGER.isTraceEnabled()) {
-					LOGGER.trace("E{}: NOT evaluate inducement({}) {} in {}",
-						new Object[]{evaluationOrder, inducementOrder, dumpAssignment(roleInducement), roleType});
-				}
+			roleAssignmentPathSegment.setEvaluateConstructions(true);
+			roleAssignmentPathSegment.setEvaluationOrder(evaluationOrder);
+			roleAssignmentPathSegment.setOrderOneObject(orderOneObject);
+			evaluateAssignment(assignment, roleAssignmentPathSegment, evaluateOld, mode, isValid, roleType, subSourceDescription, assignmentPath, task, result);
+		}
+		List<PrismContainer<AssignmentType>> roleAssignments = RoleEvaluationCache.getAssignments(roleType);
+		if (roleAssignments == null) {
+			roleAssignments = new ArrayList<>(roleType.getAssignment().size());
+			for (AssignmentType roleAssignment : roleType.getAssignment()) {
+				roleAssignments.add(LensUtil.createAssignmentSingleValueContainerClone(roleAssignment));
 			}
+			RoleEvaluationCache.putAssignments(roleType, roleAssignments);
 		}
-		for (AssignmentType roleAssignment : roleType.getAssignment()) {
+		for (PrismContainer<AssignmentType> roleAssignment : roleAssignments) {
 			if (LOGGER.isTraceEnabled()) {
 				LOGGER.trace("E{}: follow assignment {} in {}",
-					new Object[]{evaluationOrder, dumpAssignment(roleAssignment), roleType});
+					new Object[]{evaluationOrder, dumpAssignment(roleAssignment.getValue().asContainerable()), roleType});
 			}
 			ItemDeltaItem<PrismContainerValue<AssignmentType>,PrismContainerDefinition<AssignmentType>> roleAssignmentIdi = new ItemDeltaItem<>();
-			roleAssignmentIdi.setItemOld(LensUtil.createAssignmentSingleValueContainerClone(roleAssignment));
+			roleAssignmentIdi.setItemOld(roleAssignment);
 			roleAssignmentIdi.recompute();
 			AssignmentPathSegment roleAssignmentPathSegment = new AssignmentPathSegment(roleAssignmentIdi, null);
 			roleAssignmentPathSegment.setSource(roleType);
@@ -539,8 +539,7 @@ public class AssignmentEvaluator<F extends FocusType> {
 		}
 		
 		if (evaluationOrder == 1) {
-			for(AuthorizationType authorizationType: roleType.getAuthorization()) {
-				Authorization authorization = createAuthorization(authorizationType, roleType.toString());
+			for (Authorization authorization: RoleEvaluationCache.getAuthorizations(roleType)) {
 				assignment.addAuthorization(authorization);
 			}
 			if (roleType.getAdminGuiConfiguration() != null) {
@@ -553,6 +552,38 @@ public class AssignmentEvaluator<F extends FocusType> {
 	}
 
 
+	/**
+	 * Selects inducements that are evaluated at given evaluation order for the current focus class
+	 * and prepares them for evaluation. The result does not depend on the focus object.
+	 */
+	private List<PrismContainer<AssignmentType>> prepareInducements(AbstractRoleType roleType, int evaluationOrder) throws SchemaException {
+		List<PrismContainer<AssignmentType>> rv = new ArrayList<>();
+		for (AssignmentType roleInducement : roleType.getInducement()) {
+			if (!isApplicable(roleInducement.getFocusType(), roleType)){
+				continue;
+			}
+			Integer inducementOrder = roleInducement.getOrder();
+			if (inducementOrder == null) {
+				inducementOrder = 1;
+			}
+			if (inducementOrder == evaluationOrder) {
+				rv.add(LensUtil.createAssignmentSingleValueContainerClone(roleInducement));
+//			} else if (inducementOrder < assignmentPath.getEvaluationOrder()) {
+//				LOGGER.trace("Follow({}) inducement({}) in role {}",
+//						new Object[]{evaluationOrder, inducementOrder, source});
+//				roleAssignmentPathSegment.setEvaluateConstructions(false);
+//				roleAssignmentPathSegment.setEvaluationOrder(evaluationOrder+1);
+//				evaluateAssignment(assignment, roleAssignmentPathSegment, role, subSourceDescription, assignmentPath, task, result);
+			} else {
+				if (LOGGER.isTraceEnabled()) {
+					LOGGER.trace("E{}: NOT evaluate inducement({}) {} in {}",
+						new Object[]{evaluationOrder, inducementOrder, dumpAssignment(roleInducement), roleType});
+				}
+			}
+		}
+		return rv;
+	}
+
 	private boolean isApplicable(QName focusType, AbstractRoleType roleType) throws SchemaException {
 		if (focusType == null) {
 			return true;
@@ -591,12 +622,6 @@ public class AssignmentEvaluator<F extends FocusType> {
 	}
 
 
-	private Authorization createAuthorization(AuthorizationType authorizationType, String sourceDesc) {
-		Authorization authorization = new Authorization(authorizationType);
-		authorization.setSourceDescription(sourceDesc);
-		return authorization;
-	}
-
 	private void assertSource(ObjectType source, EvaluatedAssignment<F> assignment) {
 		if (source == null) {
 			throw new IllegalArgumentException("Source cannot be null (while evaluating assignment "+assignment+")");
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.lens;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.evolveum.midpoint.prism.PrismContainer;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismProperty;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.util.caching.AbstractCache;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Memoizes the focus-independent parts of role evaluation: assignment targets (roles, orgs, ...) fetched
+ * from the repository, their inducements (including constructions) selected for given evaluation order
+ * and prepared for evaluation, their assignments and the authorizations created from them. The role-derived
+ * parts are keyed by role OID, role version and (for inducements) evaluation order and focus class.
+ * It is meant to be used by tasks that process many focal objects sharing the same roles, e.g. recompute.
+ * The cache is thread-local, each worker thread has its own. It is active only between enterCache()
+ * and exitCache() calls; if it is not entered, all the methods are no-ops.
+ *
+ * Results of conditions, focus mappings and construction mappings are not cached here, as they depend on the focus.
+ * A role can be excluded from caching altogether by setting roleEvaluationCaching extension property
+ * of the role to false.
+ *
+ * The cached objects are invalidated explicitly by invalidate(oid), which is called when a role is modified
+ * or deleted on this node. The invalidation affects caches of all threads. Invalidation records are kept only
+ * as long as there is a cache that was created before them; they are pruned when a cache is exited.
+ *
+ * @author agent
+ */
+public class RoleEvaluationCache extends AbstractCache {
+
+	private static final Trace LOGGER = TraceManager.getTrace(RoleEvaluationCache.class);
+	private static final Trace PERFORMANCE_ADVISOR = TraceManager.getPerformanceAdvisorTrace();
+
+	public static final int MAX_ENTRIES = 10000;
+
+	private static ThreadLocal<RoleEvaluationCache> cacheThreadLocal = new ThreadLocal<>();
+
+	// Logical clock used to find out whether an entry was created before the object was invalidated.
+	private static final AtomicLong clock = new AtomicLong();
+	private static final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+	// caches of all threads, with their creation time
+	private static final Map<RoleEvaluationCache, Long> liveCaches = new ConcurrentHashMap<>();
+
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	public static void enterCache() {
+		boolean created = !exists(cacheThreadLocal);
+		RoleEvaluationCache cache = enter(cacheThreadLocal, RoleEvaluationCache.class, LOGGER);
+		if (created) {
+			liveCaches.put(cache, clock.get());
+		}
+	}
+
+	public static void exitCache() {
+		RoleEvaluationCache cache = exit(cacheThreadLocal, LOGGER);
+		if (cache != null && !exists(cacheThreadLocal)) {
+			liveCaches.remove(cache);
+			pruneInvalidations();
+		}
+	}
+
+	/**
+	 * Removes invalidation records that cannot affect any entry: all existing entries were created by caches
+	 * that are younger than these records.
+	 */
+	private static void pruneInvalidations() {
+		long oldestCache = clock.get();
+		for (Long created : liveCaches.values()) {
+			oldestCache = Math.min(oldestCache, created);
+		}
+		Iterator<Map.Entry<String, Long>> iterator = invalidations.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getValue() <= oldestCache) {
+				iterator.remove();
+			}
+		}
+	}
+
+	static int getInvalidationsCount() {
+		return invalidations.size();
+	}
+
+	public static boolean isEntered() {
+		return exists(cacheThreadLocal);
+	}
+
+	/**
+	 * Marks the object as changed. Any entry for this object that was created before is ignored from now on.
+	 */
+	public static void invalidate(String oid) {
+		if (oid != null && !liveCaches.isEmpty()) {
+			invalidations.put(oid, clock.incrementAndGet());
+		}
+	}
+
+	/**
+	 * Returns a timestamp that has to be obtained before the object is fetched from the repository
+	 * and then passed to the putObject method.
+	 */
+	public static long getTimestamp() {
+		return clock.get();
+	}
+
+	/**
+	 * Returns a clone of the cached object or null if the object is not cached.
+	 */
+	public static <O extends ObjectType> PrismObject<O> getObject(Class<O> type, String oid) {
+		Entry entry = getValidEntry(oid);
+		if (entry == null) {
+			log("Cache MISS for {}", oid);
+			return null;
+		}
+		if (!type.isAssignableFrom(entry.object.getCompileTimeClass())) {
+			log("Cache TYPE MISMATCH for {} ({} vs {})", oid, type.getSimpleName(), entry.object.getCompileTimeClass());
+			return null;
+		}
+		log("Cache HIT for {}", oid);
+		return (PrismObject<O>) entry.object.clone();
+	}
+
+	public static void putObject(PrismObject<? extends ObjectType> object, long timestamp) {
+		RoleEvaluationCache cache = cacheThreadLocal.get();
+		if (cache == null || object == null || object.getOid() == null) {
+			return;
+		}
+		if (!isCachingAllowed(object)) {
+			log("Cache DISABLED for {}", object);
+			return;
+		}
+		if (cache.entries.size() >= MAX_ENTRIES && !cache.entries.containsKey(object.getOid())) {
+			log("Cache FULL, not caching {}", object);
+			return;
+		}
+		cache.entries.put(object.getOid(), new Entry(object.clone(), timestamp));
+	}
+
+	/**
+	 * Returns authorizations defined in the role. The Authorization objects are shared, so they must not be modified.
+	 */
+	public static List<Authorization> getAuthorizations(AbstractRoleType role) {
+		Entry entry = getRoleEntry(role);
+		if (entry == null) {
+			return createAuthorizations(role);
+		}
+		if (entry.authorizations == null) {
+			entry.authorizations = Collections.unmodifiableList(createAuthorizations(role));
+		}
+		return entry.authorizations;
+	}
+
+	/**
+	 * Returns inducements of the role that are evaluated at given evaluation order for focal objects of given class,
+	 * as single-value containers prepared for evaluation. Returns null if they are not cached.
+	 * The containers are shared, so they must not be modified.
+	 */
+	public static List<PrismContainer<AssignmentType>> getInducements(AbstractRoleType role, int evaluationOrder, Class<?> focusClass) {
+		Entry entry = getRoleEntry(role);
+		if (entry == null) {
+			return null;
+		}
+		return entry.inducements.get(getInducementsKey(evaluationOrder, focusClass));
+	}
+
+	public static void putInducements(AbstractRoleType role, int evaluationOrder, Class<?> focusClass,
+			List<PrismContainer<AssignmentType>> inducements) {
+		Entry entry = getRoleEntry(role);
+		if (entry != null) {
+			entry.inducements.put(getInducementsKey(evaluationOrder, focusClass), Collections.unmodifiableList(inducements));
+		}
+	}
+
+	private static String getInducementsKey(int evaluationOrder, Class<?> focusClass) {
+		return evaluationOrder + ":" + (focusClass != null ? focusClass.getName() : null);
+	}
+
+	/**
+	 * Returns assignments of the role as single-value containers prepared for evaluation. Returns null if they are not cached.
+	 * The containers are shared, so they must not be modified.
+	 */
+	public static List<PrismContainer<AssignmentType>> getAssignments(AbstractRoleType role) {
+		Entry entry = getRoleEntry(role);
+		return entry != null ? entry.assignments : null;
+	}
+
+	public static void putAssignments(AbstractRoleType role, List<PrismContainer<AssignmentType>> assignments) {
+		Entry entry = getRoleEntry(role);
+		if (entry != null) {
+			entry.assignments = Collections.unmodifiableList(assignments);
+		}
+	}
+
+	/**
+	 * Returns the entry for the role, if it is cached in the same version as the role being evaluated.
+	 */
+	private static Entry getRoleEntry(AbstractRoleType role) {
+		Entry entry = getValidEntry(role.getOid());
+		if (entry == null || entry.object.getVersion() == null || !entry.object.getVersion().equals(role.getVersion())) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Memoization can be switched off for individual roles (e.g. roles with focus-dependent conditions, as a precaution)
+	 * by setting roleEvaluationCaching extension property of the role to false.
+	 */
+	private static boolean isCachingAllowed(PrismObject<? extends ObjectType> object) {
+		PrismContainer<?> extension = object.getExtension();
+		if (extension == null) {
+			return true;
+		}
+		PrismProperty<Boolean> property = extension.findProperty(SchemaConstants.MODEL_EXTENSION_ROLE_EVALUATION_CACHING);
+		return property == null || !Boolean.FALSE.equals(property.getRealValue());
+	}
+
+	private static List<Authorization> createAuthorizations(AbstractRoleType role) {
+		List<Authorization> authorizations = new ArrayList<>(role.getAuthorization().size());
+		for (AuthorizationType authorizationType : role.getAuthorization()) {
+			Authorization authorization = new Authorization(authorizationType);
+			authorization.setSourceDescription(role.toString());
+			authorizations.add(authorization);
+		}
+		return authorizations;
+	}
+
+	private static Entry getValidEntry(String oid) {
+		RoleEvaluationCache cache = cacheThreadLocal.get();
+		if (cache == null || oid == null) {
+			return null;
+		}
+		Entry entry = cache.entries.get(oid);
+		if (entry == null) {
+			return null;
+		}
+		Long invalidated = invalidations.get(oid);
+		if (invalidated != null && invalidated > entry.timestamp) {
+			log("Cache INVALIDATED entry for {}", oid);
+			cache.entries.remove(oid);
+			return null;
+		}
+		return entry;
+	}
+
+	@Override
+	public String description() {
+		return "role evaluation cache: " + entries.size() + " entries";
+	}
+
+	private static void log(String message, Object... params) {
+		if (LOGGER.isTraceEnabled()) {
+			LOGGER.trace(message, params);
+		}
+		if (PERFORMANCE_ADVISOR.isTraceEnabled()) {
+			PERFORMANCE_ADVISOR.trace(message, params);
+		}
+	}
+
+	private static class Entry {
+		private final PrismObject<? extends ObjectType> object;
+		private final long timestamp;
+		private List<Authorization> authorizations;
+		private final Map<String, List<PrismContainer<AssignmentType>>> inducements = new HashMap<>();
+		private List<PrismContainer<AssignmentType>> assignments;
+
+		Entry(PrismObject<? extends ObjectType> object, long timestamp) {
+			this.object = object;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.lens;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.model.api.context.ModelContext;
+import com.evolveum.midpoint.model.api.context.ModelState;
+import com.evolveum.midpoint.model.api.hooks.ChangeHook;
+import com.evolveum.midpoint.model.api.hooks.HookOperationMode;
+import com.evolveum.midpoint.model.api.hooks.HookRegistry;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Invalidates role evaluation caches when a role (or other abstract role) is modified or deleted.
+ *
+ * @see RoleEvaluationCache
+ * @author agent
+ */
+@Component
+public class RoleEvaluationCacheInvalidator implements ChangeHook {
+
+	public static final String HOOK_URI = "http://midpoint.evolveum.com/model/role-evaluation-cache-invalidator-hook-1";
+
+	@Autowired(required = true)
+	private HookRegistry hookRegistry;
+
+	@PostConstruct
+	public void init() {
+		hookRegistry.registerChangeHook(HOOK_URI, this);
+	}
+
+	@Override
+	public <O extends ObjectType> HookOperationMode invoke(ModelContext<O> context, Task task, OperationResult result) {
+		if (context.getState() != ModelState.FINAL || context.getFocusContext() == null) {
+			return HookOperationMode.FOREGROUND;
+		}
+		Class<O> focusClass = context.getFocusClass();
+		if (focusClass != null && AbstractRoleType.class.isAssignableFrom(focusClass)) {
+			RoleEvaluationCache.invalidate(context.getFocusContext().getOid());
+		}
+		return HookOperationMode.FOREGROUND;
+	}
+
+	@Override
+	public void invokeOnException(ModelContext context, Throwable throwable, Task task, OperationResult result) {
+		// Partially executed changes are possible, so better invalidate.
+		if (context.getFocusContext() != null && context.getFocusClass() != null
+				&& AbstractRoleType.class.isAssignableFrom(context.getFocusClass())) {
+			RoleEvaluationCache.invalidate(context.getFocusContext().getOid());
+		}
+	}
+}
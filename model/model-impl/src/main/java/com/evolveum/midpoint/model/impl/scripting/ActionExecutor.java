@@ -23,6 +23,9 @@ import com.evolveum.midpoint.xml.ns._public.model.scripting_3.ActionExpressionTy
 /**
  * Executes an action of a given type. Instances of this type must be registered with ExpressionEvaluator.
  *
+ * Actions have to process their input items independently of each other, because objects found by
+ * a search in a pipeline can be passed to the actions one by one.
+ *
  * @author mederly
  */
 public interface ActionExecutor {
@@ -35,12 +35,28 @@ public class ExecutionContext {
     private static final Trace LOGGER = TraceManager.getTrace(ExecutionContext.class);
 
     private Task task;
-    private StringBuilder consoleOutput = new StringBuilder();
+    private final StringBuilder consoleOutput;                      // shared with worker contexts
     private Map<String, Data> variables = new HashMap<>();
     private Data finalOutput;                                        // used only when passing result to external clients (TODO do this more cleanly)
 
     public ExecutionContext(Task task) {
         this.task = task;
+        this.consoleOutput = new StringBuilder();
+    }
+
+    private ExecutionContext(Task task, StringBuilder consoleOutput, Map<String, Data> variables) {
+        this.task = task;
+        this.consoleOutput = consoleOutput;
+        this.variables.putAll(variables);
+    }
+
+    /**
+     * Creates a context for processing a single item in a worker thread (or in the current one).
+     * Console output is shared with this context; variables are copied, so that the worker
+     * can set its own values without interfering with other workers.
+     */
+    public ExecutionContext createWorkerContext(Task workerTask) {
+        return new ExecutionContext(workerTask, consoleOutput, variables);
     }
 
     public Task getTask() {
@@ -65,11 +81,15 @@ public class ExecutionContext {
     }
 
     public String getConsoleOutput() {
-        return consoleOutput.toString();
+        synchronized (consoleOutput) {
+            return consoleOutput.toString();
+        }
     }
 
     public void println(Object o) {
-        consoleOutput.append(o).append("\n");
+        synchronized (consoleOutput) {
+            consoleOutput.append(o).append("\n");
+        }
         if (o != null) {
             LOGGER.info(o.toString());          // temporary, until some better way of logging bulk action executions is found
         }
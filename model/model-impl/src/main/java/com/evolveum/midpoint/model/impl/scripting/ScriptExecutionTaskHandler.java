@@ -41,6 +41,11 @@ import javax.annotation.PostConstruct;
 import java.util.List;
 
 /**
+ * Executes a scripting expression stored in the task extension.
+ *
+ * Objects found by a search are streamed through the subsequent actions one by one. If the task has
+ * workerThreads extension property set, the actions are executed by that number of worker threads.
+ *
  * @author mederly
  */
 
@@ -52,6 +52,7 @@ import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -239,12 +240,38 @@ public class ScriptingExpressionEvaluator {
     }
 
     private Data executePipeline(ExpressionPipelineType pipeline, Data data, ExecutionContext context, OperationResult result) throws ScriptExecutionException {
-        for (ScriptingExpressionType expressionType : pipeline.getExpression()) {
+        List<ScriptingExpressionType> expressions = pipeline.getExpression();
+        for (int i = 0; i < expressions.size(); i++) {
+            ScriptingExpressionType expressionType = expressions.get(i);
+            List<ScriptingExpressionType> downstream = expressions.subList(i + 1, expressions.size());
+            if (expressionType instanceof SearchExpressionType && ((SearchExpressionType) expressionType).getScriptingExpression() == null
+                    && !downstream.isEmpty() && isPerItem(downstream)) {
+                // objects found are streamed one by one through the rest of the pipeline, instead of collecting them all first
+                OperationResult searchResult = result.createMinorSubresult(DOT_CLASS + "evaluateExpression");
+                Data output = searchEvaluator.evaluate((SearchExpressionType) expressionType, downstream, data, context, searchResult);
+                searchResult.computeStatusIfUnknown();
+                return output;
+            }
             data = evaluateExpression(expressionType, data, context, result);
         }
         return data;
     }
 
+    /**
+     * Returns true if the expressions can be executed for each item separately, with the same overall effect
+     * and output as if executed for all the items at once. This holds for actions, as they process their
+     * input items one by one. Other expressions (e.g. search or sequence) either ignore their input or work
+     * with it as a whole, so they have to be executed only once.
+     */
+    private boolean isPerItem(List<ScriptingExpressionType> expressions) {
+        for (ScriptingExpressionType expression : expressions) {
+            if (!(expression instanceof ActionExpressionType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Data executeSequence(ExpressionSequenceType sequence, Data input, ExecutionContext context, OperationResult result) throws ScriptExecutionException {
         Data lastOutput = null;
         for (ScriptingExpressionType expressionType : sequence.getExpression()) {
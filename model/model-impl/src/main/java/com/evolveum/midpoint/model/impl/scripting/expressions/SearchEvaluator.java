@@ -21,29 +21,30 @@ import com.evolveum.midpoint.model.impl.scripting.ExecutionContext;
 import com.evolveum.midpoint.model.api.ScriptExecutionException;
 import com.evolveum.midpoint.model.impl.scripting.helpers.ExpressionHelper;
 import com.evolveum.midpoint.model.impl.scripting.helpers.OperationsHelper;
+import com.evolveum.midpoint.model.impl.util.AbstractSearchIterativeResultHandler;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.parser.QueryConvertor;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
-import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.CommonException;
 import com.evolveum.midpoint.util.exception.CommunicationException;
 import com.evolveum.midpoint.util.exception.ConfigurationException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
-import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.model.scripting_3.ScriptingExpressionType;
 import com.evolveum.midpoint.xml.ns._public.model.scripting_3.SearchExpressionType;
 
 import org.apache.commons.lang.Validate;
-import org.apache.commons.lang.mutable.MutableBoolean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import javax.xml.bind.JAXBElement;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author mederly
@@ -59,7 +60,24 @@ public class SearchEvaluator extends BaseExpressionEvaluator {
 
     private static final String PARAM_NO_FETCH = "noFetch";
 
-    public <T extends ObjectType> Data evaluate(final SearchExpressionType searchExpression, Data input, final ExecutionContext context, final OperationResult result) throws ScriptExecutionException {
+    public <T extends ObjectType> Data evaluate(SearchExpressionType searchExpression, Data input, ExecutionContext context, OperationResult result) throws ScriptExecutionException {
+        List<ScriptingExpressionType> downstream = new ArrayList<>();
+        if (searchExpression.getScriptingExpression() != null) {
+            downstream.add(searchExpression.getScriptingExpression().getValue());
+        }
+        return evaluate(searchExpression, downstream, input, context, result);
+    }
+
+    /**
+     * Searches for objects and passes each of them through the downstream expressions (e.g. the embedded
+     * action or the rest of a pipeline) as soon as it is found. So the objects are never collected in memory,
+     * unless there are no downstream expressions - then the objects found are the output.
+     *
+     * If the task has workerThreads extension property set, downstream expressions are executed in
+     * worker threads, just like in other iterative tasks.
+     */
+    public <T extends ObjectType> Data evaluate(final SearchExpressionType searchExpression, final List<ScriptingExpressionType> downstream,
+            Data input, final ExecutionContext context, final OperationResult result) throws ScriptExecutionException {
         Validate.notNull(searchExpression.getType());
 
         boolean noFetch = expressionHelper.getArgumentAsBoolean(searchExpression.getParameter(), PARAM_NO_FETCH, input, context, false, "search", result);
@@ -78,47 +96,26 @@ public class SearchEvaluator extends BaseExpressionEvaluator {
             }
         }
 
-        final String variableName = searchExpression.getVariable();
-
-        Data oldVariableValue = null;
-        if (variableName != null) {
-            oldVariableValue = context.getVariable(variableName);
-        }
-
         final Data outputData = Data.createEmpty();
 
-        final MutableBoolean atLeastOne = new MutableBoolean(false);
-
-        ResultHandler<T> handler = new ResultHandler<T>() {
-            @Override
-            public boolean handle(PrismObject<T> object, OperationResult parentResult) {
-                atLeastOne.setValue(true);
-                if (searchExpression.getScriptingExpression() != null) {
-                    if (variableName != null) {
-                        context.setVariable(variableName, object);
-                    }
-                    JAXBElement<?> childExpression = searchExpression.getScriptingExpression();
-                    try {
-                        outputData.addAllFrom(scriptingExpressionEvaluator.evaluateExpression((ScriptingExpressionType) childExpression.getValue(), Data.create(object), context, result));
-                        result.setSummarizeSuccesses(true);
-                        result.summarize();
-                    } catch (ScriptExecutionException e) {
-                        throw new SystemException(e);           // todo think about this
-                    }
-                } else {
-                    outputData.addItem(object);
-                }
-                return true;
-            }
-        };
-
+        SearchResultHandler<T> handler = new SearchResultHandler<>(searchExpression, downstream, outputData, context);
+        handler.createWorkerThreads(context.getTask(), result);
         try {
             modelService.searchObjectsIterative(objectClass, objectQuery, handler, operationsHelper.createGetOptions(noFetch), context.getTask(), result);
         } catch (SchemaException | ObjectNotFoundException | SecurityViolationException | CommunicationException | ConfigurationException e) {
             throw new ScriptExecutionException("Couldn't execute searchObjects operation: " + e.getMessage(), e);
+        } finally {
+            handler.completeProcessing(context.getTask(), result);
+        }
+
+        if (handler.getFailure() != null) {
+            throw handler.getFailure();
+        }
+        if (handler.getRuntimeFailure() != null) {
+            throw handler.getRuntimeFailure();
         }
 
-        if (atLeastOne.isFalse()) {
+        if (handler.getProgress() == 0) {
             String matching;
             if (objectQuery != null) {
                 matching = "matching ";
@@ -128,10 +125,85 @@ public class SearchEvaluator extends BaseExpressionEvaluator {
             context.println("Warning: no " + matching + searchExpression.getType().getLocalPart() + " object found");          // temporary hack, this will be configurable
         }
 
-        if (variableName != null) {
-            context.setVariable(variableName, oldVariableValue);
-        }
         return outputData;
     }
 
+    private class SearchResultHandler<T extends ObjectType> extends AbstractSearchIterativeResultHandler<T> {
+
+        private final SearchExpressionType searchExpression;
+        private final List<ScriptingExpressionType> downstream;
+        private final Data outputData;
+        private final ExecutionContext context;
+        private volatile ScriptExecutionException failure;
+        private volatile RuntimeException runtimeFailure;
+
+        SearchResultHandler(SearchExpressionType searchExpression, List<ScriptingExpressionType> downstream, Data outputData, ExecutionContext context) {
+            super(context.getTask(), SearchEvaluator.class.getName(), "search", "in scripting expression", taskManager);
+            this.searchExpression = searchExpression;
+            this.downstream = downstream;
+            this.outputData = outputData;
+            this.context = context;
+            // actions record iterative operation statistics and progress themselves
+            setRecordIterationStatistics(false);
+            setReportProgress(false);
+            setEnableActionsExecutedStatistics(true);
+            setLogErrors(false);
+        }
+
+        @Override
+        protected boolean handleObject(PrismObject<T> object, Task workerTask, OperationResult result) throws CommonException {
+            if (downstream.isEmpty()) {
+                synchronized (outputData) {
+                    outputData.addItem(object);
+                }
+                return true;
+            }
+            ExecutionContext workerContext = context.createWorkerContext(workerTask);
+            if (searchExpression.getVariable() != null) {
+                workerContext.setVariable(searchExpression.getVariable(), object);
+            }
+            long progressBefore = workerTask.getProgress();
+            try {
+                Data data = Data.create(object);
+                for (ScriptingExpressionType expression : downstream) {
+                    data = scriptingExpressionEvaluator.evaluateExpression(expression, data, workerContext, result);
+                }
+                synchronized (outputData) {
+                    outputData.addAllFrom(data);
+                }
+                result.computeStatusIfUnknown();
+                return true;
+            } catch (ScriptExecutionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                result.recordFatalError(e.getMessage(), e);
+                return false;
+            } catch (RuntimeException e) {
+                // unexpected exceptions are not treated as processing errors; they abort the whole search
+                if (runtimeFailure == null) {
+                    runtimeFailure = e;
+                }
+                result.recordFatalError(e.getMessage(), e);
+                return false;
+            } finally {
+                // progress recorded by actions in a worker thread is added to the task that executes the script
+                Task coordinatorTask = context.getTask();
+                if (workerTask != coordinatorTask) {
+                    long actionsProgress = workerTask.getProgress() - progressBefore;
+                    synchronized (coordinatorTask) {
+                        coordinatorTask.setProgress(coordinatorTask.getProgress() + actionsProgress);
+                    }
+                }
+            }
+        }
+
+        ScriptExecutionException getFailure() {
+            return failure;
+        }
+
+        RuntimeException getRuntimeFailure() {
+            return runtimeFailure;
+        }
+    }
 }
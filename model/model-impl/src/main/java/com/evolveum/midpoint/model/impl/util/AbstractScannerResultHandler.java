@@ -2,8 +2,12 @@ package com.evolveum.midpoint.model.impl.util;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 
+import com.evolveum.midpoint.model.impl.ModelObjectResolver;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.exception.CommonException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 public abstract class AbstractScannerResultHandler<O extends ObjectType> extends
@@ -11,6 +15,8 @@ public abstract class AbstractScannerResultHandler<O extends ObjectType> extends
 	
 	protected XMLGregorianCalendar lastScanTimestamp;
 	protected XMLGregorianCalendar thisScanTimestamp;
+	private ModelObjectResolver objectResolver;
+	private Class<O> objectType;
 
 	public AbstractScannerResultHandler(Task coordinatorTask, String taskOperationPrefix,
 			String processShortName, String contextDesc, TaskManager taskManager) {
@@ -33,6 +39,22 @@ public abstract class AbstractScannerResultHandler<O extends ObjectType> extends
 		this.thisScanTimestamp = thisScanTimestamp;
 	}
 
+	public void setObjectResolver(ModelObjectResolver objectResolver, Class<O> objectType) {
+		this.objectResolver = objectResolver;
+		this.objectType = objectType;
+	}
+
+	@Override
+	public boolean isOidProcessingSupported() {
+		return true;
+	}
+
+	// scanners search only for OIDs; objects are fetched here, in the worker thread, just before processing
+	@Override
+	protected PrismObject<O> loadObject(String oid, Task workerTask, OperationResult result) throws CommonException {
+		return (PrismObject<O>) objectResolver.getObject(objectType, oid, null, workerTask, result).asPrismObject();
+	}
+
 	
 
 }
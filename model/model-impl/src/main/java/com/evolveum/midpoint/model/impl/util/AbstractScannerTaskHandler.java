@@ -74,9 +74,20 @@ public abstract class AbstractScannerTaskHandler<O extends ObjectType, H extends
         handler.setLastScanTimestamp(lastScanTimestamp);
         
         handler.setThisScanTimestamp(clock.currentTimeXMLGregorianCalendar());
+        handler.setObjectResolver(modelObjectResolver, (Class<O>) getType(task));
 		        
         return true;
 	}
+
+	/**
+	 * Scanners select the objects by (indexed) timestamps only, so the search fetches only OIDs. Each object is
+	 * fetched just before it is processed, in the worker thread, so with worker threads the fetching is parallelized
+	 * as well, and the objects are never kept in memory for the whole search.
+	 */
+	@Override
+	protected boolean searchOidsOnly(H resultHandler, TaskRunResult runResult, Task coordinatorTask, OperationResult opResult) {
+		return true;
+	}
 		
     @Override
 	protected void finish(H handler, TaskRunResult runResult, Task task, OperationResult opResult) throws SchemaException {
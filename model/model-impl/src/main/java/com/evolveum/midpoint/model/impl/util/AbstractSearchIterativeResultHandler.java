@@ -15,6 +15,7 @@
  */
 package com.evolveum.midpoint.model.impl.util;
 
+import com.evolveum.midpoint.model.impl.lens.RoleEvaluationCache;
 import com.evolveum.midpoint.model.impl.sync.TaskHandlerUtil;
 import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.polystring.PolyString;
@@ -32,6 +33,7 @@ import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
@@ -66,9 +68,11 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	private boolean logObjectProgress;
 	private boolean logErrors = true;
 	private boolean recordIterationStatistics = true;				// whether we want to do these ourselves or we let someone else do that for us
+	private boolean reportProgress = true;							// whether we want to update task progress ourselves or we let someone else do that for us
 	private boolean enableIterationStatistics = true;				// whether we want to collect these statistics at all
 	private boolean enableSynchronizationStatistics = false;		// whether we want to collect sync statistics
 	private boolean enableActionsExecutedStatistics = false;		// whether we want to collect repo objects statistics
+	private boolean roleEvaluationCaching = false;					// whether worker threads should memoize role evaluation
 	private BlockingQueue<ProcessingRequest> requestQueue;
 	private AtomicBoolean stopRequestedByAnyWorker = new AtomicBoolean(false);
 	private final long startTime;
@@ -130,6 +134,14 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		this.logObjectProgress = logObjectProgress;
 	}
 
+	public boolean isRoleEvaluationCaching() {
+		return roleEvaluationCaching;
+	}
+
+	public void setRoleEvaluationCaching(boolean roleEvaluationCaching) {
+		this.roleEvaluationCaching = roleEvaluationCaching;
+	}
+
 	public boolean isRecordIterationStatistics() {
 		return recordIterationStatistics;
 	}
@@ -138,6 +150,14 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		this.recordIterationStatistics = recordIterationStatistics;
 	}
 
+	public boolean isReportProgress() {
+		return reportProgress;
+	}
+
+	public void setReportProgress(boolean reportProgress) {
+		this.reportProgress = reportProgress;
+	}
+
 	public boolean isEnableIterationStatistics() {
 		return enableIterationStatistics;
 	}
@@ -171,7 +191,25 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			throw new IllegalArgumentException("Object has null OID");
 		}
 
-		ProcessingRequest request = new ProcessingRequest(object);
+		return submit(new ProcessingRequest(object), parentResult);
+	}
+
+	/**
+	 * Processes an object given only by its OID. The object is fetched by loadObject(..) just before it is processed,
+	 * i.e. in the worker thread (if there are any). This way the search itself can fetch OIDs only, and objects
+	 * are held in memory only while being processed.
+	 */
+	public boolean handleOid(String oid, OperationResult parentResult) {
+		if (oid == null) {
+			throw new IllegalArgumentException("Null OID");
+		}
+		if (!isOidProcessingSupported()) {
+			throw new IllegalStateException(getClass().getSimpleName() + " does not support processing objects given by OIDs");
+		}
+		return submit(new ProcessingRequest(oid), parentResult);
+	}
+
+	private boolean submit(ProcessingRequest request, OperationResult parentResult) {
 		if (requestQueue != null) {
 			// by not putting anything in the parent result we hope the status will be SUCCESS
 			try {
@@ -268,6 +306,19 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 
 		@Override
 		public void run(Task workerTask) {
+			if (roleEvaluationCaching) {
+				RoleEvaluationCache.enterCache();
+			}
+			try {
+				processRequests(workerTask);
+			} finally {
+				if (roleEvaluationCaching) {
+					RoleEvaluationCache.exitCache();
+				}
+			}
+		}
+
+		private void processRequests(Task workerTask) {
 			while (workerTask.canRun()) {
 				ProcessingRequest request;
 				try {
@@ -291,6 +342,12 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	private void processRequest(ProcessingRequest request, Task workerTask, OperationResult parentResult) {
 
 		PrismObject<O> object = request.object;
+		if (object == null) {
+			object = loadRequestedObject(request.oid, workerTask, parentResult);
+			if (object == null) {
+				return;
+			}
+		}
 
 		String objectName = PolyString.getOrig(object.getName());
 		String objectDisplayName = getDisplayName(object);
@@ -363,9 +420,11 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			parentResult.summarize();
 
 			synchronized (coordinatorTask) {
-				coordinatorTask.setProgress(progress);
-				if (requestQueue != null) {
-					workerTask.setProgress(workerTask.getProgress()+1);
+				if (reportProgress) {
+					coordinatorTask.setProgress(progress);
+					if (requestQueue != null) {
+						workerTask.setProgress(workerTask.getProgress()+1);
+					}
 				}
 				// todo report current op result?
 				if (shouldReportProgress()) {
@@ -395,6 +454,45 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		}
 	}
 
+	private PrismObject<O> loadRequestedObject(String oid, Task workerTask, OperationResult parentResult) {
+		OperationResult result = parentResult.createMinorSubresult(taskOperationPrefix + ".loadObject");
+		result.addParam("oid", oid);
+		RepositoryCache.enter();
+		try {
+			PrismObject<O> object = loadObject(oid, workerTask, result);
+			result.recordSuccessIfUnknown();
+			return object;
+		} catch (ObjectNotFoundException e) {
+			// the object was deleted after it had been found; there is nothing to process
+			LOGGER.debug("{}: object {} no longer exists, skipping it", getProcessShortNameCapitalized(), oid);
+			result.recordHandledError(e);
+			return null;
+		} catch (CommonException|RuntimeException e) {
+			if (!processError(oid, e, result)) {
+				stopRequestedByAnyWorker.set(true);
+			}
+			return null;
+		} finally {
+			RepositoryCache.exit();
+			parentResult.summarize();
+		}
+	}
+
+	/**
+	 * Returns true if the handler can process objects given by OIDs, i.e. if it overrides loadObject(..).
+	 */
+	public boolean isOidProcessingSupported() {
+		return false;
+	}
+
+	/**
+	 * Fetches an object for processing requested by handleOid(..). Must be overridden by handlers that support it
+	 * (along with isOidProcessingSupported).
+	 */
+	protected PrismObject<O> loadObject(String oid, Task workerTask, OperationResult result) throws CommonException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support processing objects given by OIDs");
+	}
+
 	// may be overriden
 	protected String getDisplayName(PrismObject<O> object) {
 		return StatisticsUtil.getDisplayName(object);
@@ -420,7 +518,7 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		}
 	}
 
-	private boolean processError(PrismObject<O> object, Exception ex, OperationResult result) {
+	private boolean processError(Object object, Exception ex, OperationResult result) {
 		int errorsCount = errors.incrementAndGet();
 		LOGGER.trace("Processing error, count: {}", errorsCount);
 
@@ -476,10 +574,15 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 
 	public class ProcessingRequest {
 		public PrismObject<O> object;
+		public String oid;					// used if the object is to be loaded by the worker
 
 		public ProcessingRequest(PrismObject<O> object) {
 			this.object = object;
 		}
+
+		public ProcessingRequest(String oid) {
+			this.oid = oid;
+		}
 	}
 
 	public void createWorkerThreads(Task coordinatorTask, OperationResult opResult) {
@@ -497,6 +600,7 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			// we intentionally do not put worker specific result under main operation result until the handler is done
 			// (because of concurrency issues - adding subresults vs e.g. putting main result into the task)
 			OperationResult workerSpecificResult = new OperationResult(taskOperationPrefix + ".handleAsynchronously");
+			workerSpecificResult.setLightweight(opResult.isLightweight());
 			workerSpecificResult.addContext("subtask", i);
 			workerSpecificResults.add(workerSpecificResult);
 
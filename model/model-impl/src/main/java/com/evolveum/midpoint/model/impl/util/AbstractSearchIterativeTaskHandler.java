@@ -18,8 +18,10 @@ package com.evolveum.midpoint.model.impl.util;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.evolveum.midpoint.model.impl.lens.RoleEvaluationCache;
 import com.evolveum.midpoint.model.impl.sync.TaskHandlerUtil;
 import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.query.QueryJaxbConvertor;
@@ -101,6 +103,23 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 		this.taskOperationPrefix = taskOperationPrefix;
 	}
 
+	/**
+	 * Role evaluation caching is off unless it is switched on in the task extension. Tasks that do not
+	 * evaluate assignments are not affected by it at all.
+	 */
+	protected boolean isRoleEvaluationCaching(Task coordinatorTask) {
+		PrismProperty<Boolean> property = coordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_ROLE_EVALUATION_CACHING);
+		return property != null && Boolean.TRUE.equals(property.getRealValue());
+	}
+
+	/**
+	 * Lightweight operation result is off unless it is switched on in the task extension.
+	 */
+	protected boolean isLightweightOperationResult(Task coordinatorTask) {
+		PrismProperty<Boolean> property = coordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_LIGHTWEIGHT_OPERATION_RESULT);
+		return property != null && Boolean.TRUE.equals(property.getRealValue());
+	}
+
 	public boolean isLogFinishInfo() {
 		return logFinishInfo;
 	}
@@ -161,6 +180,7 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
     public TaskRunResult runInternal(Task coordinatorTask) {
 		OperationResult opResult = new OperationResult(taskOperationPrefix + ".run");
 		opResult.setStatus(OperationResultStatus.IN_PROGRESS);
+		opResult.setLightweight(isLightweightOperationResult(coordinatorTask));
 		TaskRunResult runResult = new TaskRunResult();
 		runResult.setOperationResult(opResult);
 
@@ -173,6 +193,7 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
         resultHandler.setEnableIterationStatistics(isEnableIterationStatistics());
         resultHandler.setEnableSynchronizationStatistics(isEnableSynchronizationStatistics());
         resultHandler.setEnableActionsExecutedStatistics(isEnableActionsExecutedStatistics());
+        resultHandler.setRoleEvaluationCaching(isRoleEvaluationCaching(coordinatorTask));
 		
 		boolean cont = initializeRun(resultHandler, runResult, coordinatorTask, opResult);
 		if (!cont) {
@@ -202,6 +223,15 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 
         Collection<SelectorOptions<GetOperationOptions>> queryOptions = createQueryOptions(resultHandler, runResult, coordinatorTask, opResult);
         boolean useRepository = useRepositoryDirectly(resultHandler, runResult, coordinatorTask, opResult);
+        boolean searchOids = searchOidsOnly(resultHandler, runResult, coordinatorTask, opResult);
+        if (searchOids && !resultHandler.isOidProcessingSupported()) {
+            // a programming error; better to find it now than to fail on each object found
+            LOGGER.error("{}: Handler {} does not support processing objects given by OIDs", taskName, resultHandler.getClass().getName());
+            opResult.recordFatalError("Handler " + resultHandler.getClass().getName() + " does not support processing objects given by OIDs");
+            runResult.setRunResultStatus(TaskRunResultStatus.PERMANENT_ERROR);
+            runResult.setProgress(resultHandler.getProgress());
+            return runResult;
+        }
 
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("{}: searching {} with options {}, using query:\n{}", taskName, type, queryOptions, query.debugDump());
@@ -211,7 +241,12 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 
             // counting objects can be within try-catch block, because the handling is similar to handling errors within searchIterative
             Long expectedTotal = null;
-            if (countObjectsOnStart) {
+            List<String> oids = null;
+            if (searchOids) {
+                oids = repositoryService.searchObjectOids(type, query, opResult);
+                expectedTotal = (long) oids.size();
+                LOGGER.trace("{}: found {} objects to be processed", taskName, expectedTotal);
+            } else if (countObjectsOnStart) {
                 if (!useRepository) {
                     Integer expectedTotalInt = modelObjectResolver.countObjects(type, query, queryOptions, coordinatorTask, opResult);
                     if (expectedTotalInt != null) {
@@ -235,10 +270,25 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
             }
 
             resultHandler.createWorkerThreads(coordinatorTask, opResult);
-            if (!useRepository) {
-                modelObjectResolver.searchIterative((Class<O>) type, query, queryOptions, resultHandler, coordinatorTask, opResult);
-            } else {
-                repositoryService.searchObjectsIterative(type, query, (ResultHandler) resultHandler, null, false, opResult);    // TODO think about this
+            if (resultHandler.isRoleEvaluationCaching()) {
+                RoleEvaluationCache.enterCache();           // for objects processed in this thread (if there are no workers)
+            }
+            try {
+                if (oids != null) {
+                    for (String oid : oids) {
+                        if (!resultHandler.handleOid(oid, opResult)) {
+                            break;
+                        }
+                    }
+                } else if (!useRepository) {
+                    modelObjectResolver.searchIterative((Class<O>) type, query, queryOptions, resultHandler, coordinatorTask, opResult);
+                } else {
+                    repositoryService.searchObjectsIterative(type, query, (ResultHandler) resultHandler, null, false, opResult);    // TODO think about this
+                }
+            } finally {
+                if (resultHandler.isRoleEvaluationCaching()) {
+                    RoleEvaluationCache.exitCache();
+                }
             }
             resultHandler.completeProcessing(coordinatorTask, opResult);
 
@@ -425,6 +475,13 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
         return false;
     }
 
+    // if true, the repository is asked only for OIDs of matching objects and the handler loads each object just
+    // before processing it (see AbstractSearchIterativeResultHandler.handleOid); the handler has to implement loadObject
+    // and isOidProcessingSupported, otherwise the task fails right at the start
+    protected boolean searchOidsOnly(H resultHandler, TaskRunResult runResult, Task coordinatorTask, OperationResult opResult) {
+        return false;
+    }
+
     protected abstract Class<? extends ObjectType> getType(Task task);
 
     protected abstract  H createHandler(TaskRunResult runResult, Task coordinatorTask,
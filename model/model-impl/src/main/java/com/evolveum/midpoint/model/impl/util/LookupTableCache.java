@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.model.api.context.ModelContext;
+import com.evolveum.midpoint.model.api.context.ModelState;
+import com.evolveum.midpoint.model.api.hooks.ChangeHook;
+import com.evolveum.midpoint.model.api.hooks.HookOperationMode;
+import com.evolveum.midpoint.model.api.hooks.HookRegistry;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.path.NameItemPathSegment;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
+import com.evolveum.midpoint.prism.query.OrderDirection;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.RelationalValueSearchQuery;
+import com.evolveum.midpoint.schema.RelationalValueSearchType;
+import com.evolveum.midpoint.schema.RetrieveOption;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.util.monitor.Gauge;
+import com.evolveum.midpoint.util.monitor.MetricsRegistry;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.LookupTableRowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.LookupTableType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Node-local cache of lookup tables. A table is loaded from the repository once per version and then
+ * key, prefix and substring searches are answered from in-memory indexes.
+ *
+ * The cached table is dropped when it is modified via model on this node (the cache is a change hook).
+ * Changes made on other nodes or directly in the repository are detected by checking table version,
+ * which is done at most once per VERSION_CHECK_INTERVAL.
+ *
+ * Memory is bounded by the total number of cached rows. Least recently used tables are evicted when
+ * the limit is reached; tables that would not fit at all are not cached and searched in the repository instead.
+ *
+ * @author agent
+ */
+@Component
+public class LookupTableCache implements ChangeHook {
+
+	private static final Trace LOGGER = TraceManager.getTrace(LookupTableCache.class);
+
+	public static final String HOOK_URI = "http://midpoint.evolveum.com/model/lookup-table-cache-hook-1";
+
+	public static final int DEFAULT_MAX_ROWS = 100000;
+	public static final long VERSION_CHECK_INTERVAL = 10000L;
+
+	private static final String DOT_CLASS = LookupTableCache.class.getName() + ".";
+
+	@Autowired(required = true)
+	private HookRegistry hookRegistry;
+
+	@Autowired(required = true)
+	@Qualifier("cacheRepositoryService")
+	private transient RepositoryService cacheRepositoryService;
+
+	@Autowired(required = true)
+	private PrismContext prismContext;
+
+	private int maxRows = DEFAULT_MAX_ROWS;
+
+	// guarded by itself; access order is used to evict least recently used tables
+	private final LinkedHashMap<String, CachedTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+	private int cachedRows;		// guarded by tables
+
+	@PostConstruct
+	public void init() {
+		hookRegistry.registerChangeHook(HOOK_URI, this);
+		MetricsRegistry.getInstance().registerGauge("cache.lookupTable.rows", new Gauge() {
+			@Override
+			public long getValue() {
+				synchronized (tables) {
+					return cachedRows;
+				}
+			}
+		});
+		MetricsRegistry.getInstance().registerGauge("cache.lookupTable.tables", new Gauge() {
+			@Override
+			public long getValue() {
+				synchronized (tables) {
+					return tables.size();
+				}
+			}
+		});
+	}
+
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	public void setMaxRows(int maxRows) {
+		this.maxRows = maxRows;
+		synchronized (tables) {
+			evictIfNeeded();
+		}
+	}
+
+	/**
+	 * Returns the (detached) table object without rows. Useful e.g. for authorization checks.
+	 */
+	public PrismObject<LookupTableType> getTableObject(String tableOid, OperationResult parentResult)
+			throws ObjectNotFoundException, SchemaException {
+		return getTable(tableOid, parentResult).object.clone();
+	}
+
+	/**
+	 * Returns the row with given key, or null if there's no such row.
+	 */
+	public LookupTableRowType findRow(String tableOid, String key, OperationResult parentResult)
+			throws ObjectNotFoundException, SchemaException {
+		List<LookupTableRowType> rows = searchRows(tableOid,
+				new RelationalValueSearchQuery(LookupTableRowType.F_KEY, key, RelationalValueSearchType.EXACT), parentResult);
+		return rows.isEmpty() ? null : rows.get(0);
+	}
+
+	/**
+	 * Returns rows matching the query. Semantics is the same as for the repository search (GetOperationOptions
+	 * with relational value search query): key and value are compared as they are, label is compared
+	 * in the normalized form. If the query is null, all rows are returned.
+	 *
+	 * Returned rows are copies, so the client can freely modify them.
+	 */
+	public List<LookupTableRowType> searchRows(String tableOid, RelationalValueSearchQuery query, OperationResult parentResult)
+			throws ObjectNotFoundException, SchemaException {
+		OperationResult result = parentResult.createMinorSubresult(DOT_CLASS + "searchRows");
+		result.addParam("tableOid", tableOid);
+		result.addParam("query", query);
+		try {
+			CachedTable table = getTable(tableOid, result);
+			List<LookupTableRowType> rows;
+			if (table.isCached()) {
+				rows = table.search(query);
+			} else {
+				rows = searchRepository(tableOid, query, result);
+			}
+			List<LookupTableRowType> rv = new ArrayList<>(rows.size());
+			for (LookupTableRowType row : rows) {
+				rv.add(row.clone());
+			}
+			result.recordSuccess();
+			return rv;
+		} catch (ObjectNotFoundException|SchemaException|RuntimeException e) {
+			result.recordFatalError(e);
+			throw e;
+		}
+	}
+
+	public void invalidate(String tableOid) {
+		synchronized (tables) {
+			CachedTable removed = tables.remove(tableOid);
+			if (removed != null) {
+				cachedRows -= removed.size();
+				LOGGER.trace("Lookup table {} removed from the cache", tableOid);
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (tables) {
+			tables.clear();
+			cachedRows = 0;
+		}
+	}
+
+	private CachedTable getTable(String tableOid, OperationResult result) throws ObjectNotFoundException, SchemaException {
+		CachedTable table;
+		synchronized (tables) {
+			table = tables.get(tableOid);
+		}
+		long now = System.currentTimeMillis();
+		if (table != null) {
+			if (now - table.lastVersionCheck < VERSION_CHECK_INTERVAL) {
+				return table;
+			}
+			String currentVersion = cacheRepositoryService.getVersion(LookupTableType.class, tableOid, result);
+			if (currentVersion != null && currentVersion.equals(table.object.getVersion())) {
+				table.lastVersionCheck = now;
+				return table;
+			}
+			LOGGER.trace("Lookup table {} changed (version {} -> {}), reloading", tableOid, table.object.getVersion(), currentVersion);
+		}
+		table = loadTable(tableOid, result);
+		synchronized (tables) {
+			CachedTable previous = tables.put(tableOid, table);
+			if (previous != null) {
+				cachedRows -= previous.size();
+			}
+			cachedRows += table.size();
+			evictIfNeeded();
+		}
+		return table;
+	}
+
+	private CachedTable loadTable(String tableOid, OperationResult result) throws ObjectNotFoundException, SchemaException {
+		// We ask for one row more than we can cache to find out whether the table is too big.
+		RelationalValueSearchQuery query = new RelationalValueSearchQuery(null, null, null,
+				ObjectPaging.createPaging(0, maxRows + 1));
+		Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(LookupTableType.F_ROW,
+				GetOperationOptions.createRetrieve(query));
+		PrismObject<LookupTableType> object = cacheRepositoryService.getObject(LookupTableType.class, tableOid, options, result);
+		List<LookupTableRowType> rows = new ArrayList<>(object.asObjectable().getRow());
+		object.asObjectable().getRow().clear();
+		if (rows.size() > maxRows) {
+			LOGGER.debug("Lookup table {} has more than {} rows, it will not be cached", object, maxRows);
+			return new CachedTable(object, null);
+		}
+		LOGGER.debug("Loaded lookup table {} with {} rows", object, rows.size());
+		return new CachedTable(object, rows);
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Map.Entry<String, CachedTable>> iterator = tables.entrySet().iterator();
+		while (cachedRows > maxRows && iterator.hasNext()) {
+			Map.Entry<String, CachedTable> eldest = iterator.next();
+			LOGGER.trace("Evicting lookup table {} from the cache", eldest.getKey());
+			cachedRows -= eldest.getValue().size();
+			iterator.remove();
+		}
+	}
+
+	private List<LookupTableRowType> searchRepository(String tableOid, RelationalValueSearchQuery query, OperationResult result)
+			throws ObjectNotFoundException, SchemaException {
+		GetOperationOptions getOptions = query != null ?
+				GetOperationOptions.createRetrieve(query) : GetOperationOptions.createRetrieve(RetrieveOption.INCLUDE);
+		Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(LookupTableType.F_ROW, getOptions);
+		PrismObject<LookupTableType> object = cacheRepositoryService.getObject(LookupTableType.class, tableOid, options, result);
+		return object.asObjectable().getRow();
+	}
+
+	private String normalize(String orig) {
+		return orig != null ? prismContext.getDefaultPolyStringNormalizer().normalize(orig) : null;
+	}
+
+	@Override
+	public <O extends ObjectType> HookOperationMode invoke(ModelContext<O> context, Task task, OperationResult result) {
+		if (context.getState() == ModelState.FINAL) {
+			invalidateIfLookupTable(context);
+		}
+		return HookOperationMode.FOREGROUND;
+	}
+
+	@Override
+	public void invokeOnException(ModelContext context, Throwable throwable, Task task, OperationResult result) {
+		invalidateIfLookupTable(context);
+	}
+
+	private void invalidateIfLookupTable(ModelContext<?> context) {
+		if (context.getFocusContext() != null && context.getFocusClass() != null
+				&& LookupTableType.class.isAssignableFrom(context.getFocusClass())) {
+			invalidate(context.getFocusContext().getOid());
+		}
+	}
+
+	/**
+	 * Table object with rows (if cached) and indexes. Immutable except for lastVersionCheck.
+	 */
+	private class CachedTable {
+		private final PrismObject<LookupTableType> object;
+		private final List<LookupTableRowType> rows;				// null if table was too big to be cached
+		private final Map<String, LookupTableRowType> byKey = new HashMap<>();
+		private final NavigableMap<String, List<LookupTableRowType>> byKeySorted = new TreeMap<>();
+		private final NavigableMap<String, List<LookupTableRowType>> byLabel = new TreeMap<>();
+		private volatile long lastVersionCheck = System.currentTimeMillis();
+
+		private CachedTable(PrismObject<LookupTableType> object, List<LookupTableRowType> rows) {
+			this.object = object;
+			this.rows = rows;
+			if (rows == null) {
+				return;
+			}
+			for (LookupTableRowType row : rows) {
+				if (row.getKey() != null) {
+					byKey.put(row.getKey(), row);
+					addToIndex(byKeySorted, row.getKey(), row);
+				}
+				if (row.getLabel() != null) {
+					addToIndex(byLabel, normalize(row.getLabel().getOrig()), row);
+				}
+			}
+		}
+
+		private void addToIndex(NavigableMap<String, List<LookupTableRowType>> index, String value, LookupTableRowType row) {
+			if (value == null) {
+				return;
+			}
+			List<LookupTableRowType> list = index.get(value);
+			if (list == null) {
+				list = new ArrayList<>(1);
+				index.put(value, list);
+			}
+			list.add(row);
+		}
+
+		private boolean isCached() {
+			return rows != null;
+		}
+
+		private int size() {
+			return rows != null ? rows.size() : 0;
+		}
+
+		private List<LookupTableRowType> search(RelationalValueSearchQuery query) throws SchemaException {
+			List<LookupTableRowType> found;
+			if (query == null || query.getColumn() == null || query.getSearchType() == null
+					|| StringUtils.isEmpty(query.getSearchValue())) {
+				found = rows;
+			} else if (LookupTableRowType.F_KEY.equals(query.getColumn())) {
+				found = searchIndexed(byKeySorted, query.getSearchValue(), query.getSearchType());
+			} else if (LookupTableRowType.F_LABEL.equals(query.getColumn())) {
+				found = searchIndexed(byLabel, normalize(query.getSearchValue()), query.getSearchType());
+			} else if (LookupTableRowType.F_VALUE.equals(query.getColumn())) {
+				found = new ArrayList<>();
+				for (LookupTableRowType row : rows) {
+					if (matches(row.getValue(), query.getSearchValue(), query.getSearchType())) {
+						found.add(row);
+					}
+				}
+			} else {
+				throw new SchemaException("Unsupported lookup table column: " + query.getColumn());
+			}
+			return applyPaging(found, query != null ? query.getPaging() : null);
+		}
+
+		private List<LookupTableRowType> searchIndexed(NavigableMap<String, List<LookupTableRowType>> index, String value,
+				RelationalValueSearchType searchType) {
+			List<LookupTableRowType> found = new ArrayList<>();
+			switch (searchType) {
+				case EXACT:
+					if (index.containsKey(value)) {
+						found.addAll(index.get(value));
+					}
+					break;
+				case STARTS_WITH:
+					for (List<LookupTableRowType> list : index.subMap(value, true, value + Character.MAX_VALUE, true).values()) {
+						found.addAll(list);
+					}
+					break;
+				case SUBSTRING:
+					for (Map.Entry<String, List<LookupTableRowType>> entry : index.entrySet()) {
+						if (entry.getKey().contains(value)) {
+							found.addAll(entry.getValue());
+						}
+					}
+					break;
+			}
+			return found;
+		}
+
+		private boolean matches(String rowValue, String value, RelationalValueSearchType searchType) {
+			if (rowValue == null) {
+				return false;
+			}
+			switch (searchType) {
+				case EXACT: return rowValue.equals(value);
+				case STARTS_WITH: return rowValue.startsWith(value);
+				case SUBSTRING: return rowValue.contains(value);
+				default: return false;
+			}
+		}
+
+		private List<LookupTableRowType> applyPaging(List<LookupTableRowType> found, ObjectPaging paging) throws SchemaException {
+			if (paging == null) {
+				return found;
+			}
+			ItemPath orderBy = paging.getOrderBy();
+			if (orderBy != null && !orderBy.isEmpty()) {
+				if (orderBy.size() > 1 || !(orderBy.first() instanceof NameItemPathSegment)) {
+					throw new SchemaException("OrderBy has to consist of just one naming segment");
+				}
+				found = new ArrayList<>(found);
+				Collections.sort(found, new RowComparator(((NameItemPathSegment) orderBy.first()).getName().getLocalPart(),
+						paging.getDirection() != OrderDirection.DESCENDING));
+			}
+			int from = paging.getOffset() != null ? Math.min(paging.getOffset(), found.size()) : 0;
+			int to = paging.getMaxSize() != null ? Math.min(from + paging.getMaxSize(), found.size()) : found.size();
+			return found.subList(from, to);
+		}
+	}
+
+	private static class RowComparator implements Comparator<LookupTableRowType> {
+		private final String column;
+		private final boolean ascending;
+
+		RowComparator(String column, boolean ascending) {
+			this.column = column;
+			this.ascending = ascending;
+		}
+
+		@Override
+		public int compare(LookupTableRowType o1, LookupTableRowType o2) {
+			int rv = compareValues(getValue(o1), getValue(o2));
+			return ascending ? rv : -rv;
+		}
+
+		private String getValue(LookupTableRowType row) {
+			if (LookupTableRowType.F_KEY.getLocalPart().equals(column)) {
+				return row.getKey();
+			} else if (LookupTableRowType.F_VALUE.getLocalPart().equals(column)) {
+				return row.getValue();
+			} else if (LookupTableRowType.F_LABEL.getLocalPart().equals(column)) {
+				return row.getLabel() != null ? row.getLabel().getOrig() : null;
+			} else {
+				return null;
+			}
+		}
+
+		private int compareValues(String s1, String s2) {
+			if (s1 == null) {
+				return s2 == null ? 0 : -1;
+			} else {
+				return s2 == null ? 1 : s1.compareTo(s2);
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.integrity;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author agent
+ */
+public class TestIdentifierValueIndex {
+
+    private static final QName NAME = new QName("http://midpoint.evolveum.com/xml/ns/public/connector/icf-1/resource-schema-3", "name");
+    private static final QName UID = new QName("http://midpoint.evolveum.com/xml/ns/public/connector/icf-1/resource-schema-3", "uid");
+
+    @Test
+    public void testInMemory() {
+        checkDuplicates(new IdentifierValueIndex());
+    }
+
+    @Test
+    public void testSpilled() {
+        checkDuplicates(new IdentifierValueIndex(7));
+    }
+
+    private void checkDuplicates(IdentifierValueIndex index) {
+        ObjectTypeContext accounts = new ObjectTypeContext();
+        ObjectTypeContext groups = new ObjectTypeContext();
+        int accountNames = index.getSlot(accounts, NAME);
+        int accountUids = index.getSlot(accounts, UID);
+        int groupNames = index.getSlot(groups, NAME);
+        assertEquals("Slot is not reused", accountNames, index.getSlot(accounts, NAME));
+
+        for (int i = 0; i < 50; i++) {
+            index.add(accountNames, "user" + i, "a" + i, false);
+            index.add(accountUids, "uid" + i, "a" + i, false);
+            index.add(groupNames, "user" + i, "g" + i, false);     // the same values in another slot are not duplicates
+        }
+        index.add(accountNames, "user3", "a100", true);
+        index.add(accountNames, "user42", "a101", false);
+        index.add(accountNames, "user42", "a102", false);
+        index.add(groupNames, "user7", "g100", false);
+        assertEquals("Wrong size", 154, index.size());
+
+        final List<Integer> slots = new ArrayList<>();
+        final Set<String> groupsFound = new HashSet<>();
+        try {
+            index.processCandidates(new IdentifierValueIndex.CandidateHandler() {
+                @Override
+                public void handle(int slot, List<IdentifierValueIndex.Entry> entries) {
+                    slots.add(slot);
+                    StringBuilder sb = new StringBuilder();
+                    for (IdentifierValueIndex.Entry entry : entries) {
+                        sb.append(entry.getOid()).append(entry.isExistsOnResource() ? "+" : "").append(' ');
+                    }
+                    groupsFound.add(sb.toString().trim());
+                }
+            });
+        } finally {
+            index.clear();
+        }
+
+        Set<String> expected = new HashSet<>();
+        expected.add("a100+ a3");
+        expected.add("a101 a102 a42");
+        expected.add("g100 g7");
+        assertEquals("Wrong duplicate groups", expected, groupsFound);
+        assertEquals("Groups are not ordered by slot", groupNames, (int) slots.get(slots.size() - 1));
+        assertEquals("Index not cleared", 0, index.size());
+    }
+}
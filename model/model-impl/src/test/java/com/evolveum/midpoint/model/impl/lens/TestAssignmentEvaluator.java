@@ -22,12 +22,14 @@ import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 import static com.evolveum.midpoint.test.IntegrationTestTools.*;
 import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.xml.bind.JAXBException;
@@ -60,6 +62,7 @@ import com.evolveum.midpoint.prism.PrismContainer;
 import com.evolveum.midpoint.prism.PrismContainerDefinition;
 import com.evolveum.midpoint.prism.PrismContainerValue;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.PrismPropertyDefinition;
 import com.evolveum.midpoint.prism.PrismPropertyValue;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
@@ -77,6 +80,7 @@ import com.evolveum.midpoint.test.util.TestUtil;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 
 /**
@@ -454,6 +458,102 @@ public class TestAssignmentEvaluator extends AbstractLensTest {
         assertEquals("Wrong number of admin GUI configs", 1, evaluatedAssignment.getAdminGuiConfigurations().size());
     }
 
+    /**
+     * Evaluates the same role twice with role evaluation cache entered. The second evaluation
+     * takes the role from the cache and it must give the same results.
+     */
+    @Test
+    public void testRoleEngineerCached() throws Exception {
+        final String TEST_NAME = "testRoleEngineerCached";
+        TestUtil.displayTestTile(this, TEST_NAME);
+
+        // GIVEN
+        Task task = taskManager.createTaskInstance(TestAssignmentEvaluator.class.getName() + "." + TEST_NAME);
+        OperationResult result = task.getResult();
+        AssignmentType assignmentType = getAssignmentType(ASSIGNMENT_ROLE_ENGINEER_FILE);
+
+        ObjectDeltaObject<UserType> userOdo = new ObjectDeltaObject<>(userTypeJack.asPrismObject(), null, null);
+        userOdo.recompute();
+
+        RoleEvaluationCache.enterCache();
+        try {
+            assertNull("Engineer role cached prematurely", RoleEvaluationCache.getObject(RoleType.class, ROLE_CORP_ENGINEER_OID));
+
+            // WHEN
+            TestUtil.displayWhen(TEST_NAME);
+            EvaluatedAssignmentImpl<UserType> evaluatedAssignment1 = evaluateAssignment(assignmentType, userOdo, task, result);
+            PrismObject<RoleType> cachedRole = RoleEvaluationCache.getObject(RoleType.class, ROLE_CORP_ENGINEER_OID);
+            assertNotNull("Engineer role not cached", cachedRole);
+            List<PrismContainer<AssignmentType>> inducements = RoleEvaluationCache.getInducements(cachedRole.asObjectable(), 1, UserType.class);
+            assertNotNull("Engineer role inducements not cached", inducements);
+            EvaluatedAssignmentImpl<UserType> evaluatedAssignment2 = evaluateAssignment(assignmentType, userOdo, task, result);
+            assertSame("Engineer role inducements prepared again", inducements,
+                    RoleEvaluationCache.getInducements(cachedRole.asObjectable(), 1, UserType.class));
+
+            // THEN
+            TestUtil.displayThen(TEST_NAME);
+            result.computeStatus();
+            TestUtil.assertSuccess(result);
+            display("Evaluated assignment (cached)", evaluatedAssignment2.debugDump());
+            assertEquals(4, evaluatedAssignment2.getConstructions().size());
+            assertConstruction(evaluatedAssignment2, ZERO, "title", ZERO, "Employee", "Engineer");
+            assertConstruction(evaluatedAssignment2, ZERO, "location", ZERO, "Caribbean");
+            assertEquals("Different authorizations from cached role", evaluatedAssignment1.getAuthorizations(),
+                    evaluatedAssignment2.getAuthorizations());
+
+            RoleEvaluationCache.invalidate(ROLE_CORP_ENGINEER_OID);
+            assertNull("Engineer role cached after invalidation", RoleEvaluationCache.getObject(RoleType.class, ROLE_CORP_ENGINEER_OID));
+        } finally {
+            RoleEvaluationCache.exitCache();
+        }
+        assertEquals("Invalidation records kept after the cache was exited", 0, RoleEvaluationCache.getInvalidationsCount());
+    }
+
+    /**
+     * A role with roleEvaluationCaching extension property set to false is never cached.
+     */
+    @Test
+    public void testRoleEngineerCachingDisabled() throws Exception {
+        final String TEST_NAME = "testRoleEngineerCachingDisabled";
+        TestUtil.displayTestTile(this, TEST_NAME);
+
+        // GIVEN
+        Task task = taskManager.createTaskInstance(TestAssignmentEvaluator.class.getName() + "." + TEST_NAME);
+        OperationResult result = task.getResult();
+        PrismObject<RoleType> role = repositoryService.getObject(RoleType.class, ROLE_CORP_ENGINEER_OID, null, result);
+        PrismPropertyDefinition<Boolean> cachingDefinition = prismContext.getSchemaRegistry()
+                .findPropertyDefinitionByElementName(SchemaConstants.MODEL_EXTENSION_ROLE_EVALUATION_CACHING);
+        PrismProperty<Boolean> caching = cachingDefinition.instantiate();
+        caching.setRealValue(Boolean.FALSE);
+        role.addExtensionItem(caching);
+
+        RoleEvaluationCache.enterCache();
+        try {
+            // WHEN
+            TestUtil.displayWhen(TEST_NAME);
+            RoleEvaluationCache.putObject(role, RoleEvaluationCache.getTimestamp());
+
+            // THEN
+            TestUtil.displayThen(TEST_NAME);
+            assertNull("Role with caching switched off was cached", RoleEvaluationCache.getObject(RoleType.class, ROLE_CORP_ENGINEER_OID));
+            assertNull("Inducements of role with caching switched off were cached",
+                    RoleEvaluationCache.getInducements(role.asObjectable(), 1, UserType.class));
+        } finally {
+            RoleEvaluationCache.exitCache();
+        }
+    }
+
+    private EvaluatedAssignmentImpl<UserType> evaluateAssignment(AssignmentType assignmentType, ObjectDeltaObject<UserType> userOdo,
+            Task task, OperationResult result) throws Exception {
+        AssignmentEvaluator<UserType> assignmentEvaluator = createAssignmentEvaluator();
+        ItemDeltaItem<PrismContainerValue<AssignmentType>,PrismContainerDefinition<AssignmentType>> assignmentIdi = new ItemDeltaItem<>();
+        assignmentIdi.setItemOld(LensUtil.createAssignmentSingleValueContainerClone(assignmentType));
+        assignmentIdi.recompute();
+        EvaluatedAssignmentImpl<UserType> evaluatedAssignment = assignmentEvaluator.evaluate(assignmentIdi, false, userTypeJack, TestAssignmentEvaluator.class.getSimpleName(), task, result);
+        evaluatedAssignment.evaluateConstructions(userOdo, task, result);
+        return evaluatedAssignment;
+    }
+
     @Test
     public void testAddRoleEngineer() throws Exception {
         final String TEST_NAME = "testAddRoleEngineer";
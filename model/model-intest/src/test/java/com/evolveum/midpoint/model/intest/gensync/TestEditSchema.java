@@ -73,6 +73,7 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 
 import javax.xml.namespace.QName;
 
@@ -439,6 +440,44 @@ public class TestEditSchema extends AbstractGenericSyncTest {
     }
 
 
+    /**
+     * Same searches as above, but using the lookup table cache.
+     */
+    @Test
+    public void test145LookupLanguagesCachedSearch() throws Exception {
+        final String TEST_NAME="test145LookupLanguagesCachedSearch";
+        TestUtil.displayTestTile(this, TEST_NAME);
+
+        // GIVEN
+        Task task = taskManager.createTaskInstance(TestEditSchema.class.getName() + "." + TEST_NAME);
+        OperationResult result = task.getResult();
+
+        // WHEN
+        TestUtil.displayWhen(TEST_NAME);
+        List<LookupTableRowType> all = modelInteractionService.searchLookupTableRows(LOOKUP_LANGUAGES_OID, null, task, result);
+        List<LookupTableRowType> byKeyPrefix = modelInteractionService.searchLookupTableRows(LOOKUP_LANGUAGES_OID,
+                new RelationalValueSearchQuery(LookupTableRowType.F_KEY, "e", RelationalValueSearchType.STARTS_WITH), task, result);
+        List<LookupTableRowType> byLabelPrefix = modelInteractionService.searchLookupTableRows(LOOKUP_LANGUAGES_OID,
+                new RelationalValueSearchQuery(LookupTableRowType.F_LABEL, "Eng", RelationalValueSearchType.STARTS_WITH), task, result);
+        List<LookupTableRowType> byKeySubstringPaged = modelInteractionService.searchLookupTableRows(LOOKUP_LANGUAGES_OID,
+                new RelationalValueSearchQuery(LookupTableRowType.F_KEY, "_", RelationalValueSearchType.SUBSTRING,
+                        ObjectPaging.createPaging(2, 1, LookupTableRowType.F_KEY, OrderDirection.ASCENDING)), task, result);
+        List<LookupTableRowType> byValue = modelInteractionService.searchLookupTableRows(LOOKUP_LANGUAGES_OID,
+                new RelationalValueSearchQuery(LookupTableRowType.F_VALUE, "sk", RelationalValueSearchType.EXACT), task, result);
+
+        // THEN
+        TestUtil.displayThen(TEST_NAME);
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertEquals("Unexpected number of all rows", 4, all.size());
+        assertEquals("Unexpected number of rows by key prefix", 2, byKeyPrefix.size());
+        assertEquals("Unexpected number of rows by label prefix", 2, byLabelPrefix.size());
+        assertEquals("Unexpected number of rows by key substring (paged)", 1, byKeySubstringPaged.size());
+        assertEquals("Wrong row by key substring (paged)", "sk_SK", byKeySubstringPaged.get(0).getKey());
+        assertEquals("Unexpected number of rows by value", 1, byValue.size());
+        assertEquals("Wrong row by value", "sk_SK", byValue.get(0).getKey());
+    }
+
     @Test
     public void test150LookupLanguagesAddRowFull() throws Exception {
 		final String TEST_NAME="test150LookupLanguagesAddRow";
@@ -487,6 +526,32 @@ public class TestEditSchema extends AbstractGenericSyncTest {
         assertSteadyResources();
     }
 
+    /**
+     * Searches rows using the lookup table cache. Checks that the row added in test150 is there,
+     * i.e. that the table cached in test145 was invalidated.
+     */
+    @Test
+    public void test151LookupLanguagesCachedSearchAfterAdd() throws Exception {
+        final String TEST_NAME="test151LookupLanguagesCachedSearchAfterAdd";
+        TestUtil.displayTestTile(this, TEST_NAME);
+
+        // GIVEN
+        Task task = taskManager.createTaskInstance(TestEditSchema.class.getName() + "." + TEST_NAME);
+        OperationResult result = task.getResult();
+
+        // WHEN
+        TestUtil.displayWhen(TEST_NAME);
+        RelationalValueSearchQuery query = new RelationalValueSearchQuery(LookupTableRowType.F_KEY, "gi_GI", RelationalValueSearchType.EXACT);
+        List<LookupTableRowType> rows = modelInteractionService.searchLookupTableRows(LOOKUP_LANGUAGES_OID, query, task, result);
+
+        // THEN
+        TestUtil.displayThen(TEST_NAME);
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertEquals("Unexpected number of rows", 1, rows.size());
+        assertEquals("Wrong value", "gi", rows.get(0).getValue());
+    }
+
     @Test
     public void test152LookupLanguagesAddRowKeyLabel() throws Exception {
 		final String TEST_NAME="test152LookupLanguagesAddRowKeyLabel";
@@ -974,6 +1039,41 @@ public class TestEditSchema extends AbstractGenericSyncTest {
         assertSteadyResources();
     }
 
+    @Test
+    public void test184LookupLanguagesGetCached() throws Exception {
+        final String TEST_NAME="test184LookupLanguagesGetCached";
+        TestUtil.displayTestTile(this, TEST_NAME);
+
+        // GIVEN
+        Task task = taskManager.createTaskInstance(TestModelServiceContract.class.getName() + "." + TEST_NAME);
+        OperationResult result = task.getResult();
+
+        // WHEN
+        TestUtil.displayWhen(TEST_NAME);
+        PrismObject<LookupTableType> lookup = modelInteractionService.getLookupTable(LOOKUP_LANGUAGES_OID, task, result);
+
+        // THEN
+        TestUtil.displayThen(TEST_NAME);
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+
+        IntegrationTestTools.display("Languages", lookup);
+
+        assertEquals("Wrong lang lookup name", "Languages", lookup.asObjectable().getName().getOrig());
+
+        checkLookupResult(lookup, new String[]{"en_US", "en", "English (US)"},
+                new String[]{"en_PR", "en", "English (pirate)"},
+                new String[]{"sk_SK", "sk", "Slovak"},
+                new String[]{"tr_TR", "tr", "Turkish"});
+
+        // the returned object is a copy, changing it must not affect the cached table
+        lookup.asObjectable().getRow().clear();
+        PrismObject<LookupTableType> lookupAgain = modelInteractionService.getLookupTable(LOOKUP_LANGUAGES_OID, task, result);
+        assertEquals("Wrong number of rows after modifying the returned copy", 4, lookupAgain.asObjectable().getRow().size());
+
+        assertSteadyResources();
+    }
+
 
     private void assertLookupRow(PrismContainer<LookupTableRowType> tableContainer, String key, String value,
 			String label) {
@@ -24,6 +24,7 @@ import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTes
 import com.evolveum.midpoint.prism.Item;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismProperty;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
 import com.evolveum.midpoint.task.api.Task;
@@ -31,6 +32,7 @@ import com.evolveum.midpoint.test.IntegrationTestTools;
 import com.evolveum.midpoint.test.util.LogfileTestTailer;
 import com.evolveum.midpoint.test.util.TestUtil;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.midpoint.xml.ns._public.model.scripting_3.ActionExpressionType;
@@ -82,6 +84,8 @@ public class TestScriptingBasic extends AbstractInitializedModelIntegrationTest
     private static final File ASSIGN_TO_JACK_2_FILE = new File(TEST_DIR, "assign-to-jack-2.xml");
     private static final File PURGE_DUMMY_BLACK_SCHEMA_FILE = new File(TEST_DIR, "purge-dummy-black-schema.xml");
     private static final File TEST_DUMMY_RESOURCE_FILE = new File(TEST_DIR, "test-dummy-resource.xml");
+    private static final File MODIFY_USERS_FILE = new File(TEST_DIR, "modify-users.xml");
+    private static final File SEARCH_USERS_THEN_ROLES_FILE = new File(TEST_DIR, "search-users-then-roles.xml");
 
     @Autowired
     private ScriptingExpressionEvaluator scriptingExpressionEvaluator;
@@ -479,6 +483,55 @@ public class TestScriptingBasic extends AbstractInitializedModelIntegrationTest
         assertAdministrativeStatusDisabled(jack);
     }
 
+    @Test
+    public void test390ModifyUsersInBackgroundWithWorkers() throws Exception {
+        TestUtil.displayTestTile(this, "test390ModifyUsersInBackgroundWithWorkers");
+
+        // GIVEN
+        OperationResult result = new OperationResult(DOT_CLASS + "test390ModifyUsersInBackgroundWithWorkers");
+        PrismProperty<ScriptingExpressionType> expression = (PrismProperty) prismContext.parseAnyData(MODIFY_USERS_FILE);
+
+        // WHEN
+        Task task = taskManager.createTaskInstance();
+        task.setOwner(getUser(USER_ADMINISTRATOR_OID));
+        task.setExtensionPropertyValue(SchemaConstants.MODEL_EXTENSION_WORKER_THREADS, 2);
+        scriptingExpressionEvaluator.evaluateExpressionInBackground(expression.getAnyValue().getValue(), task, result);
+        waitForTaskFinish(task.getOid(), false);
+        task.refresh(result);
+
+        // THEN
+        IntegrationTestTools.display(task.getResult());
+        TestUtil.assertSuccess(task.getResult());
+        // each modified user is counted once (by the action), not once more by the search
+        assertEquals("Wrong task progress", 2, task.getProgress());
+        assertEquals("Caribbean", getUser(USER_ADMINISTRATOR_OID).asObjectable().getLocality().getOrig());
+        assertEquals("Caribbean", searchObjectByName(UserType.class, "jack").asObjectable().getLocality().getOrig());
+    }
+
+    /**
+     * Two-stage pipeline that ends in a stage that works with its input as a whole. Users found by the first
+     * search must not be streamed through it one by one, otherwise the roles would be found once per user.
+     */
+    @Test
+    public void test395SearchUsersThenRoles() throws Exception {
+        TestUtil.displayTestTile(this, "test395SearchUsersThenRoles");
+
+        // GIVEN
+        OperationResult result = new OperationResult(DOT_CLASS + "test395SearchUsersThenRoles");
+        Task task = taskManager.createTaskInstance(DOT_CLASS + "test395SearchUsersThenRoles");
+        PrismProperty<ScriptingExpressionType> expression = (PrismProperty) prismContext.parseAnyData(SEARCH_USERS_THEN_ROLES_FILE);
+        int roles = modelService.countObjects(RoleType.class, null, null, task, result);
+
+        // WHEN
+        ExecutionContext output = scriptingExpressionEvaluator.evaluateExpression(expression.getAnyValue().getValue(), result);
+
+        // THEN
+        IntegrationTestTools.display("output", output.getFinalOutput());
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertEquals("Wrong number of roles found", roles, output.getFinalOutput().getData().size());
+    }
+
     @Test(enabled = true)
     public void test400PurgeSchema() throws Exception {
         TestUtil.displayTestTile(this, "test400PurgeSchema");
@@ -21,7 +21,6 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -59,9 +58,12 @@ import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.PrismPropertyDefinition;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.path.IdentifierPathSegment;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.query.LessFilter;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrderDirection;
 import com.evolveum.midpoint.prism.schema.PrismSchema;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.report.api.ReportManager;
@@ -69,6 +71,7 @@ import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.schema.util.CleanupPolicyUtil;
 import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
 import com.evolveum.midpoint.schema.util.ParamsTypeUtil;
 import com.evolveum.midpoint.schema.util.ReportTypeUtil;
@@ -105,6 +108,7 @@ public class ReportManagerImpl implements ReportManager, ChangeHook, ReadHook {
     
     private static final String CLASS_NAME_WITH_DOT = ReportManagerImpl.class + ".";
     private static final String CLEANUP_REPORT_OUTPUTS = CLASS_NAME_WITH_DOT + "cleanupReportOutputs";
+    private static final int CLEANUP_REPORT_OUTPUTS_BATCH_SIZE = 100;
     private static final String DELETE_REPORT_OUTPUT = CLASS_NAME_WITH_DOT + "deleteReportOutput";
     private static final String REPORT_OUTPUT_DATA = CLASS_NAME_WITH_DOT + "getReportOutputData";
     
@@ -309,32 +313,42 @@ public class ReportManagerImpl implements ReportManager, ChangeHook, ReadHook {
 
         XMLGregorianCalendar timeXml = XmlTypeConverter.createXMLGregorianCalendar(deleteReportOutputsTo.getTime());
         
-        List<PrismObject<ReportOutputType>> obsoleteReportOutputs = new ArrayList<PrismObject<ReportOutputType>>();
-        try {
-            ObjectQuery obsoleteReportOutputsQuery = ObjectQuery.createObjectQuery(LessFilter.createLess(
-            		new ItemPath(ReportOutputType.F_METADATA, MetadataType.F_CREATE_TIMESTAMP), 
-            		ReportOutputType.class, prismContext, timeXml, true));
-            obsoleteReportOutputs = modelService.searchObjects(ReportOutputType.class, obsoleteReportOutputsQuery, null, null, result);
-        } catch (Exception e) {
-            throw new SystemException("Couldn't get the list of obsolete report outputs: " + e.getMessage(), e);
-        }
-
-        LOGGER.debug("Found {} report output(s) to be cleaned up", obsoleteReportOutputs.size());
+        int batchSize = CleanupPolicyUtil.getBatchSize(cleanupPolicy, CLEANUP_REPORT_OUTPUTS_BATCH_SIZE);
+        long start = System.currentTimeMillis();
 
         boolean interrupted = false;
         int deleted = 0;
         int problems = 0;
-        
-        for (PrismObject<ReportOutputType> reportOutputPrism : obsoleteReportOutputs){
-        	ReportOutputType reportOutput = reportOutputPrism.asObjectable();
-        	
-        	LOGGER.trace("Removing report output {} along with {} file.", reportOutput.getName().getOrig(), 
-        			reportOutput.getFilePath());
-        	boolean problem = false;
-        	try {
+
+        // report outputs that couldn't be deleted stay in the repository, so they are skipped using the offset;
+        // the outputs are ordered (oldest first, then by OID) so the offset skips exactly these
+        for (;;) {
+            List<PrismObject<ReportOutputType>> obsoleteReportOutputs;
+            try {
+                ObjectQuery obsoleteReportOutputsQuery = ObjectQuery.createObjectQuery(LessFilter.createLess(
+                        new ItemPath(ReportOutputType.F_METADATA, MetadataType.F_CREATE_TIMESTAMP),
+                        ReportOutputType.class, prismContext, timeXml, true));
+                ObjectPaging paging = ObjectPaging.createPaging(problems, batchSize,
+                        new ItemPath(ReportOutputType.F_METADATA, MetadataType.F_CREATE_TIMESTAMP), OrderDirection.ASCENDING);
+                paging.addOrderingInstruction(new ItemPath(new IdentifierPathSegment()), OrderDirection.ASCENDING);
+                obsoleteReportOutputsQuery.setPaging(paging);
+                obsoleteReportOutputs = modelService.searchObjects(ReportOutputType.class, obsoleteReportOutputsQuery, null, null, result);
+            } catch (Exception e) {
+                throw new SystemException("Couldn't get the list of obsolete report outputs: " + e.getMessage(), e);
+            }
+
+            LOGGER.debug("Found {} report output(s) to be cleaned up in this batch", obsoleteReportOutputs.size());
+
+            for (PrismObject<ReportOutputType> reportOutputPrism : obsoleteReportOutputs){
+                ReportOutputType reportOutput = reportOutputPrism.asObjectable();
+
+                LOGGER.trace("Removing report output {} along with {} file.", reportOutput.getName().getOrig(),
+                        reportOutput.getFilePath());
+                boolean problem = false;
+                try {
                     deleteReportOutput(reportOutput, result);
                 } catch (Exception e) {
-                	LoggingUtils.logException(LOGGER, "Couldn't delete obsolete report output {} due to a exception", e, reportOutput);
+                    LoggingUtils.logException(LOGGER, "Couldn't delete obsolete report output {} due to a exception", e, reportOutput);
                     problem = true;
                 }
 
@@ -342,13 +356,25 @@ public class ReportManagerImpl implements ReportManager, ChangeHook, ReadHook {
                     problems++;
                 } else {
                     deleted++;
+                }
+            }
+            result.summarize();
+            if (obsoleteReportOutputs.size() < batchSize) {
+                break;
+            }
+            LOGGER.debug("Report cleanup progress: deleted {} report outputs ({} per second).", deleted,
+                    CleanupPolicyUtil.formatRate(deleted, start));
+            if (!CleanupPolicyUtil.pauseAfterBatch(cleanupPolicy)) {
+                interrupted = true;
+                break;
             }
         }
         result.computeStatusIfUnknown();
 
         LOGGER.info("Report cleanup procedure " + 
         (interrupted ? "was interrupted" : "finished") + 
-        ". Successfully deleted {} report outputs; there were problems with deleting {} report ouptuts.", deleted, problems);
+        ". Successfully deleted {} report outputs ({} per second); there were problems with deleting {} report ouptuts.",
+                deleted, CleanupPolicyUtil.formatRate(deleted, start), problems);
         String suffix = interrupted ? " Interrupted." : "";
         if (problems == 0) {
             parentResult.createSubresult(CLEANUP_REPORT_OUTPUTS + ".statistics").recordStatus(OperationResultStatus.SUCCESS,
@@ -15,8 +15,10 @@
  */
 package com.evolveum.midpoint.provisioning.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
@@ -55,6 +57,7 @@ import com.evolveum.midpoint.provisioning.ucf.api.ResultHandler;
 import com.evolveum.midpoint.provisioning.util.ProvisioningUtil;
 import com.evolveum.midpoint.schema.processor.ResourceAttribute;
 import com.evolveum.midpoint.schema.processor.ResourceAttributeContainer;
+import com.evolveum.midpoint.schema.processor.ResourceAttributeDefinition;
 import com.evolveum.midpoint.schema.processor.ResourceObjectIdentification;
 import com.evolveum.midpoint.schema.processor.SearchHierarchyConstraints;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -238,21 +241,6 @@ class EntitlementConverter {
 			throw new SchemaException("Value attribute "+valueAttrName+" has no more than one value; attribute defined in entitlement association '"+associationName+"' in "+resourceType);
 		}
 		
-		ObjectQuery query = createQuery(assocDefType, assocAttrDef, valueAttr);
-		
-		AttributesToReturn attributesToReturn = ProvisioningUtil.createAttributesToReturn(entitlementCtx);
-		
-		SearchHierarchyConstraints searchHierarchyConstraints = null;
-		ResourceObjectReferenceType baseContextRef = entitlementDef.getBaseContext();
-		if (baseContextRef != null) {
-			// TODO: this should be done once per search. Not in every run of postProcessEntitlementEntitlementToSubject
-			// this has to go outside of this method
-			PrismObject<ShadowType> baseContextShadow = resourceObjectReferenceResolver.resolve(baseContextRef, "base context specification in "+entitlementDef, parentResult);
-			RefinedObjectClassDefinition baseContextObjectClassDefinition = subjectCtx.getRefinedSchema().determineCompositeObjectClassDefinition(baseContextShadow);
-			ResourceObjectIdentification baseContextIdentification = new ResourceObjectIdentification(baseContextObjectClassDefinition, ShadowUtil.getIdentifiers(baseContextShadow));
-			searchHierarchyConstraints = new SearchHierarchyConstraints(baseContextIdentification, null);
-		}
-		
 		ResultHandler<ShadowType> handler = new ResultHandler<ShadowType>() {
 			@Override
 			public boolean handle(PrismObject<ShadowType> entitlementShadow) {
@@ -278,6 +266,35 @@ class EntitlementConverter {
 			}
 		};
 		
+		// When many subjects are read (e.g. in a search), the entitlements are searched only once and indexed.
+		// The index compares values in memory using the matching rule of the association (or of the association
+		// attribute); without a matching rule the values are compared as they are (the default matching rule).
+		QName indexMatchingRuleName = getIndexMatchingRuleName(assocDefType, assocAttrDef);
+		EntitlementIndex.AssociationIndex index = EntitlementIndex.getAssociationIndex(resourceType.getOid(),
+				getAssociationIndexKey(entitlementDef, assocAttrName, indexMatchingRuleName), entitlementDef.getTypeName(), valueAttrName);
+		if (index != null && index.shouldBuild()) {
+			buildEntitlementIndex(subjectCtx, entitlementCtx, assocDefType, assocAttrDef, indexMatchingRuleName, index, parentResult);
+		}
+		if (index != null && index.isReady()) {
+			Object normalizedValue = normalizeValue(indexMatchingRuleName, assocAttrDef, valueAttr).getValue();
+			try {
+				for (PrismObject<ShadowType> entitlementShadow : index.getEntitlements(normalizedValue)) {
+					handler.handle(entitlementShadow.clone());
+				}
+			} catch (TunnelException e) {
+				throw (SchemaException)e.getCause();
+			}
+			return;
+		}
+		
+		ObjectQuery query = createQuery(assocDefType, assocAttrDef, valueAttr);
+		
+		AttributesToReturn attributesToReturn = ProvisioningUtil.createAttributesToReturn(entitlementCtx);
+		
+		// TODO: this should be done once per search. Not in every run of postProcessEntitlementEntitlementToSubject
+		// (it is done only once if the entitlement index is used)
+		SearchHierarchyConstraints searchHierarchyConstraints = getSearchHierarchyConstraints(subjectCtx, entitlementDef, parentResult);
+		
 		ConnectorInstance connector = subjectCtx.getConnector(parentResult);
 		try {
 			if (LOGGER.isTraceEnabled()) {
@@ -296,22 +313,121 @@ class EntitlementConverter {
 		
 	}
 
+	private <TA> void buildEntitlementIndex(ProvisioningContext subjectCtx, ProvisioningContext entitlementCtx,
+			RefinedAssociationDefinition assocDefType, final RefinedAttributeDefinition<TA> assocAttrDef, QName matchingRuleName,
+			final EntitlementIndex.AssociationIndex index, OperationResult parentResult) throws SchemaException, CommunicationException, ObjectNotFoundException, ConfigurationException, SecurityViolationException {
+		RefinedObjectClassDefinition entitlementDef = entitlementCtx.getObjectClassDefinition();
+		final MatchingRule<TA> matchingRule = matchingRuleRegistry.getMatchingRule(matchingRuleName, assocAttrDef.getTypeName());
+		AttributesToReturn attributesToReturn = createAttributesToReturnForIndex(entitlementCtx, assocAttrDef);
+		SearchHierarchyConstraints searchHierarchyConstraints = getSearchHierarchyConstraints(subjectCtx, entitlementDef, parentResult);
+		
+		ResultHandler<ShadowType> handler = new ResultHandler<ShadowType>() {
+			@Override
+			public boolean handle(PrismObject<ShadowType> entitlementShadow) {
+				List<Object> normalizedValues = new ArrayList<>();
+				ResourceAttribute<TA> assocAttr = ShadowUtil.getAttributesContainer(entitlementShadow).findAttribute(assocAttrDef.getName());
+				if (assocAttr != null) {
+					try {
+						for (TA value : assocAttr.getRealValues()) {
+							normalizedValues.add(matchingRule != null ? matchingRule.normalize(value) : value);
+						}
+					} catch (SchemaException e) {
+						throw new TunnelException(e);
+					}
+				}
+				return index.add(entitlementShadow, normalizedValues);
+			}
+		};
+		
+		LOGGER.trace("Building entitlement index for {} in {}", assocDefType.getName(), subjectCtx.getResource());
+		ConnectorInstance connector = subjectCtx.getConnector(parentResult);
+		boolean finished = false;
+		try {
+			connector.search(entitlementDef, null, handler, attributesToReturn, entitlementDef.getPagedSearches(), 
+					searchHierarchyConstraints, subjectCtx, parentResult);
+			finished = true;
+		} catch (GenericFrameworkException e) {
+			throw new GenericConnectorException("Generic error in the connector " + connector + ". Reason: "
+					+ e.getMessage(), e);
+		} catch (TunnelException e) {
+			throw (SchemaException)e.getCause();
+		} finally {
+			if (finished) {
+				index.setReady();
+			} else {
+				index.setUnusable();
+			}
+		}
+	}
+	
+	// the association attribute has to be returned, even if it is not returned by default
+	private AttributesToReturn createAttributesToReturnForIndex(ProvisioningContext entitlementCtx,
+			RefinedAttributeDefinition<?> assocAttrDef) throws SchemaException, ConfigurationException, ObjectNotFoundException, CommunicationException {
+		AttributesToReturn attributesToReturn = ProvisioningUtil.createAttributesToReturn(entitlementCtx);
+		if (attributesToReturn == null) {
+			if (assocAttrDef.isReturnedByDefault()) {
+				return null;
+			}
+			attributesToReturn = new AttributesToReturn();
+		}
+		if (attributesToReturn.isReturnDefaultAttributes() && assocAttrDef.isReturnedByDefault()) {
+			return attributesToReturn;
+		}
+		List<ResourceAttributeDefinition> explicit = new ArrayList<>();
+		if (attributesToReturn.getAttributesToReturn() != null) {
+			explicit.addAll(attributesToReturn.getAttributesToReturn());
+		}
+		if (!explicit.contains(assocAttrDef)) {
+			explicit.add(assocAttrDef);
+		}
+		attributesToReturn.setAttributesToReturn(explicit);
+		return attributesToReturn;
+	}
+	
+	private String getAssociationIndexKey(RefinedObjectClassDefinition entitlementDef, QName assocAttrName, QName matchingRuleName) {
+		return entitlementDef.getTypeName() + "/" + entitlementDef.getIntent() + "/" + assocAttrName + "/" + matchingRuleName;
+	}
+	
+	// matching rule of the association, or of the association attribute itself (null means the default one)
+	private QName getIndexMatchingRuleName(RefinedAssociationDefinition assocDefType, RefinedAttributeDefinition<?> assocAttrDef) {
+		QName matchingRuleName = assocDefType.getResourceObjectAssociationType().getMatchingRule();
+		return matchingRuleName != null ? matchingRuleName : assocAttrDef.getMatchingRuleQName();
+	}
+	
+	private SearchHierarchyConstraints getSearchHierarchyConstraints(ProvisioningContext subjectCtx, 
+			RefinedObjectClassDefinition entitlementDef, OperationResult parentResult) throws SchemaException, CommunicationException, ObjectNotFoundException, ConfigurationException, SecurityViolationException {
+		ResourceObjectReferenceType baseContextRef = entitlementDef.getBaseContext();
+		if (baseContextRef == null) {
+			return null;
+		}
+		PrismObject<ShadowType> baseContextShadow = resourceObjectReferenceResolver.resolve(baseContextRef, "base context specification in "+entitlementDef, parentResult);
+		RefinedObjectClassDefinition baseContextObjectClassDefinition = subjectCtx.getRefinedSchema().determineCompositeObjectClassDefinition(baseContextShadow);
+		ResourceObjectIdentification baseContextIdentification = new ResourceObjectIdentification(baseContextObjectClassDefinition, ShadowUtil.getIdentifiers(baseContextShadow));
+		return new SearchHierarchyConstraints(baseContextIdentification, null);
+	}
+
     // precondition: valueAttr has exactly one value
 	private <TV,TA> ObjectQuery createQuery(RefinedAssociationDefinition assocDefType, RefinedAttributeDefinition<TA> assocAttrDef, ResourceAttribute<TV> valueAttr) throws SchemaException{
-		MatchingRule<TA> matchingRule = matchingRuleRegistry.getMatchingRule(assocDefType.getResourceObjectAssociationType().getMatchingRule(),
-				assocAttrDef.getTypeName());
+		PrismPropertyValue<TA> normalized = normalizeValue(assocDefType.getResourceObjectAssociationType().getMatchingRule(), assocAttrDef, valueAttr);
+		ObjectFilter filter = EqualFilter.createEqual(new ItemPath(ShadowType.F_ATTRIBUTES, assocAttrDef.getName()), assocAttrDef, normalized);
+		ObjectQuery query = ObjectQuery.createObjectQuery(filter);
+		query.setAllowPartialResults(true);
+		return query;
+	}
+	
+	// precondition: valueAttr has exactly one value
+	private <TV,TA> PrismPropertyValue<TA> normalizeValue(QName matchingRuleName, RefinedAttributeDefinition<TA> assocAttrDef, 
+			ResourceAttribute<TV> valueAttr) throws SchemaException {
+		MatchingRule<TA> matchingRule = matchingRuleRegistry.getMatchingRule(matchingRuleName, assocAttrDef.getTypeName());
 		PrismPropertyValue<TA> converted = PrismUtil.convertPropertyValue(valueAttr.getValue(0), valueAttr.getDefinition(), assocAttrDef);
 		PrismPropertyValue<TA> normalized = converted;
 		if (matchingRule != null) {
 			TA normalizedRealValue = matchingRule.normalize(converted.getValue());
 			normalized = new PrismPropertyValue<TA>(normalizedRealValue);
 		}
-		LOGGER.trace("Converted entitlement filter: {} ({}) def={}", 
+		LOGGER.trace("Normalized entitlement association value: {} ({}) def={}", 
 				new Object[]{normalized, normalized.getValue().getClass(), assocAttrDef});
-		ObjectFilter filter = EqualFilter.createEqual(new ItemPath(ShadowType.F_ATTRIBUTES, assocAttrDef.getName()), assocAttrDef, normalized);
-		ObjectQuery query = ObjectQuery.createObjectQuery(filter);
-		query.setAllowPartialResults(true);
-		return query;
+		return normalized;
 	}
 	
 	//////////
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.util.caching.AbstractCache;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Reverse index of object-to-subject entitlement associations (e.g. group membership stored in groups).
+ * It maps (normalized) value of the subject's value attribute to the entitlements that contain it in their
+ * association attribute. With the index, reading associations of a subject does not need a connector search
+ * for each subject.
+ *
+ * The index is thread-local and lives only while the cache is entered, i.e. during a search of resource objects.
+ * An index for a particular association is built only after the association was looked up BUILD_THRESHOLD times
+ * in the scope, so small searches still use the per-subject connector searches. If the entitlements contain
+ * more than MAX_VALUES values in total, the index is not used in the scope (it is not kept in memory) and
+ * per-subject searches are used instead. Values are compared using the matching rule of the association
+ * (or of the association attribute); if there is none, the values are compared as they are.
+ *
+ * Operations on the resource done in this thread invalidate the indexes they can affect: changes of entitlements,
+ * changes of subjects' associations or value attributes and deletions of any object.
+ *
+ * @author agent
+ */
+class EntitlementIndex extends AbstractCache {
+
+	private static final Trace LOGGER = TraceManager.getTrace(EntitlementIndex.class);
+	private static final Trace PERFORMANCE_ADVISOR = TraceManager.getPerformanceAdvisorTrace();
+
+	public static final int BUILD_THRESHOLD = 10;
+	public static final int MAX_VALUES = 1000000;
+
+	private static ThreadLocal<EntitlementIndex> cacheThreadLocal = new ThreadLocal<>();
+
+	private final Map<String, AssociationIndex> indexes = new HashMap<>();
+
+	public static void enterCache() {
+		enter(cacheThreadLocal, EntitlementIndex.class, LOGGER);
+	}
+
+	public static void exitCache() {
+		exit(cacheThreadLocal, LOGGER);
+	}
+
+	/**
+	 * Returns index for given association, creating an empty (not built) one if needed.
+	 * Returns null if the cache is not entered.
+	 */
+	public static AssociationIndex getAssociationIndex(String resourceOid, String associationKey, QName entitlementObjectClass,
+			QName valueAttributeName) {
+		EntitlementIndex cache = cacheThreadLocal.get();
+		if (cache == null) {
+			return null;
+		}
+		String key = resourceOid + ":" + associationKey;
+		AssociationIndex index = cache.indexes.get(key);
+		if (index == null) {
+			index = new AssociationIndex(resourceOid, associationKey, entitlementObjectClass, valueAttributeName);
+			cache.indexes.put(key, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Invalidates all indexes for the resource.
+	 */
+	public static void invalidate(String resourceOid) {
+		invalidate(resourceOid, null, null, true);
+	}
+
+	/**
+	 * Invalidates indexes for the resource that can be affected by adding or modifying an object of given class.
+	 * An index is affected if the object is one of its entitlements, if associations of the object are changed
+	 * or if the value attribute of the association is changed (e.g. a subject is renamed).
+	 */
+	public static void invalidate(String resourceOid, QName objectClass, Collection<QName> changedAttributes,
+			boolean associationsChanged) {
+		EntitlementIndex cache = cacheThreadLocal.get();
+		if (cache == null || resourceOid == null) {
+			return;
+		}
+		Iterator<AssociationIndex> iterator = cache.indexes.values().iterator();
+		while (iterator.hasNext()) {
+			AssociationIndex index = iterator.next();
+			if (resourceOid.equals(index.resourceOid) && (associationsChanged || objectClass == null
+					|| objectClass.equals(index.entitlementObjectClass)
+					|| changedAttributes == null || changedAttributes.contains(index.valueAttributeName))) {
+				log("Index {} INVALIDATED for resource {}", index.associationKey, resourceOid);
+				iterator.remove();
+			}
+		}
+	}
+
+	@Override
+	public String description() {
+		return "entitlement index: " + indexes.keySet();
+	}
+
+	private static void log(String message, Object... params) {
+		if (LOGGER.isTraceEnabled()) {
+			LOGGER.trace(message, params);
+		}
+		if (PERFORMANCE_ADVISOR.isTraceEnabled()) {
+			PERFORMANCE_ADVISOR.trace(message, params);
+		}
+	}
+
+	static class AssociationIndex {
+
+		private final String resourceOid;
+		private final String associationKey;
+		private final QName entitlementObjectClass;
+		private final QName valueAttributeName;
+		private int lookups;
+		private boolean ready;
+		private boolean unusable;
+		private int values;
+		private Map<Object, List<PrismObject<ShadowType>>> entitlements = new HashMap<>();
+
+		private AssociationIndex(String resourceOid, String associationKey, QName entitlementObjectClass,
+				QName valueAttributeName) {
+			this.resourceOid = resourceOid;
+			this.associationKey = associationKey;
+			this.entitlementObjectClass = entitlementObjectClass;
+			this.valueAttributeName = valueAttributeName;
+		}
+
+		public boolean isReady() {
+			return ready;
+		}
+
+		/**
+		 * Records a lookup and returns true if the index should be built now.
+		 */
+		public boolean shouldBuild() {
+			return !ready && !unusable && ++lookups >= BUILD_THRESHOLD;
+		}
+
+		/**
+		 * Adds the entitlement under given (normalized) values. Returns false if the index got too big;
+		 * in that case it is discarded and marked as unusable.
+		 */
+		public boolean add(PrismObject<ShadowType> entitlement, Iterable<?> normalizedValues) {
+			if (unusable) {
+				return false;
+			}
+			for (Object value : normalizedValues) {
+				List<PrismObject<ShadowType>> list = entitlements.get(value);
+				if (list == null) {
+					list = new ArrayList<>(1);
+					entitlements.put(value, list);
+				}
+				list.add(entitlement);
+				if (++values > MAX_VALUES) {
+					log("Index for {} on {} exceeded {} values, it will not be used", associationKey, resourceOid, MAX_VALUES);
+					setUnusable();
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public void setReady() {
+			if (!unusable) {
+				ready = true;
+				log("Index for {} on {} built: {} values", associationKey, resourceOid, values);
+			}
+		}
+
+		public void setUnusable() {
+			unusable = true;
+			ready = false;
+			entitlements = null;
+		}
+
+		/**
+		 * Returns entitlements containing given (normalized) value. The shadows are shared, callers have to clone them.
+		 */
+		public List<PrismObject<ShadowType>> getEntitlements(Object normalizedValue) {
+			List<PrismObject<ShadowType>> list = entitlements.get(normalizedValue);
+			log("Index {} for {} on {}: {}", list != null ? "HIT" : "EMPTY", normalizedValue, associationKey, resourceOid);
+			return list != null ? list : Collections.<PrismObject<ShadowType>>emptyList();
+		}
+	}
+}
@@ -271,6 +271,9 @@ public class ResourceObjectConverter {
 			throws ObjectNotFoundException, SchemaException, CommunicationException,
 			ObjectAlreadyExistsException, ConfigurationException, SecurityViolationException {
 		ResourceType resource = ctx.getResource();
+		// a new object can affect entitlement indexes only if it is an entitlement or has some associations
+		EntitlementIndex.invalidate(resource.getOid(), ctx.getObjectClassDefinition().getTypeName(),
+				new ArrayList<QName>(0), !shadow.asObjectable().getAssociation().isEmpty());
 		
 		// We might be modifying the shadow (e.g. for simulated capabilities). But we do not want the changes
 		// to propagate back to the calling code. Hence the clone.
@@ -348,6 +351,7 @@ public class ResourceObjectConverter {
 			OperationProvisioningScriptsType scripts, OperationResult parentResult)
 			throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException,
 			SecurityViolationException {
+		EntitlementIndex.invalidate(ctx.getResource().getOid());
 
 		LOGGER.trace("Getting object identifiers");
 		Collection<? extends ResourceAttribute<?>> identifiers = ShadowUtil
@@ -414,6 +418,7 @@ public class ResourceObjectConverter {
 			Collection<? extends ItemDelta> itemDeltas, OperationResult parentResult)
 			throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException,
 			SecurityViolationException, ObjectAlreadyExistsException {
+		invalidateEntitlementIndex(ctx, itemDeltas);
 		RefinedObjectClassDefinition objectClassDefinition = ctx.getObjectClassDefinition();
 		Collection<Operation> operations = new ArrayList<Operation>();
 		
@@ -1035,6 +1040,8 @@ public class ResourceObjectConverter {
 		
 		ConnectorInstance connector = ctx.getConnector(parentResult);
 		SearchResultMetadata metadata = null;
+		// entitlement associations of the objects found are resolved using the index, if there are many of them
+		EntitlementIndex.enterCache();
 		try {
 			metadata = connector.search(objectClassDef, query, innerResultHandler, attributesToReturn, objectClassDef.getPagedSearches(), searchHierarchyConstraints, ctx,
 					parentResult);
@@ -1069,6 +1076,8 @@ public class ResourceObjectConverter {
 			} else {
 				new SystemException(cause.getMessage(), cause);
 			}
+		} finally {
+			EntitlementIndex.exitCache();
 		}
 
 		parentResult.recordSuccess();
@@ -1441,6 +1450,21 @@ public class ResourceObjectConverter {
 		return new ItemPath(ShadowType.F_ATTRIBUTES).equivalent(itemDelta.getParentPath());
 	}
 
+	private void invalidateEntitlementIndex(ProvisioningContext ctx, Collection<? extends ItemDelta> itemDeltas)
+			throws SchemaException, ConfigurationException, ObjectNotFoundException, CommunicationException {
+		Collection<QName> changedAttributes = new ArrayList<>();
+		boolean associationsChanged = false;
+		for (ItemDelta itemDelta : itemDeltas) {
+			if (isAttributeDelta(itemDelta)) {
+				changedAttributes.add(itemDelta.getElementName());
+			} else if (new ItemPath(ShadowType.F_ASSOCIATION).equivalent(itemDelta.getPath())) {
+				associationsChanged = true;
+			}
+		}
+		EntitlementIndex.invalidate(ctx.getResource().getOid(), ctx.getObjectClassDefinition().getTypeName(),
+				changedAttributes, associationsChanged);
+	}
+
 	public List<Change<ShadowType>> fetchChanges(ProvisioningContext ctx, PrismProperty<?> lastToken,
 			OperationResult parentResult) throws SchemaException,
 			CommunicationException, ConfigurationException, SecurityViolationException, GenericFrameworkException, ObjectNotFoundException {
@@ -241,6 +241,15 @@ public abstract class ShadowCache {
 //			return repositoryShadow;
 		}
 		ResourceType resource = ctx.getResource();
+		
+		if (shadowManager.isCachedShadowFresh(ctx, repositoryShadow, GetOperationOptions.getMaxStaleness(rootOptions))) {
+			// The caller can live with the data cached in the repository shadow, no need to go to the resource.
+			LOGGER.trace("Returning cached shadow {}, retrieved at {}", repositoryShadow, 
+					repositoryShadow.asObjectable().getCachingMetadata().getRetrievalTimestamp());
+			resouceObjectConverter.setProtectedFlag(ctx, repositoryShadow);
+			parentResult.recordSuccess();
+			return repositoryShadow;
+		}
 			
 		PrismObject<ShadowType> resourceShadow = null;
 		try {			
@@ -285,6 +294,7 @@ public abstract class ShadowCache {
 			forceRenameIfNeeded(ctx, resourceShadow.asObjectable(), repositoryShadow.asObjectable(), parentResult);
 			// Complete the shadow by adding attributes from the resource object
 			PrismObject<ShadowType> resultShadow = completeShadow(ctx, resourceShadow, repositoryShadow, parentResult);
+			updateCachedData(ctx, resultShadow, repositoryShadow, parentResult);
 			
 			if (LOGGER.isTraceEnabled()) {
 				LOGGER.trace("Shadow when assembled:\n{}", resultShadow.debugDump());
@@ -465,6 +475,8 @@ public abstract class ShadowCache {
 		}
 		
 		afterModifyOnResource(ctx, shadow, modifications, parentResult);
+		// the object on the resource has changed, do not return the old cached data instead of it
+		shadowManager.invalidateCachedData(shadow, parentResult);
 
 		ObjectDelta<ShadowType> delta = ObjectDelta.createModifyDelta(shadow.getOid(), modifications, shadow.getCompileTimeClass(), prismContext);
 		ResourceOperationDescription operationDescription = createSuccessOperationDescription(ctx, shadow,
@@ -742,6 +754,7 @@ public abstract class ShadowCache {
 						forceRenameIfNeeded(shadowCtx, resourceShadow.asObjectable(), repoShadow.asObjectable(), parentResult);
 
 						resultShadow = completeShadow(shadowCtx, resourceShadow, repoShadow, parentResult);
+						updateCachedData(shadowCtx, resultShadow, repoShadow, parentResult);
 
 					} else {
 						resultShadow = resourceShadow;
@@ -1335,6 +1348,7 @@ public abstract class ShadowCache {
 				change.setCurrentShadow(currentShadow);
 				ShadowType currentShadowType = currentShadow.asObjectable();
 				forceRenameIfNeeded(ctx, currentShadowType, oldShadowType, parentResult);
+				updateCachedData(ctx, currentShadow, oldShadow, parentResult);
 			}
 
 			// FIXME: hack. the object delta must have oid specified.
@@ -1353,6 +1367,20 @@ public abstract class ShadowCache {
 	}
 
 
+	/**
+	 * Refreshes the data cached in the repository shadow. The cache is just an optimization,
+	 * so failure to update it does not fail the operation that fetched the object.
+	 */
+	private void updateCachedData(ProvisioningContext ctx, PrismObject<ShadowType> resourceShadow,
+			PrismObject<ShadowType> repoShadow, OperationResult parentResult) {
+		try {
+			shadowManager.updateCachedData(ctx, resourceShadow, repoShadow, parentResult);
+		} catch (SchemaException | ConfigurationException | ObjectNotFoundException | CommunicationException e) {
+			LOGGER.warn("Couldn't update cached data in {}: {}", repoShadow, e.getMessage(), e);
+			parentResult.muteLastSubresultError();
+		}
+	}
+
 	private void forceRenameIfNeeded(ProvisioningContext ctx, ShadowType currentShadowType, ShadowType oldShadowType, OperationResult parentResult) throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException, ConfigurationException, CommunicationException {
 		Collection<ResourceAttribute<?>> oldSecondaryIdentifiers = ShadowUtil.getSecondaryIdentifiers(oldShadowType);
 		if (oldSecondaryIdentifiers.isEmpty()){
@@ -19,6 +19,8 @@ package com.evolveum.midpoint.provisioning.impl;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import javax.xml.namespace.QName;
@@ -30,15 +32,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import com.evolveum.midpoint.common.Clock;
 import com.evolveum.midpoint.common.refinery.RefinedAttributeDefinition;
 import com.evolveum.midpoint.common.refinery.RefinedObjectClassDefinition;
+import com.evolveum.midpoint.prism.PrismContainer;
+import com.evolveum.midpoint.prism.PrismContainerValue;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismObjectDefinition;
 import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.PrismPropertyDefinition;
 import com.evolveum.midpoint.prism.PrismPropertyValue;
 import com.evolveum.midpoint.prism.PrismValue;
 import com.evolveum.midpoint.prism.delta.ChangeType;
+import com.evolveum.midpoint.prism.delta.ContainerDelta;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.delta.PropertyDelta;
@@ -52,6 +59,7 @@ import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.OrFilter;
 import com.evolveum.midpoint.prism.query.RefFilter;
 import com.evolveum.midpoint.prism.query.Visitor;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.provisioning.api.ResourceOperationDescription;
 import com.evolveum.midpoint.provisioning.ucf.api.Change;
 import com.evolveum.midpoint.repo.api.RepositoryService;
@@ -67,7 +75,9 @@ import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
 import com.evolveum.midpoint.schema.util.SchemaDebugUtil;
 import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.DebugUtil;
 import com.evolveum.midpoint.util.MiscUtil;
+import com.evolveum.midpoint.util.QNameUtil;
 import com.evolveum.midpoint.util.exception.CommunicationException;
 import com.evolveum.midpoint.util.exception.ConfigurationException;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
@@ -77,8 +87,12 @@ import com.evolveum.midpoint.util.exception.SecurityViolationException;
 import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CachingMetadataType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FailedOperationTypeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowAssociationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowCachingPolicyType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 
@@ -108,8 +122,12 @@ public class ShadowManager {
 	private TaskManager taskManager;
 	@Autowired(required = true)
 	private MatchingRuleRegistry matchingRuleRegistry;
+	@Autowired(required = true)
+	private Clock clock;
 	
 	private static final Trace LOGGER = TraceManager.getTrace(ShadowManager.class);
+
+	private static final long DEFAULT_TIMESTAMP_REFRESH_INTERVAL = 60000L;
 		
 	
 	public void deleteConflictedShadowFromRepo(PrismObject<ShadowType> shadow, OperationResult parentResult){
@@ -745,13 +763,201 @@ public class ShadowManager {
 		
 		normalizeAttributes(repoShadow, ctx.getObjectClassDefinition());
 		
-		repoShadowType.setCachingMetadata(null);
+		ShadowCachingPolicyType cachingPolicy = ctx.getObjectClassDefinition().getCachingPolicy();
+		if (cachingPolicy != null && repoShadowType.getCachingMetadata() != null) {
+			// The object was fetched from the resource, so we can store the cached attributes right away.
+			// They are added after normalization, as we cache the values as they are on the resource.
+			for (QName attributeName : cachingPolicy.getCachedAttribute()) {
+				ResourceAttribute<?> attribute = attributesContainer.findAttribute(attributeName);
+				if (attribute != null && repoAttributesContainer.findAttribute(attributeName) == null) {
+					repoAttributesContainer.add(attribute.clone());
+				}
+			}
+		} else {
+			repoShadowType.setCachingMetadata(null);
+		}
 
 		ProvisioningUtil.cleanupShadowActivation(repoShadowType);
 
 		return repoShadow;
 	}
 
+	/**
+	 * Updates the data cached in the repository shadow from the resource object that was just fetched:
+	 * attributes and associations selected by the caching policy of the object type, and the caching metadata.
+	 * The resource object should be already completed (associations should point to entitlement shadows).
+	 * Does nothing if caching is not turned on for the object type or if the object does not come from
+	 * the resource (it has no caching metadata).
+	 *
+	 * Cached associations are updated only if the associations were fetched together with the object.
+	 */
+	public void updateCachedData(ProvisioningContext ctx, PrismObject<ShadowType> resourceShadow,
+			PrismObject<ShadowType> repoShadow, OperationResult parentResult)
+					throws SchemaException, ConfigurationException, ObjectNotFoundException, CommunicationException {
+		RefinedObjectClassDefinition objectClassDefinition = ctx.getObjectClassDefinition();
+		ShadowCachingPolicyType cachingPolicy = objectClassDefinition.getCachingPolicy();
+		CachingMetadataType cachingMetadata = resourceShadow.asObjectable().getCachingMetadata();
+		if (cachingPolicy == null || cachingMetadata == null || repoShadow.getOid() == null) {
+			return;
+		}
+
+		List<ItemDelta> modifications = new ArrayList<>();
+		ResourceAttributeContainer resourceAttributesContainer = ShadowUtil.getAttributesContainer(resourceShadow);
+		ResourceAttributeContainer repoAttributesContainer = ShadowUtil.getAttributesContainer(repoShadow);
+		for (QName attributeName : cachingPolicy.getCachedAttribute()) {
+			if (objectClassDefinition.isIdentifier(attributeName) || objectClassDefinition.isSecondaryIdentifier(attributeName)) {
+				// identifiers are always stored (normalized), they are maintained elsewhere
+				continue;
+			}
+			ResourceAttribute<?> resourceAttribute = resourceAttributesContainer != null ? 
+					resourceAttributesContainer.findAttribute(attributeName) : null;
+			ResourceAttribute<?> repoAttribute = repoAttributesContainer != null ? 
+					repoAttributesContainer.findAttribute(attributeName) : null;
+			Collection<?> resourceValues = resourceAttribute != null ? resourceAttribute.getRealValues() : Collections.emptyList();
+			Collection<?> repoValues = repoAttribute != null ? repoAttribute.getRealValues() : Collections.emptyList();
+			if (MiscUtil.unorderedCollectionEquals(resourceValues, repoValues)) {
+				continue;
+			}
+			ItemPath attributePath = new ItemPath(ShadowType.F_ATTRIBUTES, attributeName);
+			if (resourceAttribute != null) {
+				PropertyDelta attributeDelta = resourceAttribute.createDelta(attributePath);
+				attributeDelta.setValuesToReplace(PrismPropertyValue.cloneCollection((Collection) resourceAttribute.getValues()));
+				modifications.add(attributeDelta);
+			} else {
+				PropertyDelta attributeDelta = repoAttribute.createDelta(attributePath);
+				attributeDelta.setValueToReplace();
+				modifications.add(attributeDelta);
+			}
+		}
+
+		PrismContainer<ShadowAssociationType> resourceAssociationContainer = resourceShadow.findContainer(ShadowType.F_ASSOCIATION);
+		if (!cachingPolicy.getCachedAssociation().isEmpty() && resourceAssociationContainer != null) {
+			List<ShadowAssociationType> cachedAssociations = new ArrayList<>();
+			for (PrismContainerValue<ShadowAssociationType> associationCVal : resourceAssociationContainer.getValues()) {
+				ShadowAssociationType association = associationCVal.asContainerable();
+				if (association.getShadowRef() != null 
+						&& QNameUtil.matchAny(association.getName(), cachingPolicy.getCachedAssociation())) {
+					ShadowAssociationType cachedAssociation = new ShadowAssociationType();
+					cachedAssociation.setName(association.getName());
+					cachedAssociation.setShadowRef(association.getShadowRef().clone());
+					cachedAssociations.add(cachedAssociation);
+				}
+			}
+			if (!associationsEqual(cachedAssociations, repoShadow.asObjectable().getAssociation())) {
+				ContainerDelta<ShadowAssociationType> associationDelta = ContainerDelta.createDelta(ShadowType.F_ASSOCIATION, 
+						repoShadow.getDefinition());
+				List<PrismContainerValue<ShadowAssociationType>> associationValues = new ArrayList<>();
+				for (ShadowAssociationType cachedAssociation : cachedAssociations) {
+					associationValues.add(cachedAssociation.asPrismContainerValue());
+				}
+				associationDelta.setValuesToReplace(associationValues);
+				modifications.add(associationDelta);
+			}
+		}
+
+		CachingMetadataType repoCachingMetadata = repoShadow.asObjectable().getCachingMetadata();
+		if (modifications.isEmpty() && isTimestampRecent(cachingPolicy, cachingMetadata, repoCachingMetadata)) {
+			// cached data are the same and the stored timestamp is recent enough, no need to write just the timestamp
+			return;
+		}
+		modifications.add(PropertyDelta.createModificationReplaceProperty(ShadowType.F_CACHING_METADATA, 
+				repoShadow.getDefinition(), cachingMetadata));
+
+		if (LOGGER.isTraceEnabled()) {
+			LOGGER.trace("Updating cached data of {}:\n{}", repoShadow, DebugUtil.debugDump(modifications, 1));
+		}
+		ConstraintsChecker.onShadowModifyOperation(modifications);
+		try {
+			repositoryService.modifyObject(ShadowType.class, repoShadow.getOid(), modifications, parentResult);
+		} catch (ObjectAlreadyExistsException e) {
+			// Cached attributes are not unique
+			throw new SystemException("Unexpected repository behavior: object already exists: " + e.getMessage(), e);
+		}
+	}
+
+	private boolean isTimestampRecent(ShadowCachingPolicyType cachingPolicy, CachingMetadataType cachingMetadata, 
+			CachingMetadataType repoCachingMetadata) {
+		if (repoCachingMetadata == null || repoCachingMetadata.getRetrievalTimestamp() == null 
+				|| cachingMetadata.getRetrievalTimestamp() == null) {
+			return false;
+		}
+		long repoTimestamp = XmlTypeConverter.toMillis(repoCachingMetadata.getRetrievalTimestamp());
+		long refreshInterval = cachingPolicy.getTimestampRefreshInterval() != null ?
+				cachingPolicy.getTimestampRefreshInterval().getTimeInMillis(new Date(repoTimestamp)) : DEFAULT_TIMESTAMP_REFRESH_INTERVAL;
+		return XmlTypeConverter.toMillis(cachingMetadata.getRetrievalTimestamp()) - repoTimestamp < refreshInterval;
+	}
+
+	/**
+	 * Marks the data cached in the repository shadow as out of date, e.g. because the resource object was just
+	 * modified. The cached values are kept, but they are not used instead of the resource object until
+	 * the object is fetched again. Does nothing if there are no cached data.
+	 */
+	public void invalidateCachedData(PrismObject<ShadowType> repoShadow, OperationResult parentResult) 
+			throws SchemaException {
+		if (repoShadow.getOid() == null || repoShadow.asObjectable().getCachingMetadata() == null) {
+			return;
+		}
+		List<ItemDelta> modifications = new ArrayList<>();
+		modifications.add(PropertyDelta.createModificationReplaceProperty(ShadowType.F_CACHING_METADATA, 
+				repoShadow.getDefinition()));
+		LOGGER.trace("Invalidating cached data of {}", repoShadow);
+		try {
+			repositoryService.modifyObject(ShadowType.class, repoShadow.getOid(), modifications, parentResult);
+		} catch (ObjectNotFoundException e) {
+			// the shadow is gone, so are the cached data
+			LOGGER.trace("Shadow {} was not found, no cached data to invalidate", repoShadow);
+			parentResult.muteLastSubresultError();
+		} catch (ObjectAlreadyExistsException e) {
+			throw new SystemException("Unexpected repository behavior: object already exists: " + e.getMessage(), e);
+		}
+		repoShadow.asObjectable().setCachingMetadata(null);
+	}
+
+	/**
+	 * Returns true if the repository shadow contains cached data that are not older than maxStaleness milliseconds.
+	 * Shadows with failed operations never qualify, as their cached data do not reflect the pending changes.
+	 */
+	public boolean isCachedShadowFresh(ProvisioningContext ctx, PrismObject<ShadowType> repoShadow, Long maxStaleness) 
+			throws SchemaException, ConfigurationException, ObjectNotFoundException, CommunicationException {
+		if (maxStaleness == null || maxStaleness <= 0) {
+			return false;
+		}
+		ShadowType repoShadowType = repoShadow.asObjectable();
+		if (ctx.getObjectClassDefinition().getCachingPolicy() == null || repoShadowType.getFailedOperationType() != null) {
+			return false;
+		}
+		CachingMetadataType cachingMetadata = repoShadowType.getCachingMetadata();
+		if (cachingMetadata == null || cachingMetadata.getRetrievalTimestamp() == null) {
+			return false;
+		}
+		long age = clock.currentTimeMillis() - XmlTypeConverter.toMillis(cachingMetadata.getRetrievalTimestamp());
+		return age <= maxStaleness;
+	}
+
+	private boolean associationsEqual(List<ShadowAssociationType> cachedAssociations, List<ShadowAssociationType> repoAssociations) {
+		if (cachedAssociations.size() != repoAssociations.size()) {
+			return false;
+		}
+		for (ShadowAssociationType repoAssociation : repoAssociations) {
+			ObjectReferenceType repoShadowRef = repoAssociation.getShadowRef();
+			if (repoShadowRef == null) {
+				return false;
+			}
+			boolean found = false;
+			for (ShadowAssociationType cachedAssociation : cachedAssociations) {
+				if (QNameUtil.match(cachedAssociation.getName(), repoAssociation.getName()) 
+						&& cachedAssociation.getShadowRef().getOid().equals(repoShadowRef.getOid())) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public void setKindIfNecessary(ShadowType repoShadowType, RefinedObjectClassDefinition objectClassDefinition) {
         if (repoShadowType.getKind() == null && objectClassDefinition != null) {
             repoShadowType.setKind(objectClassDefinition.getKind());
@@ -117,6 +117,15 @@ public class StateReporter {
         recordState("Continuing " + operation + " of " + objectClassDef.getTypeName().getLocalPart() + " on " + getResourceName());
     }
 
+    // time spent waiting for a free slot on the resource (when the number of concurrent operations is limited)
+    public void recordIcfOperationWait(ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDef, long waitTime) {
+        if (task != null) {
+            task.recordProvisioningOperationWait(resourceOid, getResourceName(), getObjectClassQName(objectClassDef), operation, waitTime);
+        } else {
+            reportNoTask(resourceOid, operation);
+        }
+    }
+
     private String getObjectClassName(ObjectClassComplexTypeDefinition objectClassDef) {
         return objectClassDef != null && objectClassDef.getTypeName() != null ? objectClassDef.getTypeName().getLocalPart() : "(null)";
     }
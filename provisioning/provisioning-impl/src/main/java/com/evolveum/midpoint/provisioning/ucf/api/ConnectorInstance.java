@@ -178,6 +178,13 @@ public interface ConnectorInstance {
 	 * (handler is never called) and the call should result in a success.
 	 * The ObjectNotFoundException should be throws only if there is an error in search
 	 * parameters, e.g. if search base points to an non-existent object.
+	 * 
+	 * Paged search can be made resumable by specifying a cookie in the query paging. The cookie is chosen
+	 * by the caller and identifies a cursor that is kept by the connector instance for subsequent pages of
+	 * the same search. If the connector supports paging, the page directly following the previous one is
+	 * requested using the connector's own paging cookie instead of the offset. Otherwise the complete result
+	 * is read from the resource once and all the pages are served from a local copy. The cookie is returned
+	 * in the search result metadata as long as the cursor is usable. Searches without a cookie are not affected.
 	 *  
 	 * @param objectClass
 	 * @param handler
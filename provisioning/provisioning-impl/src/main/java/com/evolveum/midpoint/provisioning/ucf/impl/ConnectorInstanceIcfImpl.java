@@ -20,6 +20,7 @@ import static com.evolveum.midpoint.provisioning.ucf.impl.IcfUtil.processIcfExce
 import java.io.File;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -220,6 +221,8 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 	private boolean caseIgnoreAttributeNames = false;
 	private Boolean legacySchema = null;
 	private boolean supportsReturnDefaultAttributes = false;
+	private final PagedSearchCursors searchCursors = new PagedSearchCursors();
+	private volatile ConnectorOperationThrottle operationThrottle;
 
 	public ConnectorInstanceIcfImpl(ConnectorInfo connectorInfo, ConnectorType connectorType,
 			String schemaNamespace, PrismSchema connectorSchema, Protector protector,
@@ -2205,30 +2208,37 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 		}
 		
         final boolean useConnectorPaging = pagedSearchCapabilityType != null;
-        if (!useConnectorPaging && query != null && query.getPaging() != null && 
-        		(query.getPaging().getOffset() != null || query.getPaging().getMaxSize() != null)) {
+        final ObjectPaging paging = query != null ? query.getPaging() : null;
+        final String pagingCookie = paging != null ? paging.getCookie() : null;
+        final boolean paged = paging != null && (paging.getOffset() != null || paging.getMaxSize() != null);
+        // resumable search on a resource without paging: the whole result is spooled once and pages are served from the spool
+        final boolean useSpool = !useConnectorPaging && paged && pagingCookie != null;
+        if (!useConnectorPaging && paged && !useSpool) {
         	InternalMonitor.recordConnectorSimulatedPagingSearchCount();
         }
 
         final Holder<Integer> countHolder = new Holder<>(0);
+        final Holder<Boolean> stoppedHolder = new Holder<>(false);
 
 		ResultsHandler icfHandler = new ResultsHandler() {
+			// permit of the operation throttle given up while the object is being processed
+			private int suspended;
+
 			@Override
 			public boolean handle(ConnectorObject connectorObject) {
 				// Convert ICF-specific connector object to a generic
 				// ResourceObject
-				recordIcfOperationSuspend(reporter, ProvisioningOperation.ICF_SEARCH, objectClassDefinition);
+				suspended = recordIcfOperationSuspend(reporter, ProvisioningOperation.ICF_SEARCH, objectClassDefinition);
                 int count = countHolder.getValue();
                 countHolder.setValue(count+1);
-                if (!useConnectorPaging) {
-                    if (query != null && query.getPaging() != null && query.getPaging().getOffset() != null
-                            && query.getPaging().getMaxSize() != null) {
-                        if (count < query.getPaging().getOffset()) {
+                if (!useConnectorPaging && !useSpool) {
+                    if (paging != null && paging.getOffset() != null && paging.getMaxSize() != null) {
+                        if (count < paging.getOffset()) {
 							recordResume();
                             return true;
                         }
 
-                        if (count == (query.getPaging().getOffset() + query.getPaging().getMaxSize())) {
+                        if (count == (paging.getOffset() + paging.getMaxSize())) {
 							recordResume();
                             return false;
                         }
@@ -2245,6 +2255,7 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 				// .. and pass it to the handler
 				boolean cont = handler.handle(resourceObject);
 				if (!cont) {
+					stoppedHolder.setValue(true);
 					result.recordPartialError("Stopped on request from the handler");
 				}
 				recordResume();
@@ -2252,7 +2263,7 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 			}
 
 			private void recordResume() {
-				recordIcfOperationResume(reporter, ProvisioningOperation.ICF_SEARCH, objectClassDefinition);
+				recordIcfOperationResume(reporter, ProvisioningOperation.ICF_SEARCH, objectClassDefinition, suspended);
 			}
 		};
 		
@@ -2261,12 +2272,8 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 		if (query != null && query.isAllowPartialResults()) {
 			optionsBuilder.setAllowPartialResults(query.isAllowPartialResults());
 		}
-        // preparing paging-related options
-        if (useConnectorPaging && query != null && query.getPaging() != null) {
-            ObjectPaging paging = query.getPaging();
-            if (paging.getOffset() != null) {
-                optionsBuilder.setPagedResultsOffset(paging.getOffset() + 1);       // ConnId API says the numbering starts at 1
-            }
+        // preparing paging-related options (except for the offset, see below)
+        if (useConnectorPaging && paging != null) {
             if (paging.getMaxSize() != null) {
                 optionsBuilder.setPageSize(paging.getMaxSize());
             }
@@ -2298,8 +2305,6 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
         	QualifiedUid containerQualifiedUid = new QualifiedUid(baseContextIcfObjectClass, new Uid(secondaryIdentifierValue));
 			optionsBuilder.setContainer(containerQualifiedUid);
         }
-		OperationOptions options = optionsBuilder.build();
-
 		Filter filter;
 		try {
 			filter = convertFilterToIcf(query, objectClassDefinition);
@@ -2307,6 +2312,23 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 			result.recordFatalError(e);
 			throw e;
 		}
+
+		String searchKey = null;
+		PagedSearchCursors.Cursor cursor = null;
+		if (pagingCookie != null) {
+			searchKey = createSearchKey(icfObjectClass, filter, optionsBuilder.build());
+			cursor = searchCursors.get(pagingCookie, searchKey);
+		}
+		final int offset = paging != null && paging.getOffset() != null ? paging.getOffset() : 0;
+		if (useConnectorPaging && paging != null) {
+			if (cursor != null && cursor.getConnectorCookie() != null && cursor.getNextOffset() == offset) {
+				LOGGER.trace("Resuming search at offset {} using connector paging cookie", offset);
+				optionsBuilder.setPagedResultsCookie(cursor.getConnectorCookie());
+			} else if (paging.getOffset() != null) {
+				optionsBuilder.setPagedResultsOffset(paging.getOffset() + 1);       // ConnId API says the numbering starts at 1
+			}
+		}
+		OperationOptions options = optionsBuilder.build();
 		
 		// Connector operation cannot create result for itself, so we need to
 		// create result for it
@@ -2314,12 +2336,30 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 		icfResult.addArbitraryObjectAsParam("objectClass", icfObjectClass);
 		icfResult.addContext("connector", icfConnectorFacade.getClass());
 
-		SearchResult icfSearchResult;
+		SearchResult icfSearchResult = null;
 		try {
 
-			InternalMonitor.recordConnectorOperation("search");
 			recordIcfOperationStart(reporter, ProvisioningOperation.ICF_SEARCH, objectClassDefinition);
-			icfSearchResult = icfConnectorFacade.search(icfObjectClass, filter, icfHandler, options);
+			if (useSpool) {
+				if (cursor == null || cursor.getSpool() == null) {
+					PagedSearchCursors.Spool spool = new PagedSearchCursors.Spool();
+					try {
+						InternalMonitor.recordConnectorOperation("search");
+						icfConnectorFacade.search(icfObjectClass, filter, spool, options);
+						spool.close();
+					} catch (Throwable t) {
+						spool.delete();
+						throw t;
+					}
+					cursor = searchCursors.setSpool(pagingCookie, searchKey, spool);
+				} else {
+					LOGGER.trace("Serving page at offset {} from spooled search results", offset);
+				}
+				cursor.getSpool().read(offset, paging.getMaxSize(), icfHandler);
+			} else {
+				InternalMonitor.recordConnectorOperation("search");
+				icfSearchResult = icfConnectorFacade.search(icfObjectClass, filter, icfHandler, options);
+			}
 			recordIcfOperationEnd(reporter, ProvisioningOperation.ICF_SEARCH, objectClassDefinition);
 
 			icfResult.recordSuccess();
@@ -2365,6 +2405,23 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 				metadata.setPartialResults(true);
 			}
 		}
+		if (useSpool) {
+			metadata = new SearchResultMetadata();
+			metadata.setPagingCookie(pagingCookie);
+			metadata.setApproxNumberOfAllResults(cursor.getSpool().size());
+		} else if (useConnectorPaging && pagingCookie != null) {
+			// the caller's cookie is returned, the connector's one is kept in the cursor
+			String connectorCookie = icfSearchResult != null ? icfSearchResult.getPagedResultsCookie() : null;
+			if (connectorCookie != null && !stoppedHolder.getValue()) {
+				searchCursors.setConnectorCookie(pagingCookie, searchKey, connectorCookie, offset + countHolder.getValue());
+				metadata.setPagingCookie(pagingCookie);
+			} else {
+				searchCursors.remove(pagingCookie);
+				if (metadata != null) {
+					metadata.setPagingCookie(null);
+				}
+			}
+		}
 
 		if (result.isUnknown()) {
 			result.recordSuccess();
@@ -2485,6 +2542,26 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
         return retval;
     }
 
+	/**
+	 * Identifies the search for the purpose of paging cursors. Paging itself (offset, page size, cookie) is not included.
+	 */
+	private String createSearchKey(ObjectClass icfObjectClass, Filter filter, OperationOptions options) {
+		StringBuilder sb = new StringBuilder(icfObjectClass.getObjectClassValue());
+		sb.append('|').append(filter);
+		if (options.getAttributesToGet() != null) {
+			sb.append('|').append(Arrays.toString(options.getAttributesToGet()));
+		}
+		if (options.getSortKeys() != null) {
+			for (SortKey sortKey : options.getSortKeys()) {
+				sb.append('|').append(sortKey.getField()).append(sortKey.isAscendingOrder() ? "+" : "-");
+			}
+		}
+		if (options.getContainer() != null) {
+			sb.append('|').append(options.getContainer().getUid().getUidValue());
+		}
+		return sb.toString();
+	}
+
     private Filter convertFilterToIcf(ObjectQuery query, ObjectClassComplexTypeDefinition objectClassDefinition) throws SchemaException {
         Filter filter = null;
         if (query != null && query.getFilter() != null) {
@@ -3046,9 +3123,12 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 			PrismContainer<?> connectorPoolContainer) throws SchemaException {
 
 		if (connectorPoolContainer == null || connectorPoolContainer.getValue() == null) {
+			setOperationThrottle(null, null);
 			return;
 		}
 
+		Integer maxConcurrentOperations = null;
+		Long maxOperationWait = null;
 		for (PrismProperty prismProperty : connectorPoolContainer.getValue().getProperties()) {
 			QName propertyQName = prismProperty.getElementName();
 			if (propertyQName.getNamespaceURI().equals(ConnectorFactoryIcfImpl.NS_ICF_CONFIGURATION)) {
@@ -3068,6 +3148,13 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 				} else if (ConnectorFactoryIcfImpl.CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_MAX_WAIT
 						.equals(subelementName)) {
 					connectorPoolConfiguration.setMaxWait(parseLong(prismProperty));
+				} else if (ConnectorFactoryIcfImpl.CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_MAX_CONCURRENT_OPERATIONS
+						.equals(subelementName)) {
+					// enforced by midPoint, not by the connector framework
+					maxConcurrentOperations = parseInt(prismProperty);
+				} else if (ConnectorFactoryIcfImpl.CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_MAX_OPERATION_WAIT
+						.equals(subelementName)) {
+					maxOperationWait = parseLong(prismProperty);
 				} else {
 					throw new SchemaException(
 							"Unexpected element "
@@ -3083,6 +3170,21 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 								+ ConnectorFactoryIcfImpl.CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_XML_ELEMENT_NAME);
 			}
 		}
+		setOperationThrottle(maxConcurrentOperations, maxOperationWait);
+	}
+
+	private void setOperationThrottle(Integer maxConcurrentOperations, Long maxOperationWait) {
+		if (operationThrottle != null) {
+			operationThrottle.unregisterGauges();
+		}
+		if (maxConcurrentOperations == null || maxConcurrentOperations <= 0) {
+			operationThrottle = null;
+			return;
+		}
+		ConnectorOperationThrottle throttle = new ConnectorOperationThrottle(description, maxConcurrentOperations, maxOperationWait);
+		throttle.registerGauges();
+		LOGGER.debug("Operations on {} limited to {} at once, maximum wait {} ms", description, maxConcurrentOperations, maxOperationWait);
+		operationThrottle = throttle;
 	}
 
 	private void transformConnectorTimeoutsConfiguration(APIConfiguration apiConfig,
@@ -3266,10 +3368,44 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 
 	@Override
 	public void dispose() {
-		// Nothing to do
+		searchCursors.clear();
+		if (operationThrottle != null) {
+			operationThrottle.unregisterGauges();
+		}
+	}
+
+	/**
+	 * Waits for a free slot if the number of concurrent operations on the resource is limited. If there's no
+	 * free slot in time, the operation is recorded as started anyway, so the caller can record its (failed) end as usual.
+	 */
+	private void enterOperation(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition, Uid uid) {
+		ConnectorOperationThrottle throttle = operationThrottle;
+		if (throttle == null) {
+			return;
+		}
+		long waitTime;
+		try {
+			waitTime = throttle.acquire();
+		} catch (RuntimeException e) {
+			if (reporter != null) {
+				reporter.recordIcfOperationStart(operation, objectClassDefinition, uid);
+			}
+			throw e;
+		}
+		if (waitTime > 0 && reporter != null) {
+			reporter.recordIcfOperationWait(operation, objectClassDefinition, waitTime);
+		}
+	}
+
+	private void exitOperation() {
+		ConnectorOperationThrottle throttle = operationThrottle;
+		if (throttle != null) {
+			throttle.release();
+		}
 	}
 
 	private void recordIcfOperationStart(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition, Uid uid) {
+		enterOperation(reporter, operation, objectClassDefinition, uid);
 		if (reporter != null) {
 			reporter.recordIcfOperationStart(operation, objectClassDefinition, uid);
 		} else {
@@ -3278,6 +3414,7 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 	}
 
 	private void recordIcfOperationStart(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition) {
+		enterOperation(reporter, operation, objectClassDefinition, null);
 		if (reporter != null) {
 			reporter.recordIcfOperationStart(operation, objectClassDefinition, null);
 		} else {
@@ -3285,23 +3422,42 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 		}
 	}
 
-	private void recordIcfOperationResume(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition) {
+	/**
+	 * Resumes the operation suspended by recordIcfOperationSuspend, waiting for a free slot if needed.
+	 */
+	private void recordIcfOperationResume(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition,
+			int suspended) {
 		if (reporter != null) {
 			reporter.recordIcfOperationResume(operation, objectClassDefinition);
 		} else {
 			LOGGER.warn("Couldn't record ICF operation resume as reporter is null.");
 		}
+		ConnectorOperationThrottle throttle = operationThrottle;
+		if (throttle != null) {
+			long waitTime = throttle.resume(suspended);
+			if (waitTime > 0 && reporter != null) {
+				reporter.recordIcfOperationWait(operation, objectClassDefinition, waitTime);
+			}
+		}
 	}
 
-	private void recordIcfOperationSuspend(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition) {
+	/**
+	 * Suspends the operation while the caller processes its results. The slot of the operation throttle is given up
+	 * in the meantime, so the caller can execute other operations on the resource, even in other threads.
+	 * Returns the value to be passed to recordIcfOperationResume.
+	 */
+	private int recordIcfOperationSuspend(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition) {
 		if (reporter != null) {
 			reporter.recordIcfOperationSuspend(operation, objectClassDefinition);
 		} else {
 			LOGGER.warn("Couldn't record ICF operation suspension as reporter is null.");
 		}
+		ConnectorOperationThrottle throttle = operationThrottle;
+		return throttle != null ? throttle.suspend() : 0;
 	}
 
 	private void recordIcfOperationEnd(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition, Uid uid) {
+		exitOperation();
 		if (reporter != null) {
 			reporter.recordIcfOperationEnd(operation, objectClassDefinition, null, uid);
 		} else {
@@ -3310,6 +3466,7 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 	}
 
 	private void recordIcfOperationEnd(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition, Throwable ex) {
+		exitOperation();
 		if (reporter != null) {
 			reporter.recordIcfOperationEnd(operation, objectClassDefinition, ex, null);
 		} else {
@@ -3318,6 +3475,7 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 	}
 
 	private void recordIcfOperationEnd(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition, Throwable ex, Uid uid) {
+		exitOperation();
 		if (reporter != null) {
 			reporter.recordIcfOperationEnd(operation, objectClassDefinition, ex, uid);
 		} else {
@@ -3327,6 +3485,7 @@ public class ConnectorInstanceIcfImpl implements ConnectorInstance {
 
 
 	private void recordIcfOperationEnd(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition) {
+		exitOperation();
 		if (reporter != null) {
 			reporter.recordIcfOperationEnd(operation, objectClassDefinition, null, null);
 		} else {
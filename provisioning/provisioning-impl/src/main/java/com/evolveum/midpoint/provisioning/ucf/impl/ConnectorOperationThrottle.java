@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.ucf.impl;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.util.monitor.Gauge;
+import com.evolveum.midpoint.util.monitor.MetricsRegistry;
+
+/**
+ * Limits the number of connector operations executed concurrently on one resource (connector instance).
+ *
+ * The connector framework pools connector objects, but the pool limits only the number of connector objects,
+ * not the number of threads that use them; with many worker threads a resource can easily get overloaded,
+ * and threads working on other resources are then blocked by it. The throttle lets at most maxConcurrentOperations
+ * threads in. Other threads wait in FIFO order (the semaphore is fair), at most maxWait milliseconds,
+ * so threads of one slow resource queue up only behind each other.
+ *
+ * The throttle is re-entrant: an operation started by a thread that is already executing an operation on the same
+ * resource does not take another permit. Otherwise such nested operations could deadlock.
+ *
+ * A search gives up its permit while its results are being processed by the caller (see {@link #suspend()}), so
+ * operations done by the results handler (e.g. entitlement lookup) take a permit of their own. The caller may also
+ * hand the results over to worker threads (multi-threaded reconciliation or import) and wait for them; if the search
+ * kept the permit, the workers could not get one and the search could never finish.
+ *
+ * Number of running and waiting operations is published as gauges in the {@link MetricsRegistry}.
+ *
+ * @author agent
+ */
+class ConnectorOperationThrottle {
+
+	private static final Trace LOGGER = TraceManager.getTrace(ConnectorOperationThrottle.class);
+
+	private static final String METRIC_PREFIX = "connectorThrottle.";
+
+	private final String description;
+	private final int maxConcurrentOperations;
+	private final Long maxWait;
+	private final Semaphore permits;
+	private final ThreadLocal<Integer> depth = new ThreadLocal<>();
+
+	/**
+	 * @param maxWait maximum time to wait for a permit (in milliseconds); null means wait indefinitely
+	 */
+	ConnectorOperationThrottle(String description, int maxConcurrentOperations, Long maxWait) {
+		this.description = description;
+		this.maxConcurrentOperations = maxConcurrentOperations;
+		this.maxWait = maxWait;
+		this.permits = new Semaphore(maxConcurrentOperations, true);
+	}
+
+	public int getMaxConcurrentOperations() {
+		return maxConcurrentOperations;
+	}
+
+	public Long getMaxWait() {
+		return maxWait;
+	}
+
+	public int getActiveOperations() {
+		return maxConcurrentOperations - permits.availablePermits();
+	}
+
+	public int getWaitingOperations() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * Enters an operation, waiting for a permit if needed. Returns time spent waiting (in milliseconds),
+	 * or 0 if a permit was available immediately or this thread already holds it.
+	 *
+	 * @throws OperationTimeoutException if no permit was obtained in maxWait milliseconds
+	 */
+	public long acquire() {
+		Integer current = depth.get();
+		if (current != null && current > 0) {
+			depth.set(current + 1);
+			return 0;
+		}
+		long waitTime = 0;
+		try {
+			// untimed tryAcquire() would not respect fairness
+			if (!permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+				LOGGER.trace("Waiting for a free slot for operation on {}: {} running, {} waiting",
+						description, getActiveOperations(), getWaitingOperations());
+				long start = System.currentTimeMillis();
+				if (maxWait == null) {
+					permits.acquire();
+				} else if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+					throw new OperationTimeoutException("No free slot for operation on " + description + " in " + maxWait
+							+ " ms (" + getActiveOperations() + " operations running, " + getWaitingOperations() + " waiting)");
+				}
+				waitTime = System.currentTimeMillis() - start;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectorException("Interrupted while waiting for a free slot for operation on " + description, e);
+		}
+		depth.set(1);
+		return waitTime;
+	}
+
+	/**
+	 * Leaves an operation. Does nothing if the thread holds no permit (e.g. because acquire has failed).
+	 */
+	public void release() {
+		Integer current = depth.get();
+		if (current == null || current <= 0) {
+			return;
+		}
+		if (current == 1) {
+			depth.remove();
+			permits.release();
+		} else {
+			depth.set(current - 1);
+		}
+	}
+
+	/**
+	 * Temporarily gives up the permit held by this thread, e.g. while a search results handler is running.
+	 * Returns the value to be passed to {@link #resume(int)}; 0 if the thread held no permit.
+	 */
+	public int suspend() {
+		Integer current = depth.get();
+		if (current == null || current <= 0) {
+			return 0;
+		}
+		depth.remove();
+		permits.release();
+		return current;
+	}
+
+	/**
+	 * Gets the permit given up by {@link #suspend()} back, waiting for it if needed. Returns time spent waiting
+	 * (in milliseconds).
+	 *
+	 * @throws OperationTimeoutException if no permit was obtained in maxWait milliseconds
+	 */
+	public long resume(int suspended) {
+		if (suspended <= 0) {
+			return 0;
+		}
+		long waitTime = acquire();
+		depth.set(suspended);
+		return waitTime;
+	}
+
+	public void registerGauges() {
+		MetricsRegistry.getInstance().registerGauge(METRIC_PREFIX + description + ".active", new Gauge() {
+			@Override
+			public long getValue() {
+				return getActiveOperations();
+			}
+		});
+		MetricsRegistry.getInstance().registerGauge(METRIC_PREFIX + description + ".waiting", new Gauge() {
+			@Override
+			public long getValue() {
+				return getWaitingOperations();
+			}
+		});
+	}
+
+	public void unregisterGauges() {
+		MetricsRegistry.getInstance().unregisterGauge(METRIC_PREFIX + description + ".active");
+		MetricsRegistry.getInstance().unregisterGauge(METRIC_PREFIX + description + ".waiting");
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectorOperationThrottle(" + description + ": " + getActiveOperations() + "/" + maxConcurrentOperations
+				+ " running, " + getWaitingOperations() + " waiting)";
+	}
+}
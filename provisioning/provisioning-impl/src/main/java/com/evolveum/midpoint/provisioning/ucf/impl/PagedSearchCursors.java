@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.ucf.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.identityconnectors.common.security.GuardedByteArray;
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.identityconnectors.framework.common.objects.OperationalAttributes;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+import org.identityconnectors.framework.common.serializer.SerializerUtil;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Cursors of resumable paged searches of a connector instance. A cursor is identified by the paging cookie
+ * provided by the caller and it is bound to the search (object class, filter, attributes, ordering) it was
+ * created for.
+ *
+ * If the connector supports paging, the cursor holds the cookie returned by the connector, so the page that directly
+ * follows the last one can be requested without an offset. Otherwise the cursor holds the complete search result
+ * spooled to a temporary file, and any page is served from it. The file is readable only by its owner and
+ * credentials (e.g. passwords) are not spooled, so objects served from the spool do not contain them.
+ *
+ * Cursors that were not used for MAX_IDLE_TIME are discarded. At most MAX_CURSORS cursors are kept, the least
+ * recently used ones are discarded first.
+ *
+ * @author agent
+ */
+class PagedSearchCursors {
+
+	private static final Trace LOGGER = TraceManager.getTrace(PagedSearchCursors.class);
+
+	public static final long MAX_IDLE_TIME = 300000L;
+	public static final int MAX_CURSORS = 20;
+
+	private final Map<String, Cursor> cursors = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Returns the cursor for given cookie, or null if there's none. A cursor created for a different search
+	 * is discarded.
+	 */
+	public synchronized Cursor get(String cookie, String searchKey) {
+		expire();
+		Cursor cursor = cursors.get(cookie);
+		if (cursor == null) {
+			return null;
+		}
+		if (!cursor.searchKey.equals(searchKey)) {
+			LOGGER.trace("Search for paging cookie {} has changed, discarding the cursor", cookie);
+			remove(cookie);
+			return null;
+		}
+		cursor.lastUsed = System.currentTimeMillis();
+		return cursor;
+	}
+
+	public synchronized void setConnectorCookie(String cookie, String searchKey, String connectorCookie, int nextOffset) {
+		Cursor cursor = cursors.get(cookie);
+		if (cursor == null || !cursor.searchKey.equals(searchKey)) {
+			cursor = new Cursor(searchKey);
+			put(cookie, cursor);
+		}
+		cursor.connectorCookie = connectorCookie;
+		cursor.nextOffset = nextOffset;
+		cursor.lastUsed = System.currentTimeMillis();
+	}
+
+	public synchronized Cursor setSpool(String cookie, String searchKey, Spool spool) {
+		Cursor cursor = new Cursor(searchKey);
+		cursor.spool = spool;
+		put(cookie, cursor);
+		return cursor;
+	}
+
+	public synchronized void remove(String cookie) {
+		Cursor cursor = cursors.remove(cookie);
+		if (cursor != null) {
+			cursor.discard();
+		}
+	}
+
+	public synchronized void clear() {
+		for (Cursor cursor : cursors.values()) {
+			cursor.discard();
+		}
+		cursors.clear();
+	}
+
+	private void put(String cookie, Cursor cursor) {
+		Cursor previous = cursors.put(cookie, cursor);
+		if (previous != null) {
+			previous.discard();
+		}
+		Iterator<Cursor> iterator = cursors.values().iterator();
+		while (cursors.size() > MAX_CURSORS && iterator.hasNext()) {
+			iterator.next().discard();
+			iterator.remove();
+		}
+	}
+
+	private void expire() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<String, Cursor>> iterator = cursors.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Cursor> entry = iterator.next();
+			if (now - entry.getValue().lastUsed > MAX_IDLE_TIME) {
+				LOGGER.trace("Discarding idle cursor for paging cookie {}", entry.getKey());
+				entry.getValue().discard();
+				iterator.remove();
+			}
+		}
+	}
+
+	static class Cursor {
+
+		private final String searchKey;
+		private long lastUsed = System.currentTimeMillis();
+		private String connectorCookie;
+		private int nextOffset;
+		private Spool spool;
+
+		private Cursor(String searchKey) {
+			this.searchKey = searchKey;
+		}
+
+		/**
+		 * Cookie provided by the connector, it can be used only to get the page starting at nextOffset.
+		 */
+		public String getConnectorCookie() {
+			return connectorCookie;
+		}
+
+		public int getNextOffset() {
+			return nextOffset;
+		}
+
+		public Spool getSpool() {
+			return spool;
+		}
+
+		private void discard() {
+			if (spool != null) {
+				spool.delete();
+				spool = null;
+			}
+		}
+	}
+
+	/**
+	 * Connector objects stored in a temporary file. The spool is filled by passing it to the connector
+	 * as a results handler; after {@link #close()} it can be read by any number of threads.
+	 */
+	static class Spool implements ResultsHandler {
+
+		// position of every n-th object is remembered, so reading a page does not need to go through all the preceding objects
+		private static final int CHECKPOINT_INTERVAL = 100;
+
+		private final File file;
+		private final List<Long> checkpoints = new ArrayList<>();
+		private DataOutputStream out;
+		private long written;
+		private int size;
+
+		Spool() {
+			try {
+				file = createFile();
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			} catch (IOException e) {
+				throw new SystemException("Couldn't create spool file for search results: " + e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public boolean handle(ConnectorObject connectorObject) {
+			try {
+				if (size % CHECKPOINT_INTERVAL == 0) {
+					checkpoints.add(written);
+				}
+				byte[] bytes = SerializerUtil.serializeBinaryObject(removeCredentials(connectorObject));
+				out.writeInt(bytes.length);
+				out.write(bytes);
+				written += 4 + bytes.length;
+				size++;
+				return true;
+			} catch (IOException e) {
+				throw new SystemException("Couldn't spool search results to " + file + ": " + e.getMessage(), e);
+			}
+		}
+
+		private static File createFile() throws IOException {
+			if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+				return Files.createTempFile("connector-search-", ".tmp",
+						PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))).toFile();
+			}
+			Path path = Files.createTempFile("connector-search-", ".tmp");
+			File file = path.toFile();
+			if (!file.setReadable(false, false) || !file.setReadable(true, true)
+					|| !file.setWritable(false, false) || !file.setWritable(true, true)) {
+				Files.delete(path);
+				throw new IOException("Couldn't restrict access to " + file);
+			}
+			return file;
+		}
+
+		private static ConnectorObject removeCredentials(ConnectorObject connectorObject) {
+			boolean hasCredentials = false;
+			for (Attribute attribute : connectorObject.getAttributes()) {
+				if (isCredential(attribute)) {
+					hasCredentials = true;
+					break;
+				}
+			}
+			if (!hasCredentials) {
+				return connectorObject;
+			}
+			ConnectorObjectBuilder builder = new ConnectorObjectBuilder();
+			builder.setObjectClass(connectorObject.getObjectClass());
+			for (Attribute attribute : connectorObject.getAttributes()) {
+				if (!isCredential(attribute)) {
+					builder.addAttribute(attribute);
+				}
+			}
+			return builder.build();
+		}
+
+		private static boolean isCredential(Attribute attribute) {
+			if (OperationalAttributes.PASSWORD_NAME.equals(attribute.getName())
+					|| OperationalAttributes.CURRENT_PASSWORD_NAME.equals(attribute.getName())) {
+				return true;
+			}
+			if (attribute.getValue() != null) {
+				for (Object value : attribute.getValue()) {
+					if (value instanceof GuardedString || value instanceof GuardedByteArray) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		public void close() {
+			try {
+				out.close();
+			} catch (IOException e) {
+				throw new SystemException("Couldn't spool search results to " + file + ": " + e.getMessage(), e);
+			}
+			LOGGER.debug("Spooled {} connector objects to {}", size, file);
+		}
+
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Passes objects from offset (at most maxSize of them, if specified) to the handler.
+		 */
+		public void read(int offset, Integer maxSize, ResultsHandler handler) {
+			if (offset >= size) {
+				return;
+			}
+			int checkpoint = offset / CHECKPOINT_INTERVAL;
+			FileInputStream fileIn = null;
+			try {
+				fileIn = new FileInputStream(file);
+				fileIn.getChannel().position(checkpoints.get(checkpoint));
+				DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn));
+				int end = maxSize != null ? Math.min(size, offset + maxSize) : size;
+				for (int i = checkpoint * CHECKPOINT_INTERVAL; i < end; i++) {
+					byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					if (i < offset) {
+						continue;
+					}
+					if (!handler.handle((ConnectorObject) SerializerUtil.deserializeBinaryObject(bytes))) {
+						break;
+					}
+				}
+			} catch (IOException e) {
+				throw new SystemException("Couldn't read search results spooled to " + file + ": " + e.getMessage(), e);
+			} finally {
+				if (fileIn != null) {
+					try {
+						fileIn.close();
+					} catch (IOException e) {
+						LOGGER.warn("Couldn't close spool file {}: {}", file, e.getMessage());
+					}
+				}
+			}
+		}
+
+		public void delete() {
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOGGER.warn("Couldn't close spool file {}: {}", file, e.getMessage());
+			}
+			if (!file.delete()) {
+				LOGGER.warn("Couldn't delete spool file {}", file);
+			}
+		}
+	}
+}
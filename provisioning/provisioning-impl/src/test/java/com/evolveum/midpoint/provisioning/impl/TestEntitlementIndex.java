@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * @author agent
+ */
+public class TestEntitlementIndex {
+
+	private static final String NS_RI = "http://midpoint.evolveum.com/xml/ns/public/resource/instance-3";
+	private static final String RESOURCE_OID = "10000000-0000-0000-0000-000000000004";
+	private static final String OTHER_RESOURCE_OID = "10000000-0000-0000-0000-000000000005";
+	private static final String ASSOCIATION_KEY = "group";
+	private static final QName GROUP_OBJECT_CLASS = new QName(NS_RI, "GroupObjectClass");
+	private static final QName ACCOUNT_OBJECT_CLASS = new QName(NS_RI, "AccountObjectClass");
+	private static final QName NAME_ATTRIBUTE = new QName(NS_RI, "name");
+	private static final QName FULLNAME_ATTRIBUTE = new QName(NS_RI, "fullname");
+
+	@BeforeMethod
+	public void enterCache() {
+		EntitlementIndex.enterCache();
+	}
+
+	@AfterMethod
+	public void exitCache() {
+		EntitlementIndex.exitCache();
+	}
+
+	@Test
+	public void test010NotEntered() {
+		EntitlementIndex.exitCache();
+		try {
+			assertNull("Index without entered cache", getIndex(RESOURCE_OID));
+		} finally {
+			EntitlementIndex.enterCache();
+		}
+	}
+
+	@Test
+	public void test020BuildThreshold() {
+		EntitlementIndex.AssociationIndex index = getIndex(RESOURCE_OID);
+		for (int i = 1; i < EntitlementIndex.BUILD_THRESHOLD; i++) {
+			assertFalse("Build requested after " + i + " lookups", index.shouldBuild());
+		}
+		assertTrue("Build not requested after threshold", index.shouldBuild());
+		assertSame("Index not kept in the cache", index, getIndex(RESOURCE_OID));
+	}
+
+	@Test
+	public void test030Lookup() {
+		EntitlementIndex.AssociationIndex index = getIndex(RESOURCE_OID);
+		PrismObject<ShadowType> pirates = new ShadowType().asPrismObject();
+		PrismObject<ShadowType> sailors = new ShadowType().asPrismObject();
+		assertTrue(index.add(pirates, Arrays.asList("jack", "will")));
+		assertTrue(index.add(sailors, Collections.singletonList("will")));
+		assertFalse("Index ready before it was built", index.isReady());
+		index.setReady();
+		assertTrue("Index not ready", index.isReady());
+
+		List<PrismObject<ShadowType>> jack = index.getEntitlements("jack");
+		assertEquals("Wrong entitlements of jack", 1, jack.size());
+		assertSame("Wrong entitlement of jack", pirates, jack.get(0));
+		assertEquals("Wrong entitlements of will", 2, index.getEntitlements("will").size());
+		assertTrue("Unexpected entitlements of elizabeth", index.getEntitlements("elizabeth").isEmpty());
+	}
+
+	@Test
+	public void test040UnusableNotReady() {
+		EntitlementIndex.AssociationIndex index = getIndex(RESOURCE_OID);
+		index.setUnusable();
+		index.setReady();
+		assertFalse("Unusable index is ready", index.isReady());
+		assertFalse("Build requested for unusable index", index.shouldBuild());
+		assertFalse("Value added to unusable index", index.add(new ShadowType().asPrismObject(),
+				Collections.singletonList("jack")));
+	}
+
+	@Test
+	public void test100ModifySubjectOtherAttribute() {
+		EntitlementIndex.AssociationIndex index = buildIndex(RESOURCE_OID);
+		EntitlementIndex.invalidate(RESOURCE_OID, ACCOUNT_OBJECT_CLASS, Collections.singletonList(FULLNAME_ATTRIBUTE), false);
+		assertSame("Index invalidated by unrelated subject change", index, getIndex(RESOURCE_OID));
+	}
+
+	@Test
+	public void test110AddSubjectWithoutAssociations() {
+		EntitlementIndex.AssociationIndex index = buildIndex(RESOURCE_OID);
+		EntitlementIndex.invalidate(RESOURCE_OID, ACCOUNT_OBJECT_CLASS, Collections.<QName>emptyList(), false);
+		assertSame("Index invalidated by subject add", index, getIndex(RESOURCE_OID));
+	}
+
+	@Test
+	public void test120RenameSubject() {
+		EntitlementIndex.AssociationIndex index = buildIndex(RESOURCE_OID);
+		EntitlementIndex.invalidate(RESOURCE_OID, ACCOUNT_OBJECT_CLASS, Collections.singletonList(NAME_ATTRIBUTE), false);
+		assertNotSame("Index not invalidated by subject rename", index, getIndex(RESOURCE_OID));
+	}
+
+	@Test
+	public void test130ModifySubjectAssociations() {
+		EntitlementIndex.AssociationIndex index = buildIndex(RESOURCE_OID);
+		EntitlementIndex.invalidate(RESOURCE_OID, ACCOUNT_OBJECT_CLASS, Collections.<QName>emptyList(), true);
+		assertNotSame("Index not invalidated by association change", index, getIndex(RESOURCE_OID));
+	}
+
+	@Test
+	public void test140ModifyEntitlement() {
+		EntitlementIndex.AssociationIndex index = buildIndex(RESOURCE_OID);
+		EntitlementIndex.invalidate(RESOURCE_OID, GROUP_OBJECT_CLASS, Collections.singletonList(FULLNAME_ATTRIBUTE), false);
+		assertNotSame("Index not invalidated by entitlement change", index, getIndex(RESOURCE_OID));
+	}
+
+	@Test
+	public void test150Delete() {
+		EntitlementIndex.AssociationIndex index = buildIndex(RESOURCE_OID);
+		EntitlementIndex.invalidate(RESOURCE_OID);
+		assertNotSame("Index not invalidated by delete", index, getIndex(RESOURCE_OID));
+	}
+
+	@Test
+	public void test160OtherResource() {
+		EntitlementIndex.AssociationIndex index = buildIndex(RESOURCE_OID);
+		EntitlementIndex.invalidate(OTHER_RESOURCE_OID);
+		EntitlementIndex.invalidate(OTHER_RESOURCE_OID, GROUP_OBJECT_CLASS, null, true);
+		assertSame("Index invalidated by change on other resource", index, getIndex(RESOURCE_OID));
+		assertTrue("Index not ready", index.isReady());
+	}
+
+	private EntitlementIndex.AssociationIndex getIndex(String resourceOid) {
+		return EntitlementIndex.getAssociationIndex(resourceOid, ASSOCIATION_KEY, GROUP_OBJECT_CLASS, NAME_ATTRIBUTE);
+	}
+
+	private EntitlementIndex.AssociationIndex buildIndex(String resourceOid) {
+		EntitlementIndex.AssociationIndex index = getIndex(resourceOid);
+		index.add(new ShadowType().asPrismObject(), Collections.singletonList("jack"));
+		index.setReady();
+		return index;
+	}
+}
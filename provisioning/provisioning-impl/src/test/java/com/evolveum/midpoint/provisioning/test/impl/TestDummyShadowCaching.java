@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.test.impl;
+
+import static com.evolveum.midpoint.test.IntegrationTestTools.display;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.io.File;
+import java.util.Collection;
+
+import javax.xml.namespace.QName;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.evolveum.icf.dummy.resource.DummyAccount;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CachingMetadataType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationProvisioningScriptsType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Persistent caching of attribute values in the repository shadows, driven by the caching policy
+ * of the resource (fullname is cached), and reading of the cached values with maxStaleness option.
+ *
+ * @author agent
+ */
+@ContextConfiguration(locations = "classpath:ctx-provisioning-test-main.xml")
+@DirtiesContext
+public class TestDummyShadowCaching extends AbstractDummyTest {
+
+	public static final File TEST_DIR = new File("src/test/resources/impl/dummy-shadow-caching/");
+	public static final File RESOURCE_DUMMY_FILE = new File(TEST_DIR, "resource-dummy.xml");
+
+	private static final QName ATTR_FULLNAME_QNAME = new QName(RESOURCE_DUMMY_NS, DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_FULLNAME_NAME);
+	private static final long LONG_STALENESS = 3600000L;
+
+	private String willIcfUid;
+
+	@Override
+	protected File getResourceDummyFilename() {
+		return RESOURCE_DUMMY_FILE;
+	}
+
+	@Test
+	public void test000Integrity() throws Exception {
+		final String TEST_NAME = "test000Integrity";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		OperationResult testResult = provisioningService.testResource(RESOURCE_DUMMY_OID);
+
+		display("Test result", testResult);
+		TestUtil.assertSuccess("Test resource failed (result)", testResult);
+	}
+
+	@Test
+	public void test100AddAccount() throws Exception {
+		final String TEST_NAME = "test100AddAccount";
+		TestUtil.displayTestTile(TEST_NAME);
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestDummyShadowCaching.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+		PrismObject<ShadowType> account = prismContext.parseObject(getAccountWillFile());
+
+		// WHEN
+		provisioningService.addObject(account, null, null, task, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		PrismObject<ShadowType> repoShadow = getRepoShadow(result);
+		willIcfUid = getIcfUid(repoShadow);
+		// nothing was fetched from the resource yet
+		assertNull("Unexpected caching metadata after add", repoShadow.asObjectable().getCachingMetadata());
+	}
+
+	@Test
+	public void test110GetAccountCachesAttributes() throws Exception {
+		final String TEST_NAME = "test110GetAccountCachesAttributes";
+		TestUtil.displayTestTile(TEST_NAME);
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestDummyShadowCaching.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		PrismObject<ShadowType> shadow = provisioningService.getObject(ShadowType.class, ACCOUNT_WILL_OID, null, task, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		assertFullname(shadow, "Will Turner");
+		PrismObject<ShadowType> repoShadow = getRepoShadow(result);
+		assertFullname(repoShadow, "Will Turner");
+		assertNotNull("No caching metadata", repoShadow.asObjectable().getCachingMetadata());
+	}
+
+	@Test
+	public void test120GetAccountTimestampNotRewritten() throws Exception {
+		final String TEST_NAME = "test120GetAccountTimestampNotRewritten";
+		TestUtil.displayTestTile(TEST_NAME);
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestDummyShadowCaching.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+		PrismObject<ShadowType> repoShadowBefore = getRepoShadow(result);
+
+		// WHEN
+		provisioningService.getObject(ShadowType.class, ACCOUNT_WILL_OID, null, task, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		PrismObject<ShadowType> repoShadowAfter = getRepoShadow(result);
+		// cached data did not change and the timestamp is recent, so the shadow is not modified
+		assertEquals("Repository shadow was modified", repoShadowBefore.getVersion(), repoShadowAfter.getVersion());
+	}
+
+	@Test
+	public void test130GetAccountFromCache() throws Exception {
+		final String TEST_NAME = "test130GetAccountFromCache";
+		TestUtil.displayTestTile(TEST_NAME);
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestDummyShadowCaching.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+		// changed directly on the resource, midPoint does not know about it
+		DummyAccount dummyAccount = getDummyAccountAssert(transformNameFromResource(ACCOUNT_WILL_USERNAME), willIcfUid);
+		dummyAccount.replaceAttributeValue(DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_FULLNAME_NAME, "Captain Will Turner");
+
+		// WHEN
+		PrismObject<ShadowType> shadow = provisioningService.getObject(ShadowType.class, ACCOUNT_WILL_OID,
+				maxStaleness(LONG_STALENESS), task, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		assertFullname(shadow, "Will Turner");
+	}
+
+	@Test
+	public void test140GetAccountStaleCache() throws Exception {
+		final String TEST_NAME = "test140GetAccountStaleCache";
+		TestUtil.displayTestTile(TEST_NAME);
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestDummyShadowCaching.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+		Thread.sleep(50);
+
+		// WHEN
+		PrismObject<ShadowType> shadow = provisioningService.getObject(ShadowType.class, ACCOUNT_WILL_OID,
+				maxStaleness(10L), task, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		assertFullname(shadow, "Captain Will Turner");
+		// changed data are always written to the cache
+		assertFullname(getRepoShadow(result), "Captain Will Turner");
+	}
+
+	@Test
+	public void test150ModifyAccountInvalidatesCache() throws Exception {
+		final String TEST_NAME = "test150ModifyAccountInvalidatesCache";
+		TestUtil.displayTestTile(TEST_NAME);
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestDummyShadowCaching.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+		ObjectDelta<ShadowType> delta = ObjectDelta.createModificationReplaceProperty(ShadowType.class,
+				ACCOUNT_WILL_OID, dummyResourceCtl.getAttributeFullnamePath(), prismContext, "Pirate Will Turner");
+
+		// WHEN
+		provisioningService.modifyObject(ShadowType.class, delta.getOid(), delta.getModifications(),
+				new OperationProvisioningScriptsType(), null, task, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		CachingMetadataType cachingMetadata = getRepoShadow(result).asObjectable().getCachingMetadata();
+		assertNull("Caching metadata not cleared by modification", cachingMetadata);
+
+		// our own change must be visible, even if stale data would be acceptable
+		PrismObject<ShadowType> shadow = provisioningService.getObject(ShadowType.class, ACCOUNT_WILL_OID,
+				maxStaleness(LONG_STALENESS), task, result);
+		assertFullname(shadow, "Pirate Will Turner");
+		PrismObject<ShadowType> repoShadow = getRepoShadow(result);
+		assertFullname(repoShadow, "Pirate Will Turner");
+		assertNotNull("No caching metadata after fetch", repoShadow.asObjectable().getCachingMetadata());
+	}
+
+	@Test
+	public void test160DeleteAccount() throws Exception {
+		final String TEST_NAME = "test160DeleteAccount";
+		TestUtil.displayTestTile(TEST_NAME);
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestDummyShadowCaching.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		provisioningService.deleteObject(ShadowType.class, ACCOUNT_WILL_OID, null, null, task, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		try {
+			provisioningService.getObject(ShadowType.class, ACCOUNT_WILL_OID, maxStaleness(LONG_STALENESS), task, result);
+			AssertJUnit.fail("Deleted account was returned from the cache");
+		} catch (ObjectNotFoundException e) {
+			// expected
+		}
+	}
+
+	private Collection<SelectorOptions<GetOperationOptions>> maxStaleness(long maxStaleness) {
+		return SelectorOptions.createCollection(GetOperationOptions.createMaxStaleness(maxStaleness));
+	}
+
+	private PrismObject<ShadowType> getRepoShadow(OperationResult result) throws Exception {
+		return repositoryService.getObject(ShadowType.class, ACCOUNT_WILL_OID, null, result);
+	}
+
+	private void assertFullname(PrismObject<ShadowType> shadow, String expected) throws SchemaException {
+		assertEquals("Wrong fullname in " + shadow, expected, ShadowUtil.getAttributeValue(shadow, ATTR_FULLNAME_QNAME));
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.test.ucf;
+
+import static com.evolveum.midpoint.test.IntegrationTestTools.display;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.AssertJUnit;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.icf.dummy.resource.DummyLatency;
+import com.evolveum.icf.dummy.resource.DummyOperation;
+import com.evolveum.icf.dummy.resource.DummyResource;
+import com.evolveum.midpoint.prism.PrismContainerValue;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrderDirection;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.provisioning.ucf.api.ConnectorFactory;
+import com.evolveum.midpoint.provisioning.ucf.api.ConnectorInstance;
+import com.evolveum.midpoint.provisioning.ucf.api.ResultHandler;
+import com.evolveum.midpoint.provisioning.ucf.impl.ConnectorFactoryIcfImpl;
+import com.evolveum.midpoint.schema.CapabilityUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
+import com.evolveum.midpoint.schema.processor.ResourceSchema;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
+import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.util.PrettyPrinter;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ConnectorType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.PagedSearchCapabilityType;
+
+/**
+ * Tests the load simulation of the dummy resource (synthetic objects, server-side paging, latency,
+ * throughput limit and connection limit) through the UCF connector instance.
+ *
+ * @author agent
+ */
+@ContextConfiguration(locations = { "classpath:ctx-provisioning-test-no-repo.xml" })
+public class TestUcfDummySimulation extends AbstractTestNGSpringContextTests {
+
+	private static final File RESOURCE_DUMMY_SIMULATION_FILE = new File("src/test/resources/ucf/resource-dummy-simulation.xml");
+	private static final File CONNECTOR_DUMMY_FILE = new File("src/test/resources/ucf/connector-dummy.xml");
+	private static final String DUMMY_INSTANCE_NAME = "simulation";
+
+	private static final int SYNTHETIC_ACCOUNTS = 10;
+	private static final int SERVER_PAGE_SIZE = 3;
+	private static final long SEARCH_LATENCY = 100;
+
+	private static final ItemPath ICFS_NAME_PATH = new ItemPath(ShadowType.F_ATTRIBUTES, ConnectorFactoryIcfImpl.ICFS_NAME);
+
+	private PrismObject<ResourceType> resource;
+	private ResourceType resourceType;
+	private ConnectorType connectorType;
+	private ConnectorInstance cc;
+	private ObjectClassComplexTypeDefinition accountDefinition;
+	private DummyResource dummyResource;
+
+	@Autowired(required = true)
+	private ConnectorFactory connectorFactoryIcfImpl;
+
+	@BeforeClass
+	public void setup() throws SchemaException, SAXException, IOException {
+		TestUtil.displayTestTile("setup");
+		System.setProperty("midpoint.home", "target/midPointHome/");
+
+		PrettyPrinter.setDefaultNamespacePrefix(MidPointConstants.NS_MIDPOINT_PUBLIC_PREFIX);
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+
+		DummyResourceContoller dummyResourceCtl = DummyResourceContoller.create(DUMMY_INSTANCE_NAME);
+		dummyResourceCtl.populateWithDefaultSchema();
+		dummyResource = dummyResourceCtl.getDummyResource();
+
+		resource = PrismTestUtil.parseObject(RESOURCE_DUMMY_SIMULATION_FILE);
+		resourceType = resource.asObjectable();
+
+		PrismObject<ConnectorType> connector = PrismTestUtil.parseObject(CONNECTOR_DUMMY_FILE);
+		connectorType = connector.asObjectable();
+	}
+
+	@AfterClass
+	public void cleanup() {
+		dummyResource.resetSimulation();
+	}
+
+	@Test
+	public void test010ConfigureConnector() throws Exception {
+		final String TEST_NAME = "test010ConfigureConnector";
+		TestUtil.displayTestTile(this, TEST_NAME);
+
+		// GIVEN
+		OperationResult result = new OperationResult(TestUcfDummySimulation.class.getName() + "." + TEST_NAME);
+		cc = connectorFactoryIcfImpl.createConnectorInstance(connectorType, ResourceTypeUtil.getResourceNamespace(resourceType),
+				"simulation connector");
+		assertNotNull("Failed to instantiate connector", cc);
+		PrismContainerValue configContainer = resourceType.getConnectorConfiguration().asPrismContainerValue();
+
+		// WHEN
+		cc.configure(configContainer, result);
+		ResourceSchema resourceSchema = cc.fetchResourceSchema(null, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		accountDefinition = resourceSchema.findDefaultObjectClassDefinition(ShadowKindType.ACCOUNT);
+		assertNotNull("No account definition", accountDefinition);
+
+		assertEquals("Wrong number of synthetic accounts", SYNTHETIC_ACCOUNTS, dummyResource.getSyntheticAccountCount());
+		assertEquals("Wrong number of accounts", SYNTHETIC_ACCOUNTS, dummyResource.listAccounts().size());
+		assertNotNull("No synthetic account", dummyResource.getAccountByUsername(DummyResource.getSyntheticAccountName(0)));
+		assertEquals("Wrong server page size", SERVER_PAGE_SIZE, dummyResource.getServerPageSize());
+		DummyLatency connectLatency = dummyResource.getLatency(DummyOperation.CONNECT);
+		assertNotNull("No connect latency", connectLatency);
+		assertEquals("Wrong connect latency", "1", connectLatency.toString());
+	}
+
+	@Test
+	public void test020PagingAdvertised() throws Exception {
+		final String TEST_NAME = "test020PagingAdvertised";
+		TestUtil.displayTestTile(this, TEST_NAME);
+
+		OperationResult result = new OperationResult(TestUcfDummySimulation.class.getName() + "." + TEST_NAME);
+
+		// WHEN
+		Collection<Object> capabilities = cc.fetchCapabilities(result);
+
+		// THEN
+		display("Capabilities", capabilities);
+		assertNotNull("Paged search capability is not advertised",
+				CapabilityUtil.getCapability(capabilities, PagedSearchCapabilityType.class));
+	}
+
+	/**
+	 * All accounts are returned in pages of SERVER_PAGE_SIZE, each of them is one round trip.
+	 */
+	@Test
+	public void test100SearchServerPages() throws Exception {
+		final String TEST_NAME = "test100SearchServerPages";
+		TestUtil.displayTestTile(this, TEST_NAME);
+
+		// GIVEN
+		int searchesBefore = dummyResource.getOperationCount(DummyOperation.SEARCH);
+
+		// WHEN
+		List<String> names = searchAccountNames(new ObjectQuery(), TEST_NAME);
+
+		// THEN
+		assertEquals("Wrong number of accounts found", SYNTHETIC_ACCOUNTS, names.size());
+		assertEquals("Wrong number of simulated round trips", 4,
+				dummyResource.getOperationCount(DummyOperation.SEARCH) - searchesBefore);
+	}
+
+	/**
+	 * Paging and sorting is done by the connector, not simulated by midPoint.
+	 */
+	@Test
+	public void test110SearchPagedSorted() throws Exception {
+		final String TEST_NAME = "test110SearchPagedSorted";
+		TestUtil.displayTestTile(this, TEST_NAME);
+
+		// GIVEN
+		int searchesBefore = dummyResource.getOperationCount(DummyOperation.SEARCH);
+		ObjectQuery query = new ObjectQuery();
+		query.setPaging(ObjectPaging.createPaging(2, 4, ICFS_NAME_PATH, OrderDirection.DESCENDING));
+
+		// WHEN
+		List<String> names = searchAccountNames(query, TEST_NAME);
+
+		// THEN
+		assertEquals("Wrong accounts found", Arrays.asList(
+				DummyResource.getSyntheticAccountName(7), DummyResource.getSyntheticAccountName(6),
+				DummyResource.getSyntheticAccountName(5), DummyResource.getSyntheticAccountName(4)), names);
+		assertEquals("Wrong number of simulated round trips", 2,
+				dummyResource.getOperationCount(DummyOperation.SEARCH) - searchesBefore);
+	}
+
+	/**
+	 * Latency set by the test directly on the resource must survive connector initialization.
+	 */
+	@Test
+	public void test200SearchLatency() throws Exception {
+		final String TEST_NAME = "test200SearchLatency";
+		TestUtil.displayTestTile(this, TEST_NAME);
+
+		// GIVEN
+		dummyResource.setLatency(DummyOperation.SEARCH, DummyLatency.constant(SEARCH_LATENCY));
+		OperationResult result = new OperationResult(TestUcfDummySimulation.class.getName() + "." + TEST_NAME);
+		cc = connectorFactoryIcfImpl.createConnectorInstance(connectorType, ResourceTypeUtil.getResourceNamespace(resourceType),
+				"simulation connector");
+		cc.configure(resourceType.getConnectorConfiguration().asPrismContainerValue(), result);
+		cc.fetchResourceSchema(null, result);
+
+		// WHEN
+		long start = System.currentTimeMillis();
+		List<String> names = searchAccountNames(new ObjectQuery(), TEST_NAME);
+		long duration = System.currentTimeMillis() - start;
+
+		// THEN
+		display("Search took " + duration + " ms");
+		assertEquals("Wrong number of accounts found", SYNTHETIC_ACCOUNTS, names.size());
+		assertNotNull("Search latency was reset", dummyResource.getLatency(DummyOperation.SEARCH));
+		assertTrue("Search was too fast: " + duration + " ms", duration >= 4 * SEARCH_LATENCY);
+
+		dummyResource.setLatency(DummyOperation.SEARCH, null);
+	}
+
+	@Test
+	public void test210Throttling() throws Exception {
+		final String TEST_NAME = "test210Throttling";
+		TestUtil.displayTestTile(this, TEST_NAME);
+
+		// GIVEN
+		dummyResource.setMaxOperationsPerSecond(20);		// one round trip per 50 ms
+
+		// WHEN
+		long start = System.currentTimeMillis();
+		List<String> names = searchAccountNames(new ObjectQuery(), TEST_NAME);
+		long duration = System.currentTimeMillis() - start;
+
+		// THEN
+		display("Search took " + duration + " ms");
+		assertEquals("Wrong number of accounts found", SYNTHETIC_ACCOUNTS, names.size());
+		// 4 round trips, the first one is not delayed
+		assertTrue("Search was too fast: " + duration + " ms", duration >= 3 * 50 - 10);
+
+		dummyResource.setMaxOperationsPerSecond(0);
+	}
+
+	@Test
+	public void test300ConnectionLimit() throws Exception {
+		final String TEST_NAME = "test300ConnectionLimit";
+		TestUtil.displayTestTile(this, TEST_NAME);
+
+		// GIVEN
+		dummyResource.setMaxConnections(dummyResource.getConnectionCount() + 1);
+		dummyResource.setConnectTimeout(100);
+		dummyResource.connect();
+
+		try {
+			// WHEN
+			dummyResource.connect();
+
+			AssertJUnit.fail("Unexpected success");
+		} catch (ConnectException e) {
+			// THEN
+			display("Expected exception", e);
+		} finally {
+			dummyResource.disconnect();
+			dummyResource.setMaxConnections(0);
+			dummyResource.setConnectTimeout(DummyResource.DEFAULT_CONNECT_TIMEOUT);
+		}
+	}
+
+	private List<String> searchAccountNames(ObjectQuery query, String testName) throws Exception {
+		final List<String> names = new ArrayList<>();
+		ResultHandler<ShadowType> handler = new ResultHandler<ShadowType>() {
+			@Override
+			public boolean handle(PrismObject<ShadowType> shadow) {
+				try {
+					names.add((String) ShadowUtil.getAttributeValue(shadow, ConnectorFactoryIcfImpl.ICFS_NAME));
+				} catch (SchemaException e) {
+					throw new IllegalStateException(e.getMessage(), e);
+				}
+				return true;
+			}
+		};
+		OperationResult result = new OperationResult(TestUcfDummySimulation.class.getName() + "." + testName + ".search");
+		cc.search(accountDefinition, query, handler, null, null, null, null, result);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+		display("Found accounts", names);
+		return names;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.ucf.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+import org.testng.annotations.Test;
+
+/**
+ * @author agent
+ */
+public class TestConnectorOperationThrottle {
+
+	@Test
+	public void testReentrant() {
+		ConnectorOperationThrottle throttle = new ConnectorOperationThrottle("test", 1, 100L);
+
+		assertEquals("Wrong wait time", 0, throttle.acquire());
+		// nested operation in the same thread must not block
+		assertEquals("Wrong wait time (nested)", 0, throttle.acquire());
+		assertEquals("Wrong # of active operations", 1, throttle.getActiveOperations());
+		throttle.release();
+		assertEquals("Slot released too early", 1, throttle.getActiveOperations());
+		throttle.release();
+		assertEquals("Slot not released", 0, throttle.getActiveOperations());
+
+		// release without acquire (e.g. after a failed acquire) is ignored
+		throttle.release();
+		assertEquals("Wrong # of active operations after extra release", 0, throttle.getActiveOperations());
+	}
+
+	@Test
+	public void testWaitAndTimeout() throws Exception {
+		final ConnectorOperationThrottle throttle = new ConnectorOperationThrottle("test", 1, 200L);
+		throttle.acquire();
+
+		final AtomicReference<Object> outcome = new AtomicReference<>();
+		Thread other = new Thread() {
+			@Override
+			public void run() {
+				try {
+					outcome.set(throttle.acquire());
+					throttle.release();
+				} catch (OperationTimeoutException e) {
+					outcome.set(e);
+				}
+			}
+		};
+		other.start();
+		other.join();
+		assertTrue("Expected timeout, got " + outcome.get(), outcome.get() instanceof OperationTimeoutException);
+
+		outcome.set(null);
+		other = new Thread() {
+			@Override
+			public void run() {
+				outcome.set(throttle.acquire());
+				throttle.release();
+			}
+		};
+		other.start();
+		Thread.sleep(50);
+		assertEquals("Wrong # of waiting operations", 1, throttle.getWaitingOperations());
+		throttle.release();
+		other.join();
+		if (!(outcome.get() instanceof Long)) {
+			fail("Expected wait time, got " + outcome.get());
+		}
+		assertTrue("Wait time not recorded: " + outcome.get(), (Long) outcome.get() > 0);
+		assertEquals("Slot not released", 0, throttle.getActiveOperations());
+	}
+
+	@Test
+	public void testSuspendResume() {
+		ConnectorOperationThrottle throttle = new ConnectorOperationThrottle("test", 1, 100L);
+		throttle.acquire();
+		throttle.acquire();
+
+		int suspended = throttle.suspend();
+		assertEquals("Wrong # of active operations while suspended", 0, throttle.getActiveOperations());
+		// operation in the results handler takes a permit of its own
+		throttle.acquire();
+		assertEquals("Wrong # of active operations in the handler", 1, throttle.getActiveOperations());
+		throttle.release();
+		throttle.resume(suspended);
+		assertEquals("Wrong # of active operations after resume", 1, throttle.getActiveOperations());
+
+		throttle.release();
+		assertEquals("Slot released too early", 1, throttle.getActiveOperations());
+		throttle.release();
+		assertEquals("Slot not released", 0, throttle.getActiveOperations());
+
+		// nothing to suspend
+		assertEquals("Suspended without a permit", 0, throttle.suspend());
+		assertEquals("Wrong wait time on resume without a permit", 0, throttle.resume(0));
+		assertEquals("Wrong # of active operations", 0, throttle.getActiveOperations());
+	}
+
+	/**
+	 * Search results are handed over to worker threads through a bounded queue, as multi-threaded reconciliation
+	 * and import do, and each worker executes an operation on the same resource. The coordinator thread blocks
+	 * on the full queue while the search is running. With only one slot and no wait limit, this would deadlock
+	 * if the search kept its permit while the results are being processed.
+	 */
+	@Test
+	public void testSearchWithWorkers() throws Exception {
+		final int OBJECTS = 50;
+		final int WORKERS = 4;
+		final ConnectorOperationThrottle throttle = new ConnectorOperationThrottle("test", 1, null);
+		final BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(1);
+		final AtomicInteger processed = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Thread[] workers = new Thread[WORKERS];
+		for (int i = 0; i < WORKERS; i++) {
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (queue.take() >= 0) {
+							throttle.acquire();
+							try {
+								Thread.sleep(1);
+							} finally {
+								throttle.release();
+							}
+							processed.incrementAndGet();
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			};
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+
+		Thread coordinator = new Thread() {
+			@Override
+			public void run() {
+				try {
+					throttle.acquire();
+					try {
+						for (int i = 0; i < OBJECTS; i++) {
+							int suspended = throttle.suspend();
+							queue.put(i);
+							throttle.resume(suspended);
+						}
+					} finally {
+						throttle.release();
+					}
+					for (int i = 0; i < WORKERS; i++) {
+						queue.put(-1);
+					}
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+				}
+			}
+		};
+		coordinator.setDaemon(true);
+		coordinator.start();
+
+		coordinator.join(TimeUnit.SECONDS.toMillis(30));
+		assertFalse("Search did not finish (deadlock?)", coordinator.isAlive());
+		for (Thread worker : workers) {
+			worker.join(TimeUnit.SECONDS.toMillis(30));
+			assertFalse("Worker did not finish (deadlock?)", worker.isAlive());
+		}
+		assertNull("Unexpected failure: " + failure.get(), failure.get());
+		assertEquals("Wrong # of processed objects", OBJECTS, processed.get());
+		assertEquals("Slot not released", 0, throttle.getActiveOperations());
+	}
+}
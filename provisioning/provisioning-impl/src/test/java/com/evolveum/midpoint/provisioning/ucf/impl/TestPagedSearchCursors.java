@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.ucf.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.objects.AttributeBuilder;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationalAttributes;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+
+/**
+ * @author agent
+ */
+public class TestPagedSearchCursors {
+
+	private static final String COOKIE = "cookie";
+	private static final String SEARCH_KEY = "__ACCOUNT__|null";
+
+	@Test
+	public void testSpool() {
+		PagedSearchCursors cursors = new PagedSearchCursors();
+		PagedSearchCursors.Spool spool = new PagedSearchCursors.Spool();
+		for (int i = 0; i < 250; i++) {
+			ConnectorObjectBuilder builder = new ConnectorObjectBuilder();
+			builder.setObjectClass(ObjectClass.ACCOUNT);
+			builder.setUid("u" + i);
+			builder.setName("user" + i);
+			spool.handle(builder.build());
+		}
+		spool.close();
+		cursors.setSpool(COOKIE, SEARCH_KEY, spool);
+
+		PagedSearchCursors.Cursor cursor = cursors.get(COOKIE, SEARCH_KEY);
+		assertNotNull("No cursor", cursor);
+		assertEquals("Wrong spool size", 250, cursor.getSpool().size());
+		assertPage(cursor.getSpool(), 120, 30, 120, 30);
+		assertPage(cursor.getSpool(), 240, 30, 240, 10);
+		assertPage(cursor.getSpool(), 0, null, 0, 250);
+		assertPage(cursor.getSpool(), 300, 10, 0, 0);
+
+		assertNull("Cursor found for another search", cursors.get(COOKIE, "__GROUP__|null"));
+		assertNull("Cursor not discarded", cursors.get(COOKIE, SEARCH_KEY));
+	}
+
+	@Test
+	public void testSpoolCredentials() {
+		PagedSearchCursors.Spool spool = new PagedSearchCursors.Spool();
+		try {
+			ConnectorObjectBuilder builder = new ConnectorObjectBuilder();
+			builder.setObjectClass(ObjectClass.ACCOUNT);
+			builder.setUid("u0");
+			builder.setName("user0");
+			builder.addAttribute(AttributeBuilder.build("fullname", "User Zero"));
+			builder.addAttribute(AttributeBuilder.build(OperationalAttributes.PASSWORD_NAME,
+					new GuardedString("secret".toCharArray())));
+			spool.handle(builder.build());
+			spool.close();
+
+			final List<ConnectorObject> objects = new ArrayList<>();
+			spool.read(0, null, new ResultsHandler() {
+				@Override
+				public boolean handle(ConnectorObject connectorObject) {
+					objects.add(connectorObject);
+					return true;
+				}
+			});
+			assertEquals("Wrong number of objects", 1, objects.size());
+			ConnectorObject object = objects.get(0);
+			assertEquals("Wrong uid", "u0", object.getUid().getUidValue());
+			assertNotNull("Attribute not spooled", object.getAttributeByName("fullname"));
+			assertNull("Password spooled", object.getAttributeByName(OperationalAttributes.PASSWORD_NAME));
+		} finally {
+			spool.delete();
+		}
+	}
+
+	@Test(expectedExceptions = SystemException.class)
+	public void testClear() {
+		PagedSearchCursors cursors = new PagedSearchCursors();
+		PagedSearchCursors.Spool spool = new PagedSearchCursors.Spool();
+		ConnectorObjectBuilder builder = new ConnectorObjectBuilder();
+		builder.setObjectClass(ObjectClass.ACCOUNT);
+		builder.setUid("u0");
+		builder.setName("user0");
+		spool.handle(builder.build());
+		spool.close();
+		cursors.setSpool(COOKIE, SEARCH_KEY, spool);
+
+		cursors.clear();
+		assertNull("Cursor not cleared", cursors.get(COOKIE, SEARCH_KEY));
+		// the spool file is deleted
+		assertPage(spool, 0, null, 0, 0);
+	}
+
+	@Test
+	public void testConnectorCookie() {
+		PagedSearchCursors cursors = new PagedSearchCursors();
+		cursors.setConnectorCookie(COOKIE, SEARCH_KEY, "connector-cookie", 20);
+
+		PagedSearchCursors.Cursor cursor = cursors.get(COOKIE, SEARCH_KEY);
+		assertNotNull("No cursor", cursor);
+		assertEquals("Wrong connector cookie", "connector-cookie", cursor.getConnectorCookie());
+		assertEquals("Wrong next offset", 20, cursor.getNextOffset());
+		assertNull("Unexpected spool", cursor.getSpool());
+
+		cursors.remove(COOKIE);
+		assertNull("Cursor not removed", cursors.get(COOKIE, SEARCH_KEY));
+	}
+
+	private void assertPage(PagedSearchCursors.Spool spool, int offset, Integer maxSize, int expectedFirst, int expectedSize) {
+		final List<String> uids = new ArrayList<>();
+		spool.read(offset, maxSize, new ResultsHandler() {
+			@Override
+			public boolean handle(ConnectorObject connectorObject) {
+				uids.add(connectorObject.getUid().getUidValue());
+				return true;
+			}
+		});
+		assertEquals("Wrong page size", expectedSize, uids.size());
+		for (int i = 0; i < expectedSize; i++) {
+			assertEquals("Wrong object in page", "u" + (expectedFirst + i), uids.get(i));
+		}
+	}
+}
@@ -144,6 +144,7 @@ public interface RepositoryService {
     String COUNT_OBJECTS = CLASS_NAME_WITH_DOT + "countObjects";
     String GET_VERSION = CLASS_NAME_WITH_DOT + "getVersion";
     String SEARCH_OBJECTS_ITERATIVE = CLASS_NAME_WITH_DOT + "searchObjectsIterative";
+    String SEARCH_OBJECT_OIDS = CLASS_NAME_WITH_DOT + "searchObjectOids";
     String CLEANUP_TASKS = CLASS_NAME_WITH_DOT + "cleanupTasks";
     String SEARCH_SHADOW_OWNER = CLASS_NAME_WITH_DOT + "searchShadowOwner";
 	String ADVANCE_SEQUENCE = CLASS_NAME_WITH_DOT + "advanceSequence";
@@ -331,6 +332,30 @@ public interface RepositoryService {
 			OperationResult parentResult)
 			throws SchemaException;
 
+	/**
+	 * <p>Returns OIDs of objects that match specified criteria. The objects themselves are not fetched,
+	 * so this is much cheaper than searchObjects when the caller needs only a few of the objects at a time,
+	 * e.g. when it processes them one by one (and possibly in parallel) and fetches each one just before
+	 * it is processed.</p>
+	 * <p>
+	 * Each OID is returned only once. The ordering of the results is not significant and may be arbitrary
+	 * unless sorting in the paging is used.
+	 * </p>
+	 *
+	 * @param query
+	 *            search query
+	 * @param parentResult
+	 *            parent OperationResult (in/out)
+	 * @return OIDs of objects of specified type that match search criteria (subject to paging)
+	 *
+	 * @throws IllegalArgumentException
+	 *             wrong object type
+	 * @throws SchemaException
+	 *             unknown property used in search query
+	 */
+	<T extends ObjectType> List<String> searchObjectOids(Class<T> type, ObjectQuery query, OperationResult parentResult)
+			throws SchemaException;
+
 	/**
 	 * <p>Returns the number of objects that match specified criteria.</p>
 	 * <p>If no search criteria specified, count of all objects of specified type is returned.</p>
@@ -568,6 +593,21 @@ public interface RepositoryService {
      */
     void testOrgClosureConsistency(boolean repairIfNecessary, OperationResult testResult);
 
+    /**
+     * Suspends incremental maintenance of the org closure on this node, e.g. for a batch import
+     * of organizational structure. Each call must be paired with endOrgClosureBulkMode.
+     * Until the bulk mode ends, org-related searches can return imprecise results.
+     *
+     * TODO this method is SQL service specific; it should be generalized/fixed somehow.
+     */
+    void beginOrgClosureBulkMode(OperationResult result);
+
+    /**
+     * Ends the bulk mode started by beginOrgClosureBulkMode. When the last bulk mode ends,
+     * the org closure is recomputed. Problems are recorded in the result.
+     */
+    void endOrgClosureBulkMode(OperationResult result);
+
 	/**
 	 * A bit of hack - execute arbitrary query, e.g. hibernate query in case of SQL repository.
 	 * Use with all the care!
@@ -213,6 +213,13 @@ public class RepositoryCache implements RepositoryService {
 		return repository.searchObjectsIterative(type, query, myHandler, options, strictlySequential, parentResult);
 	}
 
+	@Override
+	public <T extends ObjectType> List<String> searchObjectOids(Class<T> type, ObjectQuery query,
+			OperationResult parentResult) throws SchemaException {
+		log("Cache: PASS searchObjectOids ({})", type.getSimpleName());
+		return repository.searchObjectOids(type, query, parentResult);
+	}
+
 	@Override
 	public <T extends ObjectType> int countObjects(Class<T> type, ObjectQuery query, OperationResult parentResult)
 			throws SchemaException {
@@ -341,6 +348,16 @@ public class RepositoryCache implements RepositoryService {
         repository.testOrgClosureConsistency(repairIfNecessary, testResult);
     }
 
+    @Override
+    public void beginOrgClosureBulkMode(OperationResult result) {
+        repository.beginOrgClosureBulkMode(result);
+    }
+
+    @Override
+    public void endOrgClosureBulkMode(OperationResult result) {
+        repository.endOrgClosureBulkMode(result);
+    }
+
     private <T extends ObjectType> void cacheObject(Cache cache, PrismObject<T> object) {
 		if (cache != null) {
 			cache.putObject(object.getOid(), (PrismObject<ObjectType>) object.clone());
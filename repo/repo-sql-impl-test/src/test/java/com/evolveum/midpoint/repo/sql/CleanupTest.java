@@ -152,6 +152,57 @@ public class CleanupTest extends BaseSQLRepoTest {
         }
     }
 
+    @Test
+    public void testAuditCleanupBatched() throws Exception {
+        //GIVEN
+        Calendar calendar = create_2013_07_12_12_00_Calendar();
+        for (int i = 0; i < 5; i++) {
+            AuditEventRecord record = new AuditEventRecord();
+            record.addDelta(createObjectDeltaOperation(i));
+            record.setTimestamp(calendar.getTimeInMillis());
+            auditService.audit(record, new SimpleTaskAdapter());
+            calendar.add(Calendar.HOUR_OF_DAY, 1);
+        }
+
+        //WHEN
+        calendar = create_2013_07_12_12_00_Calendar();
+        calendar.add(Calendar.HOUR_OF_DAY, 3);
+        calendar.add(Calendar.MINUTE, 1);
+
+        final long NOW = System.currentTimeMillis();
+        CleanupPolicyType policy = createPolicy(calendar, NOW);
+        policy.setBatchSize(2);
+        policy.setPauseBetweenBatches(DatatypeFactory.newInstance().newDuration(10L));
+
+        OperationResult result = new OperationResult("Cleanup audit batched");
+        auditService.cleanupAudit(policy, result);
+        result.recomputeStatus();
+
+        //THEN
+        AssertJUnit.assertTrue(result.isSuccess());
+
+        Date mark = new Date(NOW);
+        policy.getMaxAge().addTo(mark);
+
+        Session session = getFactory().openSession();
+        try {
+            session.beginTransaction();
+
+            Query query = session.createQuery("from " + RAuditEventRecord.class.getSimpleName());
+            List<RAuditEventRecord> records = query.list();
+
+            AssertJUnit.assertFalse("No records left", records.isEmpty());
+            for (RAuditEventRecord record : records) {
+                Date timestamp = new Date(record.getTimestamp().getTime());
+                AssertJUnit.assertTrue("timestamp: " + timestamp + ", mark: " + mark, timestamp.after(mark));
+            }
+
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+
     private ObjectDeltaOperation createObjectDeltaOperation(int i) throws Exception {
         ObjectDeltaOperation delta = new ObjectDeltaOperation();
         delta.setExecutionResult(new OperationResult("asdf"));
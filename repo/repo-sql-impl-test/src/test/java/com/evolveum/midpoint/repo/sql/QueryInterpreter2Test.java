@@ -48,6 +48,7 @@ import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.prism.schema.SchemaRegistry;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.sql.helpers.OrgHierarchyIndex;
 import com.evolveum.midpoint.repo.sql.query.QueryException;
 import com.evolveum.midpoint.repo.sql.query.RQuery;
 import com.evolveum.midpoint.repo.sql.query2.QueryEngine2;
@@ -1885,6 +1886,73 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
         checkQueryResult(UserType.class, "00000000-8888-6666-0000-200000000001", OrgFilter.Scope.SUBTREE, 1);
     }
 
+    @Test
+    public void test505OrgQueryHierarchyIndex() throws Exception {
+        ObjectQuery subtreeQuery = QueryBuilder.queryFor(UserType.class, prismContext)
+                .isChildOf("00000000-8888-6666-0000-100000000001")
+                .asc(ObjectType.F_NAME)
+                .build();
+        ObjectQuery rootQuery = QueryBuilder.queryFor(OrgType.class, prismContext)
+                .isRoot()
+                .asc(ObjectType.F_NAME)
+                .build();
+
+        OperationResult result = new OperationResult("test505OrgQueryHierarchyIndex");
+        int subtreeCount = repositoryService.searchObjects(UserType.class, subtreeQuery, null, result).size();
+        int rootCount = repositoryService.searchObjects(OrgType.class, rootQuery, null, result).size();
+
+        OrgHierarchyIndex index = repositoryService.getClosureManager().getHierarchyIndex();
+        repositoryService.getConfiguration().setOrgHierarchyIndex(true);
+        Session session = open();
+        try {
+            index.rebuild();
+            QueryEngine2 engine = new QueryEngine2(repositoryService.getConfiguration(), prismContext, index);
+
+            RQuery rQuery = engine.interpret(subtreeQuery, UserType.class, null, false, session);
+            String expected = "select\n" +
+                    "  u.fullObject,\n" +
+                    "  u.stringsCount,\n" +
+                    "  u.longsCount,\n" +
+                    "  u.datesCount,\n" +
+                    "  u.referencesCount,\n" +
+                    "  u.polysCount,\n" +
+                    "  u.booleansCount\n" +
+                    "from\n" +
+                    "  RUser u\n" +
+                    "where\n" +
+                    "  u.oid in (select ref.ownerOid from RObjectReference ref where ref.referenceType = com.evolveum.midpoint.repo.sql.data.common.other.RReferenceOwner.OBJECT_PARENT_ORG and ref.targetOid in (:subtreeOids))\n" +
+                    "order by u.name.orig asc\n";
+            assertEqualsIgnoreWhitespace(expected, ((RQueryImpl) rQuery).getQuery().getQueryString());
+            AssertJUnit.assertEquals("Wrong subtree query result when using org hierarchy index", subtreeCount, rQuery.list().size());
+
+            rQuery = engine.interpret(rootQuery, OrgType.class, null, false, session);
+            expected = "select\n" +
+                    "  o.fullObject,\n" +
+                    "  o.stringsCount,\n" +
+                    "  o.longsCount,\n" +
+                    "  o.datesCount,\n" +
+                    "  o.referencesCount,\n" +
+                    "  o.polysCount,\n" +
+                    "  o.booleansCount\n" +
+                    "from\n" +
+                    "  ROrg o\n" +
+                    "where\n" +
+                    "  o.oid in :oid\n" +
+                    "order by o.name.orig asc\n";
+            assertEqualsIgnoreWhitespace(expected, ((RQueryImpl) rQuery).getQuery().getQueryString());
+            AssertJUnit.assertEquals("Wrong root query result when using org hierarchy index", rootCount, rQuery.list().size());
+
+            // outdated index must not be used
+            index.invalidate();
+            rQuery = engine.interpret(subtreeQuery, UserType.class, null, false, session);
+            AssertJUnit.assertTrue("Invalidated org hierarchy index is used",
+                    ((RQueryImpl) rQuery).getQuery().getQueryString().contains("ROrgClosure"));
+        } finally {
+            repositoryService.getConfiguration().setOrgHierarchyIndex(false);
+            close(session);
+        }
+    }
+
     private <T extends ObjectType> void checkQueryResult(Class<T> type, String oid, OrgFilter.Scope scope, int count)
             throws Exception {
         LOGGER.info("checkQueryResult");
@@ -262,6 +262,21 @@ public class SearchTest extends BaseSQLRepoTest {
         AssertJUnit.assertTrue(result.isSuccess());
         AssertJUnit.assertEquals("Should find zero roles", 0, roles.size());
     }
+    @Test
+    public void assignmentResourceRefOidSearchTest() throws Exception {
+        PrismReferenceValue resourceRef = new PrismReferenceValue("10000000-0000-0000-0000-000000000004", ResourceType.COMPLEX_TYPE);
+        RefFilter filter = RefFilter.createReferenceEqual(new ItemPath(RoleType.F_ASSIGNMENT, AssignmentType.F_CONSTRUCTION, ConstructionType.F_RESOURCE_REF), UserType.class, prismContext, resourceRef);
+        ObjectQuery query = ObjectQuery.createObjectQuery(filter);
+
+        OperationResult result = new OperationResult("search");
+        List<PrismObject<RoleType>> roles = repositoryService.searchObjects(RoleType.class, query, null, result);
+        List<String> oids = repositoryService.searchObjectOids(RoleType.class, query, result);
+        result.recomputeStatus();
+        AssertJUnit.assertTrue(result.isSuccess());
+        AssertJUnit.assertEquals("Should find one OID", 1, oids.size());
+        AssertJUnit.assertEquals("Wrong OID", roles.get(0).getOid(), oids.get(0));
+    }
+
   @Test
     public void roleAssignmentSearchTest() throws Exception {
         PrismReferenceValue r456 = new PrismReferenceValue("r123", RoleType.COMPLEX_TYPE);
@@ -38,9 +38,11 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
 /**
@@ -198,9 +200,77 @@ public class SequenceTest extends BaseSQLRepoTest {
         concurrencyUniversal("Test033", "sequence-unbound.xml", 10000L, mts, true);
     }
 
+    @Test
+    public void test040_BlockAllocation() throws Exception {
+        OperationResult result = new OperationResult("test040_BlockAllocation");
+        final File file = new File(TEST_DIR + "sequence-unbound-block.xml");
+        PrismObject<SequenceType> sequence = prismContext.parseObject(file);
+        sequence.asObjectable().setName(new PolyStringType("Test040"));
+        String oid = repositoryService.addObject(sequence, null, result);
+
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(i, repositoryService.advanceSequence(oid, result));
+        }
+
+        PrismObject<SequenceType> sequenceAfter = repositoryService.getObject(SequenceType.class, oid, null, result);
+        long counter = sequenceAfter.asObjectable().getCounter();
+        int version = Integer.parseInt(sequenceAfter.getVersion());
+        LOGGER.info("Counter after 1000 values: {}, version: {}", counter, version);
+        assertTrue("Counter was not advanced: " + counter, counter >= 1000);
+        assertTrue("Too many repository updates: " + version, version < 100);
+    }
+
+    @Test
+    public void test041_TenThreadsBlockAllocation() throws Exception {
+
+        WorkerThread[] mts = new WorkerThread[] {
+                new WorkerThread(1),
+                new WorkerThread(2),
+                new WorkerThread(3),
+                new WorkerThread(4),
+                new WorkerThread(5),
+                new WorkerThread(6),
+                new WorkerThread(7),
+                new WorkerThread(8),
+                new WorkerThread(9),
+                new WorkerThread(10)
+        };
+
+        // values remaining in the last block are not used, so we check only for duplicates
+        String oid = runWorkers("Test041", "sequence-unbound-block.xml", 5000L, mts);
+        List<Long> allValues = new ArrayList<>();
+        for (WorkerThread t : mts) {
+            allValues.addAll(t.values);
+        }
+        assertEquals("Duplicate values were allocated", allValues.size(), new HashSet<>(allValues).size());
+        LOGGER.info("{} values allocated from sequence {}", allValues.size(), oid);
+    }
 
     private void concurrencyUniversal(String name, String sequenceFileName, long duration, WorkerThread[] workerThreads, boolean alwaysOrder) throws Exception {
 
+        runWorkers(name, sequenceFileName, duration, workerThreads);
+
+        List<Long> allValues = new ArrayList<>();
+        for (WorkerThread t : workerThreads) {
+            allValues.addAll(t.values);
+        }
+        if (alwaysOrder || workerThreads.length > 1) {
+            Collections.sort(allValues);
+        }
+        LOGGER.trace("Checking a list of {} values", allValues.size());
+        for (int i = 0; i < allValues.size(); i++) {
+            if (allValues.get(i) != i) {
+                LOGGER.error("Incorrect value at position {}: {}", i, allValues.get(i));
+                for (WorkerThread t : workerThreads) {
+                    LOGGER.info("Thread {}: {}", t.id, t.values);
+                }
+                fail("Incorrect value at position " + i + ": " + allValues.get(i));
+            }
+        }
+    }
+
+    private String runWorkers(String name, String sequenceFileName, long duration, WorkerThread[] workerThreads) throws Exception {
+
         Session session = getFactory().openSession();
         session.doWork(new Work() {
             @Override
@@ -257,24 +327,7 @@ public class SequenceTest extends BaseSQLRepoTest {
                 throw new AssertionError("Worker thread " + t.id + " finished with an exception: " + t.threadResult, t.threadResult);
             }
         }
-
-        List<Long> allValues = new ArrayList<>();
-        for (WorkerThread t : workerThreads) {
-            allValues.addAll(t.values);
-        }
-        if (alwaysOrder || workerThreads.length > 1) {
-            Collections.sort(allValues);
-        }
-        LOGGER.trace("Checking a list of {} values", allValues.size());
-        for (int i = 0; i < allValues.size(); i++) {
-            if (allValues.get(i) != i) {
-                LOGGER.error("Incorrect value at position {}: {}", i, allValues.get(i));
-                for (WorkerThread t : workerThreads) {
-                    LOGGER.info("Thread {}: {}", t.id, t.values);
-                }
-                fail("Incorrect value at position " + i + ": " + allValues.get(i));
-            }
-        }
+        return oid;
     }
 
     class WorkerThread extends Thread {
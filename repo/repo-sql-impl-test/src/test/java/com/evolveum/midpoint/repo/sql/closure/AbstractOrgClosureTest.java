@@ -33,6 +33,7 @@ import com.evolveum.midpoint.prism.query.OrgFilter;
 import com.evolveum.midpoint.repo.sql.BaseSQLRepoTest;
 import com.evolveum.midpoint.repo.sql.data.common.ROrgClosure;
 import com.evolveum.midpoint.repo.sql.data.common.other.RObjectType;
+import com.evolveum.midpoint.repo.sql.helpers.OrgHierarchyIndex;
 import com.evolveum.midpoint.repo.sql.type.XMLGregorianCalendarType;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
@@ -56,6 +57,7 @@ import org.jgrapht.graph.SimpleDirectedGraph;
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -64,6 +66,7 @@ import java.util.Set;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertTrue;
 
 /**
@@ -829,6 +832,52 @@ public abstract class AbstractOrgClosureTest extends BaseSQLRepoTest {
         checkClosureUnconditional(getVertices());
     }
 
+    protected void _test160BulkModeRebuild() throws Exception {
+        OperationResult opResult = new OperationResult("===[ test160BulkModeRebuild ]===");
+        List<String> parentOids = getOrgsAtThisLevelSafe(1);
+        parentOids = parentOids.subList(0, Math.min(2, parentOids.size()));
+
+        repositoryService.getClosureManager().enterBulkMode();
+        PrismObject<OrgType> org = createOrg(parentOids, "bulk");
+        repositoryService.addObject(org, null, opResult);
+        registerObject(org.asObjectable(), false);
+
+        Query q = getSession().createSQLQuery("select count(*) from m_org_closure where descendant_oid = :oid");
+        q.setString("oid", org.getOid());
+        assertEquals("Closure was updated in bulk mode", "0", q.list().get(0).toString());
+
+        long start = System.currentTimeMillis();
+        repositoryService.getClosureManager().exitBulkMode(opResult);
+        System.out.println("Closure recomputed in " + (System.currentTimeMillis() - start) + " ms");
+        opResult.computeStatus();
+        assertTrue("Closure was not recomputed: " + opResult.getMessage(), opResult.isSuccess());
+
+        checkClosure(getVertices());
+    }
+
+    protected void _test170HierarchyIndex() throws Exception {
+        OrgHierarchyIndex index = repositoryService.getClosureManager().getHierarchyIndex();
+        repositoryService.getConfiguration().setOrgHierarchyIndex(true);
+        try {
+            index.rebuild();
+            for (String oid : getVertices()) {
+                Set<String> expected = getActualChildrenOf(oid);
+                List<String> subtree = index.getSubtreeOids(oid, Integer.MAX_VALUE);
+                assertNotNull("Org hierarchy index is not available", subtree);
+                assertEquals("Wrong subtree of " + oid + " in org hierarchy index", expected, new HashSet<>(subtree));
+                for (String descendant : expected) {
+                    assertTrue(oid + " is not an ancestor of " + descendant + " according to org hierarchy index",
+                            index.isAnySubordinate(oid, Collections.singleton(descendant)));
+                }
+            }
+
+            index.invalidate();
+            assertNull("Invalidated org hierarchy index is used", index.getSubtreeOids(getVertices().iterator().next(), Integer.MAX_VALUE));
+        } finally {
+            repositoryService.getConfiguration().setOrgHierarchyIndex(false);
+        }
+    }
+
     protected synchronized Set<String> getVertices() {
         return new HashSet<>(orgGraph.vertexSet());
     }
@@ -28,6 +28,7 @@ import com.evolveum.midpoint.repo.sql.util.DtoTranslationException;
 import com.evolveum.midpoint.repo.sql.util.GetObjectResult;
 import com.evolveum.midpoint.repo.sql.util.RUtil;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.CleanupPolicyUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.Holder;
 import com.evolveum.midpoint.util.MiscUtil;
@@ -64,7 +65,7 @@ import org.hibernate.FlushMode;
 public class SqlAuditServiceImpl extends SqlBaseService implements AuditService {
 
     private static final Trace LOGGER = TraceManager.getTrace(SqlAuditServiceImpl.class);
-    private static final Integer CLEANUP_AUDIT_BATCH_SIZE = 500;
+    private static final int CLEANUP_AUDIT_BATCH_SIZE = 500;
 
     public SqlAuditServiceImpl(SqlRepositoryFactory repositoryFactory) {
         super(repositoryFactory);
@@ -222,6 +223,8 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
             throw new SystemException("Dialect " + dialect + " doesn't support temporary tables, couldn't cleanup audit logs.");
         }
 
+        int batchSize = CleanupPolicyUtil.getBatchSize(policy, CLEANUP_AUDIT_BATCH_SIZE);
+
         long start = System.currentTimeMillis();
         boolean first = true;
         Holder<Integer> totalCountHolder = new Holder<>(0);
@@ -230,13 +233,21 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
                 try {
                     LOGGER.info("{} audit cleanup, deleting up to {} (duration '{}'), batch size {}{}.",
                             first ? "Starting" : "Restarting",
-                            minValue, duration, CLEANUP_AUDIT_BATCH_SIZE,
+                            minValue, duration, batchSize,
                             first ? "" : ", up to now deleted " + totalCountHolder.getValue() + " entries");
                     first = false;
                     int count;
                     do {
                         // the following method may restart due to concurrency (or any other) problem - in any iteration
-                        count = cleanupAuditAttempt(minValue, duration, totalCountHolder, dialect, parentResult);
+                        count = cleanupAuditAttempt(minValue, duration, batchSize, totalCountHolder, dialect, parentResult);
+                        if (count > 0) {
+                            LOGGER.debug("Audit cleanup progress: deleted {} entries ({} entries per second).",
+                                    totalCountHolder.getValue(), CleanupPolicyUtil.formatRate(totalCountHolder.getValue(), start));
+                            if (!CleanupPolicyUtil.pauseAfterBatch(policy)) {
+                                LOGGER.warn("Audit cleanup was interrupted.");
+                                return;
+                            }
+                        }
                     } while (count > 0);
                     return;
                 } catch (RuntimeException ex) {
@@ -246,22 +257,24 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
             }
         } finally {
             pm.registerOperationFinish(opHandle, attempt);
-            LOGGER.info("Audit cleanup finished; deleted {} entries in {} seconds.",
-                    totalCountHolder.getValue(), (System.currentTimeMillis() - start)/1000L);
+            LOGGER.info("Audit cleanup finished; deleted {} entries in {} seconds ({} entries per second).",
+                    totalCountHolder.getValue(), (System.currentTimeMillis() - start)/1000L,
+                    CleanupPolicyUtil.formatRate(totalCountHolder.getValue(), start));
         }
     }
 
-    private int cleanupAuditAttempt(Date minValue, Duration duration, Holder<Integer> totalCountHolder, Dialect dialect, OperationResult subResult) {
+    private int cleanupAuditAttempt(Date minValue, Duration duration, int batchSize, Holder<Integer> totalCountHolder,
+            Dialect dialect, OperationResult subResult) {
 
         long start = System.currentTimeMillis();
         LOGGER.debug("Starting audit cleanup batch, deleting up to {} (duration '{}'), batch size {}, up to now deleted {} entries.",
-                minValue, duration, CLEANUP_AUDIT_BATCH_SIZE, totalCountHolder.getValue());
+                minValue, duration, batchSize, totalCountHolder.getValue());
 
         Session session = null;
         try {
             session = beginTransaction();
 
-            int count = cleanupAuditAttempt(minValue, session, dialect);
+            int count = cleanupAuditAttempt(minValue, batchSize, session, dialect);
 
             session.getTransaction().commit();
             int totalCount = totalCountHolder.getValue() + count;
@@ -277,7 +290,7 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
         }
     }
 
-    protected int cleanupAuditAttempt(Date minValue, Session session, Dialect dialect) {
+    protected int cleanupAuditAttempt(Date minValue, int batchSize, Session session, Dialect dialect) {
         //create temporary table
         final String tempTable = dialect.generateTemporaryTableName(RAuditEventRecord.TABLE_NAME);
         createTemporaryTable(session, dialect, tempTable);
@@ -287,18 +300,20 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
         StringBuilder selectSB = new StringBuilder();
         selectSB.append("select a.id as id from ").append(RAuditEventRecord.TABLE_NAME).append(" a");
         selectSB.append(" where a.").append(RAuditEventRecord.COLUMN_TIMESTAMP).append(" < ###TIME###");
+        // oldest records first, so each batch removes a contiguous time slice (using the timestamp index)
+        selectSB.append(" order by a.").append(RAuditEventRecord.COLUMN_TIMESTAMP);
         String selectString = selectSB.toString();
 
         // batch size
         RowSelection rowSelection = new RowSelection();
-        rowSelection.setMaxRows(CLEANUP_AUDIT_BATCH_SIZE);
+        rowSelection.setMaxRows(batchSize);
         LimitHandler limitHandler = dialect.buildLimitHandler(selectString, rowSelection);
         selectString = limitHandler.getProcessedSql();
 
         // replace ? -> batch size, $ -> ?
         // Sorry for that .... I just don't know how to write this query in HQL, nor I'm not sure if limiting max size in
         // compound insert into ... select ... query via query.setMaxSize() would work - TODO write more nicely if anybody knows how)
-        selectString = selectString.replace("?", String.valueOf(CLEANUP_AUDIT_BATCH_SIZE));
+        selectString = selectString.replace("?", String.valueOf(batchSize));
         selectString = selectString.replace("###TIME###", "?");
 
         String queryString = "insert into " + tempTable + " " + selectString;
@@ -19,12 +19,14 @@ package com.evolveum.midpoint.repo.sql;
 import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.util.monitor.MetricsRegistry;
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -46,8 +48,12 @@ public class SqlPerformanceMonitor {
 
     private AtomicLong currentHandle = new AtomicLong();
 
+    private static final String METRIC_PREFIX = "repository.";
+
+    private final MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+
     private ConcurrentMap<Long,OperationRecord> outstandingOperations = new ConcurrentHashMap<Long, OperationRecord>();
-    private List<OperationRecord> finishedOperations = Collections.synchronizedList(new ArrayList<OperationRecord>());
+    private Queue<OperationRecord> finishedOperations = new ConcurrentLinkedQueue<OperationRecord>();
 
     private SqlRepositoryFactory sqlRepositoryFactory;
 
@@ -153,14 +159,12 @@ public class SqlPerformanceMonitor {
             perAttempts[i] = new StatEntry();
         }
 
-        synchronized (finishedOperations) {
-            for (OperationRecord operation : finishedOperations) {
-                all.process(operation);
-                if (operation.attempts >= 1 && operation.attempts <= SqlBaseService.LOCKING_MAX_ATTEMPTS+1) {
-                    perAttempts[operation.attempts-1].process(operation);
-                } else if (operation.attempts < 0) {
-                    unfinished.process(operation);
-                }
+        for (OperationRecord operation : finishedOperations) {
+            all.process(operation);
+            if (operation.attempts >= 1 && operation.attempts <= SqlBaseService.LOCKING_MAX_ATTEMPTS+1) {
+                perAttempts[operation.attempts-1].process(operation);
+            } else if (operation.attempts < 0) {
+                unfinished.process(operation);
             }
         }
 
@@ -179,9 +183,13 @@ public class SqlPerformanceMonitor {
     }
 
 
+    private boolean isActive() {
+        return level > LEVEL_NONE || metricsRegistry.isEnabled();
+    }
+
     public long registerOperationStart(String kind) {
 
-        if (level <= LEVEL_NONE) {
+        if (!isActive()) {
             return 0L;
         }
 
@@ -198,7 +206,7 @@ public class SqlPerformanceMonitor {
 
     public void registerOperationFinish(long opHandle, int attempt) {
 
-        if (level <= LEVEL_NONE) {
+        if (!isActive()) {
             return;
         }
 
@@ -220,13 +228,19 @@ public class SqlPerformanceMonitor {
     private void registerOperationFinishRaw(Long threadId, OperationRecord operation, int attempt) {
         operation.totalTime = System.currentTimeMillis() - operation.startTime;
         operation.attempts = attempt;
-        finishedOperations.add(operation);
+        // individual records are kept only if detailed statistics are requested; metrics are aggregated
+        if (level > LEVEL_NONE) {
+            finishedOperations.add(operation);
+        }
+        if (metricsRegistry.isEnabled()) {
+            metricsRegistry.recordLatency(METRIC_PREFIX + operation.kind, operation.totalTime);
+        }
         outstandingOperations.remove(threadId);
     }
 
     public void registerOperationNewTrial(long opHandle, int attempt) {
 
-        if (level <= LEVEL_NONE) {
+        if (!isActive()) {
             return;
         }
 
@@ -78,6 +78,10 @@ public class SqlRepositoryConfiguration {
     public static final String PROPERTY_ORG_CLOSURE_STARTUP_ACTION = "orgClosureStartupAction";
     public static final String PROPERTY_SKIP_ORG_CLOSURE_STRUCTURE_CHECK = "skipOrgClosureStructureCheck";
     public static final String PROPERTY_STOP_ON_ORG_CLOSURE_STARTUP_FAILURE = "stopOnOrgClosureStartupFailure";
+    public static final String PROPERTY_ORG_CLOSURE_REBUILD_THREADS = "orgClosureRebuildThreads";
+    public static final String PROPERTY_ORG_HIERARCHY_INDEX = "orgHierarchyIndex";
+    public static final String PROPERTY_ORG_HIERARCHY_INDEX_TIME_TO_LIVE = "orgHierarchyIndexTimeToLive";
+    public static final String PROPERTY_ORG_HIERARCHY_INDEX_MAX_SIZE = "orgHierarchyIndexMaxSize";
 
     private String database = Database.H2.name();
 
@@ -115,6 +119,10 @@ public class SqlRepositoryConfiguration {
     private OrgClosureManager.StartupAction orgClosureStartupAction;
     private boolean skipOrgClosureStructureCheck;
     private boolean stopOnOrgClosureStartupFailure;
+    private int orgClosureRebuildThreads = 1;
+    private boolean orgHierarchyIndex = false;
+    private int orgHierarchyIndexTimeToLive = 10;
+    private int orgHierarchyIndexMaxSize = 1000000;
 
     public SqlRepositoryConfiguration(Configuration configuration) {
         setDatabase(configuration.getString(PROPERTY_DATABASE, database));
@@ -157,6 +165,10 @@ public class SqlRepositoryConfiguration {
         setOrgClosureStartupAction(configuration.getString(PROPERTY_ORG_CLOSURE_STARTUP_ACTION, OrgClosureManager.StartupAction.REBUILD_IF_NEEDED.toString()));
         setSkipOrgClosureStructureCheck(configuration.getBoolean(PROPERTY_SKIP_ORG_CLOSURE_STRUCTURE_CHECK, false));
         setStopOnOrgClosureStartupFailure(configuration.getBoolean(PROPERTY_STOP_ON_ORG_CLOSURE_STARTUP_FAILURE, true));
+        setOrgClosureRebuildThreads(configuration.getInt(PROPERTY_ORG_CLOSURE_REBUILD_THREADS, 1));
+        setOrgHierarchyIndex(configuration.getBoolean(PROPERTY_ORG_HIERARCHY_INDEX, orgHierarchyIndex));
+        setOrgHierarchyIndexTimeToLive(configuration.getInt(PROPERTY_ORG_HIERARCHY_INDEX_TIME_TO_LIVE, orgHierarchyIndexTimeToLive));
+        setOrgHierarchyIndexMaxSize(configuration.getInt(PROPERTY_ORG_HIERARCHY_INDEX_MAX_SIZE, orgHierarchyIndexMaxSize));
     }
 
     private void computeDefaultDatabaseParameters() {
@@ -271,6 +283,10 @@ public class SqlRepositoryConfiguration {
             throw new RepositoryServiceFactoryException("Max. pool size must be greater than zero.");
         }
 
+        if (getOrgClosureRebuildThreads() <= 0) {
+            throw new RepositoryServiceFactoryException("Org closure rebuild threads must be greater than zero.");
+        }
+
         if (getMinPoolSize() > getMaxPoolSize()) {
             throw new RepositoryServiceFactoryException("Max. pool size must be greater than min. pool size.");
         }
@@ -593,6 +609,55 @@ public class SqlRepositoryConfiguration {
         this.skipOrgClosureStructureCheck = skipOrgClosureStructureCheck;
     }
 
+    /**
+     * Number of threads used to recompute the org closure after bulk org-structure import.
+     * Ignored for H2, which is always recomputed in one thread.
+     */
+    public int getOrgClosureRebuildThreads() {
+        return orgClosureRebuildThreads;
+    }
+
+    public void setOrgClosureRebuildThreads(int orgClosureRebuildThreads) {
+        this.orgClosureRebuildThreads = orgClosureRebuildThreads;
+    }
+
+    /**
+     * Whether org closure is kept also in memory, to evaluate org subtree queries and authorizations
+     * without going to the database. Off by default, as changes done on other nodes are seen with a delay
+     * (see orgHierarchyIndexTimeToLive).
+     */
+    public boolean isOrgHierarchyIndex() {
+        return orgHierarchyIndex;
+    }
+
+    public void setOrgHierarchyIndex(boolean orgHierarchyIndex) {
+        this.orgHierarchyIndex = orgHierarchyIndex;
+    }
+
+    /**
+     * Maximal age (in seconds) of the in-memory org closure. Changes done on this node are reflected immediately,
+     * changes done on other nodes of the cluster are reflected after this time. Zero means no limit, which is
+     * suitable only for single-node deployments.
+     */
+    public int getOrgHierarchyIndexTimeToLive() {
+        return orgHierarchyIndexTimeToLive;
+    }
+
+    public void setOrgHierarchyIndexTimeToLive(int orgHierarchyIndexTimeToLive) {
+        this.orgHierarchyIndexTimeToLive = orgHierarchyIndexTimeToLive;
+    }
+
+    /**
+     * Maximal number of org closure entries to be kept in memory. If the closure is larger, it is used directly.
+     */
+    public int getOrgHierarchyIndexMaxSize() {
+        return orgHierarchyIndexMaxSize;
+    }
+
+    public void setOrgHierarchyIndexMaxSize(int orgHierarchyIndexMaxSize) {
+        this.orgHierarchyIndexMaxSize = orgHierarchyIndexMaxSize;
+    }
+
     public String getDatabase() {
         return database;
     }
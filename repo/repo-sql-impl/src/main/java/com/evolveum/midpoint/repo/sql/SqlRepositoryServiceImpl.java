@@ -55,6 +55,7 @@ import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SequenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
@@ -395,6 +396,10 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         SqlPerformanceMonitor pm = getPerformanceMonitor();
         long opHandle = pm.registerOperationStart("deleteObject");
 
+        if (SequenceType.class.equals(type)) {
+            sequenceHelper.discardLocalBlock(oid);
+        }
+
         try {
             while (true) {
                 try {
@@ -447,6 +452,52 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         }
     }
 
+    @Override
+    public <T extends ObjectType> List<String> searchObjectOids(Class<T> type, ObjectQuery query, OperationResult result)
+            throws SchemaException {
+        Validate.notNull(type, "Object type must not be null.");
+        Validate.notNull(result, "Operation result must not be null.");
+
+        logSearchInputParameters(type, query, false, null);
+
+        OperationResult subResult = result.createSubresult(SEARCH_OBJECT_OIDS);
+        subResult.addParam("type", type.getName());
+        subResult.addParam("query", query);
+
+        if (query != null) {
+            ObjectFilter filter = query.getFilter();
+            filter = ObjectQueryUtil.simplify(filter);
+            if (filter instanceof NoneFilter) {
+                subResult.recordSuccess();
+                return new ArrayList<>(0);
+            } else if (filter instanceof AllFilter) {
+                query = query.cloneEmpty();
+                query.setFilter(null);
+            } else {
+                query = query.cloneEmpty();
+                query.setFilter(filter);
+            }
+        }
+
+        SqlPerformanceMonitor pm = getPerformanceMonitor();
+        long opHandle = pm.registerOperationStart("searchObjectOids");
+
+        final String operation = "searching OIDs";
+        int attempt = 1;
+        try {
+            while (true) {
+                try {
+                    return objectRetriever.searchObjectOidsAttempt(type, query, subResult);
+                } catch (RuntimeException ex) {
+                    attempt = logOperationAttempt(null, operation, attempt, ex, subResult);
+                    pm.registerOperationNewTrial(opHandle, attempt);
+                }
+            }
+        } finally {
+            pm.registerOperationFinish(opHandle, attempt);
+        }
+    }
+
     @Override
     public <T extends ObjectType> void modifyObject(Class<T> type, String oid,
                                                     Collection<? extends ItemDelta> modifications,
@@ -500,6 +551,11 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         SqlPerformanceMonitor pm = getPerformanceMonitor();
         long opHandle = pm.registerOperationStart("modifyObject");
 
+        if (SequenceType.class.equals(type)) {
+            // e.g. the counter could have been reset, so the values reserved by this node may be no longer valid
+            sequenceHelper.discardLocalBlock(oid);
+        }
+
         try {
             while (true) {
                 try {
@@ -682,6 +738,16 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         getClosureManager().checkAndOrRebuild(this, true, repairIfNecessary, false, false, testResult);
     }
 
+    @Override
+    public void beginOrgClosureBulkMode(OperationResult result) {
+        getClosureManager().enterBulkMode();
+    }
+
+    @Override
+    public void endOrgClosureBulkMode(OperationResult result) {
+        getClosureManager().exitBulkMode(result);
+    }
+
     @Override
     public <T extends ObjectType> String getVersion(Class<T> type, String oid, OperationResult parentResult)
             throws ObjectNotFoundException, SchemaException {
@@ -789,6 +855,11 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
             return false;
         }
 
+        Boolean indexed = getClosureManager().getHierarchyIndex().isAnySubordinate(upperOrgOid, lowerObjectOids);
+        if (indexed != null) {
+            return indexed;
+        }
+
         int attempt = 1;
 
         SqlPerformanceMonitor pm = getPerformanceMonitor();
@@ -821,17 +892,31 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         if (LOGGER.isTraceEnabled())
             LOGGER.trace("Advancing sequence {}", oid);
 
+        Long localValue = sequenceHelper.allocateFromLocalBlock(oid);
+        if (localValue != null) {
+            result.recordSuccess();
+            return localValue;
+        }
+
         int attempt = 1;
 
         SqlPerformanceMonitor pm = getPerformanceMonitor();
         long opHandle = pm.registerOperationStart("advanceSequence");
         try {
-            while (true) {
-                try {
-                    return sequenceHelper.advanceSequenceAttempt(oid, result);
-                } catch (RuntimeException ex) {
-                    attempt = logOperationAttempt(oid, "advanceSequence", attempt, ex, null);
-                    pm.registerOperationNewTrial(opHandle, attempt);
+            synchronized (sequenceHelper.getReservationLock(oid)) {
+                // a block could have been reserved by another thread in the meantime
+                localValue = sequenceHelper.allocateFromLocalBlock(oid);
+                if (localValue != null) {
+                    result.recordSuccess();
+                    return localValue;
+                }
+                while (true) {
+                    try {
+                        return sequenceHelper.advanceSequenceAttempt(oid, result);
+                    } catch (RuntimeException ex) {
+                        attempt = logOperationAttempt(oid, "advanceSequence", attempt, ex, null);
+                        pm.registerOperationNewTrial(opHandle, attempt);
+                    }
                 }
             }
         } finally {
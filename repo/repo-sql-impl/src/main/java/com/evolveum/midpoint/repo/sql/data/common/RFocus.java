@@ -53,7 +53,9 @@ import java.util.Set;
 @ForeignKey(name = "fk_focus")
 @org.hibernate.annotations.Table(appliesTo = "m_focus",
         indexes = {@Index(name = "iFocusAdministrative", columnNames = "administrativeStatus"),
-                @Index(name = "iFocusEffective", columnNames = "effectiveStatus")})
+                @Index(name = "iFocusEffective", columnNames = "effectiveStatus"),
+                @Index(name = "iFocusValidFrom", columnNames = "validFrom"),
+                @Index(name = "iFocusValidTo", columnNames = "validTo")})
 public abstract class RFocus<T extends FocusType> extends RObject<T> {
 
     private Set<RObjectReference<RShadow>> linkRef;
@@ -81,7 +81,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author lazyman, mederly
@@ -111,6 +113,9 @@ public class ObjectRetriever {
     @Autowired
     private PrismContext prismContext;
 
+    @Autowired
+    private OrgClosureManager closureManager;
+
     public <T extends ObjectType> PrismObject<T> getObjectAttempt(Class<T> type, String oid,
                                                                   Collection<SelectorOptions<GetOperationOptions>> options,
                                                                   OperationResult result)
@@ -334,7 +339,7 @@ public class ObjectRetriever {
             } else {
                 RQuery rQuery;
                 if (isUseNewQueryInterpreter(query)) {
-                    QueryEngine2 engine = new QueryEngine2(getConfiguration(), prismContext);
+                    QueryEngine2 engine = createQueryEngine2();
                     rQuery = engine.interpret(query, type, null, true, session);
                 } else {
                     QueryEngine engine = new QueryEngine(getConfiguration(), prismContext);
@@ -366,7 +371,7 @@ public class ObjectRetriever {
             RQuery rQuery;
 
             if (isUseNewQueryInterpreter(query)) {
-                QueryEngine2 engine = new QueryEngine2(getConfiguration(), prismContext);
+                QueryEngine2 engine = createQueryEngine2();
                 rQuery = engine.interpret(query, type, options, false, session);
             } else {
                 QueryEngine engine = new QueryEngine(getConfiguration(), prismContext);
@@ -391,6 +396,32 @@ public class ObjectRetriever {
         return new SearchResultList<PrismObject<T>>(list);
     }
 
+    public <T extends ObjectType> List<String> searchObjectOidsAttempt(Class<T> type, ObjectQuery query, OperationResult result)
+            throws SchemaException {
+        LOGGER_PERFORMANCE.debug("> search object oids {}", new Object[]{type.getSimpleName()});
+        // the same object can be matched more times, e.g. via more assignments
+        Set<String> oids = new LinkedHashSet<>();
+        Session session = null;
+        try {
+            session = transactionHelper.beginReadOnlyTransaction();
+
+            QueryEngine2 engine = createQueryEngine2();
+            RQuery rQuery = engine.interpretOids(query, type, session);
+
+            List<String> rows = rQuery.list();
+            LOGGER.trace("Found {} OIDs.", rows.size());
+            oids.addAll(rows);
+
+            session.getTransaction().commit();
+        } catch (QueryException | RuntimeException ex) {
+            transactionHelper.handleGeneralException(ex, session, result);
+        } finally {
+            transactionHelper.cleanupSessionAndResult(session, result);
+        }
+
+        return new ArrayList<>(oids);
+    }
+
     public <C extends Containerable> SearchResultList<C> searchContainersAttempt(Class<C> type, ObjectQuery query,
                                                                                  Collection<SelectorOptions<GetOperationOptions>> options,
                                                                                  OperationResult result) throws SchemaException {
@@ -405,7 +436,7 @@ public class ObjectRetriever {
         try {
             session = transactionHelper.beginReadOnlyTransaction();
 
-            QueryEngine2 engine = new QueryEngine2(getConfiguration(), prismContext);
+            QueryEngine2 engine = createQueryEngine2();
             RQuery rQuery = engine.interpret(query, type, options, false, session);
 
             List<GetObjectResult> items = rQuery.list();
@@ -608,7 +639,7 @@ public class ObjectRetriever {
             session = transactionHelper.beginReadOnlyTransaction();
             RQuery rQuery;
             if (isUseNewQueryInterpreter(query)) {
-                QueryEngine2 engine = new QueryEngine2(getConfiguration(), prismContext);
+                QueryEngine2 engine = createQueryEngine2();
                 rQuery = engine.interpret(query, type, options, false, session);
             } else {
                 QueryEngine engine = new QueryEngine(getConfiguration(), prismContext);
@@ -751,6 +782,10 @@ main:       for (;;) {
         }
     }
 
+    private QueryEngine2 createQueryEngine2() {
+        return new QueryEngine2(getConfiguration(), prismContext, closureManager.getHierarchyIndex());
+    }
+
     public boolean isAnySubordinateAttempt(String upperOrgOid, Collection<String> lowerObjectOids) {
         Session session = null;
         try {
@@ -19,12 +19,10 @@ import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismReferenceValue;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.delta.ReferenceDelta;
-import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.sql.SqlRepositoryConfiguration;
 import com.evolveum.midpoint.repo.sql.SqlRepositoryServiceImpl;
 import com.evolveum.midpoint.repo.sql.data.common.ROrgClosure;
 import com.evolveum.midpoint.repo.sql.data.common.other.RObjectType;
-import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
 import com.evolveum.midpoint.util.Holder;
@@ -58,6 +56,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class and its subclasses provides org. closure table handling.
@@ -91,6 +95,14 @@ public class OrgClosureManager {
     static final String CLOSURE_TABLE_NAME = "m_org_closure";
     public static final String TEMP_DELTA_TABLE_NAME_FOR_ORACLE = "m_org_closure_temp_delta";
 
+    // max number of orgs processed by one statement when the closure is recomputed (Oracle allows at most 1000 items in the IN clause)
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    // number of active bulk mode requests on this node; incremental closure maintenance is suspended while it is non-zero
+    private final AtomicInteger bulkModeRequests = new AtomicInteger();
+
+    private final OrgHierarchyIndex hierarchyIndex = new OrgHierarchyIndex(this);
+
     // only for single-thread performance testing
     long lastOperationDuration;
 
@@ -110,7 +122,7 @@ public class OrgClosureManager {
                                                         Collection<? extends ItemDelta> modifications, Session session,
                                                         String oid, Class<T> type, Operation operation, Context closureContext) {
 
-        if (!isEnabled()) {
+        if (!isEnabled() || isInBulkMode()) {
             return;
         }
 
@@ -118,6 +130,8 @@ public class OrgClosureManager {
             return;
         }
 
+        hierarchyIndex.invalidate();
+
         session.flush();
         session.clear();
 
@@ -153,7 +167,7 @@ public class OrgClosureManager {
      *  This will be perhaps unified in the future.
      */
     public <T extends ObjectType> Context onBeginTransactionAdd(Session session, PrismObject<T> object, boolean overwrite) {
-        if (!isEnabled() || !(OrgType.class.isAssignableFrom(object.getCompileTimeClass()))) {
+        if (!isEnabled() || isInBulkMode() || !(OrgType.class.isAssignableFrom(object.getCompileTimeClass()))) {
             return null;
         }
         // we have to be ready for closure-related operation even if there are no known parents (because there may be orphans pointing to this org!)
@@ -161,7 +175,7 @@ public class OrgClosureManager {
     }
 
     public <T extends ObjectType> Context onBeginTransactionModify(Session session, Class<T> type, String oid, Collection<? extends ItemDelta> modifications) {
-        if (!isEnabled()) {
+        if (!isEnabled() || isInBulkMode()) {
             return null;
         }
         if (!(OrgType.class.isAssignableFrom(type))) {
@@ -174,7 +188,7 @@ public class OrgClosureManager {
     }
 
     public <T extends ObjectType> Context onBeginTransactionDelete(Session session, Class<T> type, String oid) {
-        if (!isEnabled() || !(OrgType.class.isAssignableFrom(type))) {
+        if (!isEnabled() || isInBulkMode() || !(OrgType.class.isAssignableFrom(type))) {
             return null;
         }
         return onBeginTransaction(session);
@@ -208,6 +222,8 @@ public class OrgClosureManager {
         if (closureContext == null) {
             return;
         }
+        // the change is committed (or rolled back) now, so the index can be built again
+        hierarchyIndex.invalidate();
         if (closureContext.temporaryTableName == null) {
             return;
         }
@@ -350,6 +366,18 @@ public class OrgClosureManager {
         return !sqlRepositoryService.getConfiguration().isIgnoreOrgClosure();
     }
 
+    public OrgHierarchyIndex getHierarchyIndex() {
+        return hierarchyIndex;
+    }
+
+    SqlRepositoryConfiguration getConfiguration() {
+        return sqlRepositoryService.getConfiguration();
+    }
+
+    SessionFactory getSessionFactory() {
+        return sqlRepositoryService.getSessionFactory();
+    }
+
     /**
      * Does a consistency check (either quick or thorough one) and rebuilds the closure table if necessary.
      *
@@ -393,12 +421,12 @@ public class OrgClosureManager {
                     }
                 }
                 if (!ok && rebuild) {
-                    rebuild(false, true, service, stopOnFailure, context, session, result);
+                    rebuild(false, true, context, session, result);
                     rebuilt = true;
                 }
             } else {
                 // if the check has to be thorough
-                rebuild(check, rebuild, service, stopOnFailure, context, session, result);
+                rebuild(check, rebuild, context, session, result);
                 rebuilt = rebuild;          // if we are here this means the CL was rebuilt if it was to be rebuilt
                 if (stopOnFailure && result.isError()) {
                     throw new IllegalStateException(result.getMessage());
@@ -426,6 +454,7 @@ public class OrgClosureManager {
         } finally {
             cleanUpAfterOperation(context, session);     // commits in case of H2!
             session.close();
+            hierarchyIndex.invalidate();
         }
     }
 
@@ -435,7 +464,7 @@ public class OrgClosureManager {
 
     // we are already in the context of a transaction (and the org struct table is locked if possible)
     // "check" here means "thorough check" (i.e. comparing with recomputed closure)
-    private void rebuild(boolean check, boolean rebuild, SqlRepositoryServiceImpl service, boolean stopOnFailure, final Context context, final Session session, OperationResult result) throws SchemaException {
+    private void rebuild(boolean check, boolean rebuild, Context context, Session session, OperationResult result) throws SchemaException {
 
         List existingEntries = null;
         if (check) {
@@ -450,27 +479,9 @@ public class OrgClosureManager {
 
         LOGGER.info("Computing org closure table from scratch");
 
-        Query deleteQuery = session.createSQLQuery("delete from " + CLOSURE_TABLE_NAME);
-        deleteQuery.executeUpdate();
-        LOGGER.trace("Closure table content deleted");
-
-        final int orgsTotal = service.countObjects(OrgType.class, new ObjectQuery(), result);
-        final MutableInt orgsProcessed = new MutableInt(0);
-
-        ResultHandler<OrgType> handler = new ResultHandler<OrgType>() {
-            @Override
-            public boolean handle(PrismObject<OrgType> object, OperationResult parentResult) {
-                LOGGER.trace("Processing {}", object);
-                handleAdd(object.getOid(), getParentOidsFromObject(object), context, session);
-                orgsProcessed.add(1);
-                int currentState = orgsProcessed.intValue();
-                if (currentState % 100 == 0) {
-                    LOGGER.info("{} organizations processed (out of {})", currentState, orgsTotal);
-                }
-                return true;
-            }
-        };
-        service.searchObjectsIterative(OrgType.class, new ObjectQuery(), handler, null, false, result);
+        List<List<String>> levels = computeLevels(session);
+        int orgsTotal = deleteAndAddSelfRecords(session);
+        addAncestorRecords(levels, orgsTotal, session);
 
         LOGGER.info("Org closure table was successfully recomputed (not committed yet); all {} organizations processed", orgsTotal);
 
@@ -519,6 +530,122 @@ public class OrgClosureManager {
         return rv;
     }
 
+    // Organizations divided into levels: level 0 are roots, level N are orgs whose most distant parent is at level N-1.
+    // So, when an org is processed, closure records of all its parents are already complete.
+    private List<List<String>> computeLevels(Session session) {
+        long start = System.currentTimeMillis();
+        List<String> oids = session.createSQLQuery("select oid from m_org")
+                .addScalar("oid", StringType.INSTANCE)
+                .list();
+        List<Object[]> edges = session.createSQLQuery(
+                "select distinct r.owner_oid as child, r.targetOid as parent from m_reference r " +
+                        "join m_org c on c.oid = r.owner_oid join m_org p on p.oid = r.targetOid " +
+                        "where r.reference_type = 0")
+                .addScalar("child", StringType.INSTANCE)
+                .addScalar("parent", StringType.INSTANCE)
+                .list();
+
+        Map<String, List<String>> children = new HashMap<>();
+        Map<String, MutableInt> unprocessedParents = new HashMap<>();
+        for (String oid : oids) {
+            unprocessedParents.put(oid, new MutableInt(0));
+        }
+        for (Object[] edge : edges) {
+            String child = (String) edge[0];
+            String parent = (String) edge[1];
+            List<String> childrenOfParent = children.get(parent);
+            if (childrenOfParent == null) {
+                childrenOfParent = new ArrayList<>();
+                children.put(parent, childrenOfParent);
+            }
+            childrenOfParent.add(child);
+            unprocessedParents.get(child).increment();
+        }
+
+        List<List<String>> levels = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        for (Map.Entry<String, MutableInt> entry : unprocessedParents.entrySet()) {
+            if (entry.getValue().intValue() == 0) {
+                current.add(entry.getKey());
+            }
+        }
+        int processed = 0;
+        while (!current.isEmpty()) {
+            levels.add(current);
+            processed += current.size();
+            List<String> next = new ArrayList<>();
+            for (String oid : current) {
+                List<String> childrenOfOid = children.get(oid);
+                if (childrenOfOid == null) {
+                    continue;
+                }
+                for (String child : childrenOfOid) {
+                    MutableInt remaining = unprocessedParents.get(child);
+                    remaining.decrement();
+                    if (remaining.intValue() == 0) {
+                        next.add(child);
+                    }
+                }
+            }
+            current = next;
+        }
+        if (processed < oids.size()) {
+            throw new IllegalStateException("Org structure contains a cycle: " + (oids.size() - processed)
+                    + " organization(s) are in a cycle or below it");
+        }
+        LOGGER.debug("{} organizations with {} parent edges divided into {} levels in {} ms", oids.size(), edges.size(),
+                levels.size(), System.currentTimeMillis() - start);
+        return levels;
+    }
+
+    // returns the number of orgs
+    private int deleteAndAddSelfRecords(Session session) {
+        Query deleteQuery = session.createSQLQuery("delete from " + CLOSURE_TABLE_NAME);
+        deleteQuery.executeUpdate();
+        LOGGER.trace("Closure table content deleted");
+        Query selfQuery = session.createSQLQuery("insert into " + CLOSURE_TABLE_NAME + " (descendant_oid, ancestor_oid, val) " +
+                "select oid, oid, 1 from m_org");
+        return selfQuery.executeUpdate();
+    }
+
+    private void addAncestorRecords(List<List<String>> levels, int orgsTotal, Session session) {
+        int orgsProcessed = levels.isEmpty() ? 0 : levels.get(0).size();
+        for (int i = 1; i < levels.size(); i++) {
+            long start = System.currentTimeMillis();
+            for (List<String> batch : partition(levels.get(i), REBUILD_BATCH_SIZE)) {
+                addAncestorRecords(batch, session);
+            }
+            orgsProcessed += levels.get(i).size();
+            logLevelDone(i, levels.size(), start, orgsProcessed, orgsTotal);
+        }
+    }
+
+    // parents of the orgs must have their closure records complete
+    private int addAncestorRecords(List<String> oids, Session session) {
+        Query query = session.createSQLQuery(
+                "insert into " + CLOSURE_TABLE_NAME + " (descendant_oid, ancestor_oid, val) " +
+                        "select e.owner_oid, cl.ancestor_oid, sum(cl.val) " +
+                        "from (select distinct r.owner_oid, r.targetOid from m_reference r " +
+                        "where r.reference_type = 0 and r.owner_oid in (:oids)) e " +
+                        "join " + CLOSURE_TABLE_NAME + " cl on cl.descendant_oid = e.targetOid " +
+                        "group by e.owner_oid, cl.ancestor_oid");
+        query.setParameterList("oids", oids);
+        return query.executeUpdate();
+    }
+
+    private void logLevelDone(int level, int levels, long start, int orgsProcessed, int orgsTotal) {
+        LOGGER.info("Org closure level {} of {} computed in {} ms; {} organizations processed (out of {})",
+                level, levels - 1, System.currentTimeMillis() - start, orgsProcessed, orgsTotal);
+    }
+
+    private List<List<String>> partition(List<String> oids, int size) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < oids.size(); i += size) {
+            batches.add(oids.subList(i, Math.min(i + size, oids.size())));
+        }
+        return batches;
+    }
+
     private int quickCheck(Session session) {
         Query q = session.createSQLQuery(
                 "select count(m_org.oid) as problems from m_org left join m_org_closure cl " +
@@ -532,6 +659,139 @@ public class OrgClosureManager {
     }
     //endregion
 
+    //region Bulk mode
+
+    /**
+     * Suspends incremental maintenance of the closure table on this node, e.g. for the time of a batch import
+     * of organizational structure. Bulk modes can be nested; the closure table is recomputed when the last one
+     * is exited. Until then, the closure is not up to date, so org-related searches can return imprecise results.
+     * Orgs should not be modified on other nodes in the meantime.
+     */
+    public void enterBulkMode() {
+        int requests = bulkModeRequests.incrementAndGet();
+        LOGGER.info("Org closure bulk mode entered (active requests: {}); closure maintenance is suspended", requests);
+    }
+
+    /**
+     * Exits the bulk mode. When the last bulk mode is exited, the closure table is recomputed.
+     */
+    public synchronized void exitBulkMode(OperationResult result) {
+        int requests = bulkModeRequests.get();
+        if (requests <= 0) {
+            throw new IllegalStateException("Org closure bulk mode was not entered");
+        }
+        try {
+            if (requests == 1 && isEnabled()) {
+                // we stay in bulk mode during the rebuild, so concurrent org operations do not interfere with it
+                rebuildSetBased(sqlRepositoryService.getConfiguration().getOrgClosureRebuildThreads(), result);
+            }
+        } finally {
+            bulkModeRequests.decrementAndGet();
+            hierarchyIndex.invalidate();
+        }
+    }
+
+    public boolean isInBulkMode() {
+        return bulkModeRequests.get() > 0;
+    }
+
+    /**
+     * Recomputes the closure table from scratch, level by level (see computeLevels). With one thread, the whole
+     * rebuild is done in one transaction. With more threads, orgs on the same level are processed in parallel,
+     * each batch in its own transaction; so the closure is incomplete if the rebuild fails. H2 is always processed
+     * in one thread.
+     */
+    public void rebuildSetBased(int threads, OperationResult parentResult) {
+        OperationResult result = parentResult.createSubresult(OrgClosureManager.class.getName() + ".rebuildSetBased");
+        result.addParam("threads", threads);
+        boolean parallel = threads > 1 && !isH2();
+        long start = System.currentTimeMillis();
+        LOGGER.info("Recomputing org closure table ({})", parallel ? threads + " threads" : "one thread");
+        Session session = sqlRepositoryService.getSessionFactory().openSession();
+        try {
+            session.getTransaction().begin();
+            if (isH2() || isOracle() || isSQLServer()) {
+                lockClosureTable(session);
+            }
+            List<List<String>> levels = computeLevels(session);
+            int orgsTotal = deleteAndAddSelfRecords(session);
+            if (parallel) {
+                session.getTransaction().commit();
+                addAncestorRecordsInParallel(levels, orgsTotal, threads);
+            } else {
+                addAncestorRecords(levels, orgsTotal, session);
+                session.getTransaction().commit();
+            }
+            String m = "Org closure table was recomputed for " + orgsTotal + " organizations in " + levels.size()
+                    + " levels (" + (System.currentTimeMillis() - start) + " ms)";
+            LOGGER.info(m);
+            result.recordStatus(OperationResultStatus.SUCCESS, m);
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            LoggingUtils.logException(LOGGER, "Couldn't recompute org closure table. Please rebuild it as soon as possible.", e);
+            result.recordFatalError("Couldn't recompute org closure table: " + e.getMessage(), e);
+        } finally {
+            session.close();
+            hierarchyIndex.invalidate();
+        }
+    }
+
+    private void addAncestorRecordsInParallel(List<List<String>> levels, int orgsTotal, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int orgsProcessed = levels.isEmpty() ? 0 : levels.get(0).size();
+            for (int i = 1; i < levels.size(); i++) {
+                long start = System.currentTimeMillis();
+                List<String> level = levels.get(i);
+                int batchSize = Math.min(REBUILD_BATCH_SIZE, (level.size() + threads - 1) / threads);
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (final List<String> batch : partition(level, batchSize)) {
+                    futures.add(executor.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            return addAncestorRecordsInTransaction(batch);
+                        }
+                    }));
+                }
+                // the next level can be processed only when this one is complete
+                for (Future<Integer> future : futures) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SystemException("Interrupted while recomputing org closure table", e);
+                    } catch (ExecutionException e) {
+                        throw new SystemException("Couldn't recompute org closure table: " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+                orgsProcessed += level.size();
+                logLevelDone(i, levels.size(), start, orgsProcessed, orgsTotal);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int addAncestorRecordsInTransaction(List<String> oids) {
+        Session session = sqlRepositoryService.getSessionFactory().openSession();
+        try {
+            session.getTransaction().begin();
+            int count = addAncestorRecords(oids, session);
+            session.getTransaction().commit();
+            return count;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+    //endregion
+
     //region Handling ADD operation
 
     // we can safely expect that the object didn't exist before (because the "overwriting add" is sent to us as MODIFY operation)
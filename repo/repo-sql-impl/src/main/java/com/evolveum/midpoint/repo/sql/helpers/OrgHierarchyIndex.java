@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.repo.sql.helpers;
+
+import com.evolveum.midpoint.repo.sql.SqlRepositoryConfiguration;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import org.hibernate.Session;
+import org.hibernate.type.StringType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local in-memory copy of the org closure table. It answers subtree membership and ancestry questions
+ * without going to the database.
+ *
+ * The index is built from m_org_closure in a background thread and thrown away whenever the closure is changed
+ * on this node (see invalidate()). Changes made on other nodes are seen when the index gets older than the
+ * configured time to live. The index is not used while it is being (re)built, while the closure table is not
+ * up to date (bulk mode) or if the closure is too large.
+ *
+ * All methods return null if the index cannot be used; callers are expected to fall back to SQL in that case.
+ *
+ * @author agent
+ */
+public class OrgHierarchyIndex {
+
+    private static final Trace LOGGER = TraceManager.getTrace(OrgHierarchyIndex.class);
+
+    private final OrgClosureManager closureManager;
+
+    // incremented on each change of the closure; snapshot built under older version is not used
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+
+    OrgHierarchyIndex(OrgClosureManager closureManager) {
+        this.closureManager = closureManager;
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns true if upperOrgOid is an ancestor of (or equal to) any of lowerObjectOids.
+     */
+    public Boolean isAnySubordinate(String upperOrgOid, Collection<String> lowerObjectOids) {
+        Snapshot s = getSnapshot();
+        if (s == null) {
+            return null;
+        }
+        Integer upper = s.indexes.get(upperOrgOid);
+        if (upper == null) {
+            return false;
+        }
+        for (String lowerOid : lowerObjectOids) {
+            Integer lower = s.indexes.get(lowerOid);
+            if (lower != null && Arrays.binarySearch(s.ancestors[lower], upper) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns OIDs of the org and all orgs below it, or null if there are more than maxSize of them.
+     */
+    public List<String> getSubtreeOids(String orgOid, int maxSize) {
+        Snapshot s = getSnapshot();
+        if (s == null) {
+            return null;
+        }
+        Integer org = s.indexes.get(orgOid);
+        if (org == null) {
+            return Collections.emptyList();
+        }
+        return s.toOids(s.descendants[org], maxSize);
+    }
+
+    /**
+     * Returns OIDs of root orgs, or null if there are more than maxSize of them.
+     */
+    public List<String> getRootOids(int maxSize) {
+        Snapshot s = getSnapshot();
+        if (s == null) {
+            return null;
+        }
+        return s.toOids(s.roots, maxSize);
+    }
+
+    /**
+     * Builds the index synchronously (in the calling thread), regardless of its current state.
+     */
+    public void rebuild() {
+        snapshot = build(closureManager.getConfiguration());
+    }
+
+    private Snapshot getSnapshot() {
+        SqlRepositoryConfiguration configuration = closureManager.getConfiguration();
+        if (!configuration.isOrgHierarchyIndex() || !closureManager.isEnabled() || closureManager.isInBulkMode()) {
+            return null;
+        }
+        Snapshot s = snapshot;
+        if (isCurrent(s, configuration)) {
+            return s.usable ? s : null;
+        }
+        // outdated snapshot is never used; the closure table serves the requests until the new one is ready
+        startRebuild(configuration);
+        return null;
+    }
+
+    private void startRebuild(final SqlRepositoryConfiguration configuration) {
+        if (!rebuildRunning.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshot = build(configuration);
+                } finally {
+                    rebuildRunning.set(false);
+                }
+            }
+        }, "OrgHierarchyIndexRebuild");
+        thread.setDaemon(true);
+        try {
+            thread.start();
+        } catch (RuntimeException|Error e) {
+            rebuildRunning.set(false);
+            throw e;
+        }
+    }
+
+    private boolean isCurrent(Snapshot s, SqlRepositoryConfiguration configuration) {
+        int timeToLive = configuration.getOrgHierarchyIndexTimeToLive();
+        return s != null && s.version == version.get()
+                && (timeToLive <= 0 || System.currentTimeMillis() - s.created < timeToLive * 1000L);
+    }
+
+    private Snapshot build(SqlRepositoryConfiguration configuration) {
+        long currentVersion = version.get();
+        long start = System.currentTimeMillis();
+        Session session = closureManager.getSessionFactory().openSession();
+        try {
+            session.getTransaction().begin();
+            Number size = (Number) session.createSQLQuery("select count(*) from " + OrgClosureManager.CLOSURE_TABLE_NAME)
+                    .uniqueResult();
+            if (size.intValue() > configuration.getOrgHierarchyIndexMaxSize()) {
+                LOGGER.debug("Org closure has {} entries, which is more than {}; org hierarchy index will not be used",
+                        size, configuration.getOrgHierarchyIndexMaxSize());
+                session.getTransaction().rollback();
+                return new Snapshot(currentVersion);
+            }
+            List<Object[]> entries = session.createSQLQuery("select descendant_oid, ancestor_oid from " + OrgClosureManager.CLOSURE_TABLE_NAME)
+                    .addScalar("descendant_oid", StringType.INSTANCE)
+                    .addScalar("ancestor_oid", StringType.INSTANCE)
+                    .list();
+            session.getTransaction().rollback();
+            Snapshot s = new Snapshot(currentVersion, entries);
+            LOGGER.debug("Org hierarchy index with {} orgs and {} closure entries built in {} ms", s.oids.length,
+                    entries.size(), System.currentTimeMillis() - start);
+            return s;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            LoggingUtils.logException(LOGGER, "Couldn't build org hierarchy index, org closure table will be used directly", e);
+            return new Snapshot(currentVersion);
+        } finally {
+            session.close();
+        }
+    }
+
+    private static class Snapshot {
+
+        private final long version;
+        private final long created = System.currentTimeMillis();
+        private final boolean usable;
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final String[] oids;
+        // sorted indexes of ancestors/descendants of each org, including the org itself (as in the closure table)
+        private final int[][] ancestors;
+        private final int[][] descendants;
+        private final int[] roots;
+
+        // not usable snapshot, remembered in order not to try building it again and again
+        private Snapshot(long version) {
+            this.version = version;
+            this.usable = false;
+            this.oids = new String[0];
+            this.ancestors = new int[0][];
+            this.descendants = new int[0][];
+            this.roots = new int[0];
+        }
+
+        private Snapshot(long version, List<Object[]> entries) {
+            this.version = version;
+            this.usable = true;
+            List<String> oidList = new ArrayList<>();
+            int[] ancestorCounts = new int[entries.size()];
+            int[] descendantCounts = new int[entries.size()];
+            int[][] pairs = new int[entries.size()][];
+            for (int i = 0; i < entries.size(); i++) {
+                int descendant = indexOf((String) entries.get(i)[0], oidList);
+                int ancestor = indexOf((String) entries.get(i)[1], oidList);
+                pairs[i] = new int[] { descendant, ancestor };
+                ancestorCounts[descendant]++;
+                descendantCounts[ancestor]++;
+            }
+            int size = oidList.size();
+            oids = oidList.toArray(new String[size]);
+            ancestors = new int[size][];
+            descendants = new int[size][];
+            for (int i = 0; i < size; i++) {
+                ancestors[i] = new int[ancestorCounts[i]];
+                descendants[i] = new int[descendantCounts[i]];
+            }
+            int[] ancestorFill = new int[size];
+            int[] descendantFill = new int[size];
+            for (int[] pair : pairs) {
+                ancestors[pair[0]][ancestorFill[pair[0]]++] = pair[1];
+                descendants[pair[1]][descendantFill[pair[1]]++] = pair[0];
+            }
+            List<Integer> rootList = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                Arrays.sort(ancestors[i]);
+                Arrays.sort(descendants[i]);
+                if (ancestors[i].length == 1) {
+                    rootList.add(i);
+                }
+            }
+            roots = new int[rootList.size()];
+            for (int i = 0; i < roots.length; i++) {
+                roots[i] = rootList.get(i);
+            }
+        }
+
+        private int indexOf(String oid, List<String> oidList) {
+            Integer index = indexes.get(oid);
+            if (index == null) {
+                index = oidList.size();
+                oidList.add(oid);
+                indexes.put(oid, index);
+            }
+            return index;
+        }
+
+        private List<String> toOids(int[] indexes, int maxSize) {
+            if (indexes.length > maxSize) {
+                return null;
+            }
+            List<String> rv = new ArrayList<>(indexes.length);
+            for (int index : indexes) {
+                rv.add(oids[index]);
+            }
+            return rv;
+        }
+    }
+}
@@ -34,10 +34,21 @@ import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Sequences with allocationBlockSize greater than one are not advanced value by value. Instead, a block of values
+ * is reserved in one transaction and then handed out from memory (see allocateFromLocalBlock). The block size
+ * adapts to the demand: it is doubled (up to allocationBlockSize) if the previous block was used up quickly
+ * and halved if it took a long time.
+ *
  * @author mederly
  */
 @Component
@@ -55,10 +66,81 @@ public class SequenceHelper {
     private static final Trace LOGGER = TraceManager.getTrace(SqlRepositoryServiceImpl.class);
     private static final Trace LOGGER_PERFORMANCE = TraceManager.getTrace(SqlRepositoryServiceImpl.PERFORMANCE_LOG_NAME);
 
+    // if a block is used up sooner than this, the next one will be bigger
+    private static final long FAST_BLOCK_USAGE = 1000L;
+    // if a block is used up later than this, the next one will be smaller
+    private static final long SLOW_BLOCK_USAGE = 60000L;
+
+    // node-local state of sequences that are allocated by blocks
+    private final Map<String, LocalSequence> localSequences = new ConcurrentHashMap<>();
+
+    /**
+     * Returns next value from the block of values reserved by this node, or null if there's no such value
+     * (no block reserved yet, or the block was used up).
+     */
+    public Long allocateFromLocalBlock(String oid) {
+        LocalSequence localSequence = localSequences.get(oid);
+        if (localSequence == null) {
+            return null;
+        }
+        Block block = localSequence.block;
+        return block != null ? block.next() : null;
+    }
+
+    /**
+     * Object used to serialize reservations of new blocks for the sequence on this node. Without it, two threads
+     * could reserve a block at the same time and one of the blocks would get lost.
+     */
+    public Object getReservationLock(String oid) {
+        return getLocalSequence(oid);
+    }
+
+    /**
+     * Drops the block reserved by this node. Should be called when the sequence is modified or deleted.
+     * Values remaining in the block are lost.
+     */
+    public void discardLocalBlock(String oid) {
+        LocalSequence localSequence = localSequences.get(oid);
+        if (localSequence != null && localSequence.block != null) {
+            LOGGER.debug("Discarding local block of sequence {}: {}", oid, localSequence.block);
+            localSequence.block = null;
+        }
+    }
+
+    @PreDestroy
+    public void returnLocalBlocks() {
+        OperationResult result = new OperationResult(SequenceHelper.class.getName() + ".returnLocalBlocks");
+        for (Map.Entry<String, LocalSequence> entry : localSequences.entrySet()) {
+            Block block = entry.getValue().block;
+            entry.getValue().block = null;
+            List<Long> remaining = block != null ? block.remaining() : new ArrayList<Long>();
+            if (remaining.isEmpty()) {
+                continue;
+            }
+            LOGGER.debug("Returning {} unused value(s) of local block to sequence {}", remaining.size(), entry.getKey());
+            try {
+                returnUnusedValuesToSequenceAttempt(entry.getKey(), remaining, result);
+            } catch (ObjectNotFoundException | SchemaException | SerializationRelatedException | RuntimeException e) {
+                LOGGER.warn("Couldn't return unused values {}..{} to sequence {}: {}", remaining.get(0),
+                        remaining.get(remaining.size() - 1), entry.getKey(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private LocalSequence getLocalSequence(String oid) {
+        LocalSequence localSequence = localSequences.get(oid);
+        if (localSequence == null) {
+            localSequences.putIfAbsent(oid, new LocalSequence());
+            localSequence = localSequences.get(oid);
+        }
+        return localSequence;
+    }
+
     public long advanceSequenceAttempt(String oid, OperationResult result) throws ObjectNotFoundException,
             SchemaException, SerializationRelatedException {
 
         long returnValue;
+        Block newBlock = null;
 
         LOGGER.debug("Advancing sequence with oid '{}'.", oid);
         LOGGER_PERFORMANCE.debug("> advance sequence, oid={}", oid);
@@ -75,6 +157,10 @@ public class SequenceHelper {
 
             if (!sequence.getUnusedValues().isEmpty()) {
                 returnValue = sequence.getUnusedValues().remove(0);
+            } else if (sequence.getAllocationBlockSize() != null && sequence.getAllocationBlockSize() > 1) {
+                newBlock = reserveBlock(sequence, getLocalSequence(oid).nextBlockSize(sequence.getAllocationBlockSize()));
+                returnValue = newBlock.first;
+                newBlock.next();
             } else {
                 long counter = sequence.getCounter() != null ? sequence.getCounter() : 0L;
                 long maxCounter = sequence.getMaxCounter() != null ? sequence.getMaxCounter() : Long.MAX_VALUE;
@@ -118,6 +204,9 @@ public class SequenceHelper {
             session.getTransaction().commit();
             LOGGER.trace("Committed!");
 
+            if (newBlock != null) {
+                getLocalSequence(oid).block = newBlock;
+            }
             return returnValue;
         } catch (ObjectNotFoundException ex) {
             transactionHelper.rollbackTransaction(session, ex, result, true);
@@ -192,4 +281,80 @@ public class SequenceHelper {
             LOGGER.trace("Session cleaned up.");
         }
     }
+
+    // Reserves values [counter, counter + size - 1], not crossing maxCounter.
+    private Block reserveBlock(SequenceType sequence, int size) {
+        long counter = sequence.getCounter() != null ? sequence.getCounter() : 0L;
+        long maxCounter = sequence.getMaxCounter() != null ? sequence.getMaxCounter() : Long.MAX_VALUE;
+        boolean allowRewind = Boolean.TRUE.equals(sequence.isAllowRewind());
+
+        if (counter > maxCounter) {
+            if (allowRewind) {
+                LOGGER.warn("Sequence {} overflown with allowRewind set to true. Rewinding.", sequence.getOid());
+                counter = 0L;
+            } else {
+                throw new SystemException("No (next) value available from sequence " + sequence.getOid() + ". Current counter = " + sequence.getCounter() + ", max value = " + sequence.getMaxCounter());
+            }
+        }
+        long last = maxCounter - counter < size ? maxCounter : counter + size - 1;
+        if (last < maxCounter) {
+            sequence.setCounter(last + 1);
+        } else if (allowRewind) {
+            sequence.setCounter(0L);
+        } else {
+            sequence.setCounter(maxCounter + 1);       // will produce exception during next run
+        }
+        Block block = new Block(counter, last - counter + 1);
+        LOGGER.debug("Reserved block {} of sequence {}", block, sequence.getOid());
+        return block;
+    }
+
+    private static class LocalSequence {
+        private volatile Block block;
+        private int blockSize = 1;      // guarded by reservation lock (i.e. this object)
+
+        private int nextBlockSize(int maxBlockSize) {
+            Block previous = block;
+            if (previous != null) {
+                long usage = System.currentTimeMillis() - previous.reservedAt;
+                if (usage < FAST_BLOCK_USAGE) {
+                    blockSize = blockSize * 2;
+                } else if (usage > SLOW_BLOCK_USAGE) {
+                    blockSize = blockSize / 2;
+                }
+            }
+            blockSize = Math.max(1, Math.min(blockSize, maxBlockSize));
+            return blockSize;
+        }
+    }
+
+    private static class Block {
+        private final long first;
+        private final long size;
+        private final long reservedAt = System.currentTimeMillis();
+        private final AtomicLong allocated = new AtomicLong();
+
+        private Block(long first, long size) {
+            this.first = first;
+            this.size = size;
+        }
+
+        private Long next() {
+            long index = allocated.getAndIncrement();
+            return index < size ? first + index : null;
+        }
+
+        private List<Long> remaining() {
+            List<Long> rv = new ArrayList<>();
+            for (long index = allocated.getAndSet(size); index < size; index++) {
+                rv.add(first + index);
+            }
+            return rv;
+        }
+
+        @Override
+        public String toString() {
+            return first + ".." + (first + size - 1) + " (allocated " + Math.min(allocated.get(), size) + ")";
+        }
+    }
 }
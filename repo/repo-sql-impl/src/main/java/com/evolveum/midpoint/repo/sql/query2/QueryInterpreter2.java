@@ -81,6 +81,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.evolveum.midpoint.repo.sql.ObjectPagingAfterOid;
+import com.evolveum.midpoint.repo.sql.helpers.OrgHierarchyIndex;
 
 /**
  * Interprets midPoint queries by translating them to hibernate (HQL) ones.
@@ -126,6 +127,7 @@ public class QueryInterpreter2 {
     }
 
     private SqlRepositoryConfiguration repoConfiguration;
+    private OrgHierarchyIndex orgHierarchyIndex;
 
     public QueryInterpreter2(SqlRepositoryConfiguration repoConfiguration) {
         this.repoConfiguration = repoConfiguration;
@@ -135,6 +137,17 @@ public class QueryInterpreter2 {
         return repoConfiguration;
     }
 
+    /**
+     * May be null; in that case org filters are always evaluated using the closure table.
+     */
+    public OrgHierarchyIndex getOrgHierarchyIndex() {
+        return orgHierarchyIndex;
+    }
+
+    public void setOrgHierarchyIndex(OrgHierarchyIndex orgHierarchyIndex) {
+        this.orgHierarchyIndex = orgHierarchyIndex;
+    }
+
     public RootHibernateQuery interpret(ObjectQuery query, Class<? extends Containerable> type,
                                         Collection<SelectorOptions<GetOperationOptions>> options, PrismContext prismContext,
                                         boolean countingObjects, Session session) throws QueryException {
@@ -174,6 +187,29 @@ public class QueryInterpreter2 {
         return hibernateQuery;
     }
 
+    /**
+     * Interprets the query so that only OIDs of matching objects are selected. Full objects are not fetched,
+     * so the query touches only the tables (and indexes) needed to evaluate the filter.
+     */
+    public RootHibernateQuery interpretOids(ObjectQuery query, Class<? extends Containerable> type, PrismContext prismContext,
+                                            Session session) throws QueryException {
+        Validate.notNull(type, "Type must not be null.");
+        Validate.notNull(session, "Session must not be null.");
+        Validate.notNull(prismContext, "Prism context must not be null.");
+
+        InterpretationContext context = new InterpretationContext(this, type, prismContext, session);
+        if (!context.isObject()) {
+            throw new QueryException("Only objects can be searched for OIDs, not " + type);
+        }
+
+        interpretQueryFilter(context, query);
+        interpretPagingAndSorting(context, query, false);
+
+        RootHibernateQuery hibernateQuery = context.getHibernateQuery();
+        hibernateQuery.addProjectionElement(new ProjectionElement(hibernateQuery.getPrimaryEntityAlias() + ".oid"));
+        return hibernateQuery;
+    }
+
     private void interpretQueryFilter(InterpretationContext context, ObjectQuery query) throws QueryException {
         if (query != null && query.getFilter() != null) {
             Condition c = interpretFilter(context, query.getFilter(), null);
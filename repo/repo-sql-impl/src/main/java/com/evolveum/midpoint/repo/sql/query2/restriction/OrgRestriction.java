@@ -18,17 +18,23 @@ package com.evolveum.midpoint.repo.sql.query2.restriction;
 
 import com.evolveum.midpoint.prism.query.OrgFilter;
 import com.evolveum.midpoint.repo.sql.data.common.other.RReferenceOwner;
+import com.evolveum.midpoint.repo.sql.helpers.OrgHierarchyIndex;
 import com.evolveum.midpoint.repo.sql.query.QueryException;
 import com.evolveum.midpoint.repo.sql.query2.InterpretationContext;
 import com.evolveum.midpoint.repo.sql.query2.definition.JpaEntityDefinition;
 import com.evolveum.midpoint.repo.sql.query2.hqm.RootHibernateQuery;
 import com.evolveum.midpoint.repo.sql.query2.hqm.condition.Condition;
 
+import java.util.List;
+
 /**
  * @author lazyman
  */
 public class OrgRestriction extends Restriction<OrgFilter> {
 
+    // subtrees (or sets of roots) up to this size are put into the query as OID lists instead of closure table subqueries
+    private static final int MAX_OIDS_IN_LIST = 100;
+
     public OrgRestriction(InterpretationContext context, OrgFilter filter, JpaEntityDefinition baseEntityDefinition, Restriction parent) {
         super(context, filter, baseEntityDefinition, parent);
     }
@@ -36,7 +42,12 @@ public class OrgRestriction extends Restriction<OrgFilter> {
     @Override
     public Condition interpret() throws QueryException {
         RootHibernateQuery hibernateQuery = getContext().getHibernateQuery();
+        OrgHierarchyIndex index = getContext().getInterpreter().getOrgHierarchyIndex();
         if (filter.isRoot()) {
+            List<String> rootOids = index != null ? index.getRootOids(MAX_OIDS_IN_LIST) : null;
+            if (rootOids != null && !rootOids.isEmpty()) {
+                return hibernateQuery.createIn(getBaseHqlEntity().getHqlPath() + ".oid", rootOids);
+            }
             // oid in (select descendantOid from ROrgClosure group by descendantOid having count(descendantOid) = 1)
             return hibernateQuery.createIn(getBaseHqlEntity().getHqlPath() + ".oid",
                     "select descendantOid from ROrgClosure group by descendantOid having count(descendantOid) = 1");
@@ -50,10 +61,11 @@ public class OrgRestriction extends Restriction<OrgFilter> {
             throw new QueryException("No oid specified in organization reference " + filter.getOrgRef().debugDump());
         }
 
-        String orgOidParamName = hibernateQuery.addParameter("orgOid", filter.getOrgRef().getOid());
         String oidQueryText;    // oid in ...
+        String orgOidParamName;
         switch (filter.getScope()) {
             case ONE_LEVEL:
+                orgOidParamName = hibernateQuery.addParameter("orgOid", filter.getOrgRef().getOid());
                 oidQueryText =
                         "select ref.ownerOid " +     // TODO distinct(ref.ownerOid) ? (was in original QueryInterpreter)
                               "from RObjectReference ref " +
@@ -63,6 +75,19 @@ public class OrgRestriction extends Restriction<OrgFilter> {
                 break;
             case SUBTREE:
             default:
+                List<String> subtreeOids = index != null ? index.getSubtreeOids(filter.getOrgRef().getOid(), MAX_OIDS_IN_LIST) : null;
+                // empty list means unknown org; this rare case is left to the closure table
+                if (subtreeOids != null && !subtreeOids.isEmpty()) {
+                    String subtreeOidsParamName = hibernateQuery.addParameter("subtreeOids", subtreeOids);
+                    oidQueryText =
+                            "select ref.ownerOid " +
+                                "from RObjectReference ref " +
+                            "where " +
+                                "ref.referenceType = " + nameOf(RReferenceOwner.OBJECT_PARENT_ORG) + " and " +
+                                "ref.targetOid in (:" + subtreeOidsParamName + ")";
+                    break;
+                }
+                orgOidParamName = hibernateQuery.addParameter("orgOid", filter.getOrgRef().getOid());
                 oidQueryText =
                         "select ref.ownerOid " +
                             "from RObjectReference ref " +
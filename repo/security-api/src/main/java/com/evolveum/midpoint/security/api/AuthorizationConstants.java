@@ -38,6 +38,9 @@ public class AuthorizationConstants {
 	
 	public static final QName AUTZ_REST_ALL_QNAME = new QName(NS_AUTHORIZATION_REST, "all");
 	public static final String AUTZ_REST_ALL_URL = QNameUtil.qNameToUri(AUTZ_REST_ALL_QNAME);
+
+	public static final QName AUTZ_REST_METRICS_QNAME = new QName(NS_AUTHORIZATION_REST, "metrics");
+	public static final String AUTZ_REST_METRICS_URL = QNameUtil.qNameToUri(AUTZ_REST_METRICS_QNAME);
 	
 	public static final QName AUTZ_WS_ALL_QNAME = new QName(NS_AUTHORIZATION_WS, "all");
 	public static final String AUTZ_WS_ALL_URL = QNameUtil.qNameToUri(AUTZ_WS_ALL_QNAME);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.security.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.util.caching.AbstractCache;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
+
+/**
+ * Remembers results of authorization decisions made in the scope of one request (e.g. rendering of a GUI page),
+ * so the same question is not evaluated repeatedly. The cache is thread-local and it is active only between
+ * enterCache() and exitCache() calls; if it is not entered, all the methods are no-ops.
+ *
+ * Only decisions that do not depend on any object or target are cached (typically the GUI authorizations of pages
+ * and actions). The decisions about objects depend on the object content (object filters, allowed items), which may
+ * change in memory without changing the OID or version. Decisions are bound to the compiled authorizations of the
+ * principal, so a change of principal's authorizations makes them unreachable.
+ *
+ * @author agent
+ */
+public class AuthorizationDecisionCache extends AbstractCache {
+
+	private static final Trace LOGGER = TraceManager.getTrace(AuthorizationDecisionCache.class);
+
+	public static final int MAX_ENTRIES = 10000;
+
+	private static ThreadLocal<AuthorizationDecisionCache> cacheThreadLocal = new ThreadLocal<>();
+
+	private final Map<Key, Boolean> decisions = new HashMap<>();
+
+	public static void enterCache() {
+		enter(cacheThreadLocal, AuthorizationDecisionCache.class, LOGGER);
+	}
+
+	public static void exitCache() {
+		exit(cacheThreadLocal, LOGGER);
+	}
+
+	public static boolean isEntered() {
+		return exists(cacheThreadLocal);
+	}
+
+	/**
+	 * Returns cached decision or null if there is none (or the decision cannot be cached at all).
+	 */
+	public static Boolean getDecision(CompiledAuthorizations authorizations, String operationUrl, AuthorizationPhaseType phase,
+			PrismObject<?> object, PrismObject<?> target) {
+		AuthorizationDecisionCache cache = cacheThreadLocal.get();
+		if (cache == null || !isCacheable(object, target)) {
+			return null;
+		}
+		Boolean decision = cache.decisions.get(new Key(authorizations, operationUrl, phase));
+		if (LOGGER.isTraceEnabled()) {
+			LOGGER.trace("Cache {} for {} {}", decision != null ? "HIT" : "MISS", operationUrl, phase);
+		}
+		return decision;
+	}
+
+	public static void putDecision(CompiledAuthorizations authorizations, String operationUrl, AuthorizationPhaseType phase,
+			PrismObject<?> object, PrismObject<?> target, boolean decision) {
+		AuthorizationDecisionCache cache = cacheThreadLocal.get();
+		if (cache == null || !isCacheable(object, target) || cache.decisions.size() >= MAX_ENTRIES) {
+			return;
+		}
+		cache.decisions.put(new Key(authorizations, operationUrl, phase), decision);
+	}
+
+	private static boolean isCacheable(PrismObject<?> object, PrismObject<?> target) {
+		return object == null && target == null;
+	}
+
+	@Override
+	public String description() {
+		return "authorization decision cache: " + decisions.size() + " entries";
+	}
+
+	private static class Key {
+		private final CompiledAuthorizations authorizations;
+		private final String operationUrl;
+		private final AuthorizationPhaseType phase;
+
+		Key(CompiledAuthorizations authorizations, String operationUrl, AuthorizationPhaseType phase) {
+			this.authorizations = authorizations;
+			this.operationUrl = operationUrl;
+			this.phase = phase;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return authorizations == key.authorizations
+					&& phase == key.phase
+					&& (operationUrl != null ? operationUrl.equals(key.operationUrl) : key.operationUrl == null);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(authorizations);
+			result = 31 * result + (operationUrl != null ? operationUrl.hashCode() : 0);
+			result = 31 * result + (phase != null ? phase.hashCode() : 0);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.security.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import com.evolveum.midpoint.prism.Objectable;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OwnedObjectSpecificationType;
+import com.evolveum.prism.xml.ns._public.types_3.ItemPathType;
+
+/**
+ * Authorizations of a principal indexed by action, phase and object type. For each such combination it
+ * provides only the authorizations that can possibly be applicable, in their original order. The remaining
+ * parts of the object specification (special, filter, org, owner) still have to be evaluated by the caller.
+ *
+ * Lists for individual combinations are computed lazily and then reused for the lifetime of the principal.
+ * The instance is immutable from the caller's point of view and it can be used concurrently.
+ *
+ * @see MidPointPrincipal#getCompiledAuthorizations()
+ * @author agent
+ */
+public class CompiledAuthorizations {
+
+	private final Authorization[] authorizations;
+	private final Map<Authorization, List<ItemPath>> items = new IdentityHashMap<>();
+	private final Map<Key, List<Authorization>> applicable = new ConcurrentHashMap<>();
+
+	private CompiledAuthorizations(Collection<Authorization> authorizations) {
+		this.authorizations = authorizations.toArray(new Authorization[authorizations.size()]);
+		for (Authorization authorization : this.authorizations) {
+			List<ItemPath> paths = new ArrayList<>(authorization.getItem().size());
+			for (ItemPathType itemPathType : authorization.getItem()) {
+				paths.add(itemPathType.getItemPath());
+			}
+			items.put(authorization, Collections.unmodifiableList(paths));
+		}
+	}
+
+	public static CompiledAuthorizations compile(Collection<Authorization> authorizations) {
+		return new CompiledAuthorizations(authorizations);
+	}
+
+	/**
+	 * Returns true if this instance was compiled from the very same authorization objects (in the same order).
+	 */
+	public boolean isCompiledFrom(Collection<Authorization> authorizations) {
+		if (authorizations.size() != this.authorizations.length) {
+			return false;
+		}
+		Iterator<Authorization> iterator = authorizations.iterator();
+		for (Authorization authorization : this.authorizations) {
+			if (!iterator.hasNext() || iterator.next() != authorization) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns authorizations that match the action (directly or via "all" action) and the phase (directly or by
+	 * not specifying any phase) and whose object specification does not exclude the object type.
+	 * If there is no object, only authorizations without object specification are returned.
+	 */
+	public <O extends Objectable> List<Authorization> getAuthorizations(String action, AuthorizationPhaseType phase,
+			PrismObject<O> object) {
+		QName objectType = object != null && object.getDefinition() != null ? object.getDefinition().getTypeName() : null;
+		Key key = new Key(action, phase, object != null, objectType);
+		List<Authorization> list = applicable.get(key);
+		if (list == null) {
+			list = Collections.unmodifiableList(select(action, phase, object != null, objectType));
+			applicable.put(key, list);
+		}
+		return list;
+	}
+
+	/**
+	 * Returns item paths of the authorization.
+	 */
+	public List<ItemPath> getItems(Authorization authorization) {
+		List<ItemPath> paths = items.get(authorization);
+		return paths != null ? paths : Collections.<ItemPath>emptyList();
+	}
+
+	private List<Authorization> select(String action, AuthorizationPhaseType phase, boolean hasObject, QName objectType) {
+		List<Authorization> rv = new ArrayList<>();
+		for (Authorization authorization : authorizations) {
+			List<String> actions = authorization.getAction();
+			if (!actions.contains(action) && !actions.contains(AuthorizationConstants.AUTZ_ALL_URL)) {
+				continue;
+			}
+			if (authorization.getPhase() != null && authorization.getPhase() != phase) {
+				continue;
+			}
+			if (isTypeApplicable(authorization.getObject(), hasObject, objectType)) {
+				rv.add(authorization);
+			}
+		}
+		return rv;
+	}
+
+	private boolean isTypeApplicable(List<OwnedObjectSpecificationType> objectSpecs, boolean hasObject, QName objectType) {
+		if (objectSpecs == null || objectSpecs.isEmpty()) {
+			return true;
+		}
+		if (!hasObject) {
+			return false;
+		}
+		if (objectType == null) {
+			return true;        // type is not known, so it cannot be used to exclude anything
+		}
+		for (OwnedObjectSpecificationType objectSpec : objectSpecs) {
+			if (objectSpec == null) {
+				continue;
+			}
+			if (objectSpec.getType() == null || QNameUtil.match(objectSpec.getType(), objectType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		return authorizations.length;
+	}
+
+	private static class Key {
+		private final String action;
+		private final AuthorizationPhaseType phase;
+		private final boolean hasObject;
+		private final QName objectType;
+
+		Key(String action, AuthorizationPhaseType phase, boolean hasObject, QName objectType) {
+			this.action = action;
+			this.phase = phase;
+			this.hasObject = hasObject;
+			this.objectType = objectType;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return (action != null ? action.equals(key.action) : key.action == null)
+					&& phase == key.phase
+					&& hasObject == key.hasObject
+					&& (objectType != null ? objectType.equals(key.objectType) : key.objectType == null);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = action != null ? action.hashCode() : 0;
+			result = 31 * result + (phase != null ? phase.hashCode() : 0);
+			result = 31 * result + (hasObject ? 1 : 0);
+			result = 31 * result + (objectType != null ? objectType.hashCode() : 0);
+			return result;
+		}
+	}
+}
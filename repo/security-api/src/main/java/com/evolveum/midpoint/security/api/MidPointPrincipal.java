@@ -45,6 +45,7 @@ public class MidPointPrincipal implements UserDetails,  DebugDumpable {
     private Collection<Authorization> authorizations = new ArrayList<Authorization>();
     private ActivationStatusType effectiveActivationStatus;
     private AdminGuiConfigurationType adminGuiConfiguration;
+    private transient volatile CompiledAuthorizations compiledAuthorizations;
 
     public MidPointPrincipal(UserType user) {
         Validate.notNull(user, "User must not be null.");
@@ -59,6 +60,19 @@ public class MidPointPrincipal implements UserDetails,  DebugDumpable {
 		return authorizations;
 	}
 
+	/**
+	 * Returns the authorizations indexed for fast evaluation. The index is created on first use and it is
+	 * re-created if the authorizations were changed since then.
+	 */
+	public CompiledAuthorizations getCompiledAuthorizations() {
+		CompiledAuthorizations compiled = compiledAuthorizations;
+		if (compiled == null || !compiled.isCompiledFrom(authorizations)) {
+			compiled = CompiledAuthorizations.compile(authorizations);
+			compiledAuthorizations = compiled;
+		}
+		return compiled;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.springframework.security.core.userdetails.UserDetails#getPassword()
 	 */
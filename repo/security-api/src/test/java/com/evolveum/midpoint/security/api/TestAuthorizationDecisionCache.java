@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.security.api;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * @author agent
+ */
+public class TestAuthorizationDecisionCache {
+
+	private static final String ACTION_URL = "http://midpoint.evolveum.com/xml/ns/public/security/authorization-ui-3#users";
+	private static final String USER_OID = "c0c010c0-d34d-b33f-f00d-111111111111";
+
+	private final CompiledAuthorizations authorizations = CompiledAuthorizations.compile(new ArrayList<Authorization>());
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	@AfterMethod
+	public void exitCache() {
+		while (AuthorizationDecisionCache.isEntered()) {
+			AuthorizationDecisionCache.exitCache();
+		}
+	}
+
+	@Test
+	public void test100NotEntered() throws Exception {
+		final String TEST_NAME = "test100NotEntered";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// WHEN
+		AuthorizationDecisionCache.putDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, null, true);
+
+		// THEN
+		assertFalse("Cache entered", AuthorizationDecisionCache.isEntered());
+		assertNull("Decision cached outside of the cache scope",
+				AuthorizationDecisionCache.getDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, null));
+	}
+
+	@Test
+	public void test110DecisionWithoutObject() throws Exception {
+		final String TEST_NAME = "test110DecisionWithoutObject";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		AuthorizationDecisionCache.enterCache();
+
+		// WHEN
+		AuthorizationDecisionCache.putDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, null, true);
+
+		// THEN
+		assertEquals("Wrong cached decision", Boolean.TRUE,
+				AuthorizationDecisionCache.getDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, null));
+		assertNull("Decision cached for a different phase",
+				AuthorizationDecisionCache.getDecision(authorizations, ACTION_URL, AuthorizationPhaseType.EXECUTION, null, null));
+		CompiledAuthorizations otherAuthorizations = CompiledAuthorizations.compile(new ArrayList<Authorization>());
+		assertNull("Decision cached for different authorizations",
+				AuthorizationDecisionCache.getDecision(otherAuthorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, null));
+
+		AuthorizationDecisionCache.exitCache();
+		AuthorizationDecisionCache.enterCache();
+		assertNull("Decision survived the cache scope",
+				AuthorizationDecisionCache.getDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, null));
+	}
+
+	/**
+	 * The decision about an object depends on its content. The object may be modified in memory without
+	 * changing its OID and version (e.g. the new state of an object computed by the clockwork), therefore
+	 * such decisions must not be cached.
+	 */
+	@Test
+	public void test120DecisionWithObject() throws Exception {
+		final String TEST_NAME = "test120DecisionWithObject";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		AuthorizationDecisionCache.enterCache();
+		PrismObject<UserType> user = createUser();
+		AuthorizationDecisionCache.putDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, user, null, true);
+
+		// WHEN
+		user.asObjectable().setFullName(new PolyStringType("Captain Jack Sparrow"));
+
+		// THEN
+		assertNull("Decision about object was cached",
+				AuthorizationDecisionCache.getDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, user, null));
+	}
+
+	@Test
+	public void test130DecisionWithTarget() throws Exception {
+		final String TEST_NAME = "test130DecisionWithTarget";
+		TestUtil.displayTestTile(TEST_NAME);
+
+		// GIVEN
+		AuthorizationDecisionCache.enterCache();
+		PrismObject<UserType> target = createUser();
+
+		// WHEN
+		AuthorizationDecisionCache.putDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, target, false);
+
+		// THEN
+		assertNull("Decision about target was cached",
+				AuthorizationDecisionCache.getDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, target));
+		assertNull("Decision about target was cached as object-less decision",
+				AuthorizationDecisionCache.getDecision(authorizations, ACTION_URL, AuthorizationPhaseType.REQUEST, null, null));
+	}
+
+	private PrismObject<UserType> createUser() throws SchemaException {
+		UserType user = new UserType();
+		PrismTestUtil.getPrismContext().adopt(user);
+		user.setOid(USER_OID);
+		user.setVersion("1");
+		user.setName(new PolyStringType("jack"));
+		user.setFullName(new PolyStringType("Jack Sparrow"));
+		return user.asPrismObject();
+	}
+}
@@ -66,6 +66,8 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
 import com.evolveum.midpoint.security.api.Authorization;
 import com.evolveum.midpoint.security.api.AuthorizationConstants;
+import com.evolveum.midpoint.security.api.AuthorizationDecisionCache;
+import com.evolveum.midpoint.security.api.CompiledAuthorizations;
 import com.evolveum.midpoint.security.api.MidPointPrincipal;
 import com.evolveum.midpoint.security.api.ObjectSecurityConstraints;
 import com.evolveum.midpoint.security.api.OwnerResolver;
@@ -183,91 +185,72 @@ public class SecurityEnforcerImpl implements SecurityEnforcer {
 		if (phase == null) {
 			throw new IllegalArgumentException("No phase");
 		}
+		CompiledAuthorizations compiledAuthorizations = midPointPrincipal.getCompiledAuthorizations();
+		if (delta == null) {
+			Boolean cachedDecision = AuthorizationDecisionCache.getDecision(compiledAuthorizations, operationUrl, phase, object, target);
+			if (cachedDecision != null) {
+				LOGGER.trace("AUTZ result (cached): principal={}, operation={}: {}", new Object[]{midPointPrincipal, operationUrl, cachedDecision});
+				return cachedDecision;
+			}
+		}
 		boolean allow = false;
 		LOGGER.trace("AUTZ: evaluating authorization principal={}, op={}, phase={}, object={}, delta={}, target={}",
 				new Object[]{midPointPrincipal, operationUrl, phase, object, delta, target});
 		final Collection<ItemPath> allowedItems = new ArrayList<>();
-		Collection<Authorization> authorities = midPointPrincipal.getAuthorities();
-		if (authorities != null) {
-			for (GrantedAuthority authority: authorities) {
-				if (authority instanceof Authorization) {
-					Authorization autz = (Authorization)authority;
-					String autzHumanReadableDesc = autz.getHumanReadableDesc();
-					LOGGER.trace("Evaluating {}", autzHumanReadableDesc);
-					
-					// First check if the authorization is applicable.
-					
-					// action
-					if (!autz.getAction().contains(operationUrl) && !autz.getAction().contains(AuthorizationConstants.AUTZ_ALL_URL)) {
-						LOGGER.trace("  {} not applicable for operation {}", autzHumanReadableDesc, operationUrl);
-						continue;
-					}
-					
-					// phase
-					if (autz.getPhase() == null) {
-						LOGGER.trace("  {} is applicable for all phases (continuing evaluation)", autzHumanReadableDesc);
-					} else {
-						if (autz.getPhase() != phase) {
-							LOGGER.trace("  {} is not applicable for phases {} (breaking evaluation)", autzHumanReadableDesc, phase);
-							continue;
-						} else {
-							LOGGER.trace("  {} is applicable for phases {} (continuing evaluation)", autzHumanReadableDesc, phase);
-						}
-					}
-					
-					// object
-					if (isApplicable(autz.getObject(), object, midPointPrincipal, ownerResolver, "object", autzHumanReadableDesc)) {
-						LOGGER.trace("  {} applicable for object {} (continuing evaluation)", autzHumanReadableDesc, object);
-					} else {
-						LOGGER.trace("  {} not applicable for object {}, none of the object specifications match (breaking evaluation)", 
-								autzHumanReadableDesc, object);
-						continue;
-					}
-					
-					// target
-					if (isApplicable(autz.getTarget(), target, midPointPrincipal, ownerResolver, "target", autzHumanReadableDesc)) {
-						LOGGER.trace("  {} applicable for target {} (continuing evaluation)", autzHumanReadableDesc, object);
-					} else {
-						LOGGER.trace("  {} not applicable for target {}, none of the target specifications match (breaking evaluation)", 
-								autzHumanReadableDesc, object);
-						continue;
-					}
-					
-					// authority is applicable to this situation. now we can process the decision.
-					AuthorizationDecisionType decision = autz.getDecision();
-					if (decision == null || decision == AuthorizationDecisionType.ALLOW) {
-						// if there is more than one role which specify
-						// different authz (e.g one role specify allow for whole
-						// objet, the other role specify allow only for some
-						// attributes. this ended with allow for whole object (MID-2018)
-						Collection<ItemPath> allowed = getItems(autz);
-						if (allow && allowedItems.isEmpty()){
-							LOGGER.trace("  {}: ALLOW operation {} (but continue evaluation)", autzHumanReadableDesc, operationUrl);
-						} else if (allow && allowed.isEmpty()){
-							allowedItems.clear();
-						} else {
-							allowedItems.addAll(allowed);
-						}
-						LOGGER.trace("  {}: ALLOW operation {} (but continue evaluation)", autzHumanReadableDesc, operationUrl);
-						allow = true;
-						// Do NOT break here. Other authorization statements may still deny the operation
-					} else {
-						// item
-						if (isApplicableItem(autz, object, delta)) {
-							LOGGER.trace("  {}: Deny authorization applicable for items (continuing evaluation)", autzHumanReadableDesc);
-						} else {
-							LOGGER.trace("  {} not applicable for items (breaking evaluation)", autzHumanReadableDesc);
-							continue;
-						}
-						LOGGER.trace("  {}: DENY operation {}", autzHumanReadableDesc, operationUrl);
-						allow = false;
-						// Break right here. Deny cannot be overridden by allow. This decision cannot be changed. 
-						break;
-					}
-					
+		// Only authorizations matching the operation, phase and object type are returned here.
+		List<Authorization> authorities = compiledAuthorizations.getAuthorizations(operationUrl, phase, object);
+		for (Authorization autz: authorities) {
+			String autzHumanReadableDesc = autz.getHumanReadableDesc();
+			LOGGER.trace("Evaluating {}", autzHumanReadableDesc);
+			
+			// object
+			if (isApplicable(autz.getObject(), object, midPointPrincipal, ownerResolver, "object", autzHumanReadableDesc)) {
+				LOGGER.trace("  {} applicable for object {} (continuing evaluation)", autzHumanReadableDesc, object);
+			} else {
+				LOGGER.trace("  {} not applicable for object {}, none of the object specifications match (breaking evaluation)", 
+						autzHumanReadableDesc, object);
+				continue;
+			}
+			
+			// target
+			if (isApplicable(autz.getTarget(), target, midPointPrincipal, ownerResolver, "target", autzHumanReadableDesc)) {
+				LOGGER.trace("  {} applicable for target {} (continuing evaluation)", autzHumanReadableDesc, object);
+			} else {
+				LOGGER.trace("  {} not applicable for target {}, none of the target specifications match (breaking evaluation)", 
+						autzHumanReadableDesc, object);
+				continue;
+			}
+			
+			// authority is applicable to this situation. now we can process the decision.
+			AuthorizationDecisionType decision = autz.getDecision();
+			if (decision == null || decision == AuthorizationDecisionType.ALLOW) {
+				// if there is more than one role which specify
+				// different authz (e.g one role specify allow for whole
+				// objet, the other role specify allow only for some
+				// attributes. this ended with allow for whole object (MID-2018)
+				Collection<ItemPath> allowed = compiledAuthorizations.getItems(autz);
+				if (allow && allowedItems.isEmpty()){
+					LOGGER.trace("  {}: ALLOW operation {} (but continue evaluation)", autzHumanReadableDesc, operationUrl);
+				} else if (allow && allowed.isEmpty()){
+					allowedItems.clear();
+				} else {
+					allowedItems.addAll(allowed);
+				}
+				LOGGER.trace("  {}: ALLOW operation {} (but continue evaluation)", autzHumanReadableDesc, operationUrl);
+				allow = true;
+				// Do NOT break here. Other authorization statements may still deny the operation
+			} else {
+				// item
+				if (isApplicableItem(autz, object, delta)) {
+					LOGGER.trace("  {}: Deny authorization applicable for items (continuing evaluation)", autzHumanReadableDesc);
 				} else {
-					LOGGER.warn("Unknown authority type {} in user {}", authority.getClass(), midPointPrincipal.getUsername());
+					LOGGER.trace("  {} not applicable for items (breaking evaluation)", autzHumanReadableDesc);
+					continue;
 				}
+				LOGGER.trace("  {}: DENY operation {}", autzHumanReadableDesc, operationUrl);
+				allow = false;
+				// Break right here. Deny cannot be overridden by allow. This decision cannot be changed. 
+				break;
 			}
 		}
 		
@@ -316,6 +299,9 @@ public class SecurityEnforcerImpl implements SecurityEnforcer {
 		if (LOGGER.isTraceEnabled()) {
 			LOGGER.trace("AUTZ result: principal={}, operation={}: {}", new Object[]{midPointPrincipal, operationUrl, allow});
 		}
+		if (delta == null) {
+			AuthorizationDecisionCache.putDecision(compiledAuthorizations, operationUrl, phase, object, target, allow);
+		}
 		return allow;
 	}
 	
@@ -20,12 +20,16 @@ import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismObjectDefinition;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.path.IdentifierPathSegment;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.query.AndFilter;
 import com.evolveum.midpoint.prism.query.EqualFilter;
 import com.evolveum.midpoint.prism.query.LessFilter;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrFilter;
+import com.evolveum.midpoint.prism.query.OrderDirection;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.GetOperationOptions;
@@ -33,6 +37,7 @@ import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.schema.util.CleanupPolicyUtil;
 import com.evolveum.midpoint.security.api.SecurityEnforcer;
 import com.evolveum.midpoint.task.api.LightweightIdentifier;
 import com.evolveum.midpoint.task.api.LightweightIdentifierGenerator;
@@ -129,6 +134,8 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
     private static final String OPERATION_SUSPEND_TASKS = DOT_INTERFACE + "suspendTasks";
     private static final String OPERATION_DEACTIVATE_SERVICE_THREADS = DOT_INTERFACE + "deactivateServiceThreads";
     private static final String CLEANUP_TASKS = DOT_INTERFACE + "cleanupTasks";
+    private static final int CLEANUP_TASKS_BATCH_SIZE = 100;
+    private static final int CLEANUP_TASKS_PARENTS_PER_QUERY = 100;
 
     // instances of all the helper classes (see their definitions for their description)
     private TaskManagerConfiguration configuration = new TaskManagerConfiguration();
@@ -1657,70 +1664,102 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
                 new Object[]{deleteTasksClosedUpTo, duration});
 
         XMLGregorianCalendar timeXml = XmlTypeConverter.createXMLGregorianCalendar(deleteTasksClosedUpTo.getTime());
+        ObjectFilter obsoleteTasksFilter = AndFilter.createAnd(
+                LessFilter.createLess(TaskType.F_COMPLETION_TIMESTAMP, TaskType.class, getPrismContext(), timeXml, true),
+                EqualFilter.createEqual(TaskType.F_PARENT, TaskType.class, getPrismContext(), null));
 
-        List<PrismObject<TaskType>> obsoleteTasks;
-        try {
-            ObjectQuery obsoleteTasksQuery = ObjectQuery.createObjectQuery(AndFilter.createAnd(
-                    LessFilter.createLess(TaskType.F_COMPLETION_TIMESTAMP, TaskType.class, getPrismContext(), timeXml, true),
-                    EqualFilter.createEqual(TaskType.F_PARENT, TaskType.class, getPrismContext(), null)));
-
-            obsoleteTasks = repositoryService.searchObjects(TaskType.class, obsoleteTasksQuery, null, result);
-        } catch (SchemaException e) {
-            throw new SchemaException("Couldn't get the list of obsolete tasks: " + e.getMessage(), e);
-        }
-
-        LOGGER.debug("Found {} task tree(s) to be cleaned up", obsoleteTasks.size());
+        int batchSize = CleanupPolicyUtil.getBatchSize(policy, CLEANUP_TASKS_BATCH_SIZE);
+        long start = System.currentTimeMillis();
 
+        // Task trees are processed in batches of root tasks (oldest first). Root tasks that couldn't be deleted
+        // stay in the repository, so they are skipped using the offset.
         boolean interrupted = false;
         int deleted = 0;
         int problems = 0;
         int bigProblems = 0;
-        for (PrismObject<TaskType> rootTaskPrism : obsoleteTasks) {
-
-            if (!executionTask.canRun()) {
-                result.recordPartialError("Interrupted");
-                LOGGER.warn("Task cleanup was interrupted.");
-                interrupted = true;
+        int skipped = 0;
+        for (;;) {
+            List<PrismObject<TaskType>> rootTasks;
+            try {
+                ObjectQuery obsoleteTasksQuery = ObjectQuery.createObjectQuery(obsoleteTasksFilter);
+                // ordered by OID as well, so the offset skips exactly the tasks that couldn't be deleted
+                ObjectPaging paging = ObjectPaging.createPaging(skipped, batchSize, TaskType.F_COMPLETION_TIMESTAMP, OrderDirection.ASCENDING);
+                paging.addOrderingInstruction(new ItemPath(new IdentifierPathSegment()), OrderDirection.ASCENDING);
+                obsoleteTasksQuery.setPaging(paging);
+                rootTasks = repositoryService.searchObjects(TaskType.class, obsoleteTasksQuery, null, result);
+            } catch (SchemaException e) {
+                throw new SchemaException("Couldn't get the list of obsolete tasks: " + e.getMessage(), e);
+            }
+            if (rootTasks.isEmpty()) {
                 break;
             }
+            LOGGER.debug("Found {} task tree(s) to be cleaned up in this batch", rootTasks.size());
 
-            // get whole tree
-            Task rootTask = createTaskInstance(rootTaskPrism, result);
-            List<Task> taskTreeMembers = rootTask.listSubtasksDeeply(result);
-            taskTreeMembers.add(rootTask);
-
-            LOGGER.trace("Removing task {} along with its {} children.", rootTask, taskTreeMembers.size()-1);
-
-            boolean problem = false;
-            for (Task task : taskTreeMembers) {
-                try {
-                    deleteTask(task.getOid(), result);
-                } catch (SchemaException e) {
-                    LoggingUtils.logException(LOGGER, "Couldn't delete obsolete task {} due to schema exception", e, task);
-                    problem = true;
-                } catch (ObjectNotFoundException e) {
-                    LoggingUtils.logException(LOGGER, "Couldn't delete obsolete task {} due to object not found exception", e, task);
-                    problem = true;
-                } catch (RuntimeException e) {
-                    LoggingUtils.logException(LOGGER, "Couldn't delete obsolete task {} due to a runtime exception", e, task);
-                    problem = true;
+            for (PrismObject<TaskType> rootTask : rootTasks) {
+                if (!executionTask.canRun()) {
+                    interrupted = true;
+                    break;
                 }
+                // subtasks first, root task last - the root is not deleted if any subtask couldn't be, so the tree
+                // stays reachable (and the root is skipped in the next batches)
+                List<PrismObject<TaskType>> taskTreeMembers = listSubtasksDeeply(rootTask, result);
+                taskTreeMembers.add(rootTask);
+                LOGGER.trace("Removing task {} along with its {} children.", rootTask, taskTreeMembers.size()-1);
+
+                boolean subtaskProblem = false;
+                for (PrismObject<TaskType> task : taskTreeMembers) {
+                    if (task == rootTask && subtaskProblem) {
+                        LOGGER.warn("Not deleting obsolete task {} because some of its subtasks couldn't be deleted", task);
+                        problems++;
+                        skipped++;
+                        break;
+                    }
+                    boolean problem = false;
+                    try {
+                        repositoryService.deleteObject(TaskType.class, task.getOid(), result);
+                        executionManager.removeTaskFromQuartz(task.getOid(), result);
+                    } catch (ObjectNotFoundException e) {
+                        LoggingUtils.logException(LOGGER, "Couldn't delete obsolete task {} due to object not found exception", e, task);
+                        problem = true;
+                    } catch (RuntimeException e) {
+                        LoggingUtils.logException(LOGGER, "Couldn't delete obsolete task {} due to a runtime exception", e, task);
+                        problem = true;
+                    }
 
-                if (problem) {
-                    problems++;
-                    if (!task.getTaskIdentifier().equals(rootTask.getTaskIdentifier())) {
-                        bigProblems++;
+                    if (problem) {
+                        problems++;
+                        if (task == rootTask) {
+                            skipped++;
+                        } else {
+                            subtaskProblem = true;
+                            bigProblems++;
+                        }
+                    } else {
+                        deleted++;
                     }
-                } else {
-                    deleted++;
                 }
             }
+            LOGGER.info("Task cleanup progress: deleted {} tasks ({} tasks per second), problems with {} tasks.",
+                    deleted, CleanupPolicyUtil.formatRate(deleted, start), problems);
+            result.summarize();
+            if (interrupted || rootTasks.size() < batchSize) {
+                break;
+            }
+            if (!CleanupPolicyUtil.pauseAfterBatch(policy) || !executionTask.canRun()) {
+                interrupted = true;
+                break;
+            }
+        }
+        if (interrupted) {
+            result.recordPartialError("Interrupted");
+            LOGGER.warn("Task cleanup was interrupted.");
         }
         result.computeStatusIfUnknown();
 
-        LOGGER.info("Task cleanup procedure " + (interrupted ? "was interrupted" : "finished") + ". Successfully deleted {} tasks; there were problems with deleting {} tasks.", deleted, problems);
+        LOGGER.info("Task cleanup procedure " + (interrupted ? "was interrupted" : "finished") + ". Successfully deleted {} tasks "
+                + "({} tasks per second); there were problems with deleting {} tasks.", deleted, CleanupPolicyUtil.formatRate(deleted, start), problems);
         if (bigProblems > 0) {
-            LOGGER.error("{} subtask(s) couldn't be deleted. Inspect that manually, otherwise they might reside in repo forever.", bigProblems);
+            LOGGER.error("{} subtask(s) couldn't be deleted, so their root tasks were kept. Inspect that manually, otherwise they might reside in repo forever.", bigProblems);
         }
         String suffix = interrupted ? " Interrupted." : "";
         if (problems == 0) {
@@ -1733,6 +1772,31 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
 
     }
 
+    /**
+     * Returns all (persistent) subtasks of the task, searching for children of the whole level at once.
+     */
+    private List<PrismObject<TaskType>> listSubtasksDeeply(PrismObject<TaskType> rootTask, OperationResult result) throws SchemaException {
+        List<PrismObject<TaskType>> subtasks = new ArrayList<>();
+        List<String> parentIdentifiers = new ArrayList<>();
+        parentIdentifiers.add(rootTask.asObjectable().getTaskIdentifier());
+        while (!parentIdentifiers.isEmpty()) {
+            List<String> childIdentifiers = new ArrayList<>();
+            for (int i = 0; i < parentIdentifiers.size(); i += CLEANUP_TASKS_PARENTS_PER_QUERY) {
+                List<ObjectFilter> conditions = new ArrayList<>();
+                for (String identifier : parentIdentifiers.subList(i, Math.min(i + CLEANUP_TASKS_PARENTS_PER_QUERY, parentIdentifiers.size()))) {
+                    conditions.add(EqualFilter.createEqual(TaskType.F_PARENT, TaskType.class, getPrismContext(), null, identifier));
+                }
+                ObjectQuery query = ObjectQuery.createObjectQuery(conditions.size() == 1 ? conditions.get(0) : OrFilter.createOr(conditions));
+                for (PrismObject<TaskType> child : repositoryService.searchObjects(TaskType.class, query, null, result)) {
+                    subtasks.add(child);
+                    childIdentifiers.add(child.asObjectable().getTaskIdentifier());
+                }
+            }
+            parentIdentifiers = childIdentifiers;
+        }
+        return subtasks;
+    }
+
     private<T> Set<T> oneItemSet(T item) {
         Set<T> set = new HashSet<T>();
         set.add(item);
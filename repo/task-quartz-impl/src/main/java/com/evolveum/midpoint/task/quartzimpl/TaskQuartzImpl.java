@@ -70,6 +70,7 @@ import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.util.monitor.MetricsRegistry;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.IterativeTaskInformationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
@@ -2695,6 +2696,21 @@ public class TaskQuartzImpl implements Task {
 	@Override
 	public void recordProvisioningOperation(String resourceOid, String resourceName, QName objectClassName, ProvisioningOperation operation, boolean success, int count, long duration) {
 		environmentalPerformanceInformation.recordProvisioningOperation(resourceOid, resourceName, objectClassName, operation, success, count, duration);
+		// node-wide metrics are fed from the same place; suspended (count = 0) parts of operations are not separate samples
+		MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+		if (count > 0 && metricsRegistry.isEnabled()) {
+			metricsRegistry.recordLatency("connector." + operation, duration);
+			metricsRegistry.recordLatency("resource." + (resourceName != null ? resourceName : resourceOid) + "." + operation, duration);
+		}
+	}
+
+	@Override
+	public void recordProvisioningOperationWait(String resourceOid, String resourceName, QName objectClassName, ProvisioningOperation operation, long waitTime) {
+		environmentalPerformanceInformation.recordProvisioningOperationWait(resourceOid, resourceName, objectClassName, operation, waitTime);
+		MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+		if (metricsRegistry.isEnabled()) {
+			metricsRegistry.recordLatency("resource." + (resourceName != null ? resourceName : resourceOid) + ".wait", waitTime);
+		}
 	}
 
 	@Override
@@ -2705,6 +2721,10 @@ public class TaskQuartzImpl implements Task {
 	@Override
 	public void recordMappingOperation(String objectOid, String objectName, String mappingName, long duration) {
 		environmentalPerformanceInformation.recordMappingOperation(objectOid, objectName, mappingName, duration);
+		MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+		if (metricsRegistry.isEnabled()) {
+			metricsRegistry.recordLatency("mapping." + mappingName, duration);
+		}
 	}
 
 	@Override
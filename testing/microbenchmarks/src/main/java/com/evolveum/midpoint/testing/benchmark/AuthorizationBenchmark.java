@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.evolveum.midpoint.model.api.ModelAuthorizationAction;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.security.api.AuthorizationConstants;
+import com.evolveum.midpoint.security.api.AuthorizationDecisionCache;
+import com.evolveum.midpoint.security.api.MidPointPrincipal;
+import com.evolveum.midpoint.security.impl.SecurityEnforcerImpl;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationDecisionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OwnedObjectSpecificationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SpecialObjectSpecificationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.types_3.ItemPathType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Authorization checks done by the GUI when rendering one page of a user list: for each user on the page
+ * several actions are checked, each of them twice (e.g. once for visibility and once for enabled state of a button),
+ * and the GUI authorizations of the row actions are checked without any object.
+ * The principal has many authorizations, most of them for other actions and object types.
+ *
+ * Run with decisionCache=true the checks are done within one authorization decision cache scope, as they are
+ * in a GUI request. Only the checks without an object are cached.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+	private static final int PAGE_SIZE = 100;
+	private static final int ROLES = 50;
+	private static final String[] ACTIONS = {
+			ModelAuthorizationAction.READ.getUrl(),
+			ModelAuthorizationAction.MODIFY.getUrl(),
+			ModelAuthorizationAction.DELETE.getUrl()
+	};
+	private static final String[] UI_ACTIONS = {
+			AuthorizationConstants.AUTZ_UI_USERS_URL,
+			AuthorizationConstants.AUTZ_UI_USER_URL
+	};
+
+	@Param({ "false", "true" })
+	public boolean decisionCache;
+
+	private SecurityEnforcerImpl securityEnforcer;
+	private List<PrismObject<UserType>> page;
+
+	@Setup
+	public void setup() throws Exception {
+		PrismContext prismContext = BenchmarkUtil.createPrismContext();
+		securityEnforcer = new SecurityEnforcerImpl();
+
+		page = new ArrayList<>(PAGE_SIZE);
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			page.add(createUser(prismContext, "user" + i, String.format("c0c010c0-d34d-b33f-f00d-%012d", i)));
+		}
+
+		MidPointPrincipal principal = new MidPointPrincipal(createUser(prismContext, "manager", BenchmarkUtil.USER_JACK_OID).asObjectable());
+		for (int i = 0; i < ROLES; i++) {
+			principal.getAuthorities().add(createAuthorization(prismContext, "http://midpoint.evolveum.com/benchmark/ui#page" + i, null));
+			principal.getAuthorities().add(createAuthorization(prismContext, ModelAuthorizationAction.READ.getUrl(), RoleType.COMPLEX_TYPE));
+			principal.getAuthorities().add(createAuthorization(prismContext, ModelAuthorizationAction.MODIFY.getUrl(), RoleType.COMPLEX_TYPE));
+		}
+		principal.getAuthorities().add(createAuthorization(prismContext, AuthorizationConstants.AUTZ_UI_USERS_URL, null));
+		principal.getAuthorities().add(createAuthorization(prismContext, ModelAuthorizationAction.READ.getUrl(), UserType.COMPLEX_TYPE));
+		AuthorizationType modify = createAuthorizationType(prismContext, ModelAuthorizationAction.MODIFY.getUrl(), UserType.COMPLEX_TYPE);
+		modify.getItem().add(new ItemPathType(new ItemPath(UserType.F_FULL_NAME)));
+		modify.getItem().add(new ItemPathType(new ItemPath(UserType.F_DESCRIPTION)));
+		principal.getAuthorities().add(new Authorization(modify));
+		AuthorizationType deleteSelf = createAuthorizationType(prismContext, ModelAuthorizationAction.DELETE.getUrl(), UserType.COMPLEX_TYPE);
+		deleteSelf.getObject().get(0).getSpecial().add(SpecialObjectSpecificationType.SELF);
+		deleteSelf.setDecision(AuthorizationDecisionType.DENY);
+		principal.getAuthorities().add(new Authorization(deleteSelf));
+
+		SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null));
+	}
+
+	@Benchmark
+	public int renderPage() throws SchemaException {
+		if (decisionCache) {
+			AuthorizationDecisionCache.enterCache();
+		}
+		try {
+			int allowed = 0;
+			for (PrismObject<UserType> user : page) {
+				for (int round = 0; round < 2; round++) {
+					for (String action : ACTIONS) {
+						if (securityEnforcer.isAuthorized(action, null, user, null, null, null)) {
+							allowed++;
+						}
+					}
+					for (String action : UI_ACTIONS) {
+						if (securityEnforcer.isAuthorized(action, null, null, null, null, null)) {
+							allowed++;
+						}
+					}
+				}
+			}
+			return allowed;
+		} finally {
+			if (decisionCache) {
+				AuthorizationDecisionCache.exitCache();
+			}
+		}
+	}
+
+	private PrismObject<UserType> createUser(PrismContext prismContext, String name, String oid) throws SchemaException {
+		UserType user = new UserType();
+		prismContext.adopt(user);
+		user.setOid(oid);
+		user.setVersion("1");
+		user.setName(new PolyStringType(name));
+		user.setFullName(new PolyStringType(name.toUpperCase()));
+		return user.asPrismObject();
+	}
+
+	private Authorization createAuthorization(PrismContext prismContext, String action, QName objectType) throws SchemaException {
+		return new Authorization(createAuthorizationType(prismContext, action, objectType));
+	}
+
+	private AuthorizationType createAuthorizationType(PrismContext prismContext, String action, QName objectType) throws SchemaException {
+		AuthorizationType authorizationType = new AuthorizationType();
+		prismContext.adopt(authorizationType, RoleType.class, new ItemPath(RoleType.F_AUTHORIZATION));
+		authorizationType.getAction().add(action);
+		if (objectType != null) {
+			OwnedObjectSpecificationType objectSpec = new OwnedObjectSpecificationType();
+			objectSpec.setType(objectType);
+			authorizationType.getObject().add(objectSpec);
+		}
+		return authorizationType;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.evolveum.midpoint.model.api.ModelService;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.repo.api.RepoAddOptions;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.security.api.AuthorizationConstants;
+import com.evolveum.midpoint.security.api.MidPointPrincipal;
+import com.evolveum.midpoint.security.api.UserProfileService;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+
+/**
+ * The complete midPoint system (model, provisioning, task manager, embedded H2 repository) started from
+ * ctx-benchmark.xml. It is created lazily, once per benchmark JVM, and shared by all the benchmarks that need it.
+ *
+ * Initialization mimics the integration tests: system configuration, administrator and superuser role are
+ * added to the repository, the benchmark dummy resource is imported and administrator is logged in.
+ * The security context is global, so it is visible also in the JMH worker threads.
+ *
+ * @author agent
+ */
+public class BenchmarkSystem {
+
+	private static final String CONTEXT_FILE = "ctx-benchmark.xml";
+	private static final String MIDPOINT_HOME_PROPERTY = "midpoint.home";
+	private static final String DEFAULT_MIDPOINT_HOME = "target/midpoint-home/";
+
+	private static BenchmarkSystem instance;
+
+	private final ClassPathXmlApplicationContext applicationContext;
+	private final PrismContext prismContext;
+	private final RepositoryService repositoryService;
+	private final ModelService modelService;
+	private final TaskManager taskManager;
+
+	private BenchmarkSystem() throws Exception {
+		if (System.getProperty(MIDPOINT_HOME_PROPERTY) == null) {
+			new File(DEFAULT_MIDPOINT_HOME).mkdirs();
+			System.setProperty(MIDPOINT_HOME_PROPERTY, DEFAULT_MIDPOINT_HOME);
+		}
+		applicationContext = new ClassPathXmlApplicationContext(CONTEXT_FILE);
+		applicationContext.registerShutdownHook();
+		prismContext = applicationContext.getBean(PrismContext.class);
+		repositoryService = applicationContext.getBean("repositoryService", RepositoryService.class);
+		modelService = applicationContext.getBean(ModelService.class);
+		taskManager = applicationContext.getBean(TaskManager.class);
+		initSystem();
+	}
+
+	public static synchronized BenchmarkSystem get() {
+		if (instance == null) {
+			try {
+				instance = new BenchmarkSystem();
+			} catch (Exception e) {
+				throw new SystemException("Couldn't start the benchmark system: " + e.getMessage(), e);
+			}
+		}
+		return instance;
+	}
+
+	private void initSystem() throws Exception {
+		Task task = createTask("initSystem");
+		OperationResult result = task.getResult();
+
+		modelService.postInit(result);
+		repoAddObject(BenchmarkUtil.SYSTEM_CONFIGURATION, result);
+		repoAddObject(BenchmarkUtil.ROLE_SUPERUSER, result);
+		repoAddObject(BenchmarkUtil.USER_ADMINISTRATOR, result);
+		loginSuperUser(BenchmarkUtil.USER_ADMINISTRATOR_USERNAME);
+
+		DummyResourceContoller dummyResourceCtl = DummyResourceContoller.create(BenchmarkUtil.RESOURCE_DUMMY_INSTANCE_NAME);
+		dummyResourceCtl.populateWithDefaultSchema();
+		importObject(BenchmarkUtil.RESOURCE_DUMMY, task, result);
+
+		result.computeStatus();
+		if (result.isError()) {
+			throw new SystemException("Benchmark system initialization failed: " + result.getMessage());
+		}
+	}
+
+	private void loginSuperUser(String username) throws Exception {
+		SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+		MidPointPrincipal principal = applicationContext.getBean(UserProfileService.class).getPrincipal(username);
+		AuthorizationType superAutzType = new AuthorizationType();
+		prismContext.adopt(superAutzType, RoleType.class, new ItemPath(RoleType.F_AUTHORIZATION));
+		superAutzType.getAction().add(AuthorizationConstants.AUTZ_ALL_URL);
+		principal.getAuthorities().add(new Authorization(superAutzType));
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null));
+	}
+
+	public <O extends ObjectType> PrismObject<O> parseObject(String resourceName) throws Exception {
+		return prismContext.parseObject(BenchmarkUtil.readResource(resourceName), PrismContext.LANG_XML);
+	}
+
+	/**
+	 * Adds the object directly to the repository, replacing the previous version if there is any.
+	 */
+	public <O extends ObjectType> PrismObject<O> repoAddObject(String resourceName, OperationResult result) throws Exception {
+		PrismObject<O> object = parseObject(resourceName);
+		repositoryService.addObject(object, RepoAddOptions.createOverwrite(), result);
+		return object;
+	}
+
+	/**
+	 * Imports the object using the model, so references are resolved and the usual processing takes place.
+	 */
+	public void importObject(String resourceName, Task task, OperationResult result) {
+		byte[] data = BenchmarkUtil.readResource(resourceName).getBytes(StandardCharsets.UTF_8);
+		modelService.importObjectsFromStream(new ByteArrayInputStream(data), MiscSchemaUtil.getDefaultImportOptions(), task, result);
+	}
+
+	public Task createTask(String operationName) {
+		return taskManager.createTaskInstance(BenchmarkSystem.class.getName() + "." + operationName);
+	}
+
+	public <T> T getBean(Class<T> type) {
+		return applicationContext.getBean(type);
+	}
+
+	public PrismContext getPrismContext() {
+		return prismContext;
+	}
+
+	public RepositoryService getRepositoryService() {
+		return repositoryService;
+	}
+
+	public ModelService getModelService() {
+		return modelService;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+
+/**
+ * Resources and helpers shared by the benchmarks.
+ *
+ * @author agent
+ */
+public class BenchmarkUtil {
+
+	public static final String RESOURCE_DIR = "benchmark/";
+
+	public static final String USER_JACK = RESOURCE_DIR + "user-jack.xml";
+	public static final String USER_JACK_OID = "c0c010c0-d34d-b33f-f00d-111111111111";
+
+	public static final String USER_CLOCKWORK = RESOURCE_DIR + "user-clockwork.xml";
+	public static final String USER_CLOCKWORK_OID = "c0c010c0-d34d-b33f-f00d-22222222b004";
+
+	public static final String MAPPING_FULLNAME = RESOURCE_DIR + "mapping-fullname.xml";
+
+	public static final String SYSTEM_CONFIGURATION = RESOURCE_DIR + "system-configuration.xml";
+	public static final String USER_ADMINISTRATOR = RESOURCE_DIR + "user-administrator.xml";
+	public static final String USER_ADMINISTRATOR_USERNAME = "administrator";
+	public static final String ROLE_SUPERUSER = RESOURCE_DIR + "role-superuser.xml";
+	public static final String RESOURCE_DUMMY = RESOURCE_DIR + "resource-dummy.xml";
+	public static final String RESOURCE_DUMMY_INSTANCE_NAME = "benchmark";
+
+	public static final String KEYSTORE = RESOURCE_DIR + "keystore.jceks";
+	public static final String KEYSTORE_PASSWORD = "changeit";
+
+	/**
+	 * Creates a stand-alone prism context, for benchmarks that do not need the whole system.
+	 */
+	public static PrismContext createPrismContext() throws SchemaException, SAXException, IOException {
+		return new MidPointPrismContextFactory().createInitializedPrismContext();
+	}
+
+	public static String readResource(String name) {
+		InputStream stream = BenchmarkUtil.class.getClassLoader().getResourceAsStream(name);
+		if (stream == null) {
+			throw new SystemException("Benchmark resource " + name + " was not found");
+		}
+		try {
+			return IOUtils.toString(stream, "UTF-8");
+		} catch (IOException e) {
+			throw new SystemException("Couldn't read benchmark resource " + name + ": " + e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evolveum.midpoint.model.impl.lens.Clockwork;
+import com.evolveum.midpoint.model.impl.lens.ContextFactory;
+import com.evolveum.midpoint.model.impl.lens.LensContext;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Complete clockwork run (projector, mapping evaluation, provisioning of the account on the dummy resource)
+ * for a modification of a user that has one account. Each invocation changes the full name, so the outbound
+ * mapping always produces a real change of the account.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(1)
+public class ClockworkBenchmark {
+
+	private PrismContext prismContext;
+	private ContextFactory contextFactory;
+	private Clockwork clockwork;
+	private int counter;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkSystem system = BenchmarkSystem.get();
+		prismContext = system.getPrismContext();
+		contextFactory = system.getBean(ContextFactory.class);
+		clockwork = system.getBean(Clockwork.class);
+
+		PrismObject<UserType> user = system.parseObject(BenchmarkUtil.USER_CLOCKWORK);
+		run(ObjectDelta.createAddDelta(user), "setup");
+	}
+
+	@Benchmark
+	public LensContext<UserType> modifyUser() throws CommonException {
+		ObjectDelta<UserType> delta = ObjectDelta.createModificationReplaceProperty(UserType.class,
+				BenchmarkUtil.USER_CLOCKWORK_OID, UserType.F_FULL_NAME, prismContext,
+				new PolyString("Elaine Marley " + counter++));
+		return run(delta, "modifyUser");
+	}
+
+	private LensContext<UserType> run(ObjectDelta<UserType> delta, String operationName) throws CommonException {
+		Task task = BenchmarkSystem.get().createTask(operationName);
+		OperationResult result = task.getResult();
+		Collection<ObjectDelta<? extends ObjectType>> deltas = Collections.<ObjectDelta<? extends ObjectType>>singleton(delta);
+		LensContext<UserType> context = contextFactory.createContext(deltas, null, task, result);
+		clockwork.run(context, task, result);
+		result.computeStatus();
+		if (result.isError()) {
+			throw new IllegalStateException("Clockwork run failed: " + result.getMessage());
+		}
+		return context;
+	}
+}
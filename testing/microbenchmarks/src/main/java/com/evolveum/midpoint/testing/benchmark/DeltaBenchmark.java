@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evolveum.midpoint.prism.Item;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Delta application and merging, item lookup in a container value.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DeltaBenchmark {
+
+	private PrismObject<UserType> user;
+	private ObjectDelta<UserType> replaceDelta;
+	private ObjectDelta<UserType> addDelta;
+
+	@Setup
+	public void setup() throws Exception {
+		PrismContext prismContext = BenchmarkUtil.createPrismContext();
+		user = prismContext.parseObject(BenchmarkUtil.readResource(BenchmarkUtil.USER_JACK), PrismContext.LANG_XML);
+		replaceDelta = ObjectDelta.createModificationReplaceProperty(UserType.class, BenchmarkUtil.USER_JACK_OID,
+				UserType.F_FULL_NAME, prismContext, new PolyString("Captain Jack Sparrow"));
+		replaceDelta.merge(ObjectDelta.createModificationReplaceProperty(UserType.class, BenchmarkUtil.USER_JACK_OID,
+				UserType.F_LOCALITY, prismContext, new PolyString("Tortuga")));
+		addDelta = ObjectDelta.createModificationAddProperty(UserType.class, BenchmarkUtil.USER_JACK_OID,
+				UserType.F_ORGANIZATIONAL_UNIT, prismContext, new PolyString("Brethren Court"));
+	}
+
+	@Benchmark
+	public PrismObject<UserType> applyTo() throws SchemaException {
+		// The clone is included in the measurement; see PrismBenchmark.cloneObject for its cost.
+		PrismObject<UserType> clone = user.clone();
+		ItemDelta.applyTo(replaceDelta.getModifications(), clone);
+		ItemDelta.applyTo(addDelta.getModifications(), clone);
+		return clone;
+	}
+
+	@Benchmark
+	public ObjectDelta<UserType> merge() throws SchemaException {
+		ObjectDelta<UserType> merged = replaceDelta.clone();
+		merged.merge(addDelta);
+		return merged;
+	}
+
+	@Benchmark
+	public Item<?,?> findItem() {
+		return user.getValue().findItem(UserType.F_LOCALITY);
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evolveum.midpoint.model.common.mapping.Mapping;
+import com.evolveum.midpoint.model.common.mapping.MappingFactory;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismObjectDefinition;
+import com.evolveum.midpoint.prism.PrismPropertyDefinition;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.util.ObjectDeltaObject;
+import com.evolveum.midpoint.schema.constants.ExpressionConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.MappingType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Evaluation of a scripted mapping (condition and expression). The parsed expressions are taken either
+ * from the cache keyed by the owner object version and the mapping definition, or from the cache keyed
+ * by expression content (owner without version).
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+	private static final String OWNER_OID = "c0c010c0-d34d-b33f-f00d-999999999999";
+
+	private MappingFactory mappingFactory;
+	private MappingType mappingType;
+	private ObjectDeltaObject<UserType> userOdo;
+	private PrismObjectDefinition<UserType> userDefinition;
+	private PrismPropertyDefinition<PolyString> fullNameDefinition;
+	private ResourceType owner;
+	private ResourceType ownerWithoutVersion;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkSystem system = BenchmarkSystem.get();
+		PrismContext prismContext = system.getPrismContext();
+		mappingFactory = system.getBean(MappingFactory.class);
+		mappingType = prismContext.parseAtomicValue(BenchmarkUtil.readResource(BenchmarkUtil.MAPPING_FULLNAME),
+				MappingType.COMPLEX_TYPE, PrismContext.LANG_XML);
+
+		PrismObject<UserType> user = system.parseObject(BenchmarkUtil.USER_JACK);
+		userOdo = new ObjectDeltaObject<UserType>(user, null, null);
+		userOdo.recompute();
+		userDefinition = user.getDefinition();
+		fullNameDefinition = userDefinition.findPropertyDefinition(UserType.F_FULL_NAME);
+
+		owner = createOwner(prismContext, "1");
+		ownerWithoutVersion = createOwner(prismContext, null);
+	}
+
+	@Benchmark
+	public Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> evaluateOwned() throws CommonException {
+		return evaluate(owner);
+	}
+
+	@Benchmark
+	public Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> evaluateByContent() throws CommonException {
+		return evaluate(ownerWithoutVersion);
+	}
+
+	private Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> evaluate(ResourceType owner) throws CommonException {
+		Mapping<PrismPropertyValue<PolyString>,PrismPropertyDefinition<PolyString>> mapping =
+				mappingFactory.createMapping(mappingType, "benchmark mapping");
+		mapping.setSourceContext(userOdo);
+		mapping.addVariableDefinition(ExpressionConstants.VAR_USER, userOdo);
+		mapping.setTargetContext(userDefinition);
+		mapping.setDefaultTargetDefinition(fullNameDefinition);
+		mapping.setOriginObject(owner);
+		OperationResult result = new OperationResult(MappingBenchmark.class.getName() + ".evaluate");
+		mapping.evaluate(null, result);
+		return mapping;
+	}
+
+	private ResourceType createOwner(PrismContext prismContext, String version) {
+		ResourceType owner = new ResourceType(prismContext);
+		owner.setOid(OWNER_OID);
+		owner.setName(new PolyStringType("Mapping owner"));
+		owner.setVersion(version);
+		return owner;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Parsing, serialization and cloning of a prism object in all supported languages.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PrismBenchmark {
+
+	@Param({ PrismContext.LANG_XML, PrismContext.LANG_JSON, PrismContext.LANG_YAML })
+	public String language;
+
+	private PrismContext prismContext;
+	private PrismObject<UserType> user;
+	private String serializedUser;
+
+	@Setup
+	public void setup() throws Exception {
+		prismContext = BenchmarkUtil.createPrismContext();
+		user = prismContext.parseObject(BenchmarkUtil.readResource(BenchmarkUtil.USER_JACK), PrismContext.LANG_XML);
+		serializedUser = prismContext.serializeObjectToString(user, language);
+	}
+
+	@Benchmark
+	public PrismObject<UserType> parse() throws SchemaException {
+		return prismContext.parseObject(serializedUser, language);
+	}
+
+	@Benchmark
+	public String serialize() throws SchemaException {
+		return prismContext.serializeObjectToString(user, language);
+	}
+
+	@Benchmark
+	public PrismObject<UserType> cloneObject() {
+		// Does not depend on the language, but it is a convenient baseline for the parse benchmark.
+		return user.clone();
+	}
+}
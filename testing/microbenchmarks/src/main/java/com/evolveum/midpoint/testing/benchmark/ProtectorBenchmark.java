@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evolveum.midpoint.prism.crypto.AESProtector;
+import com.evolveum.midpoint.prism.crypto.EncryptionException;
+import com.evolveum.prism.xml.ns._public.types_3.ProtectedStringType;
+
+/**
+ * Encryption and decryption of protected strings (passwords) with the default AES protector.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ProtectorBenchmark {
+
+	private static final String CLEAR_VALUE = "deadmentellnotales";
+
+	private AESProtector protector;
+	private ProtectedStringType encrypted;
+
+	@Setup
+	public void setup() throws Exception {
+		protector = new AESProtector();
+		protector.setKeyStorePath(BenchmarkUtil.KEYSTORE);
+		protector.setKeyStorePassword(BenchmarkUtil.KEYSTORE_PASSWORD);
+		protector.init();
+		encrypted = protector.encryptString(CLEAR_VALUE);
+	}
+
+	@Benchmark
+	public ProtectedStringType encrypt() throws EncryptionException {
+		return protector.encryptString(CLEAR_VALUE);
+	}
+
+	@Benchmark
+	public String decrypt() throws EncryptionException {
+		return protector.decryptString(encrypted);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.repo.cache.QueryKey;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Construction of repository cache keys for search queries, including the lookup the cache does with them.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class QueryKeyBenchmark {
+
+	private PrismContext prismContext;
+	private ObjectQuery query;
+	private Map<QueryKey, Object> cache;
+
+	@Setup
+	public void setup() throws Exception {
+		prismContext = BenchmarkUtil.createPrismContext();
+		query = QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_NAME).eqPoly("jack", "jack").matchingOrig()
+				.or().item(UserType.F_EMPLOYEE_TYPE).eq("CAPTAIN")
+				.asc(UserType.F_NAME)
+				.build();
+		cache = new HashMap<>();
+		cache.put(new QueryKey(UserType.class, query, prismContext), Boolean.TRUE);
+	}
+
+	@Benchmark
+	public QueryKey create() {
+		return new QueryKey(UserType.class, query, prismContext);
+	}
+
+	@Benchmark
+	public Object lookup() {
+		return cache.get(new QueryKey(UserType.class, query, prismContext));
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2010-2016 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.testing.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismObjectDefinition;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.PropertyDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrderDirection;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.repo.api.RepoAddOptions;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Basic operations of the SQL repository (embedded H2), called directly, i.e. without the repository cache.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+	private static final String DOT_CLASS = RepositoryBenchmark.class.getName() + ".";
+	private static final int USERS = 1000;
+	private static final int PAGE_SIZE = 50;
+
+	private RepositoryService repositoryService;
+	private PrismObjectDefinition<UserType> userDefinition;
+	private ObjectQuery nameQuery;
+	private ObjectQuery pagedQuery;
+	private int counter;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkSystem system = BenchmarkSystem.get();
+		PrismContext prismContext = system.getPrismContext();
+		repositoryService = system.getRepositoryService();
+		userDefinition = prismContext.getSchemaRegistry().findObjectDefinitionByCompileTimeClass(UserType.class);
+		OperationResult result = new OperationResult(DOT_CLASS + "setup");
+
+		PrismObject<UserType> jack = system.repoAddObject(BenchmarkUtil.USER_JACK, result);
+		for (int i = 0; i < USERS; i++) {
+			PrismObject<UserType> user = jack.clone();
+			user.setOid(null);
+			user.asObjectable().setName(new PolyStringType("user" + i));
+			repositoryService.addObject(user, RepoAddOptions.createOverwrite(), result);
+		}
+
+		nameQuery = QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_NAME).eqPoly("user500", "user500").matchingOrig()
+				.build();
+		pagedQuery = QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_EMPLOYEE_TYPE).eq("CAPTAIN")
+				.build();
+		pagedQuery.setPaging(ObjectPaging.createPaging(USERS / 2, PAGE_SIZE, UserType.F_NAME, OrderDirection.ASCENDING));
+	}
+
+	@Benchmark
+	public PrismObject<UserType> getObject() throws CommonException {
+		return repositoryService.getObject(UserType.class, BenchmarkUtil.USER_JACK_OID, null,
+				new OperationResult(DOT_CLASS + "getObject"));
+	}
+
+	@Benchmark
+	public SearchResultList<PrismObject<UserType>> searchByName() throws CommonException {
+		return repositoryService.searchObjects(UserType.class, nameQuery, null,
+				new OperationResult(DOT_CLASS + "searchByName"));
+	}
+
+	@Benchmark
+	public SearchResultList<PrismObject<UserType>> searchPaged() throws CommonException {
+		return repositoryService.searchObjects(UserType.class, pagedQuery, null,
+				new OperationResult(DOT_CLASS + "searchPaged"));
+	}
+
+	@Benchmark
+	public void modifyObject() throws CommonException {
+		Collection<? extends ItemDelta> modifications = PropertyDelta.createModificationReplacePropertyCollection(
+				UserType.F_LOCALITY, userDefinition, new PolyString("Island " + counter++));
+		repositoryService.modifyObject(UserType.class, BenchmarkUtil.USER_JACK_OID, modifications,
+				new OperationResult(DOT_CLASS + "modifyObject"));
+	}
+}